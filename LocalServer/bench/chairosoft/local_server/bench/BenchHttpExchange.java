@@ -0,0 +1,130 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * BenchHttpExchange.java
+ * BenchHttpExchange class definition
+ */
+
+package chairosoft.local_server.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+/**
+ * An in-memory HttpExchange, so that exchange parsing and response writing 
+ * can be measured without sockets. The response body is counted and discarded.
+ */
+public class BenchHttpExchange extends HttpExchange
+{
+    //
+    // Static Fields
+    //
+    
+    public static final InetSocketAddress LOOPBACK = new InetSocketAddress("127.0.0.1", 8000);
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    protected final String method;
+    protected final URI uri;
+    protected final Headers requestHeaders;
+    protected final Headers responseHeaders = new Headers();
+    protected final Map<String, Object> attributes = new HashMap<>();
+    protected InputStream requestBody;
+    protected OutputStream responseBody;
+    protected int responseCode = -1;
+    
+    
+    //
+    // Constructor
+    //
+    
+    public BenchHttpExchange(String _method, URI _uri, Headers _requestHeaders, byte[] body, CountingOutputStream _responseBody)
+    {
+        this.method = _method;
+        this.uri = _uri;
+        this.requestHeaders = _requestHeaders;
+        this.requestBody = new ByteArrayInputStream(body);
+        this.responseBody = _responseBody;
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    @Override public Headers getRequestHeaders() { return this.requestHeaders; }
+    @Override public Headers getResponseHeaders() { return this.responseHeaders; }
+    @Override public URI getRequestURI() { return this.uri; }
+    @Override public String getRequestMethod() { return this.method; }
+    @Override public HttpContext getHttpContext() { return null; }
+    @Override public InputStream getRequestBody() { return this.requestBody; }
+    @Override public OutputStream getResponseBody() { return this.responseBody; }
+    @Override public int getResponseCode() { return this.responseCode; }
+    @Override public InetSocketAddress getRemoteAddress() { return LOOPBACK; }
+    @Override public InetSocketAddress getLocalAddress() { return LOOPBACK; }
+    @Override public String getProtocol() { return "HTTP/1.1"; }
+    @Override public Object getAttribute(String name) { return this.attributes.get(name); }
+    @Override public void setAttribute(String name, Object value) { this.attributes.put(name, value); }
+    @Override public HttpPrincipal getPrincipal() { return null; }
+    
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength)
+    {
+        this.responseCode = rCode;
+    }
+    
+    @Override
+    public void setStreams(InputStream i, OutputStream o)
+    {
+        if (i != null) { this.requestBody = i; }
+        if (o != null) { this.responseBody = o; }
+    }
+    
+    @Override
+    public void close()
+    {
+        try
+        {
+            this.requestBody.close();
+            this.responseBody.close();
+        }
+        catch (IOException ex)
+        {
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    
+    //
+    // Nested Classes
+    //
+    
+    /**
+     * Counts the bytes written to it, and discards them.
+     */
+    public static class CountingOutputStream extends OutputStream
+    {
+        public long count = 0;
+        
+        @Override public void write(int b) { ++this.count; }
+        @Override public void write(byte[] b, int off, int len) { this.count += len; }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * CopyIOBenchmark.java
+ * CopyIOBenchmark class definition
+ */
+
+package chairosoft.local_server.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import chairosoft.local_server.LocalServer;
+
+/**
+ * Measures LocalServer.copyIO across buffer sizes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CopyIOBenchmark
+{
+    //
+    // Instance Fields
+    //
+    
+    @Param({ "512", "2048", "8192", "65536" })
+    public int bufferSize;
+    
+    @Param({ "4096", "1048576" })
+    public int dataSize;
+    
+    protected byte[] data;
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    @Setup
+    public void setup()
+    {
+        this.data = new byte[this.dataSize];
+    }
+    
+    @Benchmark
+    public long copyIO()
+        throws IOException
+    {
+        BenchHttpExchange.CountingOutputStream out = new BenchHttpExchange.CountingOutputStream();
+        LocalServer.copyIO(new ByteArrayInputStream(this.data), out, this.bufferSize);
+        return out.count;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,102 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * ExchangeParsingBenchmark.java
+ * ExchangeParsingBenchmark class definition
+ */
+
+package chairosoft.local_server.bench;
+
+import java.io.IOException;
+
+import java.net.URI;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.Headers;
+
+import chairosoft.local_server.LocalHttpExchange;
+
+/**
+ * Measures request parsing: query parameters and the request string.
+ * Each invocation builds a fresh exchange, since exchanges cache what they parse.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExchangeParsingBenchmark
+{
+    //
+    // Instance Fields
+    //
+    
+    @Param({ "a=1", "q=hello+world&page=2&sort=name&dir=asc", "name=J%C3%BCrgen&city=M%C3%BCnchen&tag=a&tag=b&tag=c&empty=&x=1%2B1%3D2" })
+    public String query;
+    
+    @Param({ "0", "1024", "65536" })
+    public int bodySize;
+    
+    protected URI uri;
+    protected Headers headers;
+    protected byte[] body;
+    protected BenchHttpExchange.CountingOutputStream out;
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    @Setup
+    public void setup()
+    {
+        this.uri = URI.create("/test?" + this.query);
+        this.headers = new Headers();
+        this.headers.set("Host", "localhost:8000");
+        this.headers.set("User-Agent", "bench");
+        this.headers.set("Accept", "*/*");
+        this.headers.set("Content-Type", "text/plain; charset=utf-8");
+        this.headers.set("Content-Length", Integer.toString(this.bodySize));
+        this.body = new byte[this.bodySize];
+        Arrays.fill(this.body, (byte)'x');
+        this.out = new BenchHttpExchange.CountingOutputStream();
+    }
+    
+    protected LocalHttpExchange newExchange()
+    {
+        return new LocalHttpExchange(new BenchHttpExchange("POST", this.uri, this.headers, this.body, this.out));
+    }
+    
+    @Benchmark
+    public Map<String, List<String>> getParameterMap()
+        throws IOException
+    {
+        return this.newExchange().getParameterMap("UTF-8");
+    }
+    
+    @Benchmark
+    public String getRequestString()
+        throws IOException
+    {
+        return this.newExchange().getRequestString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,523 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LoadGenerator.java
+ * LoadGenerator class definition
+ */
+
+package chairosoft.local_server.bench;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import chairosoft.local_server.LocalAccessLog;
+import chairosoft.local_server.LocalHttpExchange;
+import chairosoft.local_server.LocalServer;
+import chairosoft.local_server.LocalServerExecutor;
+import chairosoft.local_server.LocalServerTransport;
+import chairosoft.local_server.LocalTlsContext;
+
+/**
+ * A dependency-free loopback load generator.
+ * <p>
+ * Starts a LocalServer in this process with <code>/test</code> and 
+ * <code>/existence</code> contexts like those of {@link LocalServer#main(String[])}
+ * (without the console output), then drives it over keep-alive connections
+ * and reports requests per second and p50/p99/p999 latency for each path.
+ * <p>
+ * Arguments are <code>name=value</code> pairs:
+ * <ul>
+ * <li><code>transport=jdk|nio|nio-reuseport</code> (default jdk)</li>
+ * <li><code>dispatchers=N</code> selector threads for the nio transport (default 1)</li>
+ * <li><code>executor=dispatcher|virtual|bounded|stealing</code> (default dispatcher)</li>
+ * <li><code>threads=N</code> for the bounded and stealing executors (default: available processors)</li>
+ * <li><code>connections=N</code> (default 16)</li>
+ * <li><code>seconds=N</code> of measurement (default 10)</li>
+ * <li><code>warmup=N</code> seconds before measurement (default 3)</li>
+ * <li><code>paths=/test,/existence</code> (default both)</li>
+ * <li><code>accesslog=none|common|combined|json</code> to log to a temp file (default none)</li>
+ * <li><code>tls=path</code> to a key store, to serve and drive HTTPS on the jdk transport (default none)</li>
+ * <li><code>tlspassword=secret</code> for the key store (default changeit)</li>
+ * <li><code>reconnect=N</code> requests per connection before reconnecting, or 0 to never reconnect (default 0)</li>
+ * <li><code>resume=true|false</code> whether reconnecting clients resume their TLS sessions (default true)</li>
+ * <li><code>target=host:port</code> to drive an existing server instead of starting one</li>
+ * </ul>
+ * The JDK transport holds back small responses for delayed ACKs unless the JVM
+ * is run with <code>-Dsun.net.httpserver.nodelay=true</code>; compare both.
+ * To measure what TLS costs, compare a run with <code>tls</code> against one
+ * without, and with <code>reconnect</code> set, compare <code>resume=false</code>
+ * (a full handshake on every connection) against the default.
+ */
+public class LoadGenerator
+{
+    //
+    // Main Method
+    //
+    
+    /**
+     * Runs the load generator.
+     * @param args <code>name=value</code> options, as described above
+     * @throws Exception (not caught)
+     */
+    public static void main(String[] args)
+        throws Exception
+    {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args)
+        {
+            int equals = arg.indexOf('=');
+            if (equals < 0)
+            {
+                String message = String.format("Argument (%s) must be of the form name=value.", arg);
+                throw new IllegalArgumentException(message);
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        
+        int processors = Runtime.getRuntime().availableProcessors();
+        int connections = Integer.parseInt(options.getOrDefault("connections", "16"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "10"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "3"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", Integer.toString(processors)));
+        String[] paths = options.getOrDefault("paths", "/test,/existence").split(",");
+        String target = options.get("target");
+        int reconnect = Integer.parseInt(options.getOrDefault("reconnect", "0"));
+        boolean resume = Boolean.parseBoolean(options.getOrDefault("resume", "true"));
+        String keyStore = options.get("tls");
+        LocalTlsContext tls = keyStore == null ? null : new LocalTlsContext(Paths.get(keyStore), options.getOrDefault("tlspassword", "changeit"));
+        SSLSocketFactory socketFactory = tls == null ? null : tls.createClientContext().getSocketFactory();
+        
+        LocalServer server = null;
+        InetSocketAddress address;
+        if (target == null)
+        {
+            int dispatchers = Integer.parseInt(options.getOrDefault("dispatchers", "1"));
+            server = LoadGenerator.startServer(options.getOrDefault("transport", "jdk"), dispatchers, options.getOrDefault("executor", "dispatcher"), threads, tls);
+            LoadGenerator.setAccessLog(server, options.getOrDefault("accesslog", "none"));
+            address = new InetSocketAddress("127.0.0.1", server.getPort());
+        }
+        else
+        {
+            int colon = target.lastIndexOf(':');
+            address = new InetSocketAddress(target.substring(0, colon), Integer.parseInt(target.substring(colon + 1)));
+        }
+        
+        System.out.printf("target %s, %s connections, %ss warmup, %ss measured \n", address, connections, warmup, seconds);
+        if (tls != null) { System.out.printf("tls, reconnect every %s requests, resume %s \n", reconnect, resume); }
+        if (server != null) { System.out.printf("server transport %s, executor %s \n", server.getWrappedHttpServer().getClass().getSimpleName(), server.getExecutor()); }
+        
+        long now = System.nanoTime();
+        long measureStart = now + warmup * 1_000_000_000L;
+        long measureEnd = measureStart + seconds * 1_000_000_000L;
+        List<Client> clients = new ArrayList<>();
+        for (int i = 0; i < connections; ++i)
+        {
+            Client client = new Client(address, paths, i, measureStart, measureEnd, socketFactory, reconnect, resume);
+            clients.add(client);
+            client.start();
+        }
+        for (Client client : clients) { client.join(); }
+        long connects = 0;
+        for (Client client : clients) { connects += client.connects; }
+        System.out.printf("connections opened %s \n", connects);
+        if (tls != null && server != null) { System.out.printf("tls sessions cached %s \n", tls.getCachedSessionCount()); }
+        LocalAccessLog accessLog = server == null ? null : server.getAccessLog();
+        if (server != null) { server.stop(0); }
+        if (accessLog != null) { System.out.printf("access log %s: %s written, %s dropped \n", accessLog.FILE, accessLog.getWrittenCount(), accessLog.getDroppedCount()); }
+        
+        long errors = 0;
+        for (Client client : clients) 
+        { 
+            errors += client.errors;
+            if (client.failure != null) { System.out.printf("client failed: %s \n", client.failure); }
+        }
+        System.out.printf("%-12s %10s %12s %10s %10s %10s %10s \n", "path", "requests", "req/s", "p50 us", "p99 us", "p999 us", "max us");
+        long totalCount = 0;
+        for (int p = 0; p < paths.length; ++p)
+        {
+            Latencies merged = new Latencies();
+            for (Client client : clients) { merged.addAll(client.latencies[p]); }
+            long[] sorted = merged.sorted();
+            totalCount += sorted.length;
+            System.out.printf("%-12s %10d %12.1f %10.1f %10.1f %10.1f %10.1f \n", 
+                paths[p], 
+                sorted.length, 
+                sorted.length / (double)seconds, 
+                LoadGenerator.percentile(sorted, 0.50) / 1000.0, 
+                LoadGenerator.percentile(sorted, 0.99) / 1000.0, 
+                LoadGenerator.percentile(sorted, 0.999) / 1000.0, 
+                (sorted.length == 0 ? 0 : sorted[sorted.length - 1]) / 1000.0
+            );
+        }
+        System.out.printf("%-12s %10d %12.1f (errors: %s) \n", "total", totalCount, totalCount / (double)seconds, errors);
+    }
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Starts a server with load-test versions of the contexts from LocalServer.main.
+     * @param transport   the transport name, jdk, nio or nio-reuseport
+     * @param dispatchers the number of selector threads for the nio transport
+     * @param executor    the executor name, dispatcher, virtual, bounded or stealing
+     * @param threads     the thread count for the bounded and stealing executors
+     * @return            the started server
+     */
+    public static LocalServer startServer(String transport, int dispatchers, String executor, int threads)
+    {
+        return LoadGenerator.startServer(transport, dispatchers, executor, threads, null);
+    }
+    
+    /**
+     * Starts a server with load-test versions of the contexts from LocalServer.main.
+     * @param transport   the transport name, jdk, nio or nio-reuseport
+     * @param dispatchers the number of selector threads for the nio transport
+     * @param executor    the executor name, dispatcher, virtual, bounded or stealing
+     * @param threads     the thread count for the bounded and stealing executors
+     * @param tls         the TLS setup to serve HTTPS with on the jdk transport, or null for plain HTTP
+     * @return            the started server
+     */
+    public static LocalServer startServer(String transport, int dispatchers, String executor, int threads, LocalTlsContext tls)
+    {
+        if (tls != null && !transport.equals("jdk"))
+        {
+            String message = String.format("Transport (%s) must be jdk to serve HTTPS.", transport);
+            throw new IllegalArgumentException(message);
+        }
+        LocalServerTransport serverTransport;
+        switch (transport)
+        {
+            case "jdk": serverTransport = tls == null ? LocalServerTransport.JDK : LocalServerTransport.https(tls); break;
+            case "nio": serverTransport = LocalServerTransport.nio(dispatchers); break;
+            case "nio-reuseport": serverTransport = LocalServerTransport.nio(dispatchers, true); break;
+            default:
+                String message = String.format("Transport (%s) must be jdk, nio or nio-reuseport.", transport);
+                throw new IllegalArgumentException(message);
+        }
+        
+        Executor serverExecutor;
+        switch (executor)
+        {
+            case "dispatcher": serverExecutor = null; break;
+            case "virtual": serverExecutor = LocalServerExecutor.virtualThreadPerRequest(); break;
+            case "bounded": serverExecutor = LocalServerExecutor.boundedPool(threads, 1024); break;
+            case "stealing": serverExecutor = LocalServerExecutor.workStealing(threads); break;
+            default:
+                String message = String.format("Executor (%s) must be dispatcher, virtual, bounded or stealing.", executor);
+                throw new IllegalArgumentException(message);
+        }
+        
+        LocalServer server = new LocalServer(serverTransport, 18000, 1, 100, 1024, serverExecutor);
+        server.createContext("/existence", (LocalHttpExchange x) ->
+        {
+            x.RESPONSE_HEADERS.set("Access-Control-Allow-Origin", "*");
+            x.sendStringResponse(200, "text/plain", "true");
+        });
+        server.createContext("/test", (LocalHttpExchange x) ->
+        {
+            x.getRequestString();
+            x.sendStringResponse(200, "text/plain", "You tested it, yay.");
+        });
+        server.start();
+        return server;
+    }
+    
+    /**
+     * Sets an access log on a server, writing to a temp file.
+     * @param server the server
+     * @param format the format name, none, common, combined or json
+     * @throws IOException if the temp file cannot be created
+     */
+    public static void setAccessLog(LocalServer server, String format)
+        throws IOException
+    {
+        LocalAccessLog.Format accessLogFormat;
+        switch (format)
+        {
+            case "none": return;
+            case "common": accessLogFormat = LocalAccessLog.COMMON; break;
+            case "combined": accessLogFormat = LocalAccessLog.COMBINED; break;
+            case "json": accessLogFormat = LocalAccessLog.JSON; break;
+            default:
+                String message = String.format("Access log format (%s) must be none, common, combined or json.", format);
+                throw new IllegalArgumentException(message);
+        }
+        Path file = Files.createTempFile("LocalServer-access-", ".log");
+        server.setAccessLog(new LocalAccessLog(file, accessLogFormat));
+    }
+    
+    /**
+     * Gets a percentile of sorted latencies.
+     * @param sorted   the latencies, in ascending order
+     * @param fraction the percentile, as a fraction from 0 to 1
+     * @return         the latency at the percentile, or 0 if there are none
+     */
+    public static long percentile(long[] sorted, double fraction)
+    {
+        if (sorted.length == 0) { return 0; }
+        int index = (int)Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+    
+    
+    //
+    // Nested Classes
+    //
+    
+    /**
+     * A growable array of latencies in nanoseconds.
+     */
+    public static class Latencies
+    {
+        protected long[] values = new long[1024];
+        protected int count = 0;
+        
+        public void add(long value)
+        {
+            if (this.count == this.values.length) { this.values = Arrays.copyOf(this.values, this.count * 2); }
+            this.values[this.count++] = value;
+        }
+        
+        public void addAll(Latencies other)
+        {
+            for (int i = 0; i < other.count; ++i) { this.add(other.values[i]); }
+        }
+        
+        public long[] sorted()
+        {
+            long[] result = Arrays.copyOf(this.values, this.count);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+    
+    /**
+     * One keep-alive connection, sending requests back to back until the end time.
+     */
+    public static class Client extends Thread
+    {
+        protected final InetSocketAddress address;
+        protected final byte[][] requests;
+        protected final Latencies[] latencies;
+        protected final long measureStart;
+        protected final long measureEnd;
+        protected final SSLSocketFactory socketFactory;
+        protected final int reconnect;
+        protected final boolean resume;
+        protected final byte[] body = new byte[8192];
+        protected int next;
+        protected int sentOnConnection = 0;
+        protected long errors = 0;
+        protected long connects = 0;
+        protected Exception failure = null;
+        
+        protected Socket socket = null;
+        protected InputStream in = null;
+        protected OutputStream out = null;
+        
+        public Client(InetSocketAddress _address, String[] paths, int index, long _measureStart, long _measureEnd)
+        {
+            this(_address, paths, index, _measureStart, _measureEnd, null, 0, true);
+        }
+        
+        /**
+         * Creates a client.
+         * @param _address       the server's address
+         * @param paths          the paths to request in turn
+         * @param index          the client's index, which picks its first path
+         * @param _measureStart  when to start recording latencies, from System.nanoTime
+         * @param _measureEnd    when to stop, from System.nanoTime
+         * @param _socketFactory the factory for TLS connections, or null for plain ones
+         * @param _reconnect     requests per connection before reconnecting, or 0 to never reconnect
+         * @param _resume        whether to resume TLS sessions when reconnecting
+         */
+        public Client(InetSocketAddress _address, String[] paths, int index, long _measureStart, long _measureEnd, SSLSocketFactory _socketFactory, int _reconnect, boolean _resume)
+        {
+            super("load-client-" + index);
+            this.address = _address;
+            this.requests = new byte[paths.length][];
+            this.latencies = new Latencies[paths.length];
+            for (int i = 0; i < paths.length; ++i)
+            {
+                String request = "GET " + paths[i] + " HTTP/1.1\r\nHost: " + _address.getHostString() + ":" + _address.getPort() + "\r\nUser-Agent: LoadGenerator\r\n\r\n";
+                this.requests[i] = request.getBytes(StandardCharsets.US_ASCII);
+                this.latencies[i] = new Latencies();
+            }
+            this.next = index % paths.length;
+            this.measureStart = _measureStart;
+            this.measureEnd = _measureEnd;
+            this.socketFactory = _socketFactory;
+            this.reconnect = _reconnect;
+            this.resume = _resume;
+            this.setDaemon(true);
+        }
+        
+        @Override
+        public void run()
+        {
+            try
+            {
+                long start;
+                while ((start = System.nanoTime()) < this.measureEnd)
+                {
+                    int p = this.next;
+                    this.next = (p + 1) % this.requests.length;
+                    try
+                    {
+                        if (this.socket != null && this.reconnect > 0 && this.sentOnConnection >= this.reconnect) { this.disconnect(); }
+                        if (this.socket == null) { this.connect(); }
+                        ++this.sentOnConnection;
+                        this.out.write(this.requests[p]);
+                        this.out.flush();
+                        int status = this.readResponse();
+                        long end = System.nanoTime();
+                        if (status != 200) { ++this.errors; }
+                        else if (start >= this.measureStart && end <= this.measureEnd) { this.latencies[p].add(end - start); }
+                    }
+                    catch (IOException ex)
+                    {
+                        ++this.errors;
+                        this.disconnect();
+                    }
+                }
+            }
+            catch (Exception ex)
+            {
+                this.failure = ex;
+            }
+            finally
+            {
+                this.disconnect();
+            }
+        }
+        
+        protected void connect()
+            throws IOException
+        {
+            this.socket = new Socket();
+            this.socket.setTcpNoDelay(true);
+            this.socket.connect(this.address, 5000);
+            this.socket.setSoTimeout(30000);
+            if (this.socketFactory != null)
+            {
+                SSLSocket sslSocket = (SSLSocket)this.socketFactory.createSocket(this.socket, this.address.getHostString(), this.address.getPort(), true);
+                sslSocket.startHandshake();
+                this.socket = sslSocket;
+            }
+            this.sentOnConnection = 0;
+            ++this.connects;
+            this.in = new BufferedInputStream(this.socket.getInputStream(), 16384);
+            this.out = this.socket.getOutputStream();
+        }
+        
+        protected void disconnect()
+        {
+            if (this.socket == null) { return; }
+            if (!this.resume && this.socket instanceof SSLSocket)
+            {
+                // so that the next connection needs a full handshake
+                ((SSLSocket)this.socket).getSession().invalidate();
+            }
+            try
+            {
+                this.socket.close();
+            }
+            catch (IOException ex)
+            {
+                // nothing left to do with it
+            }
+            this.socket = null;
+        }
+        
+        /**
+         * Reads one response with a Content-Length or chunked body.
+         * @return the response's status code
+         * @throws IOException if the connection fails or the response is malformed
+         */
+        protected int readResponse()
+            throws IOException
+        {
+            String statusLine = this.readLine();
+            int firstSpace = statusLine.indexOf(' ');
+            if (!statusLine.startsWith("HTTP/") || firstSpace < 0) { throw new IOException("Bad status line: " + statusLine); }
+            int status = Integer.parseInt(statusLine.substring(firstSpace + 1, firstSpace + 4));
+            
+            long contentLength = -1;
+            boolean chunked = false;
+            boolean close = false;
+            for (String line = this.readLine(); !line.isEmpty(); line = this.readLine())
+            {
+                int colon = line.indexOf(':');
+                if (colon < 0) { continue; }
+                String name = line.substring(0, colon).trim();
+                String value = line.substring(colon + 1).trim();
+                if (name.equalsIgnoreCase("Content-Length")) { contentLength = Long.parseLong(value); }
+                else if (name.equalsIgnoreCase("Transfer-Encoding")) { chunked = value.equalsIgnoreCase("chunked"); }
+                else if (name.equalsIgnoreCase("Connection")) { close = value.equalsIgnoreCase("close"); }
+            }
+            
+            if (chunked)
+            {
+                for (long size; 0 < (size = Long.parseLong(this.readLine().split(";")[0].trim(), 16)); this.readLine())
+                {
+                    this.skip(size);
+                }
+                while (!this.readLine().isEmpty()) { }
+            }
+            else if (contentLength > 0)
+            {
+                this.skip(contentLength);
+            }
+            
+            if (close) { this.disconnect(); }
+            return status;
+        }
+        
+        protected void skip(long count)
+            throws IOException
+        {
+            while (count > 0)
+            {
+                int bytesRead = this.in.read(this.body, 0, (int)Math.min(count, this.body.length));
+                if (bytesRead < 0) { throw new IOException("Connection closed in a response body."); }
+                count -= bytesRead;
+            }
+        }
+        
+        protected String readLine()
+            throws IOException
+        {
+            StringBuilder sb = new StringBuilder();
+            for (int b; (b = this.in.read()) != '\n'; )
+            {
+                if (b < 0) { throw new IOException("Connection closed in a response head."); }
+                if (b != '\r') { sb.append((char)b); }
+            }
+            return sb.toString();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,86 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * ResponseWritingBenchmark.java
+ * ResponseWritingBenchmark class definition
+ */
+
+package chairosoft.local_server.bench;
+
+import java.io.IOException;
+
+import java.net.URI;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.Headers;
+
+import chairosoft.local_server.LocalHttpExchange;
+
+/**
+ * Measures sendByteArrayResponse, with and without Range headers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseWritingBenchmark
+{
+    //
+    // Instance Fields
+    //
+    
+    @Param({ "none", "bytes=0-1023", "bytes=-500", "bytes=0-99,200-299,4000-" })
+    public String range;
+    
+    @Param({ "1024", "65536", "1048576" })
+    public int responseSize;
+    
+    protected URI uri;
+    protected Headers headers;
+    protected byte[] response;
+    protected BenchHttpExchange.CountingOutputStream out;
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    @Setup
+    public void setup()
+    {
+        this.uri = URI.create("/audio.mp3");
+        this.headers = new Headers();
+        this.headers.set("Host", "localhost:8000");
+        if (!this.range.equals("none")) { this.headers.set("Range", this.range); }
+        this.response = new byte[this.responseSize];
+        new Random(1).nextBytes(this.response);
+        this.out = new BenchHttpExchange.CountingOutputStream();
+    }
+    
+    @Benchmark
+    public long sendByteArrayResponse()
+        throws IOException
+    {
+        LocalHttpExchange x = new LocalHttpExchange(new BenchHttpExchange("GET", this.uri, this.headers, new byte[0], this.out));
+        x.sendByteArrayResponse(200, "audio/mpeg", this.response);
+        return this.out.count;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,671 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalAccessLog.java
+ * LocalAccessLog class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Writes an access log line for every exchange, off the request path.
+ * <p>
+ * Handler threads copy each exchange's details into a preallocated entry
+ * of a bounded, lock-free ring buffer. One writer thread drains the ring 
+ * in batches, formats the entries, and writes each batch with a single 
+ * write, so no handler waits on a lock or on the disk. When the ring is 
+ * full, entries are dropped and counted instead. The writer is a daemon
+ * thread that lives from the log's creation until it is closed.
+ * <p>
+ * A log written to a file is rotated when it grows past a maximum size:
+ * <code>access.log</code> becomes <code>access.log.1</code>, and so on, 
+ * up to a maximum number of old files.
+ * @see LocalServer#setAccessLog(LocalAccessLog)
+ */
+public class LocalAccessLog implements Closeable
+{
+    //
+    // Static Fields
+    //
+    
+    public static final int DEFAULT_CAPACITY = 8192;
+    public static final long DEFAULT_MAX_FILE_SIZE = 64L * 1024 * 1024;
+    public static final int DEFAULT_MAX_FILES = 10;
+    public static final long FLUSH_INTERVAL_MILLIS = 200;
+    public static final int MAX_BATCH_SIZE = 1024;
+    
+    protected static final DateTimeFormatter COMMON_TIME_FORMATTER = 
+        DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.US).withZone(ZoneId.systemDefault());
+    protected static final DateTimeFormatter ISO_SECOND_FORMATTER = 
+        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.", Locale.US).withZone(ZoneOffset.UTC);
+    protected static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    protected static final ThreadLocal<TimeCache> TIME_CACHE = ThreadLocal.withInitial(TimeCache::new);
+    
+    /** The Common Log Format: <code>host - - [time] "request" status bytes</code>. */
+    public static final Format COMMON = (StringBuilder sb, Entry e) -> LocalAccessLog.appendCommon(sb, e);
+    
+    /** The Combined Log Format: the Common Log Format followed by the referer and user agent. */
+    public static final Format COMBINED = (StringBuilder sb, Entry e) ->
+    {
+        LocalAccessLog.appendCommon(sb, e);
+        sb.append(' ');
+        LocalAccessLog.appendQuoted(sb, e.getReferer());
+        sb.append(' ');
+        LocalAccessLog.appendQuoted(sb, e.getUserAgent());
+    };
+    
+    /** One JSON object per line, with the request's duration in microseconds. */
+    public static final Format JSON = (StringBuilder sb, Entry e) ->
+    {
+        sb.append("{\"time\":\"");
+        LocalAccessLog.appendIsoTime(sb, e.getTimeMillis());
+        sb.append('"');
+        sb.append(",\"remote\":");
+        LocalAccessLog.appendJsonString(sb, e.getRemoteHost());
+        sb.append(",\"method\":");
+        LocalAccessLog.appendJsonString(sb, e.getMethod());
+        sb.append(",\"uri\":");
+        LocalAccessLog.appendJsonString(sb, e.getUri());
+        sb.append(",\"protocol\":");
+        LocalAccessLog.appendJsonString(sb, e.getProtocol());
+        sb.append(",\"status\":").append(e.getStatus());
+        sb.append(",\"request_bytes\":").append(e.getRequestBytes());
+        sb.append(",\"response_bytes\":").append(e.getResponseBytes());
+        sb.append(",\"duration_us\":").append(e.getDurationNanos() / 1000);
+        sb.append(",\"referer\":");
+        LocalAccessLog.appendJsonString(sb, e.getReferer());
+        sb.append(",\"user_agent\":");
+        LocalAccessLog.appendJsonString(sb, e.getUserAgent());
+        sb.append('}');
+    };
+    
+    
+    //
+    // Nested Types
+    //
+    
+    /**
+     * Formats one entry as one line, without the line break.
+     * Formats are called only on the writer thread.
+     */
+    @FunctionalInterface
+    public interface Format
+    {
+        void append(StringBuilder sb, Entry entry);
+    }
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Appends an entry in the Common Log Format.
+     * @param sb the builder to append to
+     * @param e  the entry
+     */
+    public static void appendCommon(StringBuilder sb, Entry e)
+    {
+        sb.append(e.getRemoteHost()).append(" - - [");
+        TimeCache cache = TIME_CACHE.get();
+        long second = Math.floorDiv(e.getTimeMillis(), 1000);
+        if (cache.commonSecond != second)
+        {
+            cache.commonSecond = second;
+            cache.common = COMMON_TIME_FORMATTER.format(Instant.ofEpochSecond(second));
+        }
+        sb.append(cache.common).append("] \"");
+        LocalAccessLog.appendEscaped(sb, e.getMethod());
+        sb.append(' ');
+        LocalAccessLog.appendEscaped(sb, e.getUri());
+        sb.append(' ');
+        LocalAccessLog.appendEscaped(sb, e.getProtocol());
+        sb.append("\" ");
+        if (e.getStatus() < 0) { sb.append('-'); } else { sb.append(e.getStatus()); }
+        sb.append(' ');
+        if (e.getResponseBytes() <= 0) { sb.append('-'); } else { sb.append(e.getResponseBytes()); }
+    }
+    
+    /**
+     * Appends a time in ISO 8601 format, in UTC, with milliseconds.
+     * The part up to the second is formatted once per second, per thread.
+     * @param sb         the builder to append to
+     * @param timeMillis the time, in milliseconds since the epoch
+     */
+    public static void appendIsoTime(StringBuilder sb, long timeMillis)
+    {
+        TimeCache cache = TIME_CACHE.get();
+        long second = Math.floorDiv(timeMillis, 1000);
+        if (cache.isoSecond != second)
+        {
+            cache.isoSecond = second;
+            cache.iso = ISO_SECOND_FORMATTER.format(Instant.ofEpochSecond(second));
+        }
+        int millis = (int)Math.floorMod(timeMillis, 1000L);
+        sb.append(cache.iso).append((char)('0' + millis / 100)).append((char)('0' + millis / 10 % 10)).append((char)('0' + millis % 10)).append('Z');
+    }
+    
+    /**
+     * Appends a value in double quotes, or "-" if it is null, escaped as for {@link #appendEscaped}.
+     * @param sb    the builder to append to
+     * @param value the value (may be null)
+     */
+    public static void appendQuoted(StringBuilder sb, String value)
+    {
+        if (value == null)
+        {
+            sb.append("\"-\"");
+            return;
+        }
+        sb.append('"');
+        LocalAccessLog.appendEscaped(sb, value);
+        sb.append('"');
+    }
+    
+    /**
+     * Appends a value with quotes, backslashes and control characters escaped,
+     * so that a client cannot forge log lines.
+     * @param sb    the builder to append to
+     * @param value the value (may be null, for "-")
+     */
+    public static void appendEscaped(StringBuilder sb, String value)
+    {
+        if (value == null)
+        {
+            sb.append('-');
+            return;
+        }
+        for (int i = 0; i < value.length(); ++i)
+        {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') { sb.append('\\').append(c); }
+            else if (c < 0x20 || c == 0x7f) { sb.append("\\x").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xf]); }
+            else { sb.append(c); }
+        }
+    }
+    
+    /**
+     * Appends a JSON string, or null.
+     * @param sb    the builder to append to
+     * @param value the value (may be null)
+     */
+    public static void appendJsonString(StringBuilder sb, String value)
+    {
+        if (value == null)
+        {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); ++i)
+        {
+            char c = value.charAt(i);
+            switch (c)
+            {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) { sb.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xf]); }
+                    else { sb.append(c); }
+                    break;
+            }
+        }
+        sb.append('"');
+    }
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    public final Format FORMAT;
+    public final Path FILE;
+    public final long MAX_FILE_SIZE;
+    public final int MAX_FILES;
+    
+    protected final Entry[] ring;
+    protected final int mask;
+    protected final AtomicLong tail = new AtomicLong(0);
+    protected volatile long head = 0;
+    protected final LongAdder droppedCount = new LongAdder();
+    protected final LongAdder writtenCount = new LongAdder();
+    protected final LongAdder writeErrorCount = new LongAdder();
+    protected volatile boolean logWarmupRequests = false;
+    protected volatile boolean open = true;
+    protected volatile boolean rotateRequested = false;
+    protected final boolean ownsStream;
+    protected OutputStream out;
+    protected long fileSize = 0;
+    protected final Thread writer;
+    
+    
+    //
+    // Constructors
+    //
+    
+    public LocalAccessLog(String fileName)
+        throws IOException
+    {
+        this(Paths.get(fileName), COMMON);
+    }
+    
+    public LocalAccessLog(Path _file, Format _format)
+        throws IOException
+    {
+        this(_file, _format, DEFAULT_CAPACITY, DEFAULT_MAX_FILE_SIZE, DEFAULT_MAX_FILES);
+    }
+    
+    /**
+     * Creates an access log that appends to a file, rotating it by size.
+     * @param _file        the file to append to
+     * @param _format      the line format, such as {@link #COMMON}, {@link #COMBINED} or {@link #JSON}
+     * @param _capacity    the number of entries the ring holds, rounded up to a power of 2
+     * @param _maxFileSize the size past which the file is rotated, or 0 to never rotate
+     * @param _maxFiles    the number of rotated files to keep
+     * @throws IOException if the file cannot be opened
+     */
+    public LocalAccessLog(Path _file, Format _format, int _capacity, long _maxFileSize, int _maxFiles)
+        throws IOException
+    {
+        this(_file, null, _format, _capacity, _maxFileSize, _maxFiles);
+    }
+    
+    /**
+     * Creates an access log that writes to a stream, such as System.out.
+     * The stream is flushed after each batch, but is not closed with the log.
+     * @param _out    the stream to write to
+     * @param _format the line format
+     */
+    public LocalAccessLog(OutputStream _out, Format _format)
+    {
+        this(null, _out, _format, DEFAULT_CAPACITY, 0, 0);
+    }
+    
+    protected LocalAccessLog(Path _file, OutputStream _out, Format _format, int _capacity, long _maxFileSize, int _maxFiles)
+    {
+        if (_capacity <= 0 || _capacity > (1 << 30))
+        {
+            String message = String.format("Access log capacity (%s) must be between 1 and 2^30.", _capacity);
+            throw new IllegalArgumentException(message);
+        }
+        this.FORMAT = _format;
+        this.FILE = _file;
+        this.MAX_FILE_SIZE = _maxFileSize;
+        this.MAX_FILES = _maxFiles;
+        int capacity = 1;
+        while (capacity < _capacity) { capacity <<= 1; }
+        this.ring = new Entry[capacity];
+        for (int i = 0; i < capacity; ++i) { this.ring[i] = new Entry(i); }
+        this.mask = capacity - 1;
+        this.ownsStream = _out == null;
+        this.out = _out;
+        this.writer = new Thread(this::runWriter, "LocalServer-access-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    public int getCapacity() { return this.ring.length; }
+    public long getDroppedCount() { return this.droppedCount.sum(); }
+    public long getWrittenCount() { return this.writtenCount.sum(); }
+    public long getWriteErrorCount() { return this.writeErrorCount.sum(); }
+    public boolean isLogWarmupRequests() { return this.logWarmupRequests; }
+    
+    /**
+     * Sets whether requests sent by the server's own warmup are logged.
+     * They are not logged unless this is called.
+     * @param _logWarmupRequests true to log warmup requests
+     */
+    public void setLogWarmupRequests(boolean _logWarmupRequests) { this.logWarmupRequests = _logWarmupRequests; }
+    
+    /**
+     * Asks the writer to rotate the file before its next write, whatever its size.
+     */
+    public void rotate()
+    {
+        this.rotateRequested = true;
+        LockSupport.unpark(this.writer);
+    }
+    
+    /**
+     * Handles an exchange with the given handler, and logs it when it has finished.
+     * @param x       the exchange to handle
+     * @param handler the handler whose pipeline to run
+     * @throws IOException if the handler throws one
+     */
+    public void record(LocalHttpExchange x, LocalHttpHandler handler)
+        throws IOException
+    {
+        if (!this.open || (!this.logWarmupRequests && x.isWarmupRequest()))
+        {
+            LocalHttpHandlerPipeline.record(x, handler);
+            return;
+        }
+        
+        HttpExchange exchange = x.exchange;
+        LocalCountingOutputStream counter = new LocalCountingOutputStream(exchange.getResponseBody());
+        exchange.setStreams(null, counter);
+        long timeMillis = System.currentTimeMillis();
+        long start = System.nanoTime();
+        boolean async = false;
+        try
+        {
+            LocalHttpHandlerPipeline.record(x, handler);
+            CompletableFuture<Void> completion = x.getCompletion();
+            if (completion != null)
+            {
+                // the exchange finishes later, on another thread
+                async = true;
+                completion.whenComplete((Void v, Throwable ex) -> this.offer(x, counter, timeMillis, start));
+            }
+        }
+        finally
+        {
+            if (!async) { this.offer(x, counter, timeMillis, start); }
+        }
+    }
+    
+    /**
+     * Copies an exchange's details into the next free entry of the ring, 
+     * or counts it as dropped if the ring is full.
+     * @return true if the entry was added
+     */
+    protected boolean offer(LocalHttpExchange x, LocalCountingOutputStream counter, long timeMillis, long start)
+    {
+        long durationNanos = System.nanoTime() - start;
+        long position = this.tail.get();
+        while (true)
+        {
+            Entry e = this.ring[(int)position & this.mask];
+            long difference = e.sequence - position;
+            if (difference == 0)
+            {
+                if (this.tail.compareAndSet(position, position + 1))
+                {
+                    e.set(x, counter.getBytesWritten(), timeMillis, durationNanos);
+                    e.sequence = position + 1;
+                    if (position - this.head == this.ring.length / 2) { LockSupport.unpark(this.writer); }
+                    return true;
+                }
+                position = this.tail.get();
+            }
+            else if (difference < 0)
+            {
+                this.droppedCount.increment();
+                return false;
+            }
+            else
+            {
+                position = this.tail.get();
+            }
+        }
+    }
+    
+    /**
+     * Drains the ring in batches until the log is closed and the ring is empty.
+     */
+    protected void runWriter()
+    {
+        StringBuilder sb = new StringBuilder(64 * 1024);
+        while (true)
+        {
+            boolean closing = !this.open;
+            sb.setLength(0);
+            int count = 0;
+            long position = this.head;
+            for (; count < MAX_BATCH_SIZE; ++count, ++position)
+            {
+                Entry e = this.ring[(int)position & this.mask];
+                if (e.sequence != position + 1) { break; }
+                this.FORMAT.append(sb, e);
+                sb.append('\n');
+                e.clear();
+                e.sequence = position + this.ring.length;
+            }
+            this.head = position;
+            
+            if (count > 0 || this.rotateRequested) { this.write(sb, count); }
+            if (count == MAX_BATCH_SIZE) { continue; }
+            if (closing && count == 0) { break; }
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MILLIS));
+        }
+        this.closeStream();
+    }
+    
+    /**
+     * Writes a batch of lines, opening or rotating the file first if needed.
+     */
+    protected void write(StringBuilder sb, int count)
+    {
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        try
+        {
+            if (this.FILE != null)
+            {
+                boolean isFull = this.MAX_FILE_SIZE > 0 && this.fileSize > 0 && this.fileSize + bytes.length > this.MAX_FILE_SIZE;
+                if (this.rotateRequested || isFull) 
+                { 
+                    this.rotateRequested = false;
+                    this.rotateFiles(); 
+                }
+                if (this.out == null)
+                {
+                    this.out = Files.newOutputStream(this.FILE, StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+                    this.fileSize = Files.size(this.FILE);
+                }
+            }
+            if (bytes.length > 0)
+            {
+                this.out.write(bytes);
+                this.out.flush();
+                this.fileSize += bytes.length;
+                this.writtenCount.add(count);
+            }
+        }
+        catch (IOException ex)
+        {
+            this.writeErrorCount.increment();
+            this.droppedCount.add(count);
+            this.closeStream();
+        }
+    }
+    
+    /**
+     * Closes the file and shifts it and the older files along by one, deleting the oldest.
+     * @throws IOException if a file cannot be moved
+     */
+    protected void rotateFiles()
+        throws IOException
+    {
+        this.closeStream();
+        if (this.MAX_FILES <= 0)
+        {
+            Files.deleteIfExists(this.FILE);
+        }
+        else
+        {
+            Files.deleteIfExists(this.getRotatedFile(this.MAX_FILES));
+            for (int i = this.MAX_FILES - 1; i >= 1; --i)
+            {
+                Path older = this.getRotatedFile(i);
+                if (Files.exists(older)) { Files.move(older, this.getRotatedFile(i + 1), StandardCopyOption.REPLACE_EXISTING); }
+            }
+            if (Files.exists(this.FILE)) { Files.move(this.FILE, this.getRotatedFile(1), StandardCopyOption.REPLACE_EXISTING); }
+        }
+        this.fileSize = 0;
+    }
+    
+    /**
+     * Gets the name a file is rotated to.
+     * @param index the rotation index, from 1 for the newest
+     * @return      the rotated file, such as <code>access.log.1</code>
+     */
+    public Path getRotatedFile(int index)
+    {
+        return this.FILE.resolveSibling(this.FILE.getFileName() + "." + index);
+    }
+    
+    protected void closeStream()
+    {
+        OutputStream stream = this.out;
+        if (stream == null) { return; }
+        try
+        {
+            if (this.ownsStream) 
+            { 
+                this.out = null;
+                stream.close(); 
+            }
+            else
+            {
+                stream.flush();
+            }
+        }
+        catch (IOException ex)
+        {
+            this.writeErrorCount.increment();
+        }
+    }
+    
+    /**
+     * Stops taking entries, and waits up to a few seconds for the writer 
+     * to write what is already in the ring and close the file.
+     */
+    @Override
+    public void close()
+    {
+        this.open = false;
+        LockSupport.unpark(this.writer);
+        try
+        {
+            this.writer.join(5000);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    
+    //
+    // Nested Classes
+    //
+    
+    /**
+     * The formatted times of the last second seen by a writer thread.
+     */
+    protected static class TimeCache
+    {
+        protected long commonSecond = Long.MIN_VALUE;
+        protected String common = null;
+        protected long isoSecond = Long.MIN_VALUE;
+        protected String iso = null;
+    }
+    
+    /**
+     * One slot of the ring. Its fields are written by one handler thread, 
+     * then read by the writer thread, ordered by its sequence number.
+     */
+    public static class Entry
+    {
+        protected volatile long sequence;
+        protected long timeMillis;
+        protected InetSocketAddress remoteAddress;
+        protected String method;
+        protected String uri;
+        protected String protocol;
+        protected String referer;
+        protected String userAgent;
+        protected int status;
+        protected long requestBytes;
+        protected long responseBytes;
+        protected long durationNanos;
+        
+        protected Entry(long _sequence)
+        {
+            this.sequence = _sequence;
+        }
+        
+        protected void set(LocalHttpExchange x, long _responseBytes, long _timeMillis, long _durationNanos)
+        {
+            this.timeMillis = _timeMillis;
+            this.remoteAddress = x.exchange.getRemoteAddress();
+            this.method = x.REQUEST_METHOD;
+            this.uri = x.REQUEST_URI.toString();
+            this.protocol = x.REQUEST_PROTOCOL;
+            this.referer = x.REQUEST_HEADERS.getFirst("Referer");
+            this.userAgent = x.REQUEST_HEADERS.getFirst("User-Agent");
+            this.status = x.exchange.getResponseCode();
+            this.requestBytes = Math.max(0, Math.max(x.REQUEST_CONTENT_LENGTH, x.getRequestBodyBytesRead()));
+            this.responseBytes = _responseBytes;
+            this.durationNanos = _durationNanos;
+        }
+        
+        protected void clear()
+        {
+            this.remoteAddress = null;
+            this.method = null;
+            this.uri = null;
+            this.protocol = null;
+            this.referer = null;
+            this.userAgent = null;
+        }
+        
+        public long getTimeMillis() { return this.timeMillis; }
+        public String getMethod() { return this.method; }
+        public String getUri() { return this.uri; }
+        public String getProtocol() { return this.protocol; }
+        public String getReferer() { return this.referer; }
+        public String getUserAgent() { return this.userAgent; }
+        public int getStatus() { return this.status; }
+        public long getRequestBytes() { return this.requestBytes; }
+        public long getResponseBytes() { return this.responseBytes; }
+        public long getDurationNanos() { return this.durationNanos; }
+        
+        /** @return the client's address, without a reverse DNS lookup, or "-" if it is not known */
+        public String getRemoteHost()
+        {
+            InetSocketAddress a = this.remoteAddress;
+            if (a == null) { return "-"; }
+            InetAddress address = a.getAddress();
+            return address == null ? a.getHostString() : address.getHostAddress();
+        }
+    }
+}
\ No newline at end of file
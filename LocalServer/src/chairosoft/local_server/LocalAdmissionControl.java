@@ -0,0 +1,148 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalAdmissionControl.java
+ * LocalAdmissionControl class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.IOException;
+
+import java.net.InetSocketAddress;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides which exchanges a server handles when it is busy.
+ * <p>
+ * An exchange is first checked against its client's rate limit, if there
+ * is one, and turned away with a 429 response if the client is over it. 
+ * Then it must get a slot under the concurrency limit, or it is turned 
+ * away with a 503 response. Both responses carry a Retry-After header. 
+ * Turning excess requests away at once keeps latency bounded for the 
+ * requests that are admitted, instead of every request slowing down together.
+ * 
+ * @see LocalServer#setAdmissionControl(LocalAdmissionControl)
+ */
+public class LocalAdmissionControl
+{
+    //
+    // Instance Fields
+    //
+    
+    public final LocalConcurrencyLimit CONCURRENCY_LIMIT;
+    public final LocalRateLimiter RATE_LIMITER;
+    
+    protected final LongAdder admittedCount = new LongAdder();
+    protected final LongAdder rateLimitedCount = new LongAdder();
+    protected final LongAdder overloadedCount = new LongAdder();
+    
+    
+    //
+    // Constructors
+    //
+    
+    public LocalAdmissionControl()
+    {
+        this(new LocalConcurrencyLimit(), null);
+    }
+    
+    /**
+     * Creates an admission controller.
+     * @param _concurrencyLimit the limit on exchanges handled at once, or null for none
+     * @param _rateLimiter      the per-client rate limiter, or null for none
+     */
+    public LocalAdmissionControl(LocalConcurrencyLimit _concurrencyLimit, LocalRateLimiter _rateLimiter)
+    {
+        this.CONCURRENCY_LIMIT = _concurrencyLimit;
+        this.RATE_LIMITER = _rateLimiter;
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    public long getAdmittedCount() { return this.admittedCount.sum(); }
+    public long getRateLimitedCount() { return this.rateLimitedCount.sum(); }
+    public long getOverloadedCount() { return this.overloadedCount.sum(); }
+    
+    /**
+     * Handles an exchange if it is admitted, or sends a 429 or 503 response if not.
+     * The concurrency slot is held until the exchange finishes, 
+     * which for an asynchronous exchange is after the handler returns.
+     * @param  x           the exchange to handle
+     * @param  handler     the handler to run if the exchange is admitted
+     * @throws IOException if a problem occurs while handling the exchange
+     */
+    public void handle(LocalHttpExchange x, LocalHttpHandler handler)
+        throws IOException
+    {
+        if (this.RATE_LIMITER != null)
+        {
+            InetSocketAddress remote = x.exchange.getRemoteAddress();
+            long waitNanos = remote == null || remote.getAddress() == null ? 0 : this.RATE_LIMITER.tryAcquire(remote.getAddress());
+            if (waitNanos > 0)
+            {
+                this.rateLimitedCount.increment();
+                x.sendTooManyRequestsResponse(LocalAdmissionControl.toRetryAfterSeconds(waitNanos));
+                return;
+            }
+        }
+        
+        LocalConcurrencyLimit limit = this.CONCURRENCY_LIMIT;
+        if (limit == null)
+        {
+            this.admittedCount.increment();
+            handler.handle(x);
+            return;
+        }
+        if (!limit.tryAcquire())
+        {
+            this.overloadedCount.increment();
+            x.sendServiceUnavailableResponse(1);
+            return;
+        }
+        
+        this.admittedCount.increment();
+        long start = System.nanoTime();
+        boolean failed = true;
+        boolean async = false;
+        try
+        {
+            handler.handle(x);
+            failed = false;
+            CompletableFuture<Void> completion = x.getCompletion();
+            if (completion != null)
+            {
+                async = true;
+                completion.whenComplete((Void v, Throwable ex) -> limit.release(System.nanoTime() - start, ex != null));
+            }
+        }
+        finally
+        {
+            if (!async) { limit.release(System.nanoTime() - start, failed); }
+        }
+    }
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Rounds a wait up to whole seconds, for a Retry-After header.
+     * @param waitNanos the time to wait, in nanoseconds
+     * @return the number of seconds to wait, at least 1
+     */
+    public static int toRetryAfterSeconds(long waitNanos)
+    {
+        long seconds = (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+        return (int)Math.max(1, Math.min(Integer.MAX_VALUE, seconds));
+    }
+}
\ No newline at end of file
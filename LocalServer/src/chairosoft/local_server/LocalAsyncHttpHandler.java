@@ -0,0 +1,179 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalAsyncHttpHandler.java
+ * LocalAsyncHttpHandler functional interface definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.IOException;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A handler that finishes its exchange later, without holding a thread 
+ * while it waits. The handler starts its work and returns a stage that 
+ * completes once the response has been written; the exchange is closed 
+ * then. If the stage fails before a response was started, a 500 response 
+ * is sent.
+ * <p>
+ * If the stage has not completed within the timeout, a 503 response is 
+ * sent if none was started, the exchange is closed, and the stage is 
+ * cancelled. The exchange's {@link LocalHttpExchange#getCompletion() completion}
+ * completes with a TimeoutException, so the handler can stop its work.
+ */
+@FunctionalInterface
+public interface LocalAsyncHttpHandler
+{
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+    
+    /**
+     * Starts handling an exchange.
+     * @param  exchange    the exchange to handle
+     * @return a stage that completes once the response has been written, or null if it already has
+     * @throws IOException if a problem occurs before the handler returns
+     */
+    CompletionStage<Void> handleAsync(LocalHttpExchange exchange) throws IOException;
+    
+    default LocalHttpHandler toLocalHttpHandler()
+    {
+        return this.toLocalHttpHandler(DEFAULT_TIMEOUT_MILLIS);
+    }
+    
+    /**
+     * Adapts this handler so that it can be used as a context's handler.
+     * @param  timeoutMillis how long an exchange may take, or 0 for no limit
+     * @return a synchronous handler that starts this one and returns
+     */
+    default LocalHttpHandler toLocalHttpHandler(long timeoutMillis)
+    {
+        return new Adapter(this, timeoutMillis);
+    }
+    
+    
+    /**
+     * Runs an asynchronous handler as a {@link LocalHttpHandler}.
+     */
+    public static class Adapter implements LocalHttpHandler
+    {
+        //
+        // Instance Fields
+        //
+        
+        public final LocalAsyncHttpHandler HANDLER;
+        public final long TIMEOUT_MILLIS;
+        
+        
+        //
+        // Constructor
+        //
+        
+        public Adapter(LocalAsyncHttpHandler _handler, long _timeoutMillis)
+        {
+            this.HANDLER = _handler;
+            this.TIMEOUT_MILLIS = _timeoutMillis;
+        }
+        
+        
+        //
+        // Instance Methods
+        //
+        
+        @Override
+        public void handle(LocalHttpExchange x)
+            throws IOException
+        {
+            CompletableFuture<Void> completion = x.startAsync();
+            AtomicBoolean settled = new AtomicBoolean(false);
+            CompletionStage<Void> stage;
+            try
+            {
+                stage = this.HANDLER.handleAsync(x);
+            }
+            catch (IOException | RuntimeException | Error ex)
+            {
+                settled.set(true);
+                completion.completeExceptionally(ex);
+                throw ex;
+            }
+            if (stage == null) { stage = CompletableFuture.completedFuture(null); }
+            
+            final CompletionStage<Void> handling = stage;
+            ScheduledFuture<?> timeout = this.TIMEOUT_MILLIS <= 0 ? null : LocalServerExecutor.scheduleBlocking(
+                () -> Adapter.settle(x, completion, settled, handling, new TimeoutException("exchange timed out")), 
+                this.TIMEOUT_MILLIS, 
+                TimeUnit.MILLISECONDS
+            );
+            handling.whenComplete((Void v, Throwable ex) -> 
+            {
+                if (timeout != null) { timeout.cancel(false); }
+                Adapter.settle(x, completion, settled, handling, ex);
+            });
+            completion.whenComplete((Void v, Throwable ex) -> 
+            {
+                // cancelled from outside, such as by the server stopping
+                if (completion.isCancelled()) { Adapter.settle(x, completion, settled, handling, new CancellationException()); }
+            });
+        }
+        
+        /**
+         * Finishes an exchange once, whichever of completion, failure or timeout comes first.
+         */
+        protected static void settle(LocalHttpExchange x, CompletableFuture<Void> completion, AtomicBoolean settled, CompletionStage<Void> handling, Throwable ex)
+        {
+            if (!settled.compareAndSet(false, true)) { return; }
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            try
+            {
+                if (cause != null && !x.isResponseStarted())
+                {
+                    if (cause instanceof TimeoutException) { x.sendServiceUnavailableResponse(1); }
+                    else { x.sendHeadersOnly(500); }
+                }
+            }
+            catch (IOException | RuntimeException sendEx)
+            {
+                // the handler may have started the response meanwhile; closing is all that is left
+            }
+            finally
+            {
+                try
+                {
+                    x.close();
+                }
+                catch (IOException closeEx)
+                {
+                    // the connection is gone already
+                }
+                if (cause == null) { completion.complete(null); }
+                else { completion.completeExceptionally(cause); }
+                if (cause instanceof TimeoutException || cause instanceof CancellationException)
+                {
+                    Adapter.cancel(handling);
+                }
+            }
+        }
+        
+        protected static void cancel(CompletionStage<Void> handling)
+        {
+            try
+            {
+                handling.toCompletableFuture().cancel(true);
+            }
+            catch (UnsupportedOperationException ex)
+            {
+                // a stage that cannot be cancelled is left to finish on its own
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,92 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalBoundedInputStream.java
+ * LocalBoundedInputStream class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.io.IOException;
+
+/**
+ * An input stream that counts the bytes read through it and fails 
+ * once more than a maximum number of bytes have been read.
+ */
+class LocalBoundedInputStream extends FilterInputStream
+{
+    //
+    // Instance Fields
+    //
+    
+    protected final long maxBytes;
+    protected long bytesRead = 0;
+    
+    
+    //
+    // Constructor
+    //
+    
+    /**
+     * @param in        the input stream to wrap
+     * @param maxBytes  the maximum number of bytes that may be read, or a 
+     *                  negative number if there is no maximum
+     */
+    public LocalBoundedInputStream(InputStream in, long maxBytes)
+    {
+        super(in);
+        this.maxBytes = maxBytes;
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    public long getBytesRead() { return this.bytesRead; }
+    
+    protected void count(long n)
+        throws IOException
+    {
+        if (n <= 0) { return; }
+        this.bytesRead += n;
+        if (this.maxBytes >= 0 && this.bytesRead > this.maxBytes)
+        {
+            String message = String.format("Request body exceeds the maximum size of %s bytes.", this.maxBytes);
+            throw new IOException(message);
+        }
+    }
+    
+    @Override 
+    public int read() 
+        throws IOException
+    {
+        int b = super.read();
+        if (b >= 0) { this.count(1); }
+        return b;
+    }
+    
+    @Override 
+    public int read(byte[] b, int off, int len) 
+        throws IOException
+    {
+        int n = super.read(b, off, len);
+        this.count(n);
+        return n;
+    }
+    
+    @Override 
+    public long skip(long n) 
+        throws IOException
+    {
+        long skipped = super.skip(n);
+        this.count(skipped);
+        return skipped;
+    }
+    
+    @Override public boolean markSupported() { return false; }
+}
\ No newline at end of file
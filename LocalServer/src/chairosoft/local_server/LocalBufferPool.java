@@ -0,0 +1,235 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalBufferPool.java
+ * LocalBufferPool class definition
+ */
+
+package chairosoft.local_server;
+
+import java.nio.ByteBuffer;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of reusable I/O buffers, as heap arrays or direct ByteBuffers.
+ * <p>
+ * Buffers come in power-of-two size classes from {@link #MIN_BUFFER_SIZE} 
+ * to {@link #MAX_BUFFER_SIZE}. Each thread keeps one buffer of each class 
+ * and kind for itself, which is taken and returned without any 
+ * synchronization; behind that is a global tier with a fixed number of 
+ * slots per class, which are claimed and filled with single atomic 
+ * operations. Requests larger than the largest class are allocated 
+ * directly and are not pooled.
+ * <p>
+ * A buffer must not be used after it has been released.
+ */
+public class LocalBufferPool
+{
+    //
+    // Static Fields
+    //
+    
+    public static final int MIN_SHIFT = 9;
+    public static final int MAX_SHIFT = 20;
+    public static final int MIN_BUFFER_SIZE = 1 << MIN_SHIFT;
+    public static final int MAX_BUFFER_SIZE = 1 << MAX_SHIFT;
+    public static final int CLASS_COUNT = MAX_SHIFT - MIN_SHIFT + 1;
+    public static final int DEFAULT_GLOBAL_SLOTS = 32;
+    
+    /** The pool shared by LocalServer's own I/O helpers. */
+    public static final LocalBufferPool SHARED = new LocalBufferPool(DEFAULT_GLOBAL_SLOTS);
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Gets the size class that holds buffers of at least the given size.
+     * @param minSize the smallest acceptable buffer size
+     * @return        the size class index, or -1 if the size is larger than any class
+     */
+    public static int getSizeClass(int minSize)
+    {
+        if (minSize <= MIN_BUFFER_SIZE) { return 0; }
+        if (minSize > MAX_BUFFER_SIZE) { return -1; }
+        return 32 - Integer.numberOfLeadingZeros(minSize - 1) - MIN_SHIFT;
+    }
+    
+    /**
+     * Gets the size class of a buffer that is being released.
+     * @param capacity the buffer's capacity
+     * @return         the size class index, or -1 if the buffer is not of a pooled size
+     */
+    protected static int getReleaseClass(int capacity)
+    {
+        if (capacity < MIN_BUFFER_SIZE || capacity > MAX_BUFFER_SIZE || Integer.bitCount(capacity) != 1) { return -1; }
+        return Integer.numberOfTrailingZeros(capacity) - MIN_SHIFT;
+    }
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    protected final ThreadLocal<byte[][]> localArrays = ThreadLocal.withInitial(() -> new byte[CLASS_COUNT][]);
+    protected final ThreadLocal<ByteBuffer[]> localDirectBuffers = ThreadLocal.withInitial(() -> new ByteBuffer[CLASS_COUNT]);
+    protected final AtomicReferenceArray<byte[]> globalArrays;
+    protected final AtomicReferenceArray<ByteBuffer> globalDirectBuffers;
+    protected final int globalSlots;
+    
+    protected final LongAdder allocatedCount = new LongAdder();
+    protected final LongAdder reusedCount = new LongAdder();
+    
+    
+    //
+    // Constructor
+    //
+    
+    /**
+     * Creates a pool.
+     * @param _globalSlots the number of buffers of each size class and kind kept in the global tier
+     */
+    public LocalBufferPool(int _globalSlots)
+    {
+        this.globalSlots = _globalSlots;
+        this.globalArrays = new AtomicReferenceArray<>(CLASS_COUNT * _globalSlots);
+        this.globalDirectBuffers = new AtomicReferenceArray<>(CLASS_COUNT * _globalSlots);
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    public long getAllocatedCount() { return this.allocatedCount.sum(); }
+    public long getReusedCount() { return this.reusedCount.sum(); }
+    
+    /**
+     * Takes a heap array of at least the given size from the pool.
+     * @param minSize the smallest acceptable array length
+     * @return        an array whose length is the size class at or above minSize;
+     *                its contents are undefined
+     */
+    public byte[] acquireArray(int minSize)
+    {
+        int sizeClass = LocalBufferPool.getSizeClass(minSize);
+        if (sizeClass < 0) { return new byte[minSize]; }
+        
+        byte[][] local = this.localArrays.get();
+        byte[] result = local[sizeClass];
+        if (result != null)
+        {
+            local[sizeClass] = null;
+            this.reusedCount.increment();
+            return result;
+        }
+        
+        int base = sizeClass * this.globalSlots;
+        for (int i = 0; i < this.globalSlots; ++i)
+        {
+            if (this.globalArrays.get(base + i) != null && (result = this.globalArrays.getAndSet(base + i, null)) != null)
+            {
+                this.reusedCount.increment();
+                return result;
+            }
+        }
+        
+        this.allocatedCount.increment();
+        return new byte[MIN_BUFFER_SIZE << sizeClass];
+    }
+    
+    /**
+     * Returns a heap array to the pool. Arrays that are not of a pooled size are ignored.
+     * @param array the array to return, which must not be used afterwards (may be null)
+     */
+    public void releaseArray(byte[] array)
+    {
+        if (array == null) { return; }
+        int sizeClass = LocalBufferPool.getReleaseClass(array.length);
+        if (sizeClass < 0) { return; }
+        
+        byte[][] local = this.localArrays.get();
+        if (local[sizeClass] == null)
+        {
+            local[sizeClass] = array;
+            return;
+        }
+        
+        int base = sizeClass * this.globalSlots;
+        for (int i = 0; i < this.globalSlots; ++i)
+        {
+            if (this.globalArrays.get(base + i) == null && this.globalArrays.compareAndSet(base + i, null, array)) { return; }
+        }
+    }
+    
+    /**
+     * Takes a direct buffer of at least the given size from the pool.
+     * @param minSize the smallest acceptable capacity
+     * @return        a cleared direct buffer whose capacity is the size class at or above minSize
+     */
+    public ByteBuffer acquireDirect(int minSize)
+    {
+        int sizeClass = LocalBufferPool.getSizeClass(minSize);
+        if (sizeClass < 0) { return ByteBuffer.allocateDirect(minSize); }
+        
+        ByteBuffer[] local = this.localDirectBuffers.get();
+        ByteBuffer result = local[sizeClass];
+        if (result != null)
+        {
+            local[sizeClass] = null;
+            this.reusedCount.increment();
+            result.clear();
+            return result;
+        }
+        
+        int base = sizeClass * this.globalSlots;
+        for (int i = 0; i < this.globalSlots; ++i)
+        {
+            if (this.globalDirectBuffers.get(base + i) != null && (result = this.globalDirectBuffers.getAndSet(base + i, null)) != null)
+            {
+                this.reusedCount.increment();
+                result.clear();
+                return result;
+            }
+        }
+        
+        this.allocatedCount.increment();
+        return ByteBuffer.allocateDirect(MIN_BUFFER_SIZE << sizeClass);
+    }
+    
+    /**
+     * Returns a direct buffer to the pool. Buffers that are not direct or 
+     * not of a pooled size are ignored.
+     * @param buffer the buffer to return, which must not be used afterwards (may be null)
+     */
+    public void releaseDirect(ByteBuffer buffer)
+    {
+        if (buffer == null || !buffer.isDirect()) { return; }
+        int sizeClass = LocalBufferPool.getReleaseClass(buffer.capacity());
+        if (sizeClass < 0) { return; }
+        
+        ByteBuffer[] local = this.localDirectBuffers.get();
+        if (local[sizeClass] == null)
+        {
+            local[sizeClass] = buffer;
+            return;
+        }
+        
+        int base = sizeClass * this.globalSlots;
+        for (int i = 0; i < this.globalSlots; ++i)
+        {
+            if (this.globalDirectBuffers.get(base + i) == null && this.globalDirectBuffers.compareAndSet(base + i, null, buffer)) { return; }
+        }
+    }
+    
+    @Override
+    public String toString()
+    {
+        return String.format("LocalBufferPool[allocated=%s, reused=%s]", this.getAllocatedCount(), this.getReusedCount());
+    }
+}
\ No newline at end of file
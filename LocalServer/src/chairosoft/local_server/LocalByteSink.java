@@ -0,0 +1,245 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalByteSink.java
+ * LocalByteSink class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import java.util.Arrays;
+
+/**
+ * A growable byte sink, like ByteArrayOutputStream, built from pooled chunks.
+ * <p>
+ * Rather than doubling one array and copying it each time, the sink adds 
+ * chunks from a {@link LocalBufferPool}, each of the next size class up, 
+ * so nothing written is ever copied while the sink grows. When the final 
+ * size is known in advance, the first chunk holds all of it, and 
+ * {@link #toByteArray()} can return an exactly sized array without copying.
+ * <p>
+ * Closing the sink returns its chunks to the pool, and discards what was written.
+ */
+public class LocalByteSink extends OutputStream
+{
+    //
+    // Instance Fields
+    //
+    
+    protected final LocalBufferPool pool;
+    protected final int expectedSize;
+    protected byte[][] chunks = new byte[4][];
+    protected int chunkCount = 0;
+    protected byte[] current = null;
+    protected int currentCount = 0;
+    protected long size = 0;
+    protected boolean exact = false;
+    
+    
+    //
+    // Constructors
+    //
+    
+    public LocalByteSink()
+    {
+        this(LocalBufferPool.SHARED, -1);
+    }
+    
+    public LocalByteSink(int _expectedSize)
+    {
+        this(LocalBufferPool.SHARED, _expectedSize);
+    }
+    
+    /**
+     * Creates a sink.
+     * @param _pool         the pool to take chunks from
+     * @param _expectedSize the number of bytes expected, such as a Content-Length, or -1 if it is not known
+     */
+    public LocalByteSink(LocalBufferPool _pool, int _expectedSize)
+    {
+        this.pool = _pool;
+        this.expectedSize = _expectedSize;
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    public long size() { return this.size; }
+    
+    /**
+     * Makes room for at least one more byte, adding a chunk if needed.
+     */
+    protected void ensureRoom()
+    {
+        if (this.current != null && this.currentCount < this.current.length) { return; }
+        if (this.current != null) 
+        { 
+            if (this.chunkCount == this.chunks.length) { this.chunks = Arrays.copyOf(this.chunks, this.chunkCount * 2); }
+            this.chunks[this.chunkCount++] = this.current; 
+        }
+        
+        if (this.size == 0 && this.expectedSize > 0 && this.expectedSize <= LocalBufferPool.MAX_BUFFER_SIZE)
+        {
+            this.current = this.pool.acquireArray(this.expectedSize);
+        }
+        else if (this.size == 0 && this.expectedSize > LocalBufferPool.MAX_BUFFER_SIZE)
+        {
+            // too large to pool: take an exactly sized array that can be handed out as is
+            this.current = new byte[this.expectedSize];
+            this.exact = true;
+        }
+        else
+        {
+            long next = Math.max(LocalBufferPool.MIN_BUFFER_SIZE, Math.min(this.size, LocalBufferPool.MAX_BUFFER_SIZE));
+            this.current = this.pool.acquireArray((int)next);
+        }
+        this.currentCount = 0;
+    }
+    
+    @Override
+    public void write(int b)
+    {
+        this.ensureRoom();
+        this.current[this.currentCount++] = (byte)b;
+        ++this.size;
+    }
+    
+    @Override
+    public void write(byte[] b, int off, int len)
+    {
+        while (len > 0)
+        {
+            this.ensureRoom();
+            int n = Math.min(len, this.current.length - this.currentCount);
+            System.arraycopy(b, off, this.current, this.currentCount, n);
+            this.currentCount += n;
+            this.size += n;
+            off += n;
+            len -= n;
+        }
+    }
+    
+    /**
+     * Reads an input stream to its end, straight into this sink's chunks.
+     * Once the expected number of bytes has been read, the end of the stream 
+     * is checked for with a single byte read, so that no further chunk is 
+     * taken when the stream holds exactly what was expected.
+     * @param in the stream to read
+     * @return   the number of bytes read
+     * @throws IOException if a problem occurs while reading
+     */
+    public long readFrom(InputStream in)
+        throws IOException
+    {
+        long total = 0;
+        while (true)
+        {
+            if (this.size == this.expectedSize && this.current != null && this.currentCount == this.current.length)
+            {
+                int b = in.read();
+                if (b < 0) { return total; }
+                this.write(b);
+                ++total;
+            }
+            this.ensureRoom();
+            int n = in.read(this.current, this.currentCount, this.current.length - this.currentCount);
+            if (n < 0) { return total; }
+            this.currentCount += n;
+            this.size += n;
+            total += n;
+        }
+    }
+    
+    /**
+     * Writes this sink's contents to an output stream.
+     * @param out the stream to write to
+     * @throws IOException if a problem occurs while writing
+     */
+    public void writeTo(OutputStream out)
+        throws IOException
+    {
+        for (int i = 0; i < this.chunkCount; ++i) { out.write(this.chunks[i]); }
+        if (this.current != null) { out.write(this.current, 0, this.currentCount); }
+    }
+    
+    /**
+     * Writes this sink's contents to a channel.
+     * @param out the channel to write to
+     * @throws IOException if a problem occurs while writing
+     */
+    public void writeTo(WritableByteChannel out)
+        throws IOException
+    {
+        for (int i = 0; i <= this.chunkCount; ++i)
+        {
+            ByteBuffer buffer = i < this.chunkCount ? ByteBuffer.wrap(this.chunks[i]) 
+                : this.current != null ? ByteBuffer.wrap(this.current, 0, this.currentCount) 
+                : null;
+            while (buffer != null && buffer.hasRemaining()) { out.write(buffer); }
+        }
+    }
+    
+    /**
+     * Gets this sink's contents as an exactly sized array. If the sink was 
+     * created with a size too large to pool and filled exactly, its array
+     * is returned without being copied, and the sink is emptied.
+     * @return the bytes written to this sink
+     */
+    public byte[] toByteArray()
+    {
+        if (this.size > Integer.MAX_VALUE - 8)
+        {
+            String message = String.format("Sink size (%s) is too large for an array.", this.size);
+            throw new IllegalStateException(message);
+        }
+        if (this.exact && this.chunkCount == 0 && this.currentCount == this.current.length)
+        {
+            byte[] result = this.current;
+            this.current = null;
+            this.currentCount = 0;
+            this.size = 0;
+            this.exact = false;
+            return result;
+        }
+        
+        byte[] result = new byte[(int)this.size];
+        int offset = 0;
+        for (int i = 0; i < this.chunkCount; ++i)
+        {
+            System.arraycopy(this.chunks[i], 0, result, offset, this.chunks[i].length);
+            offset += this.chunks[i].length;
+        }
+        if (this.current != null) { System.arraycopy(this.current, 0, result, offset, this.currentCount); }
+        return result;
+    }
+    
+    /**
+     * Returns this sink's chunks to the pool, and empties it.
+     */
+    @Override
+    public void close()
+    {
+        for (int i = 0; i < this.chunkCount; ++i)
+        {
+            this.pool.releaseArray(this.chunks[i]);
+            this.chunks[i] = null;
+        }
+        this.pool.releaseArray(this.current);
+        this.chunkCount = 0;
+        this.current = null;
+        this.currentCount = 0;
+        this.size = 0;
+        this.exact = false;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,136 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalConcurrencyLimit.java
+ * LocalConcurrencyLimit class definition
+ */
+
+package chairosoft.local_server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An adaptive limit on the number of exchanges handled at once, adjusted 
+ * by additive increase and multiplicative decrease (AIMD).
+ * <p>
+ * Each exchange that finishes within the latency target while the limit is 
+ * at least half used raises the limit by one. Each exchange that fails, or 
+ * takes longer than the target, cuts the limit by the backoff ratio. So the
+ * limit settles near the concurrency the handlers can sustain, and requests
+ * beyond it are turned away at once instead of waiting behind the others.
+ */
+public class LocalConcurrencyLimit
+{
+    //
+    // Static Fields
+    //
+    
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    public static final int DEFAULT_MAX_LIMIT = 1000;
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+    public static final long DEFAULT_LATENCY_TARGET_MILLIS = 1000;
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    public final int MIN_LIMIT;
+    public final int MAX_LIMIT;
+    public final double BACKOFF_RATIO;
+    public final long LATENCY_TARGET_NANOS;
+    
+    protected final AtomicInteger inFlight = new AtomicInteger();
+    protected volatile int limit;
+    
+    
+    //
+    // Constructors
+    //
+    
+    public LocalConcurrencyLimit()
+    {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_BACKOFF_RATIO, DEFAULT_LATENCY_TARGET_MILLIS);
+    }
+    
+    /**
+     * Creates a fixed limit, which never adapts.
+     * @param _limit the number of exchanges that may be handled at once
+     */
+    public LocalConcurrencyLimit(int _limit)
+    {
+        this(_limit, _limit, _limit, 1.0, Long.MAX_VALUE / 1_000_000);
+    }
+    
+    /**
+     * Creates an adaptive limit.
+     * @param _initialLimit        the limit to start at
+     * @param _minLimit            the lowest the limit can go
+     * @param _maxLimit            the highest the limit can go
+     * @param _backoffRatio        what the limit is multiplied by when an exchange fails or is slow, below 1
+     * @param _latencyTargetMillis the handling time above which an exchange counts as slow
+     */
+    public LocalConcurrencyLimit(int _initialLimit, int _minLimit, int _maxLimit, double _backoffRatio, long _latencyTargetMillis)
+    {
+        if (_minLimit < 1 || _maxLimit < _minLimit || _initialLimit < _minLimit || _initialLimit > _maxLimit)
+        {
+            String message = String.format("Invalid limits: initial %s, min %s, max %s.", _initialLimit, _minLimit, _maxLimit);
+            throw new IllegalArgumentException(message);
+        }
+        if (!(_backoffRatio > 0 && _backoffRatio <= 1))
+        {
+            String message = String.format("Backoff ratio (%s) must be in (0, 1].", _backoffRatio);
+            throw new IllegalArgumentException(message);
+        }
+        this.limit = _initialLimit;
+        this.MIN_LIMIT = _minLimit;
+        this.MAX_LIMIT = _maxLimit;
+        this.BACKOFF_RATIO = _backoffRatio;
+        this.LATENCY_TARGET_NANOS = TimeUnit.MILLISECONDS.toNanos(_latencyTargetMillis);
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    public int getLimit() { return this.limit; }
+    public int getInFlight() { return this.inFlight.get(); }
+    
+    /**
+     * Takes a slot if the limit allows it.
+     * @return true if the exchange may be handled, and {@link #release} must be called after it
+     */
+    public boolean tryAcquire()
+    {
+        while (true)
+        {
+            int current = this.inFlight.get();
+            if (current >= this.limit) { return false; }
+            if (this.inFlight.compareAndSet(current, current + 1)) { return true; }
+        }
+    }
+    
+    /**
+     * Gives a slot back, and adjusts the limit by how the exchange went.
+     * @param latencyNanos how long the exchange took
+     * @param failed       whether the exchange failed
+     */
+    public void release(long latencyNanos, boolean failed)
+    {
+        // updates that race may be lost; the next exchange corrects the limit anyway
+        int current = this.inFlight.getAndDecrement();
+        if (failed || latencyNanos > this.LATENCY_TARGET_NANOS)
+        {
+            this.limit = Math.max(this.MIN_LIMIT, (int)(this.limit * this.BACKOFF_RATIO));
+        }
+        else if (current * 2 >= this.limit)
+        {
+            this.limit = Math.min(this.MAX_LIMIT, this.limit + 1);
+        }
+    }
+}
\ No newline at end of file
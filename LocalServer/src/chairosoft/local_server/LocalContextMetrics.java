@@ -0,0 +1,149 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalContextMetrics.java
+ * LocalContextMetrics class definition
+ */
+
+package chairosoft.local_server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of one context: request counts by method, response counts 
+ * by status class, bytes in and out, active exchanges and latency.
+ * All counters are striped, so recording from many threads does not contend.
+ */
+public class LocalContextMetrics implements LocalContextMetricsMXBean
+{
+    //
+    // Static Fields
+    //
+    
+    /** The status class names, indexed by status code / 100; index 0 is for exchanges that sent no status. */
+    public static final String[] STATUS_CLASSES = { "none", "1xx", "2xx", "3xx", "4xx", "5xx" };
+    
+    /** The method names that requests are counted by; the last one is for all other methods. */
+    public static final String[] METHODS = new String[LocalHttpRouter.STANDARD_METHODS.length + 1];
+    static
+    {
+        System.arraycopy(LocalHttpRouter.STANDARD_METHODS, 0, METHODS, 0, LocalHttpRouter.STANDARD_METHODS.length);
+        METHODS[METHODS.length - 1] = "other";
+    }
+    
+    
+    //
+    // Static Methods
+    //
+    
+    protected static LongAdder[] createAdders(int count)
+    {
+        LongAdder[] result = new LongAdder[count];
+        for (int i = 0; i < count; ++i) { result[i] = new LongAdder(); }
+        return result;
+    }
+    
+    protected static double toMillis(long nanos) { return nanos / 1_000_000.0; }
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    public final String CONTEXT_PATH;
+    public final LocalLatencyHistogram LATENCY = new LocalLatencyHistogram();
+    
+    protected final LongAdder[] methodCounts = LocalContextMetrics.createAdders(METHODS.length);
+    protected final LongAdder[] statusCounts = LocalContextMetrics.createAdders(STATUS_CLASSES.length);
+    protected final LongAdder errorCount = new LongAdder();
+    protected final LongAdder activeCount = new LongAdder();
+    protected final LongAdder bytesIn = new LongAdder();
+    protected final LongAdder bytesOut = new LongAdder();
+    
+    
+    //
+    // Constructor
+    //
+    
+    public LocalContextMetrics(String _contextPath)
+    {
+        this.CONTEXT_PATH = _contextPath;
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    /**
+     * Records the start of an exchange.
+     * @param method the request method
+     */
+    public void recordStart(String method)
+    {
+        int index = LocalHttpRouter.getMethodIndex(method);
+        this.methodCounts[index < 0 ? METHODS.length - 1 : index].increment();
+        this.activeCount.increment();
+    }
+    
+    /**
+     * Records the end of an exchange.
+     * @param statusCode    the response status code, or -1 if none was sent
+     * @param failed        whether the handler threw an exception
+     * @param requestBytes  the number of request body bytes
+     * @param responseBytes the number of response body bytes
+     * @param elapsedNanos  the time taken, in nanoseconds
+     */
+    public void recordEnd(int statusCode, boolean failed, long requestBytes, long responseBytes, long elapsedNanos)
+    {
+        this.activeCount.decrement();
+        int statusClass = statusCode / 100;
+        this.statusCounts[statusClass >= 1 && statusClass <= 5 ? statusClass : 0].increment();
+        if (failed) { this.errorCount.increment(); }
+        if (requestBytes > 0) { this.bytesIn.add(requestBytes); }
+        if (responseBytes > 0) { this.bytesOut.add(responseBytes); }
+        this.LATENCY.record(elapsedNanos);
+    }
+    
+    public long getMethodCount(int methodIndex) { return this.methodCounts[methodIndex].sum(); }
+    public long getStatusCount(int statusClass) { return this.statusCounts[statusClass].sum(); }
+    
+    @Override public String getContextPath() { return this.CONTEXT_PATH; }
+    @Override public long getErrorCount() { return this.errorCount.sum(); }
+    @Override public long getActiveCount() { return this.activeCount.sum(); }
+    @Override public long getBytesIn() { return this.bytesIn.sum(); }
+    @Override public long getBytesOut() { return this.bytesOut.sum(); }
+    @Override public double getLatencyMeanMillis() { return this.LATENCY.getMean() / 1_000_000.0; }
+    @Override public double getLatencyP50Millis() { return LocalContextMetrics.toMillis(this.LATENCY.getValueAtPercentile(50)); }
+    @Override public double getLatencyP99Millis() { return LocalContextMetrics.toMillis(this.LATENCY.getValueAtPercentile(99)); }
+    @Override public double getLatencyP999Millis() { return LocalContextMetrics.toMillis(this.LATENCY.getValueAtPercentile(99.9)); }
+    @Override public double getLatencyMaxMillis() { return LocalContextMetrics.toMillis(this.LATENCY.getMax()); }
+    
+    @Override
+    public long getRequestCount()
+    {
+        long result = 0;
+        for (LongAdder count : this.methodCounts) { result += count.sum(); }
+        return result;
+    }
+    
+    @Override
+    public Map<String, Long> getRequestCountsByMethod()
+    {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < METHODS.length; ++i) { result.put(METHODS[i], this.methodCounts[i].sum()); }
+        return result;
+    }
+    
+    @Override
+    public Map<String, Long> getResponseCountsByStatusClass()
+    {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < STATUS_CLASSES.length; ++i) { result.put(STATUS_CLASSES[i], this.statusCounts[i].sum()); }
+        return result;
+    }
+}
\ No newline at end of file
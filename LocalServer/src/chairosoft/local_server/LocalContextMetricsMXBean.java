@@ -0,0 +1,33 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalContextMetricsMXBean.java
+ * LocalContextMetricsMXBean interface definition
+ */
+
+package chairosoft.local_server;
+
+import java.util.Map;
+
+/**
+ * The JMX view of one context's metrics.
+ * @see LocalServerMetrics#registerMBeans(String)
+ */
+public interface LocalContextMetricsMXBean
+{
+    String getContextPath();
+    long getRequestCount();
+    Map<String, Long> getRequestCountsByMethod();
+    Map<String, Long> getResponseCountsByStatusClass();
+    long getErrorCount();
+    long getActiveCount();
+    long getBytesIn();
+    long getBytesOut();
+    double getLatencyMeanMillis();
+    double getLatencyP50Millis();
+    double getLatencyP99Millis();
+    double getLatencyP999Millis();
+    double getLatencyMaxMillis();
+}
\ No newline at end of file
@@ -0,0 +1,124 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalCountingOutputStream.java
+ * LocalCountingOutputStream class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An output stream that counts the bytes written through it.
+ * It is also a channel, and it passes channel writes and file transfers 
+ * through to the wrapped stream when that is a channel, so wrapping a 
+ * response body does not give up zero-copy file transfers.
+ */
+class LocalCountingOutputStream extends FilterOutputStream implements WritableByteChannel
+{
+    //
+    // Instance Fields
+    //
+    
+    protected long bytesWritten = 0;
+    protected boolean open = true;
+    
+    
+    //
+    // Constructor
+    //
+    
+    public LocalCountingOutputStream(OutputStream out)
+    {
+        super(out);
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    public long getBytesWritten() { return this.bytesWritten; }
+    
+    @Override
+    public void write(int b)
+        throws IOException
+    {
+        this.out.write(b);
+        ++this.bytesWritten;
+    }
+    
+    @Override
+    public void write(byte[] b, int off, int len)
+        throws IOException
+    {
+        this.out.write(b, off, len);
+        this.bytesWritten += len;
+    }
+    
+    @Override
+    public int write(ByteBuffer src)
+        throws IOException
+    {
+        int count;
+        if (this.out instanceof WritableByteChannel)
+        {
+            count = ((WritableByteChannel)this.out).write(src);
+        }
+        else if (src.hasArray())
+        {
+            count = src.remaining();
+            this.out.write(src.array(), src.arrayOffset() + src.position(), count);
+            src.position(src.limit());
+        }
+        else
+        {
+            count = src.remaining();
+            byte[] bytes = new byte[count];
+            src.get(bytes);
+            this.out.write(bytes);
+        }
+        this.bytesWritten += count;
+        return count;
+    }
+    
+    /**
+     * Writes part of a file, straight to the connection if the wrapped stream allows it.
+     * @param file         the file to write from
+     * @param position     the position in the file to start writing from
+     * @param count        the number of bytes to write
+     * @throws IOException if a problem occurs while reading or writing
+     */
+    public void transferFrom(FileChannel file, long position, long count)
+        throws IOException
+    {
+        if (this.out instanceof LocalNioHttpExchange.ResponseBody)
+        {
+            ((LocalNioHttpExchange.ResponseBody)this.out).transferFrom(file, position, count);
+            this.bytesWritten += count;
+        }
+        else
+        {
+            LocalStaticFileHandler.transferFully(file, position, count, this);
+        }
+    }
+    
+    @Override public boolean isOpen() { return this.open; }
+    
+    @Override
+    public void close()
+        throws IOException
+    {
+        this.open = false;
+        super.close();
+    }
+}
\ No newline at end of file
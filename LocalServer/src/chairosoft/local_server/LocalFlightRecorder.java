@@ -0,0 +1,408 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalFlightRecorder.java
+ * LocalFlightRecorder class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.IOException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Java Flight Recorder events for LocalServer's exchanges.
+ * <p>
+ * This library is built for Java 8, whose API has no jdk.jfr, so the 
+ * event types are defined when this class loads, through 
+ * <code>jdk.jfr.EventFactory</code>, found by reflection. On a JVM 
+ * without JFR, every event type is unavailable, and beginning an event 
+ * costs one check. On a JVM with JFR, an event is only created while a 
+ * recording has it enabled, such as with <code>-XX:StartFlightRecording</code> 
+ * or <code>jcmd &lt;pid&gt; JFR.start</code>.
+ * <p>
+ * The events are in the "LocalServer" category:
+ * <ul>
+ * <li>{@link #EXCHANGE}: a whole exchange, from the LocalHttpExchange being 
+ *     created to the handler returning or an asynchronous exchange completing</li>
+ * <li>{@link #HANDLER}: the handler itself, after shedding and admission control</li>
+ * <li>{@link #REQUEST_BODY_READ}: reading a whole request body into memory</li>
+ * <li>{@link #RESPONSE_WRITE}: writing a byte array response</li>
+ * <li>{@link #SLOW_REQUEST}: an exchange found by a {@link LocalSlowRequestMonitor}</li>
+ * </ul>
+ */
+public class LocalFlightRecorder
+{
+    //
+    // Static Fields
+    //
+    
+    public static final String EVENT_NAME_PREFIX = "chairosoft.local_server.";
+    public static final String CATEGORY = "LocalServer";
+    
+    protected static final MethodHandle NEW_ANNOTATION_ELEMENT;
+    protected static final MethodHandle NEW_VALUE_DESCRIPTOR;
+    protected static final MethodHandle CREATE_FACTORY;
+    protected static final MethodHandle NEW_EVENT;
+    protected static final MethodHandle IS_ENABLED;
+    protected static final MethodHandle BEGIN;
+    protected static final MethodHandle END;
+    protected static final MethodHandle SHOULD_COMMIT;
+    protected static final MethodHandle COMMIT;
+    protected static final MethodHandle SET;
+    protected static final Class<?> NAME_ANNOTATION;
+    protected static final Class<?> LABEL_ANNOTATION;
+    protected static final Class<?> CATEGORY_ANNOTATION;
+    protected static final Class<?> DESCRIPTION_ANNOTATION;
+    protected static final Class<?> STACK_TRACE_ANNOTATION;
+    protected static final Class<?> TIMESPAN_ANNOTATION;
+    protected static final Class<?> DATA_AMOUNT_ANNOTATION;
+    protected static final AtomicLong DUMP_COUNTER = new AtomicLong();
+    
+    /** True if this JVM has JFR, and the event types could be defined. */
+    public static final boolean AVAILABLE;
+    static
+    {
+        MethodHandle[] handles = new MethodHandle[10];
+        Class<?>[] annotations = new Class<?>[7];
+        boolean available;
+        try
+        {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+            Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+            Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+            Class<?> event = Class.forName("jdk.jfr.Event");
+            handles[0] = lookup.findConstructor(annotationElement, MethodType.methodType(void.class, Class.class, Object.class));
+            handles[1] = lookup.findConstructor(valueDescriptor, MethodType.methodType(void.class, Class.class, String.class, List.class));
+            handles[2] = lookup.findStatic(eventFactory, "create", MethodType.methodType(eventFactory, List.class, List.class));
+            handles[3] = lookup.findVirtual(eventFactory, "newEvent", MethodType.methodType(event));
+            handles[4] = lookup.findVirtual(event, "isEnabled", MethodType.methodType(boolean.class));
+            handles[5] = lookup.findVirtual(event, "begin", MethodType.methodType(void.class));
+            handles[6] = lookup.findVirtual(event, "end", MethodType.methodType(void.class));
+            handles[7] = lookup.findVirtual(event, "shouldCommit", MethodType.methodType(boolean.class));
+            handles[8] = lookup.findVirtual(event, "commit", MethodType.methodType(void.class));
+            handles[9] = lookup.findVirtual(event, "set", MethodType.methodType(void.class, int.class, Object.class));
+            String[] names = { "Name", "Label", "Category", "Description", "StackTrace", "Timespan", "DataAmount" };
+            for (int i = 0; i < names.length; ++i) { annotations[i] = Class.forName("jdk.jfr." + names[i]); }
+            available = true;
+        }
+        catch (ReflectiveOperationException | LinkageError | SecurityException ex)
+        {
+            available = false;
+        }
+        AVAILABLE = available;
+        NEW_ANNOTATION_ELEMENT = handles[0];
+        NEW_VALUE_DESCRIPTOR = handles[1];
+        CREATE_FACTORY = handles[2];
+        NEW_EVENT = handles[3];
+        IS_ENABLED = handles[4];
+        BEGIN = handles[5];
+        END = handles[6];
+        SHOULD_COMMIT = handles[7];
+        COMMIT = handles[8];
+        SET = handles[9];
+        NAME_ANNOTATION = annotations[0];
+        LABEL_ANNOTATION = annotations[1];
+        CATEGORY_ANNOTATION = annotations[2];
+        DESCRIPTION_ANNOTATION = annotations[3];
+        STACK_TRACE_ANNOTATION = annotations[4];
+        TIMESPAN_ANNOTATION = annotations[5];
+        DATA_AMOUNT_ANNOTATION = annotations[6];
+    }
+    
+    /** Fields: contextPath, method, path, status, requestBytes, responseBytes, async. */
+    public static final EventType EXCHANGE = new EventType("Exchange", "HTTP Exchange", 
+        "An exchange, from its creation until its response is finished", 
+        String.class, "contextPath", 
+        String.class, "method", 
+        String.class, "path", 
+        int.class, "status", 
+        long.class, "requestBytes", 
+        long.class, "responseBytes", 
+        boolean.class, "async"
+    );
+    
+    /** Fields: contextPath, method. */
+    public static final EventType HANDLER = new EventType("Handler", "HTTP Handler", 
+        "A handler running for an exchange; asynchronous handlers end when they return, not when they complete", 
+        String.class, "contextPath", 
+        String.class, "method"
+    );
+    
+    /** Fields: contextPath, method, requestBytes. */
+    public static final EventType REQUEST_BODY_READ = new EventType("RequestBodyRead", "HTTP Request Body Read", 
+        "A whole request body being read into memory", 
+        String.class, "contextPath", 
+        String.class, "method", 
+        long.class, "requestBytes"
+    );
+    
+    /** Fields: contextPath, method, status, responseBytes. */
+    public static final EventType RESPONSE_WRITE = new EventType("ResponseWrite", "HTTP Response Write", 
+        "A byte array response being sent", 
+        String.class, "contextPath", 
+        String.class, "method", 
+        int.class, "status", 
+        long.class, "responseBytes"
+    );
+    
+    /** Fields: contextPath, method, path, threadName, elapsed, stack. */
+    public static final EventType SLOW_REQUEST = new EventType("SlowRequest", "HTTP Slow Request", 
+        "An exchange that has run past the slow request threshold", 
+        String.class, "contextPath", 
+        String.class, "method", 
+        String.class, "path", 
+        String.class, "threadName", 
+        long.class, "elapsed", 
+        String.class, "stack"
+    );
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Handles an exchange with the given handler, and commits an {@link #EXCHANGE} 
+     * event for it when it has finished. The exchange is also tracked by a slow 
+     * request monitor, if one is given.
+     * @param x       the exchange to handle
+     * @param handler the handler whose pipeline to run
+     * @param event   the event begun before the exchange was created, or null
+     * @param monitor the slow request monitor, or null
+     * @throws IOException if the handler throws one
+     */
+    public static void record(LocalHttpExchange x, LocalHttpHandler handler, Object event, LocalSlowRequestMonitor monitor)
+        throws IOException
+    {
+        LocalCountingOutputStream counter = null;
+        if (event != null)
+        {
+            counter = new LocalCountingOutputStream(x.exchange.getResponseBody());
+            x.exchange.setStreams(null, counter);
+        }
+        LocalSlowRequestMonitor.Active active = monitor == null ? null : monitor.start(x);
+        boolean async = false;
+        try
+        {
+            LocalHttpHandlerPipeline.log(x, handler);
+            CompletableFuture<Void> completion = x.getCompletion();
+            if (completion != null)
+            {
+                // the exchange finishes later, on another thread
+                async = true;
+                if (active != null) { active.detach(); }
+                LocalCountingOutputStream asyncCounter = counter;
+                completion.whenComplete((Void v, Throwable ex) -> LocalFlightRecorder.finish(x, event, asyncCounter, monitor, active));
+            }
+        }
+        finally
+        {
+            if (!async) { LocalFlightRecorder.finish(x, event, counter, monitor, active); }
+        }
+    }
+    
+    protected static void finish(LocalHttpExchange x, Object event, LocalCountingOutputStream counter, LocalSlowRequestMonitor monitor, LocalSlowRequestMonitor.Active active)
+    {
+        if (monitor != null) { monitor.finish(active); }
+        if (event == null) { return; }
+        long requestBytes = Math.max(0, Math.max(x.REQUEST_CONTENT_LENGTH, x.getRequestBodyBytesRead()));
+        EXCHANGE.commit(event, 
+            x.getContextPath(), 
+            x.REQUEST_METHOD, 
+            x.REQUEST_URI.getPath(), 
+            x.exchange.getResponseCode(), 
+            requestBytes, 
+            counter.getBytesWritten(), 
+            x.isAsync()
+        );
+    }
+    
+    /**
+     * Dumps each running recording to a new file in the given directory.
+     * @param directory the directory to dump into
+     * @param prefix    the start of each file's name
+     * @return          the files written, which are none if JFR is not available or not recording
+     */
+    public static List<Path> dumpRecordings(Path directory, String prefix)
+    {
+        if (!AVAILABLE) { return Collections.emptyList(); }
+        List<Path> result = new ArrayList<>();
+        try
+        {
+            Class<?> flightRecorderClass = Class.forName("jdk.jfr.FlightRecorder");
+            Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+            if (!(Boolean)flightRecorderClass.getMethod("isInitialized").invoke(null)) { return result; }
+            Object flightRecorder = flightRecorderClass.getMethod("getFlightRecorder").invoke(null);
+            List<?> recordings = (List<?>)flightRecorderClass.getMethod("getRecordings").invoke(flightRecorder);
+            for (Object recording : recordings)
+            {
+                if (!"RUNNING".equals(String.valueOf(recordingClass.getMethod("getState").invoke(recording)))) { continue; }
+                String fileName = String.format("%s-%s-%s.jfr", prefix, System.currentTimeMillis(), DUMP_COUNTER.incrementAndGet());
+                Path file = directory.resolve(fileName);
+                recordingClass.getMethod("dump", Path.class).invoke(recording, file);
+                result.add(file);
+            }
+        }
+        catch (ReflectiveOperationException | RuntimeException ex)
+        {
+            // a recording that cannot be dumped is skipped
+        }
+        return result;
+    }
+    
+    
+    //
+    // Nested Classes
+    //
+    
+    /**
+     * A JFR event type, defined at run time.
+     * Its events are plain Objects, which are null whenever the type is not enabled.
+     */
+    public static class EventType
+    {
+        public final String NAME;
+        public final String[] FIELD_NAMES;
+        
+        protected final Object factory;
+        protected final Object prototype;
+        
+        /**
+         * Defines an event type, if JFR is available.
+         * @param _simpleName  the name after {@link LocalFlightRecorder#EVENT_NAME_PREFIX}
+         * @param _label       the event's label
+         * @param _description the event's description
+         * @param _fields      the type and name of each field, in pairs
+         */
+        protected EventType(String _simpleName, String _label, String _description, Object... _fields)
+        {
+            this.NAME = EVENT_NAME_PREFIX + _simpleName;
+            this.FIELD_NAMES = new String[_fields.length / 2];
+            for (int i = 0; i < this.FIELD_NAMES.length; ++i) { this.FIELD_NAMES[i] = (String)_fields[2 * i + 1]; }
+            
+            Object createdFactory = null;
+            Object createdPrototype = null;
+            if (AVAILABLE)
+            {
+                try
+                {
+                    List<Object> annotations = Arrays.asList(
+                        this.newAnnotation(NAME_ANNOTATION, this.NAME), 
+                        this.newAnnotation(LABEL_ANNOTATION, _label), 
+                        this.newAnnotation(DESCRIPTION_ANNOTATION, _description), 
+                        this.newAnnotation(CATEGORY_ANNOTATION, new String[] { CATEGORY }), 
+                        this.newAnnotation(STACK_TRACE_ANNOTATION, false)
+                    );
+                    List<Object> fields = new ArrayList<>();
+                    for (int i = 0; i < _fields.length; i += 2)
+                    {
+                        String name = (String)_fields[i + 1];
+                        List<Object> fieldAnnotations = new ArrayList<>();
+                        if (name.equals("elapsed")) { fieldAnnotations.add(this.newAnnotation(TIMESPAN_ANNOTATION, "NANOSECONDS")); }
+                        if (name.endsWith("Bytes")) { fieldAnnotations.add(this.newAnnotation(DATA_AMOUNT_ANNOTATION, "BYTES")); }
+                        fields.add(NEW_VALUE_DESCRIPTOR.invoke((Class<?>)_fields[i], name, fieldAnnotations));
+                    }
+                    createdFactory = CREATE_FACTORY.invoke(annotations, fields);
+                    createdPrototype = NEW_EVENT.invoke(createdFactory);
+                }
+                catch (Throwable ex)
+                {
+                    createdFactory = null;
+                    createdPrototype = null;
+                }
+            }
+            this.factory = createdFactory;
+            this.prototype = createdPrototype;
+        }
+        
+        protected Object newAnnotation(Class<?> annotationType, Object value)
+            throws Throwable
+        {
+            return NEW_ANNOTATION_ELEMENT.invoke(annotationType, value);
+        }
+        
+        /**
+         * Determines whether a recording has this event type enabled.
+         * @return true if events of this type are being recorded
+         */
+        public boolean isEnabled()
+        {
+            if (this.prototype == null) { return false; }
+            try
+            {
+                return (boolean)IS_ENABLED.invoke(this.prototype);
+            }
+            catch (Throwable ex)
+            {
+                return false;
+            }
+        }
+        
+        /**
+         * Creates and begins an event, if this event type is enabled.
+         * @return the event, or null if this event type is not enabled
+         */
+        public Object begin()
+        {
+            if (!this.isEnabled()) { return null; }
+            try
+            {
+                Object event = NEW_EVENT.invoke(this.factory);
+                BEGIN.invoke(event);
+                return event;
+            }
+            catch (Throwable ex)
+            {
+                return null;
+            }
+        }
+        
+        /**
+         * Ends an event, and commits it with the given field values if it 
+         * passes the recording's threshold. Callers check the event for null 
+         * first, so that nothing is allocated for the values while JFR is off.
+         * @param event  the event from {@link #begin()}, or null to do nothing
+         * @param values the value of each field, in order
+         */
+        public void commit(Object event, Object... values)
+        {
+            if (event == null) { return; }
+            try
+            {
+                END.invoke(event);
+                if (!(boolean)SHOULD_COMMIT.invoke(event)) { return; }
+                for (int i = 0; i < values.length; ++i) { SET.invoke(event, i, values[i]); }
+                COMMIT.invoke(event);
+            }
+            catch (Throwable ex)
+            {
+                // a bad event is not worth failing an exchange over
+            }
+        }
+        
+        /**
+         * Commits an event without a duration, if this event type is enabled.
+         * @param values the value of each field, in order
+         */
+        public void emit(Object... values)
+        {
+            this.commit(this.begin(), values);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,424 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalHttpCompression.java
+ * LocalHttpCompression class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.Headers;
+
+/**
+ * Negotiates and applies gzip or deflate compression to responses.
+ * <p>
+ * A response is compressed when the client accepts one of the encodings,
+ * its content type is compressible, it is at least the minimum size, and 
+ * it is not a range response. Compressible responses always get a 
+ * <code>Vary: Accept-Encoding</code> header, whether or not they are compressed.
+ * <p>
+ * Ordinary responses are compressed as they are written. Payloads that are 
+ * sent again and again (such as the favicon) can be compressed once with 
+ * {@link #getEncodedBytes(byte[], String)}, which caches the result by 
+ * array identity for as long as the array is in use.
+ * @see LocalServer#setCompression(LocalHttpCompression)
+ */
+public class LocalHttpCompression
+{
+    //
+    // Static Fields
+    //
+    
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+    public static final int DEFAULT_MIN_SIZE = 1024;
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    public static final String[] DEFAULT_COMPRESSIBLE_TYPES = 
+    {
+        "text/", 
+        "application/javascript", 
+        "application/json", 
+        "application/xml", 
+        "image/svg+xml", 
+        "image/x-icon", 
+        "+json", 
+        "+xml",
+    };
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Chooses an encoding from the value of an Accept-Encoding header.
+     * The encoding with the highest quality value wins, and gzip wins ties.
+     * @param acceptEncoding the Accept-Encoding value (may be null)
+     * @return               {@link #GZIP}, {@link #DEFLATE}, or null if neither is acceptable
+     */
+    public static String negotiate(String acceptEncoding)
+    {
+        if (acceptEncoding == null) { return null; }
+        float gzip = -1;
+        float deflate = -1;
+        float any = -1;
+        int length = acceptEncoding.length();
+        for (int start = 0; start < length; )
+        {
+            int end = acceptEncoding.indexOf(',', start);
+            if (end < 0) { end = length; }
+            int semicolon = acceptEncoding.indexOf(';', start);
+            int nameEnd = semicolon < 0 || semicolon > end ? end : semicolon;
+            String name = acceptEncoding.substring(start, nameEnd).trim();
+            float q = nameEnd < end ? LocalHttpCompression.parseQuality(acceptEncoding.substring(nameEnd + 1, end)) : 1;
+            if (name.equalsIgnoreCase(GZIP) || name.equalsIgnoreCase("x-gzip")) { gzip = Math.max(gzip, q); }
+            else if (name.equalsIgnoreCase(DEFLATE)) { deflate = Math.max(deflate, q); }
+            else if (name.equals("*")) { any = q; }
+            start = end + 1;
+        }
+        if (gzip < 0) { gzip = any; }
+        if (deflate < 0) { deflate = any; }
+        if (gzip <= 0 && deflate <= 0) { return null; }
+        return gzip >= deflate ? GZIP : DEFLATE;
+    }
+    
+    /**
+     * Parses the quality value out of the parameters of an Accept-Encoding element.
+     * @param parameters the parameters after the coding name, such as <code>q=0.5</code>
+     * @return           the quality value, 1 if there is none, or 0 if it is malformed
+     */
+    protected static float parseQuality(String parameters)
+    {
+        for (String parameter : parameters.split(";"))
+        {
+            parameter = parameter.trim();
+            if (parameter.startsWith("q=") || parameter.startsWith("Q="))
+            {
+                try
+                {
+                    return Float.parseFloat(parameter.substring(2).trim());
+                }
+                catch (NumberFormatException ex)
+                {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+    
+    /**
+     * Wraps an output stream in a compressing stream.
+     * Closing the returned stream finishes the compressed data and closes the underlying stream.
+     * @param out        the stream to write compressed data to
+     * @param encoding   {@link #GZIP} or {@link #DEFLATE}
+     * @param level      the compression level, from 0 to 9, or -1 for the default
+     * @param bufferSize the size of the compression buffer
+     * @return           a stream that compresses what is written to it
+     * @throws IOException if a problem occurs while writing the stream header
+     */
+    public static DeflaterOutputStream wrap(OutputStream out, String encoding, int level, int bufferSize)
+        throws IOException
+    {
+        switch (encoding)
+        {
+            case GZIP: return new GzipStream(out, level, bufferSize);
+            case DEFLATE: return new DeflateStream(out, level, bufferSize);
+            default:
+                String message = String.format("Encoding (%s) is not supported.", encoding);
+                throw new IllegalArgumentException(message);
+        }
+    }
+    
+    /**
+     * Compresses a byte array.
+     * @param data     the bytes to compress
+     * @param encoding {@link #GZIP} or {@link #DEFLATE}
+     * @param level    the compression level, from 0 to 9, or -1 for the default
+     * @return         the compressed bytes
+     */
+    public static byte[] compress(byte[] data, String encoding, int level)
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+        try (DeflaterOutputStream out = LocalHttpCompression.wrap(baos, encoding, level, DEFAULT_BUFFER_SIZE))
+        {
+            out.write(data);
+        }
+        catch (IOException ex)
+        {
+            throw new RuntimeException(ex);
+        }
+        return baos.toByteArray();
+    }
+    
+    
+    /**
+     * Adds a header name to a response's Vary header, unless it is already there.
+     * @param headers the response headers
+     * @param name    the request header name that the response varies on
+     */
+    public static void addVary(Headers headers, String name)
+    {
+        String vary = headers.getFirst("Vary");
+        if (vary == null)
+        {
+            headers.set("Vary", name);
+            return;
+        }
+        for (String element : vary.split(","))
+        {
+            element = element.trim();
+            if (element.equals("*") || element.equalsIgnoreCase(name)) { return; }
+        }
+        headers.set("Vary", vary + ", " + name);
+    }
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    protected volatile int minSize = DEFAULT_MIN_SIZE;
+    protected volatile int level = Deflater.DEFAULT_COMPRESSION;
+    protected volatile int bufferSize = DEFAULT_BUFFER_SIZE;
+    protected volatile String[] compressibleTypes = DEFAULT_COMPRESSIBLE_TYPES.clone();
+    
+    protected final Map<byte[], EncodedBytes> encodedBytesCache = new WeakHashMap<>();
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    public int getMinSize() { return this.minSize; }
+    public void setMinSize(int _minSize) { this.minSize = _minSize; }
+    
+    public int getLevel() { return this.level; }
+    public void setLevel(int _level) { this.level = _level; this.clearCache(); }
+    
+    public int getBufferSize() { return this.bufferSize; }
+    public void setBufferSize(int _bufferSize) { this.bufferSize = _bufferSize; }
+    
+    /**
+     * Sets the content types that are compressed. An entry that ends with '/' 
+     * matches a whole top-level type, an entry that starts with '+' matches 
+     * a structured syntax suffix, and any other entry matches one type exactly.
+     * @param _compressibleTypes the compressible content types
+     */
+    public void setCompressibleTypes(String... _compressibleTypes) { this.compressibleTypes = _compressibleTypes.clone(); }
+    
+    public void clearCache() { synchronized (this.encodedBytesCache) { this.encodedBytesCache.clear(); } }
+    
+    /**
+     * Determines whether responses of a content type are worth compressing.
+     * @param contentType the response's content type, with or without parameters
+     * @return            true if the content type is compressible
+     */
+    public boolean isCompressible(String contentType)
+    {
+        if (contentType == null) { return false; }
+        int semicolon = contentType.indexOf(';');
+        String type = (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim();
+        for (String compressibleType : this.compressibleTypes)
+        {
+            boolean matches = compressibleType.endsWith("/") ? type.regionMatches(true, 0, compressibleType, 0, compressibleType.length())
+                : compressibleType.startsWith("+") ? type.regionMatches(true, type.length() - compressibleType.length(), compressibleType, 0, compressibleType.length())
+                : type.equalsIgnoreCase(compressibleType);
+            if (matches) { return true; }
+        }
+        return false;
+    }
+    
+    /**
+     * Chooses the encoding for a response, and adds <code>Vary: Accept-Encoding</code>
+     * to the response headers if the content type is compressible.
+     * @param x           the exchange to respond to
+     * @param statusCode  the status code of the response
+     * @param contentType the content type of the response
+     * @param length      the uncompressed length of the response, or -1 if it is not known
+     * @return            the encoding to compress the response with, or null to send it as is
+     */
+    public String negotiate(LocalHttpExchange x, int statusCode, String contentType, long length)
+    {
+        if (statusCode < 200 || statusCode == 204 || statusCode == 206 || statusCode == 304) { return null; }
+        if (x.RESPONSE_HEADERS.containsKey("Content-Encoding") || !this.isCompressible(contentType)) { return null; }
+        
+        LocalHttpCompression.addVary(x.RESPONSE_HEADERS, "Accept-Encoding");
+        if (length >= 0 && length < this.minSize) { return null; }
+        if (statusCode == 200 && x.REQUEST_HEADERS.containsKey("Range")) { return null; }
+        return LocalHttpCompression.negotiate(x.REQUEST_HEADERS.getFirst("Accept-Encoding"));
+    }
+    
+    /**
+     * Sends response headers for a compressed body of unknown length, and
+     * gets the stream to write the uncompressed body to.
+     * @param x           the exchange to respond to
+     * @param statusCode  the status code of the response
+     * @param contentType the content type of the response
+     * @param encoding    the encoding chosen by {@link #negotiate(LocalHttpExchange, int, String, long)}
+     * @return            the stream to write the uncompressed body to; closing it ends the response
+     * @throws IOException if a problem occurs while writing the response headers
+     */
+    public OutputStream sendCompressedResponseHeaders(LocalHttpExchange x, int statusCode, String contentType, String encoding)
+        throws IOException
+    {
+        x.RESPONSE_HEADERS.set("Content-Type", contentType);
+        x.RESPONSE_HEADERS.set("Content-Encoding", encoding);
+        x.exchange.sendResponseHeaders(statusCode, 0);
+        return LocalHttpCompression.wrap(x.exchange.getResponseBody(), encoding, this.level, this.bufferSize);
+    }
+    
+    /**
+     * Compresses a byte array as it is sent.
+     * @param x           the exchange to respond to
+     * @param statusCode  the status code of the response
+     * @param contentType the content type of the response
+     * @param response    the uncompressed response body
+     * @param encoding    the encoding chosen by {@link #negotiate(LocalHttpExchange, int, String, long)}
+     * @throws IOException if a problem occurs while writing the response
+     */
+    public void sendByteArrayResponse(LocalHttpExchange x, int statusCode, String contentType, byte[] response, String encoding)
+        throws IOException
+    {
+        if (x.REQUEST_METHOD.equals("HEAD"))
+        {
+            x.RESPONSE_HEADERS.set("Content-Type", contentType);
+            x.RESPONSE_HEADERS.set("Content-Encoding", encoding);
+            x.sendHeadersOnly(statusCode);
+            return;
+        }
+        try (OutputStream out = this.sendCompressedResponseHeaders(x, statusCode, contentType, encoding))
+        {
+            out.write(response);
+        }
+    }
+    
+    /**
+     * Sends a response body that is already encoded, with a fixed length.
+     * @param x           the exchange to respond to
+     * @param statusCode  the status code of the response
+     * @param contentType the content type of the response
+     * @param encoded     the encoded response body
+     * @param encoding    the encoding of the response body
+     * @throws IOException if a problem occurs while writing the response
+     */
+    public void sendEncodedResponse(LocalHttpExchange x, int statusCode, String contentType, byte[] encoded, String encoding)
+        throws IOException
+    {
+        x.RESPONSE_HEADERS.set("Content-Type", contentType);
+        x.RESPONSE_HEADERS.set("Content-Encoding", encoding);
+        if (x.REQUEST_METHOD.equals("HEAD"))
+        {
+            x.RESPONSE_HEADERS.set("Content-Length", Integer.toString(encoded.length));
+            x.sendHeadersOnly(statusCode);
+            return;
+        }
+        x.exchange.sendResponseHeaders(statusCode, encoded.length);
+        try (OutputStream out = x.exchange.getResponseBody())
+        {
+            out.write(encoded);
+        }
+    }
+    
+    /**
+     * Gets the compressed form of a byte array that is sent repeatedly.
+     * Each array is compressed at most once per encoding; the results are 
+     * kept until the array itself is no longer referenced.
+     * @param data     the bytes to compress; they must not be changed afterwards
+     * @param encoding {@link #GZIP} or {@link #DEFLATE}
+     * @return         the compressed bytes, or null if compressing does not make them smaller
+     */
+    public byte[] getEncodedBytes(byte[] data, String encoding)
+    {
+        EncodedBytes encoded;
+        synchronized (this.encodedBytesCache)
+        {
+            encoded = this.encodedBytesCache.get(data);
+            if (encoded == null)
+            {
+                encoded = new EncodedBytes();
+                this.encodedBytesCache.put(data, encoded);
+            }
+        }
+        return encoded.get(data, encoding, this.level);
+    }
+    
+    //
+    // Nested Classes
+    //
+    
+    /**
+     * The compressed forms of one cached byte array.
+     */
+    protected static class EncodedBytes
+    {
+        protected static final byte[] NOT_SMALLER = new byte[0];
+        
+        protected byte[] gzip = null;
+        protected byte[] deflate = null;
+        
+        protected synchronized byte[] get(byte[] data, String encoding, int level)
+        {
+            boolean isGzip = encoding.equals(GZIP);
+            byte[] result = isGzip ? this.gzip : this.deflate;
+            if (result == null)
+            {
+                result = LocalHttpCompression.compress(data, encoding, level);
+                if (result.length >= data.length) { result = NOT_SMALLER; }
+                if (isGzip) { this.gzip = result; } else { this.deflate = result; }
+            }
+            return result == NOT_SMALLER ? null : result;
+        }
+    }
+    
+    /**
+     * A gzip stream with a compression level, which flushes through to the 
+     * underlying stream so that streamed responses reach the client.
+     */
+    protected static class GzipStream extends GZIPOutputStream
+    {
+        public GzipStream(OutputStream out, int level, int bufferSize)
+            throws IOException
+        {
+            super(out, bufferSize, true);
+            this.def.setLevel(level);
+        }
+    }
+    
+    /**
+     * A zlib-wrapped deflate stream, which releases its deflater when it is closed.
+     */
+    protected static class DeflateStream extends DeflaterOutputStream
+    {
+        public DeflateStream(OutputStream out, int level, int bufferSize)
+        {
+            super(out, new Deflater(level), bufferSize, true);
+        }
+        
+        @Override
+        public void close()
+            throws IOException
+        {
+            try
+            {
+                super.close();
+            }
+            finally
+            {
+                this.def.end();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -16,14 +16,19 @@ import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 
 import java.net.URI;
-import java.net.URLDecoder;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpExchange;
 
 public class LocalHttpExchange implements Closeable
@@ -37,8 +42,18 @@ public class LocalHttpExchange implements Closeable
     public final URI REQUEST_URI;
     public final String REQUEST_PROTOCOL;
     public final Headers REQUEST_HEADERS;
-    public final String REQUEST_BODY;
+    public final long REQUEST_CONTENT_LENGTH;
     public final Headers RESPONSE_HEADERS;
+    public final LocalServer SERVER;
+    public final long MAX_REQUEST_BODY_SIZE;
+    
+    protected InputStream requestBodyStream = null;
+    protected byte[] requestBodyBytes = null;
+    protected LocalHttpRouteMatch routeMatch = null;
+    protected LocalHttpParameters queryParameters = null;
+    protected LocalHttpParameters formParameters = null;
+    protected final AtomicBoolean closed = new AtomicBoolean(false);
+    protected volatile CompletableFuture<Void> completion = null;
     
     
     //
@@ -52,8 +67,66 @@ public class LocalHttpExchange implements Closeable
         this.REQUEST_URI = this.exchange.getRequestURI();
         this.REQUEST_PROTOCOL = this.exchange.getProtocol();
         this.REQUEST_HEADERS = this.exchange.getRequestHeaders();
-        this.REQUEST_BODY = LocalServer.getStringFromInputStream(this.exchange.getRequestBody());
+        this.REQUEST_CONTENT_LENGTH = LocalHttpExchange.getContentLength(this.REQUEST_HEADERS);
         this.RESPONSE_HEADERS = this.exchange.getResponseHeaders();
+        this.SERVER = LocalServer.getLocalServer(this.exchange.getHttpContext());
+        this.MAX_REQUEST_BODY_SIZE = this.SERVER == null 
+            ? LocalServer.DEFAULT_MAX_REQUEST_BODY_SIZE 
+            : this.SERVER.getMaxRequestBodySize();
+    }
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Gets the value of the Content-Length header in the given headers.
+     * @param headers  the headers to look in
+     * @return the declared content length, or -1 if it is missing or invalid
+     */
+    public static long getContentLength(Headers headers)
+    {
+        String value = headers.getFirst("Content-Length");
+        if (value == null) { return -1; }
+        try
+        {
+            long length = Long.parseLong(value.trim());
+            return length < 0 ? -1 : length;
+        }
+        catch (NumberFormatException ex)
+        {
+            return -1;
+        }
+    }
+    
+    /**
+     * Gets the charset named by the charset parameter of a Content-Type value.
+     * @param contentType  the Content-Type value to look in (may be null)
+     * @param fallback     the charset to use if none is named or it is not supported
+     * @return the named charset, or the fallback charset
+     */
+    public static Charset getCharset(String contentType, Charset fallback)
+    {
+        if (contentType == null) { return fallback; }
+        String lower = contentType.toLowerCase();
+        int index = lower.indexOf("charset=");
+        if (index < 0) { return fallback; }
+        int start = index + "charset=".length();
+        int end = contentType.indexOf(';', start);
+        String name = (end < 0 ? contentType.substring(start) : contentType.substring(start, end)).trim();
+        if (name.length() > 1 && name.charAt(0) == '"' && name.charAt(name.length() - 1) == '"')
+        {
+            name = name.substring(1, name.length() - 1);
+        }
+        try
+        {
+            return Charset.forName(name);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            return fallback;
+        }
     }
     
     
@@ -61,13 +134,214 @@ public class LocalHttpExchange implements Closeable
     // Instance Methods
     //
     
-    @Override public void close() throws IOException { this.exchange.close(); }
+    /**
+     * Closes this exchange, ending the response if it has not ended already.
+     * Only the first call closes anything, so this is safe to call more than
+     * once, and from whichever thread finishes the exchange.
+     * @throws IOException if a problem occurs while closing the exchange
+     */
+    @Override 
+    public void close() 
+        throws IOException 
+    { 
+        if (this.closed.compareAndSet(false, true)) { this.exchange.close(); }
+    }
+    
+    public boolean isClosed() { return this.closed.get(); }
+    
+    /**
+     * Determines whether the response headers have been sent.
+     * @return true if a response has been started
+     */
+    public boolean isResponseStarted()
+    {
+        return this.exchange.getResponseCode() >= 0;
+    }
+    
+    /**
+     * Marks this exchange as finishing after its handler returns.
+     * Called by {@link LocalAsyncHttpHandler.Adapter}; everything that 
+     * measures an exchange waits for the returned future instead.
+     * @return the future that completes when the exchange has finished
+     */
+    protected synchronized CompletableFuture<Void> startAsync()
+    {
+        if (this.completion == null) { this.completion = new CompletableFuture<>(); }
+        return this.completion;
+    }
+    
+    /**
+     * Gets the future that completes when an asynchronous exchange has finished.
+     * It completes exceptionally with a TimeoutException if the exchange 
+     * timed out; a handler can listen to it to stop work nobody will see.
+     * @return the completion future, or null if this exchange is handled synchronously
+     */
+    public CompletableFuture<Void> getCompletion() { return this.completion; }
+    
+    public boolean isAsync() { return this.completion != null; }
+    
+    /**
+     * Gets the path of the context that this exchange's request was routed to.
+     * @return the context path, or an empty string if the exchange has no context
+     */
+    public String getContextPath()
+    {
+        HttpContext context = this.exchange.getHttpContext();
+        return context == null ? "" : context.getPath();
+    }
+    
+    /**
+     * Determines whether this exchange's request was sent by the server's own warmup.
+     * The header alone is not enough, since any client can send it:
+     * its value must be the token of a warmup that is running now.
+     * @return true if the request has the {@link LocalServerWarmup#HEADER} header of a running warmup
+     */
+    public boolean isWarmupRequest() { return LocalServerWarmup.isActiveToken(this.REQUEST_HEADERS.getFirst(LocalServerWarmup.HEADER)); }
+    
+    /**
+     * Determines whether this exchange's request declares a body that is 
+     * larger than the maximum request body size.
+     * @return true if the declared Content-Length exceeds the maximum
+     */
+    public boolean isRequestBodyTooLarge()
+    {
+        return this.MAX_REQUEST_BODY_SIZE >= 0 && this.REQUEST_CONTENT_LENGTH > this.MAX_REQUEST_BODY_SIZE;
+    }
+    
+    /**
+     * Gets the stream of this exchange's request body. Nothing is buffered; 
+     * reading more than the maximum request body size causes an IOException.
+     * The same stream is returned on every call.
+     * @return the stream of this exchange's request body
+     */
+    public InputStream getRequestBodyStream()
+    {
+        if (this.requestBodyStream == null)
+        {
+            this.requestBodyStream = new LocalBoundedInputStream(this.exchange.getRequestBody(), this.MAX_REQUEST_BODY_SIZE);
+        }
+        return this.requestBodyStream;
+    }
+    
+    /**
+     * Gets the number of request body bytes read so far.
+     * @return the number of bytes read through {@link #getRequestBodyStream()}
+     */
+    public long getRequestBodyBytesRead()
+    {
+        return this.requestBodyStream instanceof LocalBoundedInputStream 
+            ? ((LocalBoundedInputStream)this.requestBodyStream).getBytesRead() 
+            : 0;
+    }
+    
+    /**
+     * Gets a channel over this exchange's request body stream.
+     * @return a channel that reads from {@link #getRequestBodyStream()}
+     */
+    public ReadableByteChannel getRequestBodyChannel()
+    {
+        return Channels.newChannel(this.getRequestBodyStream());
+    }
+    
+    /**
+     * Reads the rest of this exchange's request body into a byte array.
+     * The array is read once and then cached. The Content-Length header 
+     * only sizes the first pooled chunk; the body grows as its bytes 
+     * arrive, so a large declared length allocates nothing by itself.
+     * @return the bytes of this exchange's request body
+     * @throws IOException if a problem occurs while reading, or if the 
+     *         body is larger than the maximum request body size
+     */
+    public byte[] getRequestBodyBytes()
+        throws IOException
+    {
+        if (this.requestBodyBytes == null)
+        {
+            if (this.isRequestBodyTooLarge())
+            {
+                String message = String.format(
+                    "Request body of %s bytes exceeds the maximum size of %s bytes.", 
+                    this.REQUEST_CONTENT_LENGTH, 
+                    this.MAX_REQUEST_BODY_SIZE
+                );
+                throw new IOException(message);
+            }
+            Object event = LocalFlightRecorder.REQUEST_BODY_READ.begin();
+            InputStream in = this.getRequestBodyStream();
+            int expectedSize = (int)Math.min(this.REQUEST_CONTENT_LENGTH, LocalBufferPool.MAX_BUFFER_SIZE);
+            try (LocalByteSink sink = new LocalByteSink(expectedSize))
+            {
+                long bytesRead = sink.readFrom(in);
+                if (this.REQUEST_CONTENT_LENGTH >= 0 && bytesRead < this.REQUEST_CONTENT_LENGTH)
+                {
+                    String message = String.format("Request body ended after %s of %s bytes.", bytesRead, this.REQUEST_CONTENT_LENGTH);
+                    throw new IOException(message);
+                }
+                this.requestBodyBytes = sink.toByteArray();
+            }
+            if (event != null) { LocalFlightRecorder.REQUEST_BODY_READ.commit(event, this.getContextPath(), this.REQUEST_METHOD, (long)this.requestBodyBytes.length); }
+        }
+        return this.requestBodyBytes;
+    }
+    
+    /**
+     * Gets the charset of this exchange's request, as given by its Content-Type.
+     * @return the request's charset, or the platform's default charset if none is given
+     */
+    public Charset getRequestCharset()
+    {
+        return LocalHttpExchange.getCharset(this.REQUEST_HEADERS.getFirst("Content-Type"), Charset.defaultCharset());
+    }
+    
+    /**
+     * Decodes this exchange's request body as a String.
+     * @param  charset     the charset to decode the body with
+     * @return the decoded request body
+     * @throws IOException if a problem occurs while reading the body
+     * @see    #getRequestBodyBytes()
+     */
+    public String getRequestBodyString(Charset charset)
+        throws IOException
+    {
+        return new String(this.getRequestBodyBytes(), charset);
+    }
+    
+    /**
+     * Decodes this exchange's request body as a String, using the request's charset.
+     * @return the decoded request body
+     * @throws IOException if a problem occurs while reading the body
+     * @see    #getRequestCharset()
+     */
+    public String getRequestBodyString()
+        throws IOException
+    {
+        return this.getRequestBodyString(this.getRequestCharset());
+    }
+    
+    /**
+     * Gets the route that this exchange's request path matched, if it was routed.
+     * @return the route match, or null if the exchange was not routed by a {@link LocalHttpRouter}
+     */
+    public LocalHttpRouteMatch getRouteMatch() { return this.routeMatch; }
+    
+    /**
+     * Gets the decoded value of a path variable from the matched route.
+     * @param name the name of the path variable
+     * @return     the path variable's value, or null if there is no such variable
+     */
+    public String getPathVariable(String name)
+    {
+        return this.routeMatch == null ? null : this.routeMatch.getVariable(name);
+    }
     
     /**
      * Get a string representation of this exchange's request.
+     * This reads the whole request body.
      * @return a string representation of this exchange's request
+     * @throws IOException if a problem occurs while reading the request body
      */
     public String getRequestString()
+        throws IOException
     {
         StringBuilder sb = new StringBuilder();
         String SP = " ";
@@ -82,7 +356,7 @@ public class LocalHttpExchange implements Closeable
             }
         }
         sb.append(CRLF);
-        sb.append(this.REQUEST_BODY);
+        sb.append(this.getRequestBodyString());
         return sb.toString();
     }
     
@@ -92,38 +366,113 @@ public class LocalHttpExchange implements Closeable
      * @param  encoding  the name of a supported character encoding
      * @return a map of the query parameter keys and value lists for
      *         this exchange's request, in the encoding given
-     * @throws UnsupportedEncodingException If character encoding needs to be 
-     *         consulted, but named character encoding is not supported
-     * @see    URLDecoder#decode(String, String)
+     * @throws UnsupportedEncodingException If the named character encoding 
+     *         is not supported
+     * @see    #getQueryParameters(Charset)
      */
     public Map<String, List<String>> getParameterMap(String encoding) throws UnsupportedEncodingException
     {
-        Map<String, List<String>> result = new HashMap<>();
-        
-        String rawQuery = this.REQUEST_URI.getRawQuery();
-        if (rawQuery != null)
+        Charset charset;
+        try
         {
-            String[] rawKeyValuePairs = rawQuery.split("&");
-            for (String rawKVPair : rawKeyValuePairs)
-            {
-                String[] rawKVPairSplit = rawKVPair.split("=", 2);
-                String rawKey = rawKVPairSplit[0];
-                String rawValue = rawKVPairSplit.length > 1 ? rawKVPairSplit[1] : null;
-                String key = URLDecoder.decode(rawKey, encoding);
-                String value = URLDecoder.decode(rawValue, encoding);
-                List<String> valueList = result.get(key);
-                if (valueList == null) 
-                {
-                    valueList = new ArrayList<String>();
-                    result.put(key, valueList);
-                }
-                valueList.add(value);
-            }
+            charset = Charset.forName(encoding);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            throw new UnsupportedEncodingException(encoding);
+        }
+        return this.getParameterMap(charset);
+    }
+    
+    /**
+     * Get a map of the query parameters in this exchange's request.
+     * The map is built once and cannot be modified.
+     * @param  charset the charset that percent-escapes are decoded with
+     * @return a map of the query parameter keys and value lists for this exchange's request
+     */
+    public Map<String, List<String>> getParameterMap(Charset charset)
+    {
+        return this.getQueryParameters(charset).toMap();
+    }
+    
+    /**
+     * Gets the query parameters of this exchange's request, decoded as UTF-8.
+     * @return the query parameters
+     */
+    public LocalHttpParameters getQueryParameters()
+    {
+        return this.getQueryParameters(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Gets the query parameters of this exchange's request.
+     * The query is scanned once per charset, and the result is cached.
+     * @param  charset the charset that percent-escapes are decoded with
+     * @return the query parameters
+     */
+    public LocalHttpParameters getQueryParameters(Charset charset)
+    {
+        LocalHttpParameters result = this.queryParameters;
+        if (result == null || !result.CHARSET.equals(charset))
+        {
+            String rawQuery = this.REQUEST_URI.getRawQuery();
+            result = rawQuery == null || rawQuery.isEmpty() ? LocalHttpParameters.EMPTY : new LocalHttpParameters(rawQuery, charset);
+            this.queryParameters = result;
         }
-        
         return result;
     }
     
+    /**
+     * Gets the first value of a query parameter, decoded as UTF-8.
+     * @param  name the parameter's key
+     * @return the parameter's first value, "" if it is a flag, or null if it is not present
+     */
+    public String getQueryParameter(String name)
+    {
+        return this.getQueryParameters().getFirst(name);
+    }
+    
+    /**
+     * Gets the parameters of an <code>application/x-www-form-urlencoded</code> request body.
+     * The body is read and scanned once, and the result is cached. Percent-escapes 
+     * are decoded with the request's charset, or UTF-8 if it does not name one.
+     * @return the form parameters, which are empty if the body is not a URL-encoded form
+     * @throws IOException if a problem occurs while reading the body
+     */
+    public LocalHttpParameters getFormParameters()
+        throws IOException
+    {
+        if (this.formParameters == null)
+        {
+            String contentType = this.REQUEST_HEADERS.getFirst("Content-Type");
+            boolean isForm = contentType != null && contentType.regionMatches(true, 0, "application/x-www-form-urlencoded", 0, 33);
+            this.formParameters = isForm 
+                ? new LocalHttpParameters(this.getRequestBodyString(StandardCharsets.ISO_8859_1), LocalHttpExchange.getCharset(contentType, StandardCharsets.UTF_8)) 
+                : LocalHttpParameters.EMPTY;
+        }
+        return this.formParameters;
+    }
+    
+    /**
+     * Opens a reader over this exchange's multipart request body, which reads
+     * one part at a time as the body arrives. The body is still bounded by
+     * {@link #MAX_REQUEST_BODY_SIZE}.
+     * @return a reader of the body's parts, which should be closed when done
+     * @throws IOException if the request is not multipart or has no boundary
+     */
+    public LocalMultipartReader openMultipartReader()
+        throws IOException
+    {
+        String contentType = this.REQUEST_HEADERS.getFirst("Content-Type");
+        String boundary = LocalMultipartReader.getBoundary(contentType);
+        if (boundary == null)
+        {
+            String message = String.format("Not a multipart request: %s", contentType);
+            throw new IOException(message);
+        }
+        return new LocalMultipartReader(this.getRequestBodyStream(), boundary);
+    }
+    
     public String getResponseHeaderString()
     {
         StringBuilder sb = new StringBuilder();
@@ -169,6 +518,57 @@ public class LocalHttpExchange implements Closeable
         }
     }
     
+    /**
+     * Sends a 413 response for a request body that is too large,
+     * and asks the client to close the connection.
+     * @throws IOException if a problem occurs while writing the response
+     */
+    public void sendRequestBodyTooLargeResponse()
+        throws IOException
+    {
+        this.RESPONSE_HEADERS.set("Connection", "close");
+        String response = String.format("Request body exceeds the maximum size of %s bytes.", this.MAX_REQUEST_BODY_SIZE);
+        this.sendStringResponse(413, "text/plain", response);
+    }
+    
+    /**
+     * Sends a 503 response for a server that is too busy to handle the request.
+     * @param retryAfterSeconds the number of seconds the client should wait before retrying
+     * @throws IOException if a problem occurs while writing the response
+     */
+    public void sendServiceUnavailableResponse(int retryAfterSeconds)
+        throws IOException
+    {
+        this.RESPONSE_HEADERS.set("Retry-After", Integer.toString(retryAfterSeconds));
+        if (this.REQUEST_METHOD.equals("HEAD"))
+        {
+            this.sendHeadersOnly(503);
+        }
+        else
+        {
+            this.sendStringResponse(503, "text/plain", "Service unavailable");
+        }
+    }
+    
+    /**
+     * Sends a 429 response for a client that has sent too many requests.
+     * @param retryAfterSeconds the number of seconds the client should wait before retrying
+     * @throws IOException if a problem occurs while writing the response
+     */
+    public void sendTooManyRequestsResponse(int retryAfterSeconds)
+        throws IOException
+    {
+        this.RESPONSE_HEADERS.set("Retry-After", Integer.toString(retryAfterSeconds));
+        if (this.REQUEST_METHOD.equals("HEAD"))
+        {
+            this.sendHeadersOnly(429);
+        }
+        else
+        {
+            this.sendStringResponse(429, "text/plain", "Too many requests");
+        }
+    }
+    
     /**
      * Sends a string as an HTTP response.
      * @param statusCode   the HTTP status code for the response
@@ -182,8 +582,129 @@ public class LocalHttpExchange implements Closeable
         this.sendByteArrayResponse(statusCode, contentType, response.getBytes());
     }
     
+    /**
+     * Gets the server's compression settings, if compression is enabled.
+     * @return the compression settings, or null if responses are not compressed
+     */
+    public LocalHttpCompression getCompression()
+    {
+        return this.SERVER == null ? null : this.SERVER.getCompression();
+    }
+    
+    /**
+     * Sends response headers for a body of unknown length, and gets the stream 
+     * to write the body to. The body is compressed as it is written if the 
+     * server has compression enabled and the client accepts it.
+     * @param statusCode   the HTTP status code for the response
+     * @param contentType  the content type for the response
+     * @return the stream to write the response body to; closing it ends the response
+     * @throws IOException if a problem occurs while writing the response headers
+     */
+    public OutputStream sendStreamingResponseHeaders(int statusCode, String contentType)
+        throws IOException
+    {
+        if (this.REQUEST_METHOD.equals("HEAD"))
+        {
+            this.RESPONSE_HEADERS.set("Content-Type", contentType);
+            this.sendHeadersOnly(statusCode);
+            return new OutputStream() { @Override public void write(int b) { } };
+        }
+        
+        LocalHttpCompression compression = this.getCompression();
+        String encoding = compression == null ? null : compression.negotiate(this, statusCode, contentType, -1);
+        if (encoding != null)
+        {
+            return compression.sendCompressedResponseHeaders(this, statusCode, contentType, encoding);
+        }
+        
+        this.RESPONSE_HEADERS.set("Content-Type", contentType);
+        this.exchange.sendResponseHeaders(statusCode, 0);
+        return this.exchange.getResponseBody();
+    }
+    
+    /**
+     * Sends response headers for a body of unknown length, and opens a stream 
+     * that sends the body in chunks. Text is encoded with the content type's 
+     * charset, or UTF-8 if it has none.
+     * @param statusCode   the HTTP status code for the response
+     * @param contentType  the content type for the response
+     * @return the stream to write the response body to; closing it ends the response
+     * @throws IOException if a problem occurs while writing the response headers
+     * @see    #sendStreamingResponseHeaders(int, String)
+     */
+    public LocalHttpResponseStream openResponseStream(int statusCode, String contentType)
+        throws IOException
+    {
+        return this.openResponseStream(statusCode, contentType, LocalHttpResponseStream.DEFAULT_BUFFER_SIZE);
+    }
+    
+    /**
+     * Sends response headers for a body of unknown length, and opens a stream 
+     * that sends the body in chunks of up to the given size.
+     * @param statusCode   the HTTP status code for the response
+     * @param contentType  the content type for the response
+     * @param bufferSize   the most bytes to gather before sending a chunk
+     * @return the stream to write the response body to; closing it ends the response
+     * @throws IOException if a problem occurs while writing the response headers
+     */
+    public LocalHttpResponseStream openResponseStream(int statusCode, String contentType, int bufferSize)
+        throws IOException
+    {
+        Charset charset = LocalHttpExchange.getCharset(contentType, StandardCharsets.UTF_8);
+        OutputStream body = this.sendStreamingResponseHeaders(statusCode, contentType);
+        return new LocalHttpResponseStream(body, charset, bufferSize);
+    }
+    
+    /**
+     * Starts a Server-Sent Events response, with the default heartbeat.
+     * @return the emitter to send events with; closing it ends the response
+     * @throws IOException if a problem occurs while writing the response headers
+     */
+    public LocalServerSentEvents openEventStream()
+        throws IOException
+    {
+        return this.openEventStream(LocalServerSentEvents.DEFAULT_HEARTBEAT_MILLIS);
+    }
+    
+    /**
+     * Starts a Server-Sent Events response. The handler may return while
+     * the emitter is still in use; the response lasts until it is closed.
+     * @param heartbeatMillis the idle time after which a heartbeat is sent, or 0 for none
+     * @return the emitter to send events with; closing it ends the response
+     * @throws IOException if a problem occurs while writing the response headers
+     */
+    public LocalServerSentEvents openEventStream(long heartbeatMillis)
+        throws IOException
+    {
+        this.RESPONSE_HEADERS.set("Cache-Control", "no-cache");
+        this.RESPONSE_HEADERS.set("X-Accel-Buffering", "no");
+        LocalHttpResponseStream stream = this.openResponseStream(200, LocalServerSentEvents.CONTENT_TYPE, 1024);
+        return new LocalServerSentEvents(stream, heartbeatMillis);
+    }
+    
+    /**
+     * Sends a response whose body is produced into a queue, by other threads.
+     * This thread writes each buffer as it arrives, waiting while the queue is
+     * empty, until the queue is completed. If the producer fails or the client
+     * goes away, the response is left unfinished and an exception is thrown.
+     * @param statusCode   the HTTP status code for the response
+     * @param contentType  the content type for the response
+     * @param queue        the queue the body is produced into
+     * @return the number of body bytes written
+     * @throws IOException if the producer failed, or a problem occurs while writing
+     */
+    public long sendQueuedResponse(int statusCode, String contentType, LocalHttpResponseQueue queue)
+        throws IOException
+    {
+        LocalHttpResponseStream stream = this.openResponseStream(statusCode, contentType);
+        long total = queue.drainTo(stream);
+        stream.close();
+        return total;
+    }
+    
     /**
      * Sends a byte array as an HTTP response.
+     * If the status code is 200, the request's Range header is honored.
      * @param statusCode   the HTTP status code for the response
      * @param contentType  the contenty type for the response
      * @param response     the byte array to send as a response
@@ -192,46 +713,44 @@ public class LocalHttpExchange implements Closeable
     public void sendByteArrayResponse(int statusCode, String contentType, byte[] response)
         throws IOException
     {
-        // deal with ranges
-        // see http://stackoverflow.com/questions/18336174/how-to-properly-provide-data-for-audio
-        boolean hasRange = this.REQUEST_HEADERS.containsKey("Range");
-        boolean responseHasContentRange = this.RESPONSE_HEADERS.containsKey("Content-Range");
-        if (hasRange && !responseHasContentRange)
+        Object event = LocalFlightRecorder.RESPONSE_WRITE.begin();
+        LocalHttpCompression compression = this.getCompression();
+        String encoding = compression == null ? null : compression.negotiate(this, statusCode, contentType, response.length);
+        if (encoding != null)
         {
-            // looks like "bytes=0-1"
-            String[] rangeValues = this.REQUEST_HEADERS.getFirst("Range").split("=|-");
-            int startPos = Integer.parseInt(rangeValues[1]);
-            int lastPos = response.length - 1;
-            int endPos = lastPos;
-            if (rangeValues.length > 2 && !rangeValues[2].equals(""))
-            {
-                endPos = Integer.parseInt(rangeValues[2]);
-                if (endPos > lastPos) { endPos = lastPos; }
-            }
-            if (startPos != 0 || endPos != lastPos || (rangeValues.length > 2 && rangeValues[2].equals("")))
-            {
-                statusCode = 206;
-            }
-            int rangeLength = endPos + 1 - startPos;
-            byte[] rangedResponse = new byte[rangeLength];
-            System.arraycopy(response, startPos, rangedResponse, 0, rangeLength);
-            response = rangedResponse;
-            String contentRange = String.format("bytes %d-%d/%d", startPos, endPos, rangeLength);
-            this.RESPONSE_HEADERS.add("Content-Range", contentRange);
+            compression.sendByteArrayResponse(this, statusCode, contentType, response, encoding);
         }
-        
-        // add content type if not already set
-        if (!this.RESPONSE_HEADERS.containsKey("Content-Type"))
+        else
         {
-            this.RESPONSE_HEADERS.add("Content-Type", contentType);
+            // deal with ranges
+            // see http://stackoverflow.com/questions/18336174/how-to-properly-provide-data-for-audio
+            LocalHttpRanges.send(this, statusCode, contentType, response);
         }
-        
-        // send headers and write response
-        this.exchange.sendResponseHeaders(statusCode, response.length);
-        try (OutputStream out = this.exchange.getResponseBody())
+        if (event != null) { LocalFlightRecorder.RESPONSE_WRITE.commit(event, this.getContextPath(), this.REQUEST_METHOD, this.exchange.getResponseCode(), (long)response.length); }
+    }
+    
+    /**
+     * Sends a byte array that is sent again and again as an HTTP response.
+     * Unlike {@link #sendByteArrayResponse(int, String, byte[])}, a compressed
+     * response is compressed only once, and reused for as long as the array is.
+     * @param statusCode   the HTTP status code for the response
+     * @param contentType  the content type for the response
+     * @param response     the byte array to send as a response; it must not be changed afterwards
+     * @throws IOException if a problem occurs while writing the response or closing the exchange's streams
+     */
+    public void sendStaticByteArrayResponse(int statusCode, String contentType, byte[] response)
+        throws IOException
+    {
+        LocalHttpCompression compression = this.getCompression();
+        String encoding = compression == null ? null : compression.negotiate(this, statusCode, contentType, response.length);
+        byte[] encoded = encoding == null ? null : compression.getEncodedBytes(response, encoding);
+        if (encoded != null)
         {
-            out.write(response);
+            compression.sendEncodedResponse(this, statusCode, contentType, encoded, encoding);
+            return;
         }
+        
+        LocalHttpRanges.send(this, statusCode, contentType, response);
     }
     
     
@@ -11,7 +11,6 @@ package chairosoft.local_server;
 
 import java.io.IOException;
 
-import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
 @FunctionalInterface
@@ -19,8 +18,14 @@ public interface LocalHttpHandler
 {
     void handle(LocalHttpExchange exchange) throws IOException;
     
+    /**
+     * Adapts this handler to the HttpHandler interface. Each exchange goes through 
+     * the server's flight recording, slow request monitor, access log, metrics 
+     * and admission control, where they are enabled, before it is handled.
+     * @return the adapted handler
+     */
     default HttpHandler toHttpHandler()
     {
-        return (HttpExchange exchange) -> this.handle(new LocalHttpExchange(exchange));
+        return LocalHttpHandlerPipeline.adapt(this);
     }
 }
\ No newline at end of file
@@ -0,0 +1,131 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalHttpHandlerPipeline.java
+ * LocalHttpHandlerPipeline class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.IOException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * The stages that every exchange goes through on its way to a LocalHttpHandler.
+ * Each stage runs the next one, or hands the exchange to the server feature 
+ * that wraps it (flight recording, access logging, metrics, admission control), 
+ * which then runs the next stage itself.
+ */
+class LocalHttpHandlerPipeline
+{
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Adapts a handler to the HttpHandler interface. Each exchange is traced 
+     * as a flight recorder event and watched by the server's slow request monitor, 
+     * when either is enabled, then logged, recorded in metrics, and handled.
+     * @param  handler the handler to adapt
+     * @return         the adapted handler
+     */
+    static HttpHandler adapt(LocalHttpHandler handler)
+    {
+        return (HttpExchange exchange) -> 
+        {
+            Object event = LocalFlightRecorder.EXCHANGE.begin();
+            LocalHttpExchange x = new LocalHttpExchange(exchange);
+            LocalSlowRequestMonitor monitor = x.SERVER == null ? null : x.SERVER.getSlowRequestMonitor();
+            if (event == null && monitor == null)
+            {
+                LocalHttpHandlerPipeline.log(x, handler);
+            }
+            else
+            {
+                LocalFlightRecorder.record(x, handler, event, monitor);
+            }
+        };
+    }
+    
+    /**
+     * Runs {@link #record}, writing the exchange to the server's access log, if it has one.
+     * @param  x           the exchange to handle
+     * @param  handler     the handler to run
+     * @throws IOException if a problem occurs while handling the exchange
+     */
+    static void log(LocalHttpExchange x, LocalHttpHandler handler) throws IOException
+    {
+        LocalAccessLog accessLog = x.SERVER == null ? null : x.SERVER.getAccessLog();
+        if (accessLog == null)
+        {
+            LocalHttpHandlerPipeline.record(x, handler);
+        }
+        else
+        {
+            accessLog.record(x, handler);
+        }
+    }
+    
+    /**
+     * Runs {@link #handle}, recording the exchange in the server's metrics, if it has any.
+     * @param  x           the exchange to handle
+     * @param  handler     the handler to run
+     * @throws IOException if a problem occurs while handling the exchange
+     */
+    static void record(LocalHttpExchange x, LocalHttpHandler handler) throws IOException
+    {
+        LocalServerMetrics metrics = x.SERVER == null ? null : x.SERVER.getMetrics();
+        if (metrics == null)
+        {
+            LocalHttpHandlerPipeline.handle(x, handler);
+        }
+        else
+        {
+            metrics.record(x, handler);
+        }
+    }
+    
+    /**
+     * Runs the checks that come before a handler, then the handler.
+     * Requests are shed with a 503 response while the executor is saturated,
+     * rejected with a 413 response if their body is too large, and then 
+     * passed through the server's admission control, if it has one.
+     * @param  x           the exchange to handle
+     * @param  handler     the handler to run
+     * @throws IOException if a problem occurs while handling the exchange
+     */
+    static void handle(LocalHttpExchange x, LocalHttpHandler handler) throws IOException
+    {
+        if (LocalServerExecutor.isShedding())
+        {
+            x.sendServiceUnavailableResponse(1);
+            return;
+        }
+        if (x.isRequestBodyTooLarge())
+        {
+            x.sendRequestBodyTooLargeResponse();
+            return;
+        }
+        LocalAdmissionControl admission = x.SERVER == null ? null : x.SERVER.getAdmissionControl();
+        Object event = LocalFlightRecorder.HANDLER.begin();
+        try
+        {
+            if (admission == null)
+            {
+                handler.handle(x);
+            }
+            else
+            {
+                admission.handle(x, handler);
+            }
+        }
+        finally
+        {
+            if (event != null) { LocalFlightRecorder.HANDLER.commit(event, x.getContextPath(), x.REQUEST_METHOD); }
+        }
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalHttpParameters.java
+ * LocalHttpParameters class definition
+ */
+
+package chairosoft.local_server;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A parsed view of URL-encoded parameters, as found in a query string or an
+ * <code>application/x-www-form-urlencoded</code> body.
+ * <p>
+ * Parsing is a single scan that only records where each key and value starts 
+ * and ends. Keys and values are decoded when they are first asked for, straight 
+ * from the raw text through a reusable per-thread buffer, and then cached; keys 
+ * without escapes are compared against the raw text without being decoded at all.
+ * <p>
+ * A parameter with no '=' (a flag, such as <code>?debug</code>) has the value "".
+ */
+public class LocalHttpParameters
+{
+    //
+    // Static Fields
+    //
+    
+    public static final LocalHttpParameters EMPTY = new LocalHttpParameters("", StandardCharsets.UTF_8);
+    
+    protected static final ThreadLocal<byte[][]> DECODE_BUFFER = ThreadLocal.withInitial(() -> new byte[][] { new byte[256] });
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Decodes part of URL-encoded text: percent-escapes are decoded as bytes
+     * in the given charset, and '+' is decoded as a space. Malformed escapes 
+     * are kept as they are.
+     * @param raw     the URL-encoded text
+     * @param start   the index of the first character to decode
+     * @param end     the index after the last character to decode
+     * @param charset the charset of the escaped bytes
+     * @return        the decoded text
+     */
+    public static String decode(String raw, int start, int end, Charset charset)
+    {
+        boolean plain = true;
+        for (int i = start; i < end && plain; ++i)
+        {
+            char c = raw.charAt(i);
+            plain = c != '%' && c != '+';
+        }
+        if (plain) { return raw.substring(start, end); }
+        
+        byte[][] holder = DECODE_BUFFER.get();
+        byte[] buffer = holder[0];
+        int length = 0;
+        for (int i = start; i < end; ++i)
+        {
+            if (buffer.length - length < 4) 
+            { 
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, end - start + 4)); 
+                holder[0] = buffer;
+            }
+            char c = raw.charAt(i);
+            int high = c == '%' && i + 2 < end ? Character.digit(raw.charAt(i + 1), 16) : -1;
+            int low = high < 0 ? -1 : Character.digit(raw.charAt(i + 2), 16);
+            if (low >= 0)
+            {
+                buffer[length++] = (byte)((high << 4) | low);
+                i += 2;
+            }
+            else if (c == '+')
+            {
+                buffer[length++] = ' ';
+            }
+            else if (c < 0x80)
+            {
+                buffer[length++] = (byte)c;
+            }
+            else
+            {
+                // raw non-ASCII text, which should have been escaped
+                byte[] encoded = String.valueOf(c).getBytes(charset);
+                if (buffer.length - length < encoded.length) 
+                { 
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2 + encoded.length); 
+                    holder[0] = buffer;
+                }
+                System.arraycopy(encoded, 0, buffer, length, encoded.length);
+                length += encoded.length;
+            }
+        }
+        return new String(buffer, 0, length, charset);
+    }
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    public final String RAW;
+    public final Charset CHARSET;
+    
+    /** For each parameter: key start, key end, value start, value end (value start is -1 for flags). */
+    protected final int[] bounds;
+    protected final int count;
+    protected final String[] keys;
+    protected final String[] values;
+    protected Map<String, List<String>> map = null;
+    
+    
+    //
+    // Constructor
+    //
+    
+    /**
+     * Scans URL-encoded text for parameters.
+     * @param _raw     the URL-encoded text, such as a raw query string (may be null)
+     * @param _charset the charset that percent-escapes are decoded with
+     */
+    public LocalHttpParameters(String _raw, Charset _charset)
+    {
+        this.RAW = _raw == null ? "" : _raw;
+        this.CHARSET = _charset;
+        
+        String raw = this.RAW;
+        int length = raw.length();
+        int[] found = new int[16];
+        int n = 0;
+        int keyStart = 0;
+        int equals = -1;
+        for (int i = 0; i <= length; ++i)
+        {
+            char c = i < length ? raw.charAt(i) : '&';
+            if (c == '=' && equals < 0)
+            {
+                equals = i;
+            }
+            else if (c == '&')
+            {
+                if (i > keyStart)
+                {
+                    if (found.length < 4 * (n + 1)) { found = Arrays.copyOf(found, found.length * 2); }
+                    found[4 * n] = keyStart;
+                    found[4 * n + 1] = equals < 0 ? i : equals;
+                    found[4 * n + 2] = equals < 0 ? -1 : equals + 1;
+                    found[4 * n + 3] = i;
+                    ++n;
+                }
+                keyStart = i + 1;
+                equals = -1;
+            }
+        }
+        
+        this.bounds = found;
+        this.count = n;
+        this.keys = new String[n];
+        this.values = new String[n];
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    public int size() { return this.count; }
+    public boolean isEmpty() { return this.count == 0; }
+    
+    /**
+     * Gets the decoded key of a parameter.
+     * @param index the index of the parameter, in the order they appear
+     * @return      the parameter's key
+     */
+    public String getKey(int index)
+    {
+        if (index < 0 || index >= this.count) { throw new IndexOutOfBoundsException("Parameter index: " + index); }
+        String result = this.keys[index];
+        if (result == null)
+        {
+            result = LocalHttpParameters.decode(this.RAW, this.bounds[4 * index], this.bounds[4 * index + 1], this.CHARSET);
+            this.keys[index] = result;
+        }
+        return result;
+    }
+    
+    /**
+     * Gets the decoded value of a parameter.
+     * @param index the index of the parameter, in the order they appear
+     * @return      the parameter's value, or "" if it is a flag
+     */
+    public String getValue(int index)
+    {
+        if (index < 0 || index >= this.count) { throw new IndexOutOfBoundsException("Parameter index: " + index); }
+        String result = this.values[index];
+        if (result == null)
+        {
+            int start = this.bounds[4 * index + 2];
+            result = start < 0 ? "" : LocalHttpParameters.decode(this.RAW, start, this.bounds[4 * index + 3], this.CHARSET);
+            this.values[index] = result;
+        }
+        return result;
+    }
+    
+    /**
+     * Determines whether a parameter has the given key, decoding its key only if needed.
+     * @param index the index of the parameter
+     * @param name  the decoded key to compare with
+     * @return      true if the parameter's key is the given key
+     */
+    protected boolean keyEquals(int index, String name)
+    {
+        String decoded = this.keys[index];
+        if (decoded != null) { return decoded.equals(name); }
+        int start = this.bounds[4 * index];
+        int end = this.bounds[4 * index + 1];
+        boolean plain = true;
+        for (int i = start; i < end && plain; ++i)
+        {
+            char c = this.RAW.charAt(i);
+            plain = c != '%' && c != '+';
+        }
+        if (plain) { return end - start == name.length() && this.RAW.regionMatches(start, name, 0, end - start); }
+        return this.getKey(index).equals(name);
+    }
+    
+    /**
+     * Gets the first value of a parameter.
+     * @param name the parameter's decoded key
+     * @return     the parameter's first value, "" if it is a flag, or null if it is not present
+     */
+    public String getFirst(String name)
+    {
+        for (int i = 0; i < this.count; ++i)
+        {
+            if (this.keyEquals(i, name)) { return this.getValue(i); }
+        }
+        return null;
+    }
+    
+    /**
+     * Gets the first value of a parameter, or a default.
+     * @param name         the parameter's decoded key
+     * @param defaultValue the value to return if the parameter is not present
+     * @return             the parameter's first value, or the default value
+     */
+    public String getFirst(String name, String defaultValue)
+    {
+        String result = this.getFirst(name);
+        return result == null ? defaultValue : result;
+    }
+    
+    /**
+     * Gets every value of a parameter.
+     * @param name the parameter's decoded key
+     * @return     the parameter's values in the order they appear, which is empty if it is not present
+     */
+    public List<String> getAll(String name)
+    {
+        List<String> result = null;
+        for (int i = 0; i < this.count; ++i)
+        {
+            if (!this.keyEquals(i, name)) { continue; }
+            if (result == null) { result = new ArrayList<>(2); }
+            result.add(this.getValue(i));
+        }
+        return result == null ? Collections.<String>emptyList() : result;
+    }
+    
+    public boolean contains(String name) { return this.getFirst(name) != null; }
+    
+    /**
+     * Gets all parameters as a map from key to values. The map is built once,
+     * keeps the order keys first appear in, and cannot be modified.
+     * @return a map of the parameter keys and value lists
+     */
+    public Map<String, List<String>> toMap()
+    {
+        Map<String, List<String>> result = this.map;
+        if (result == null)
+        {
+            Map<String, List<String>> lists = new LinkedHashMap<>();
+            for (int i = 0; i < this.count; ++i)
+            {
+                String key = this.getKey(i);
+                List<String> valueList = lists.get(key);
+                if (valueList == null) 
+                {
+                    valueList = new ArrayList<>(2);
+                    lists.put(key, valueList);
+                }
+                valueList.add(this.getValue(i));
+            }
+            for (Map.Entry<String, List<String>> entry : lists.entrySet())
+            {
+                entry.setValue(Collections.unmodifiableList(entry.getValue()));
+            }
+            result = Collections.unmodifiableMap(lists);
+            this.map = result;
+        }
+        return result;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return this.toMap().toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,605 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalHttpProxyHandler.java
+ * LocalHttpProxyHandler class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.net.HttpURLConnection;
+import java.net.ProtocolException;
+import java.net.URI;
+import java.net.URL;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.sun.net.httpserver.HttpsExchange;
+
+/**
+ * Forwards requests on its context to a pool of upstream servers, such as
+ * other LocalServer processes on the same host, so that clients only need
+ * to know one port.
+ * <p>
+ * Request and response bodies are streamed through without being buffered.
+ * Upstream connections are made with HttpURLConnection, whose keep-alive
+ * cache keeps up to <code>http.maxConnections</code> (default 5) idle
+ * connections to each upstream, so raise that system property for a busy proxy.
+ * <p>
+ * Each upstream is checked with a GET of a health path, such as
+ * <code>/existence</code>, every so often; one that fails a check, or
+ * refuses a connection, gets no requests until it passes a check again.
+ * A request whose upstream refuses the connection is tried on another one,
+ * since nothing has been sent yet.
+ */
+public class LocalHttpProxyHandler implements LocalHttpHandler, Closeable
+{
+    //
+    // Static Fields
+    //
+    
+    public static final String DEFAULT_HEALTH_PATH = "/existence";
+    public static final long DEFAULT_HEALTH_INTERVAL_MILLIS = 5000;
+    public static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    public static final int READ_TIMEOUT_MILLIS = 30000;
+    public static final int HEALTH_TIMEOUT_MILLIS = 1000;
+    public static final int CHUNK_SIZE = 16 * 1024;
+    
+    /** 
+     * Headers that only apply to one connection, and are not forwarded in either direction.
+     * Any header named in a message's Connection header is not forwarded either.
+     */
+    public static final Set<String> HOP_BY_HOP_HEADERS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+        "connection", "keep-alive", "proxy-authenticate", "proxy-authorization", "proxy-connection",
+        "te", "trailer", "transfer-encoding", "upgrade", "host", "content-length"
+    )));
+    
+    /** Sends each request to the healthy upstream with the fewest requests in flight. */
+    public static final Balancer LEAST_OUTSTANDING = (LocalHttpProxyHandler proxy, LocalHttpExchange x, Set<Upstream> excluded) ->
+    {
+        List<Upstream> upstreams = proxy.UPSTREAMS;
+        int start = proxy.nextStart.getAndIncrement() & Integer.MAX_VALUE;
+        Upstream best = null;
+        for (int i = 0; i < upstreams.size(); ++i)
+        {
+            // start at a different upstream each time, so that ties are spread out
+            Upstream u = upstreams.get((start + i) % upstreams.size());
+            if (!u.isHealthy() || excluded.contains(u)) { continue; }
+            if (best == null || u.getOutstanding() < best.getOutstanding()) { best = u; }
+        }
+        return best;
+    };
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    public final List<Upstream> UPSTREAMS;
+    public final String HEALTH_PATH;
+    
+    protected final Balancer balancer;
+    protected final AtomicInteger nextStart = new AtomicInteger();
+    protected final LongAdder unavailableCount = new LongAdder();
+    protected final ScheduledFuture<?> healthCheck;
+    
+    
+    //
+    // Constructors
+    //
+    
+    public LocalHttpProxyHandler(List<String> upstreamUrls)
+    {
+        this(upstreamUrls, LEAST_OUTSTANDING, DEFAULT_HEALTH_PATH, DEFAULT_HEALTH_INTERVAL_MILLIS);
+    }
+    
+    /**
+     * Creates a proxy handler.
+     * @param upstreamUrls         the upstream servers, such as <code>http://127.0.0.1:8001</code>
+     * @param _balancer            picks the upstream for each request
+     * @param _healthPath          the path to check each upstream with, or null to not check them
+     * @param healthIntervalMillis how often to check each upstream
+     * @throws IllegalArgumentException if there are no upstreams, or one is not an http or https URL
+     */
+    public LocalHttpProxyHandler(List<String> upstreamUrls, Balancer _balancer, String _healthPath, long healthIntervalMillis)
+    {
+        if (upstreamUrls.isEmpty()) { throw new IllegalArgumentException("A proxy needs at least one upstream."); }
+        if (_healthPath != null && healthIntervalMillis <= 0) { throw new IllegalArgumentException("Health check interval must be positive."); }
+        List<Upstream> upstreams = new ArrayList<>();
+        for (String url : upstreamUrls) { upstreams.add(new Upstream(url)); }
+        this.UPSTREAMS = Collections.unmodifiableList(upstreams);
+        this.HEALTH_PATH = _healthPath;
+        this.balancer = _balancer;
+        this.healthCheck = _healthPath == null ? null : LocalServerExecutor.SCHEDULER.scheduleWithFixedDelay(
+            this::checkUpstreams,
+            0,
+            healthIntervalMillis,
+            TimeUnit.MILLISECONDS
+        );
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    /**
+     * Gets the number of requests that found no healthy upstream.
+     * @return the number of 503 responses sent for lack of an upstream
+     */
+    public long getUnavailableCount() { return this.unavailableCount.sum(); }
+    
+    @Override
+    public void handle(LocalHttpExchange x)
+        throws IOException
+    {
+        Set<Upstream> excluded = Collections.emptySet();
+        while (true)
+        {
+            Upstream upstream = this.balancer.choose(this, x, excluded);
+            if (upstream == null)
+            {
+                this.unavailableCount.increment();
+                x.sendServiceUnavailableResponse(1);
+                return;
+            }
+            
+            HttpURLConnection connection;
+            upstream.outstanding.incrementAndGet();
+            try
+            {
+                connection = this.openConnection(upstream, x);
+                if (connection == null)
+                {
+                    x.sendStringResponse(501, "text/plain", "Method not supported by the proxy");
+                    return;
+                }
+                try
+                {
+                    connection.connect();
+                }
+                catch (IOException ex)
+                {
+                    // nothing was sent, so try another upstream
+                    upstream.markDown();
+                    if (excluded.isEmpty()) { excluded = new HashSet<>(); }
+                    excluded.add(upstream);
+                    continue;
+                }
+                upstream.requestCount.increment();
+                this.forward(upstream, connection, x);
+                return;
+            }
+            finally
+            {
+                upstream.outstanding.decrementAndGet();
+            }
+        }
+    }
+    
+    /**
+     * Stops checking the upstreams.
+     */
+    @Override
+    public void close()
+    {
+        if (this.healthCheck != null) { this.healthCheck.cancel(false); }
+    }
+    
+    /**
+     * Opens a connection for an exchange's request, and sets its request headers.
+     * @param upstream the upstream to send the request to
+     * @param x        the exchange
+     * @return         the connection, not yet connected, or null if the method cannot be forwarded
+     * @throws IOException if the connection cannot be opened
+     */
+    protected HttpURLConnection openConnection(Upstream upstream, LocalHttpExchange x)
+        throws IOException
+    {
+        URI uri = x.REQUEST_URI;
+        String target = uri.getRawPath() + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery());
+        HttpURLConnection connection = (HttpURLConnection)new URL(upstream.BASE_URL + target).openConnection();
+        try
+        {
+            connection.setRequestMethod(x.REQUEST_METHOD);
+        }
+        catch (ProtocolException ex)
+        {
+            return null;
+        }
+        connection.setInstanceFollowRedirects(false);
+        connection.setUseCaches(false);
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        
+        Set<String> connectionHeaders = getConnectionHeaderNames(x.REQUEST_HEADERS.get("Connection"));
+        for (Map.Entry<String, List<String>> entry : x.REQUEST_HEADERS.entrySet())
+        {
+            if (isHopByHop(entry.getKey(), connectionHeaders)) { continue; }
+            for (String value : entry.getValue()) { connection.addRequestProperty(entry.getKey(), value); }
+        }
+        String client = x.exchange.getRemoteAddress().getAddress().getHostAddress();
+        String forwardedFor = x.REQUEST_HEADERS.getFirst("X-Forwarded-For");
+        connection.setRequestProperty("X-Forwarded-For", forwardedFor == null ? client : forwardedFor + ", " + client);
+        String host = x.REQUEST_HEADERS.getFirst("Host");
+        if (host != null) { connection.setRequestProperty("X-Forwarded-Host", host); }
+        connection.setRequestProperty("X-Forwarded-Proto", x.exchange instanceof HttpsExchange ? "https" : "http");
+        
+        if (x.REQUEST_CONTENT_LENGTH > 0)
+        {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(x.REQUEST_CONTENT_LENGTH);
+        }
+        else if (x.REQUEST_CONTENT_LENGTH < 0 && x.REQUEST_HEADERS.containsKey("Transfer-Encoding"))
+        {
+            connection.setDoOutput(true);
+            connection.setChunkedStreamingMode(CHUNK_SIZE);
+        }
+        return connection;
+    }
+    
+    /**
+     * Streams an exchange's request body to a connected upstream, and its response back.
+     * @param upstream   the upstream
+     * @param connection the connection to the upstream
+     * @param x          the exchange
+     * @throws IOException if the response cannot be sent to the client
+     */
+    protected void forward(Upstream upstream, HttpURLConnection connection, LocalHttpExchange x)
+        throws IOException
+    {
+        int status;
+        InputStream upstreamBody;
+        try
+        {
+            if (connection.getDoOutput())
+            {
+                try (OutputStream out = connection.getOutputStream())
+                {
+                    LocalServer.copyIO(x.getRequestBodyStream(), out);
+                }
+            }
+            status = connection.getResponseCode();
+            upstreamBody = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        }
+        catch (IOException ex)
+        {
+            upstream.failureCount.increment();
+            connection.disconnect();
+            if (!x.isResponseStarted()) { x.sendStringResponse(502, "text/plain", "Bad Gateway"); }
+            return;
+        }
+        
+        // headers, in the order the upstream sent them
+        List<String> connectionValues = new ArrayList<>();
+        for (int i = 1; connection.getHeaderField(i) != null; ++i)
+        {
+            if ("Connection".equalsIgnoreCase(connection.getHeaderFieldKey(i))) { connectionValues.add(connection.getHeaderField(i)); }
+        }
+        Set<String> connectionHeaders = getConnectionHeaderNames(connectionValues);
+        for (int i = 1; connection.getHeaderField(i) != null; ++i)
+        {
+            String name = connection.getHeaderFieldKey(i);
+            if (name == null || isHopByHop(name, connectionHeaders)) { continue; }
+            x.RESPONSE_HEADERS.add(name, connection.getHeaderField(i));
+        }
+        
+        long length = connection.getContentLengthLong();
+        boolean noBody = x.REQUEST_METHOD.equals("HEAD") || status == 204 || status == 304 || (status >= 100 && status < 200);
+        if (noBody && length >= 0 && x.REQUEST_METHOD.equals("HEAD"))
+        {
+            x.RESPONSE_HEADERS.set("Content-Length", Long.toString(length));
+        }
+        long responseLength = noBody || length == 0 ? -1 : length > 0 ? length : 0;
+        x.exchange.sendResponseHeaders(status, responseLength);
+        if (upstreamBody == null)
+        {
+            x.close();
+            return;
+        }
+        try (InputStream in = upstreamBody)
+        {
+            if (!noBody) { LocalServer.copyIO(in, x.exchange.getResponseBody()); }
+        }
+        catch (IOException ex)
+        {
+            // the response has started, so all that can be done is to cut it off
+            upstream.failureCount.increment();
+            connection.disconnect();
+            throw ex;
+        }
+        finally
+        {
+            x.close();
+        }
+    }
+    
+    /**
+     * Starts a health check of each upstream that is not already being checked.
+     * The checks block, so they run on {@link LocalServerExecutor#TIMER_WORKERS}
+     * rather than the shared scheduler's thread or the common pool.
+     */
+    protected void checkUpstreams()
+    {
+        for (Upstream upstream : this.UPSTREAMS)
+        {
+            if (upstream.checking.compareAndSet(false, true))
+            {
+                CompletableFuture.runAsync(() ->
+                {
+                    try
+                    {
+                        upstream.check(this.HEALTH_PATH);
+                    }
+                    finally
+                    {
+                        upstream.checking.set(false);
+                    }
+                }, LocalServerExecutor.TIMER_WORKERS);
+            }
+        }
+    }
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Creates a balancer that sends every request with the same key to the same
+     * upstream, while it is healthy. Each upstream has many points on a hash ring,
+     * so when one goes down, only its own keys move, and they spread over the rest.
+     * The ring is built for the first proxy the balancer is used by, so each
+     * proxy needs a balancer of its own.
+     * @param key gets the key of a request, such as a client address or session ID
+     * @return    the balancer
+     */
+    public static Balancer consistentHash(Function<LocalHttpExchange, String> key)
+    {
+        return new ConsistentHash(key);
+    }
+    
+    /**
+     * Creates a balancer that sends every request from the same client address
+     * to the same upstream, while it is healthy.
+     * @return the balancer
+     */
+    public static Balancer clientAddressHash()
+    {
+        return LocalHttpProxyHandler.consistentHash((LocalHttpExchange x) -> x.exchange.getRemoteAddress().getAddress().getHostAddress());
+    }
+    
+    /**
+     * Hashes a string to 64 bits, with FNV-1a and a final mix so that similar strings spread out.
+     * @param s the string
+     * @return  the hash
+     */
+    protected static long hash(String s)
+    {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8))
+        {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+    
+    /**
+     * Gets the header names listed in a message's Connection header, such as
+     * <code>Keep-Alive</code> in <code>Connection: Keep-Alive, close</code>.
+     * @param values the values of the Connection header, or null if it has none
+     * @return       the names, in lower case
+     */
+    protected static Set<String> getConnectionHeaderNames(List<String> values)
+    {
+        if (values == null || values.isEmpty()) { return Collections.emptySet(); }
+        Set<String> names = new HashSet<>();
+        for (String value : values)
+        {
+            for (String token : value.split(","))
+            {
+                String name = token.trim();
+                if (!name.isEmpty()) { names.add(name.toLowerCase()); }
+            }
+        }
+        return names;
+    }
+    
+    /**
+     * Tells whether a header only applies to one connection, so it must not be forwarded.
+     * @param name              the header name
+     * @param connectionHeaders the names listed in the message's Connection header, in lower case
+     * @return                  true if the header is hop-by-hop
+     */
+    protected static boolean isHopByHop(String name, Set<String> connectionHeaders)
+    {
+        String lower = name.toLowerCase();
+        return HOP_BY_HOP_HEADERS.contains(lower) || connectionHeaders.contains(lower);
+    }
+    
+    
+    //
+    // Nested Types
+    //
+    
+    /**
+     * Picks the upstream for a request.
+     */
+    @FunctionalInterface
+    public interface Balancer
+    {
+        /**
+         * Picks the upstream for a request.
+         * @param proxy    the proxy, whose upstreams to choose from
+         * @param x        the exchange
+         * @param excluded upstreams already tried for this request
+         * @return         a healthy upstream that is not excluded, or null if there is none
+         */
+        Upstream choose(LocalHttpProxyHandler proxy, LocalHttpExchange x, Set<Upstream> excluded);
+    }
+    
+    /**
+     * One upstream server, with its health and load.
+     */
+    public static class Upstream
+    {
+        public final String BASE_URL;
+        
+        protected final AtomicInteger outstanding = new AtomicInteger();
+        protected final LongAdder requestCount = new LongAdder();
+        protected final LongAdder failureCount = new LongAdder();
+        protected final AtomicBoolean checking = new AtomicBoolean(false);
+        protected volatile boolean healthy = true;
+        
+        public Upstream(String baseUrl)
+        {
+            URI uri = URI.create(baseUrl);
+            if (!("http".equals(uri.getScheme()) || "https".equals(uri.getScheme())) || uri.getHost() == null)
+            {
+                String message = String.format("Upstream (%s) must be an http or https URL.", baseUrl);
+                throw new IllegalArgumentException(message);
+            }
+            this.BASE_URL = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        }
+        
+        public boolean isHealthy() { return this.healthy; }
+        public int getOutstanding() { return this.outstanding.get(); }
+        public long getRequestCount() { return this.requestCount.sum(); }
+        public long getFailureCount() { return this.failureCount.sum(); }
+        
+        protected void markDown()
+        {
+            this.healthy = false;
+            this.failureCount.increment();
+        }
+        
+        /**
+         * Checks this upstream with a GET of a health path, reading the whole
+         * response so that the connection is kept alive for the next check.
+         * @param healthPath the path to request
+         */
+        protected void check(String healthPath)
+        {
+            try
+            {
+                HttpURLConnection connection = (HttpURLConnection)new URL(this.BASE_URL + healthPath).openConnection();
+                connection.setConnectTimeout(HEALTH_TIMEOUT_MILLIS);
+                connection.setReadTimeout(HEALTH_TIMEOUT_MILLIS);
+                connection.setUseCaches(false);
+                int status = connection.getResponseCode();
+                try (InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream())
+                {
+                    if (in != null) { LocalServer.copyIO(in, LocalServerWarmup.NULL_STREAM); }
+                }
+                this.healthy = status >= 200 && status < 300;
+            }
+            catch (IOException | RuntimeException ex)
+            {
+                this.healthy = false;
+            }
+        }
+        
+        @Override
+        public String toString()
+        {
+            return String.format("%s (%s, %s outstanding)", this.BASE_URL, this.healthy ? "up" : "down", this.getOutstanding());
+        }
+    }
+    
+    /**
+     * A hash ring over a proxy's upstreams, built the first time it is used.
+     */
+    protected static class ConsistentHash implements Balancer
+    {
+        public static final int POINTS_PER_UPSTREAM = 160;
+        
+        protected final Function<LocalHttpExchange, String> key;
+        protected volatile Ring ring = null;
+        
+        protected ConsistentHash(Function<LocalHttpExchange, String> _key)
+        {
+            this.key = _key;
+        }
+        
+        @Override
+        public Upstream choose(LocalHttpProxyHandler proxy, LocalHttpExchange x, Set<Upstream> excluded)
+        {
+            Ring r = this.ring;
+            if (r == null || r.upstreams != proxy.UPSTREAMS)
+            {
+                r = new Ring(proxy.UPSTREAMS);
+                this.ring = r;
+            }
+            String k = this.key.apply(x);
+            int index = Arrays.binarySearch(r.hashes, LocalHttpProxyHandler.hash(k == null ? "" : k));
+            if (index < 0) { index = -index - 1; }
+            
+            // walk clockwise to the first point of a usable upstream
+            for (int i = 0; i < r.hashes.length; ++i)
+            {
+                Upstream u = r.owners[(index + i) % r.hashes.length];
+                if (u.isHealthy() && !excluded.contains(u)) { return u; }
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * The points of a hash ring, in order, and the upstream that owns each one.
+     */
+    protected static class Ring
+    {
+        protected final List<Upstream> upstreams;
+        protected final long[] hashes;
+        protected final Upstream[] owners;
+        
+        protected Ring(List<Upstream> _upstreams)
+        {
+            this.upstreams = _upstreams;
+            int count = _upstreams.size() * ConsistentHash.POINTS_PER_UPSTREAM;
+            long[][] points = new long[count][];
+            int n = 0;
+            for (int u = 0; u < _upstreams.size(); ++u)
+            {
+                for (int p = 0; p < ConsistentHash.POINTS_PER_UPSTREAM; ++p)
+                {
+                    points[n++] = new long[] { LocalHttpProxyHandler.hash(_upstreams.get(u).BASE_URL + "#" + p), u };
+                }
+            }
+            Arrays.sort(points, (long[] a, long[] b) -> Long.compare(a[0], b[0]));
+            this.hashes = new long[count];
+            this.owners = new Upstream[count];
+            for (int i = 0; i < count; ++i)
+            {
+                this.hashes[i] = points[i][0];
+                this.owners[i] = _upstreams.get((int)points[i][1]);
+            }
+        }
+    }
+}
\ No newline at end of file
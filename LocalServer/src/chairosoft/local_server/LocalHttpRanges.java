@@ -0,0 +1,293 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalHttpRanges.java
+ * LocalHttpRanges class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parses Range headers and sends whole, single-range, multi-range
+ * (multipart/byteranges) and unsatisfiable-range (416) responses.
+ * Parsing scans the header in place and fills a caller-supplied array,
+ * and each range is written straight from its source.
+ */
+public class LocalHttpRanges
+{
+    //
+    // Static Fields
+    //
+    
+    /** The largest number of ranges served; requests for more are served whole. */
+    public static final int MAX_RANGES = 16;
+    
+    /** Returned by {@link #parse} when the representation should be sent whole. */
+    public static final int NONE = -1;
+    
+    /** Returned by {@link #parse} when none of the requested ranges can be satisfied. */
+    public static final int UNSATISFIABLE = 0;
+    
+    protected static final ThreadLocal<long[]> BOUNDS = ThreadLocal.withInitial(() -> new long[2 * MAX_RANGES]);
+    protected static final AtomicLong BOUNDARY_COUNTER = new AtomicLong(System.nanoTime());
+    protected static final String CRLF = "\r\n";
+    
+    
+    //
+    // Nested Types
+    //
+    
+    /**
+     * Writes part of a representation to an output stream.
+     */
+    @FunctionalInterface
+    public interface Source
+    {
+        void write(OutputStream out, long position, long count) throws IOException;
+    }
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Parses a Range header against a representation of the given length.
+     * Suffix ranges ("bytes=-500") and open ranges ("bytes=500-") are supported.
+     * Ranges that are out of bounds are dropped, and ends past the last byte are clamped.
+     * @param header  the Range header value (may be null)
+     * @param length  the length of the representation
+     * @param bounds  receives the first and last byte positions of each
+     *                satisfiable range, in pairs; must hold at least 2 * {@link #MAX_RANGES} values
+     * @return        the number of satisfiable ranges, {@link #UNSATISFIABLE} if there are none,
+     *                or {@link #NONE} if the header is missing, malformed, not in bytes,
+     *                or asks for more than {@link #MAX_RANGES} ranges
+     */
+    public static int parse(String header, long length, long[] bounds)
+    {
+        if (header == null) { return NONE; }
+        int end = header.length();
+        int i = LocalHttpRanges.skipWhitespace(header, 0, end);
+        if (!header.regionMatches(true, i, "bytes", 0, 5)) { return NONE; }
+        i = LocalHttpRanges.skipWhitespace(header, i + 5, end);
+        if (i >= end || header.charAt(i) != '=') { return NONE; }
+        ++i;
+        
+        int count = 0;
+        int specs = 0;
+        while (i < end)
+        {
+            i = LocalHttpRanges.skipWhitespace(header, i, end);
+            if (i < end && header.charAt(i) == ',') { ++i; continue; }
+            if (i >= end) { break; }
+            
+            // first-byte-pos, if any
+            long first = -1;
+            if (header.charAt(i) != '-')
+            {
+                first = 0;
+                int start = i;
+                for (char c; i < end && (c = header.charAt(i)) >= '0' && c <= '9'; ++i)
+                {
+                    if (first > (Long.MAX_VALUE - 9) / 10) { return NONE; }
+                    first = first * 10 + (c - '0');
+                }
+                if (i == start) { return NONE; }
+                i = LocalHttpRanges.skipWhitespace(header, i, end);
+            }
+            if (i >= end || header.charAt(i) != '-') { return NONE; }
+            i = LocalHttpRanges.skipWhitespace(header, i + 1, end);
+            
+            // last-byte-pos or suffix-length, if any
+            long last = -1;
+            if (i < end && header.charAt(i) >= '0' && header.charAt(i) <= '9')
+            {
+                last = 0;
+                for (char c; i < end && (c = header.charAt(i)) >= '0' && c <= '9'; ++i)
+                {
+                    if (last > (Long.MAX_VALUE - 9) / 10) { return NONE; }
+                    last = last * 10 + (c - '0');
+                }
+                i = LocalHttpRanges.skipWhitespace(header, i, end);
+            }
+            if (i < end && header.charAt(i) != ',') { return NONE; }
+            
+            if (++specs > MAX_RANGES) { return NONE; }
+            if (first < 0 && last < 0) { return NONE; }
+            if (first >= 0 && last >= 0 && last < first) { return NONE; }
+            
+            long rangeStart;
+            long rangeEnd;
+            if (first < 0)
+            {
+                if (last == 0 || length == 0) { continue; }
+                rangeStart = Math.max(0, length - last);
+                rangeEnd = length - 1;
+            }
+            else
+            {
+                if (first >= length) { continue; }
+                rangeStart = first;
+                rangeEnd = last < 0 || last >= length ? length - 1 : last;
+            }
+            bounds[2 * count] = rangeStart;
+            bounds[2 * count + 1] = rangeEnd;
+            ++count;
+        }
+        
+        return specs == 0 ? NONE : count;
+    }
+    
+    protected static int skipWhitespace(String s, int i, int end)
+    {
+        while (i < end && (s.charAt(i) == ' ' || s.charAt(i) == '\t')) { ++i; }
+        return i;
+    }
+    
+    /**
+     * Determines whether an If-Range precondition allows a range response.
+     * @param x  the exchange whose request and response headers to check
+     * @return   true if there is no If-Range header, or if it matches
+     *           the response's ETag or Last-Modified header
+     */
+    public static boolean isIfRangeSatisfied(LocalHttpExchange x)
+    {
+        String ifRange = x.REQUEST_HEADERS.getFirst("If-Range");
+        if (ifRange == null) { return true; }
+        ifRange = ifRange.trim();
+        String validator = ifRange.startsWith("\"") || ifRange.startsWith("W/")
+            ? x.RESPONSE_HEADERS.getFirst("ETag")
+            : x.RESPONSE_HEADERS.getFirst("Last-Modified");
+        return !ifRange.startsWith("W/") && ifRange.equals(validator);
+    }
+    
+    /**
+     * Sends a representation, honoring the request's Range header if the status is 200.
+     * Sets the Content-Type header if it is not already set, and sends
+     * only headers (with Content-Length) in response to a HEAD request.
+     * @param  x           the exchange to send the response on
+     * @param  statusCode  the HTTP status code for a whole response
+     * @param  contentType the content type of the representation
+     * @param  length      the length of the representation
+     * @param  source      writes the requested parts of the representation
+     * @throws IOException if a problem occurs while writing the response
+     */
+    public static void send(LocalHttpExchange x, int statusCode, String contentType, long length, Source source)
+        throws IOException
+    {
+        if (!x.RESPONSE_HEADERS.containsKey("Content-Type"))
+        {
+            x.RESPONSE_HEADERS.set("Content-Type", contentType);
+        }
+        contentType = x.RESPONSE_HEADERS.getFirst("Content-Type");
+        
+        long[] bounds = BOUNDS.get();
+        int count = NONE;
+        if (statusCode == 200
+            && !x.RESPONSE_HEADERS.containsKey("Content-Range")
+            && LocalHttpRanges.isIfRangeSatisfied(x))
+        {
+            count = LocalHttpRanges.parse(x.REQUEST_HEADERS.getFirst("Range"), length, bounds);
+        }
+        
+        if (count == UNSATISFIABLE)
+        {
+            x.RESPONSE_HEADERS.set("Content-Range", "bytes */" + length);
+            x.sendHeadersOnly(416);
+            return;
+        }
+        
+        if (count == NONE || count == 1)
+        {
+            long position = 0;
+            long rangeLength = length;
+            if (count == 1)
+            {
+                statusCode = 206;
+                position = bounds[0];
+                rangeLength = bounds[1] + 1 - bounds[0];
+                x.RESPONSE_HEADERS.set("Content-Range", "bytes " + bounds[0] + "-" + bounds[1] + "/" + length);
+            }
+            if (x.REQUEST_METHOD.equals("HEAD"))
+            {
+                x.RESPONSE_HEADERS.set("Content-Length", Long.toString(rangeLength));
+                x.sendHeadersOnly(statusCode);
+                return;
+            }
+            x.exchange.sendResponseHeaders(statusCode, rangeLength == 0 ? -1 : rangeLength);
+            try (OutputStream out = x.exchange.getResponseBody())
+            {
+                if (rangeLength > 0) { source.write(out, position, rangeLength); }
+            }
+            return;
+        }
+        
+        // multiple ranges go out as multipart/byteranges
+        String boundary = "LocalServer_" + Long.toHexString(BOUNDARY_COUNTER.incrementAndGet());
+        String partType = "Content-Type: " + contentType + CRLF;
+        long responseLength = 0;
+        for (int i = 0; i < count; ++i)
+        {
+            long first = bounds[2 * i];
+            long last = bounds[2 * i + 1];
+            responseLength += LocalHttpRanges.getPartHeader(boundary, partType, first, last, length).length();
+            responseLength += last + 1 - first;
+        }
+        String closingDelimiter = CRLF + "--" + boundary + "--" + CRLF;
+        responseLength += closingDelimiter.length();
+        
+        x.RESPONSE_HEADERS.set("Content-Type", "multipart/byteranges; boundary=" + boundary);
+        if (x.REQUEST_METHOD.equals("HEAD"))
+        {
+            x.RESPONSE_HEADERS.set("Content-Length", Long.toString(responseLength));
+            x.sendHeadersOnly(206);
+            return;
+        }
+        x.exchange.sendResponseHeaders(206, responseLength);
+        try (OutputStream out = x.exchange.getResponseBody())
+        {
+            for (int i = 0; i < count; ++i)
+            {
+                long first = bounds[2 * i];
+                long last = bounds[2 * i + 1];
+                out.write(LocalHttpRanges.getPartHeader(boundary, partType, first, last, length).getBytes(StandardCharsets.ISO_8859_1));
+                source.write(out, first, last + 1 - first);
+            }
+            out.write(closingDelimiter.getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+    
+    protected static String getPartHeader(String boundary, String partType, long first, long last, long length)
+    {
+        return CRLF + "--" + boundary + CRLF
+            + partType
+            + "Content-Range: bytes " + first + "-" + last + "/" + length + CRLF
+            + CRLF;
+    }
+    
+    /**
+     * Sends a byte array, honoring the request's Range header if the status is 200.
+     * @param  x           the exchange to send the response on
+     * @param  statusCode  the HTTP status code for a whole response
+     * @param  contentType the content type of the response
+     * @param  response    the byte array to send
+     * @throws IOException if a problem occurs while writing the response
+     * @see    #send(LocalHttpExchange, int, String, long, Source)
+     */
+    public static void send(LocalHttpExchange x, int statusCode, String contentType, byte[] response)
+        throws IOException
+    {
+        LocalHttpRanges.send(x, statusCode, contentType, response.length,
+            (OutputStream out, long position, long count) -> out.write(response, (int)position, (int)count)
+        );
+    }
+}
\ No newline at end of file
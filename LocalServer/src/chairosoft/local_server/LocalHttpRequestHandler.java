@@ -22,4 +22,25 @@ public interface LocalHttpRequestHandler
     void handleTrace(LocalHttpExchange x) throws IOException;
     void handleConnect(LocalHttpExchange x) throws IOException;
     void handleOtherRequest(LocalHttpExchange x) throws IOException; 
+    
+    /**
+     * Dispatches an exchange to the handler method for its request method.
+     * @param  x           the exchange to handle
+     * @throws IOException if the handler method throws one
+     */
+    default void handleRequest(LocalHttpExchange x) throws IOException
+    {
+        switch (x.REQUEST_METHOD)
+        {
+            case "OPTIONS": this.handleOptions(x); break;
+            case "GET": this.handleGet(x); break;
+            case "HEAD": this.handleHead(x); break;
+            case "POST": this.handlePost(x); break;
+            case "PUT": this.handlePut(x); break;
+            case "DELETE": this.handleDelete(x); break;
+            case "TRACE": this.handleTrace(x); break;
+            case "CONNECT": this.handleConnect(x); break;
+            default: this.handleOtherRequest(x); break;
+        }
+    }
 }
\ No newline at end of file
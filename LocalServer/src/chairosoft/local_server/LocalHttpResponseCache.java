@@ -0,0 +1,646 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalHttpResponseCache.java
+ * LocalHttpResponseCache class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+/**
+ * A handler that caches the responses of another handler in memory.
+ * <p>
+ * GET responses are stored with their status, headers and body, keyed on 
+ * the request URI and the values of the chosen Vary headers (and, when the 
+ * server compresses responses, the negotiated encoding). HEAD requests are 
+ * answered from the GET entry. Range requests, responses that are too large, 
+ * and responses marked <code>no-store</code>, <code>private</code> or with 
+ * <code>Set-Cookie</code> are passed through without being stored. So are
+ * responses to requests with <code>Authorization</code> or <code>Cookie</code>,
+ * unless the response is marked <code>public</code> or <code>s-maxage</code>, or
+ * that header is one of the chosen Vary headers, since otherwise one user's
+ * response would be served to everyone (RFC 7234 section 3.2). Such requests
+ * are only answered from entries marked that way, and are not collapsed.
+ * <p>
+ * Lookups are a single concurrent map read. Concurrent misses for the same 
+ * key are collapsed, so the wrapped handler computes each response once and 
+ * the other requests wait for it. Entries expire after a time to live, and 
+ * when the cache is over its size the least recently used entries are evicted.
+ * Hits are written straight from the stored bytes, with an ETag, and 
+ * <code>If-None-Match</code> is answered with 304.
+ * <pre>
+ * server.createContext("/report", new LocalHttpResponseCache(reportHandler, 5000, 16 * 1024 * 1024));
+ * </pre>
+ */
+public class LocalHttpResponseCache implements LocalHttpHandler
+{
+    //
+    // Static Fields
+    //
+    
+    public static final long DEFAULT_MAX_ENTRY_SIZE = 1024L * 1024;
+    public static final long COLLAPSED_WAIT_MILLIS = 30000;
+    public static final int ENTRY_OVERHEAD = 256;
+    public static final int[] CACHEABLE_STATUS_CODES = { 200, 203, 300, 301, 404, 410 };
+    
+    /** Request headers that identify a user, whose responses are not shared unless allowed. */
+    public static final String[] CREDENTIAL_HEADERS = { "Authorization", "Cookie" };
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    public final LocalHttpHandler HANDLER;
+    public final long TTL_NANOS;
+    public final long MAX_SIZE;
+    protected final String[] varyHeaders;
+    protected long maxEntrySize = DEFAULT_MAX_ENTRY_SIZE;
+    
+    protected final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    protected final ConcurrentHashMap<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+    protected final AtomicLong size = new AtomicLong();
+    protected final ReentrantLock evictionLock = new ReentrantLock();
+    
+    protected final LongAdder hitCount = new LongAdder();
+    protected final LongAdder missCount = new LongAdder();
+    protected final LongAdder collapsedCount = new LongAdder();
+    protected final LongAdder evictionCount = new LongAdder();
+    
+    
+    //
+    // Constructor
+    //
+    
+    /**
+     * Creates a cache around a handler.
+     * @param _handler     the handler whose responses to cache
+     * @param ttlMillis    how long a response stays cached, in milliseconds
+     * @param _maxSize     the maximum total size of cached responses, in bytes
+     * @param _varyHeaders the request headers that responses vary on
+     */
+    public LocalHttpResponseCache(LocalHttpHandler _handler, long ttlMillis, long _maxSize, String... _varyHeaders)
+    {
+        if (ttlMillis <= 0 || _maxSize <= 0)
+        {
+            String message = String.format("Values for ttlMillis (%s) and maxSize (%s) must be positive.", ttlMillis, _maxSize);
+            throw new IllegalArgumentException(message);
+        }
+        this.HANDLER = _handler;
+        this.TTL_NANOS = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.MAX_SIZE = _maxSize;
+        this.varyHeaders = _varyHeaders.clone();
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    /**
+     * Sets the largest response that is cached. Larger responses are streamed through.
+     * @param _maxEntrySize the maximum body size of a cached response, in bytes
+     */
+    public void setMaxEntrySize(long _maxEntrySize) { this.maxEntrySize = _maxEntrySize; }
+    
+    public long getSize() { return this.size.get(); }
+    public int getEntryCount() { return this.entries.size(); }
+    public long getHitCount() { return this.hitCount.sum(); }
+    public long getMissCount() { return this.missCount.sum(); }
+    public long getCollapsedCount() { return this.collapsedCount.sum(); }
+    public long getEvictionCount() { return this.evictionCount.sum(); }
+    
+    public void clear()
+    {
+        for (String key : this.entries.keySet()) { this.remove(key); }
+    }
+    
+    /**
+     * Builds the cache key of a request.
+     * @param x the exchange whose request to key
+     * @return  the cache key
+     */
+    protected String getKey(LocalHttpExchange x)
+    {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append(x.REQUEST_URI.toString());
+        for (String name : this.varyHeaders)
+        {
+            String value = x.REQUEST_HEADERS.getFirst(name);
+            sb.append('\n').append(value == null ? "" : value);
+        }
+        if (x.getCompression() != null)
+        {
+            String encoding = LocalHttpCompression.negotiate(x.REQUEST_HEADERS.getFirst("Accept-Encoding"));
+            sb.append('\n').append(encoding == null ? "identity" : encoding);
+        }
+        return sb.toString();
+    }
+    
+    @Override
+    public void handle(LocalHttpExchange x)
+        throws IOException
+    {
+        boolean isHead = x.REQUEST_METHOD.equals("HEAD");
+        if ((!isHead && !x.REQUEST_METHOD.equals("GET")) || x.REQUEST_HEADERS.containsKey("Range"))
+        {
+            this.HANDLER.handle(x);
+            return;
+        }
+        
+        String key = this.getKey(x);
+        boolean credentials = this.hasUnkeyedCredentials(x);
+        Entry entry = this.entries.get(key);
+        long now = System.nanoTime();
+        boolean fresh = entry != null && now - entry.storedAt < this.TTL_NANOS;
+        if (fresh && (!credentials || entry.shared))
+        {
+            entry.lastAccess = now;
+            this.hitCount.increment();
+            this.sendEntry(x, entry, now);
+            return;
+        }
+        if (entry != null && !fresh) { this.remove(key, entry); }
+        
+        this.missCount.increment();
+        if (isHead)
+        {
+            this.HANDLER.handle(x);
+            return;
+        }
+        
+        CompletableFuture<Entry> computation = new CompletableFuture<>();
+        // a request with credentials must not be answered with another request's response
+        CompletableFuture<Entry> existing = credentials ? null : this.inFlight.putIfAbsent(key, computation);
+        if (existing != null)
+        {
+            this.collapsedCount.increment();
+            Entry computed = null;
+            try
+            {
+                computed = existing.get(COLLAPSED_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            catch (ExecutionException | TimeoutException ex)
+            {
+                computed = null;
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException(ex);
+            }
+            if (computed == null) { this.HANDLER.handle(x); }
+            else { this.sendEntry(x, computed, System.nanoTime()); }
+            return;
+        }
+        
+        try
+        {
+            CapturingExchange capture = new CapturingExchange(x.exchange, this.maxEntrySize);
+            Entry computed = null;
+            try
+            {
+                LocalHttpExchange inner = new LocalHttpExchange(capture);
+                inner.routeMatch = x.routeMatch;
+                this.HANDLER.handle(inner);
+                capture.close();
+                
+                computed = capture.isPassedThrough() ? null : this.createEntry(x, capture);
+                computation.complete(computed);
+                if (computed == null && !capture.isPassedThrough())
+                {
+                    capture.sendTo(x.exchange);
+                }
+            }
+            finally
+            {
+                capture.release();
+            }
+            if (computed != null)
+            {
+                this.put(key, computed);
+                this.sendEntry(x, computed, computed.storedAt);
+            }
+        }
+        catch (IOException | RuntimeException | Error ex)
+        {
+            computation.completeExceptionally(ex);
+            throw ex;
+        }
+        finally
+        {
+            this.inFlight.remove(key, computation);
+        }
+    }
+    
+    /**
+     * Creates a cache entry from a captured response, if it may be cached.
+     * A response may only vary on the chosen Vary headers, and on Accept-Encoding 
+     * when the server compresses responses, since only those are in the cache key.
+     * A response to a request with credentials must be marked as shared, unless
+     * the credentials are in the cache key.
+     * @param x       the exchange the response is for
+     * @param capture the captured response
+     * @return        the entry, or null if the response may not be cached
+     */
+    protected Entry createEntry(LocalHttpExchange x, CapturingExchange capture)
+    {
+        if (Arrays.binarySearch(CACHEABLE_STATUS_CODES, capture.getResponseCode()) < 0) { return null; }
+        Headers headers = capture.getResponseHeaders();
+        if (headers.containsKey("Set-Cookie")) { return null; }
+        String cacheControl = headers.getFirst("Cache-Control");
+        if (cacheControl != null)
+        {
+            String lower = cacheControl.toLowerCase();
+            if (lower.contains("no-store") || lower.contains("private") || lower.contains("no-cache")) { return null; }
+        }
+        if (!Entry.isShared(headers) && this.hasUnkeyedCredentials(x)) { return null; }
+        List<String> varyValues = headers.get("Vary");
+        if (varyValues != null)
+        {
+            boolean keyedOnEncoding = x.getCompression() != null;
+            for (String vary : varyValues)
+            {
+                for (String name : vary.split(","))
+                {
+                    name = name.trim();
+                    if (name.isEmpty()) { continue; }
+                    boolean known = keyedOnEncoding && name.equalsIgnoreCase("Accept-Encoding");
+                    for (String varyHeader : this.varyHeaders) { known |= name.equalsIgnoreCase(varyHeader); }
+                    if (!known) { return null; }
+                }
+            }
+        }
+        return new Entry(capture.getResponseCode(), headers, capture.getBody(), System.nanoTime());
+    }
+    
+    /**
+     * Determines whether a request has credentials that are not part of its cache key,
+     * so that it may only share responses that are marked as shared.
+     * @param x the exchange
+     * @return  true if the request has a credential header that is not one of the chosen Vary headers
+     */
+    protected boolean hasUnkeyedCredentials(LocalHttpExchange x)
+    {
+        for (String credential : CREDENTIAL_HEADERS)
+        {
+            if (!x.REQUEST_HEADERS.containsKey(credential)) { continue; }
+            boolean keyed = false;
+            for (String varyHeader : this.varyHeaders) { keyed |= credential.equalsIgnoreCase(varyHeader); }
+            if (!keyed) { return true; }
+        }
+        return false;
+    }
+    
+    protected void put(String key, Entry entry)
+    {
+        Entry previous = this.entries.put(key, entry);
+        this.size.addAndGet(entry.size - (previous == null ? 0 : previous.size));
+        if (this.size.get() > this.MAX_SIZE) { this.evict(); }
+    }
+    
+    protected void remove(String key, Entry entry)
+    {
+        if (this.entries.remove(key, entry)) { this.size.addAndGet(-entry.size); }
+    }
+    
+    protected void remove(String key)
+    {
+        Entry entry = this.entries.remove(key);
+        if (entry != null) { this.size.addAndGet(-entry.size); }
+    }
+    
+    /**
+     * Removes expired entries, then the least recently used entries,
+     * until the cache is at most 90% full. Only one thread evicts at a time; 
+     * other threads carry on without waiting.
+     */
+    protected void evict()
+    {
+        if (!this.evictionLock.tryLock()) { return; }
+        try
+        {
+            long now = System.nanoTime();
+            List<Map.Entry<String, Entry>> live = new ArrayList<>(this.entries.size());
+            for (Map.Entry<String, Entry> e : this.entries.entrySet())
+            {
+                if (now - e.getValue().storedAt >= this.TTL_NANOS)
+                {
+                    this.remove(e.getKey(), e.getValue());
+                    this.evictionCount.increment();
+                }
+                else
+                {
+                    live.add(e);
+                }
+            }
+            
+            long target = this.MAX_SIZE - this.MAX_SIZE / 10;
+            if (this.size.get() <= target) { return; }
+            live.sort((a, b) -> Long.compare(a.getValue().lastAccess - now, b.getValue().lastAccess - now));
+            for (int i = 0; i < live.size() && this.size.get() > target; ++i)
+            {
+                this.remove(live.get(i).getKey(), live.get(i).getValue());
+                this.evictionCount.increment();
+            }
+        }
+        finally
+        {
+            this.evictionLock.unlock();
+        }
+    }
+    
+    /**
+     * Sends a cached response, or 304 if the client's copy matches it.
+     * @param x     the exchange to respond to
+     * @param entry the cached response
+     * @param now   the current time, from {@link System#nanoTime()}
+     * @throws IOException if a problem occurs while writing the response
+     */
+    protected void sendEntry(LocalHttpExchange x, Entry entry, long now)
+        throws IOException
+    {
+        for (Map.Entry<String, List<String>> header : entry.headers.entrySet())
+        {
+            // a copy, so that later changes to the response do not reach the cache
+            x.RESPONSE_HEADERS.put(header.getKey(), new ArrayList<>(header.getValue()));
+        }
+        x.RESPONSE_HEADERS.set("ETag", entry.eTag);
+        x.RESPONSE_HEADERS.set("Age", Long.toString(TimeUnit.NANOSECONDS.toSeconds(now - entry.storedAt)));
+        
+        String ifNoneMatch = x.REQUEST_HEADERS.getFirst("If-None-Match");
+        if (ifNoneMatch != null && entry.statusCode == 200)
+        {
+            for (String candidate : ifNoneMatch.split(","))
+            {
+                candidate = candidate.trim();
+                if (candidate.startsWith("W/")) { candidate = candidate.substring(2); }
+                if (candidate.equals("*") || candidate.equals(entry.eTag))
+                {
+                    x.sendHeadersOnly(304);
+                    return;
+                }
+            }
+        }
+        
+        if (x.REQUEST_METHOD.equals("HEAD") || entry.body.length == 0)
+        {
+            if (entry.body.length > 0) { x.RESPONSE_HEADERS.set("Content-Length", Integer.toString(entry.body.length)); }
+            x.sendHeadersOnly(entry.statusCode);
+            return;
+        }
+        x.exchange.sendResponseHeaders(entry.statusCode, entry.body.length);
+        try (OutputStream out = x.exchange.getResponseBody())
+        {
+            out.write(entry.body);
+        }
+    }
+    
+    
+    //
+    // Nested Classes
+    //
+    
+    /**
+     * A cached response.
+     */
+    protected static class Entry
+    {
+        public final int statusCode;
+        public final Map<String, List<String>> headers = new LinkedHashMap<>();
+        public final byte[] body;
+        public final String eTag;
+        public final long storedAt;
+        public final long size;
+        public final boolean shared;
+        public volatile long lastAccess;
+        
+        public Entry(int _statusCode, Headers _headers, byte[] _body, long _storedAt)
+        {
+            this.statusCode = _statusCode;
+            long headerSize = 0;
+            for (Map.Entry<String, List<String>> header : _headers.entrySet())
+            {
+                String name = header.getKey();
+                if (name.equalsIgnoreCase("Content-Length") || name.equalsIgnoreCase("Transfer-Encoding") || name.equalsIgnoreCase("Date")) { continue; }
+                List<String> values = new ArrayList<>(header.getValue());
+                this.headers.put(name, values);
+                headerSize += name.length();
+                for (String value : values) { headerSize += value.length(); }
+            }
+            this.body = _body;
+            
+            String existingETag = _headers.getFirst("ETag");
+            if (existingETag == null)
+            {
+                CRC32 crc = new CRC32();
+                crc.update(_body, 0, _body.length);
+                existingETag = String.format("\"%x-%x\"", _body.length, crc.getValue());
+            }
+            this.eTag = existingETag;
+            this.storedAt = _storedAt;
+            this.lastAccess = _storedAt;
+            this.size = ENTRY_OVERHEAD + 2 * headerSize + _body.length;
+            this.shared = Entry.isShared(_headers);
+        }
+        
+        /**
+         * Determines whether a response may be shared with requests that have credentials.
+         * @param headers the response headers
+         * @return        true if the response is marked <code>public</code> or <code>s-maxage</code>
+         */
+        public static boolean isShared(Headers headers)
+        {
+            String cacheControl = headers.getFirst("Cache-Control");
+            if (cacheControl == null) { return false; }
+            String lower = cacheControl.toLowerCase();
+            return lower.contains("public") || lower.contains("s-maxage");
+        }
+    }
+    
+    /**
+     * An exchange that captures the response written to it instead of sending it,
+     * until the response turns out to be too large to cache; then what was
+     * captured is sent, and the rest is passed straight through.
+     */
+    protected static class CapturingExchange extends HttpExchange
+    {
+        protected final HttpExchange exchange;
+        protected final long maxSize;
+        protected final Headers responseHeaders = new Headers();
+        protected final CaptureStream body = new CaptureStream();
+        protected OutputStream userBody = null;
+        protected int responseCode = -1;
+        protected long responseLength = 0;
+        protected boolean passedThrough = false;
+        
+        public CapturingExchange(HttpExchange _exchange, long _maxSize)
+        {
+            this.exchange = _exchange;
+            this.maxSize = _maxSize;
+        }
+        
+        public boolean isPassedThrough() { return this.passedThrough; }
+        public byte[] getBody() { return this.body.toByteArray(); }
+        
+        @Override public Headers getRequestHeaders() { return this.exchange.getRequestHeaders(); }
+        @Override public Headers getResponseHeaders() { return this.responseHeaders; }
+        @Override public URI getRequestURI() { return this.exchange.getRequestURI(); }
+        @Override public String getRequestMethod() { return this.exchange.getRequestMethod(); }
+        @Override public HttpContext getHttpContext() { return this.exchange.getHttpContext(); }
+        @Override public InputStream getRequestBody() { return this.exchange.getRequestBody(); }
+        @Override public OutputStream getResponseBody() { return this.userBody != null ? this.userBody : this.body; }
+        @Override public int getResponseCode() { return this.responseCode; }
+        @Override public InetSocketAddress getRemoteAddress() { return this.exchange.getRemoteAddress(); }
+        @Override public InetSocketAddress getLocalAddress() { return this.exchange.getLocalAddress(); }
+        @Override public String getProtocol() { return this.exchange.getProtocol(); }
+        @Override public Object getAttribute(String name) { return this.exchange.getAttribute(name); }
+        @Override public void setAttribute(String name, Object value) { this.exchange.setAttribute(name, value); }
+        @Override public HttpPrincipal getPrincipal() { return this.exchange.getPrincipal(); }
+        
+        @Override
+        public void setStreams(InputStream i, OutputStream o)
+        {
+            if (i != null) { this.exchange.setStreams(i, null); }
+            if (o != null) { this.userBody = o; }
+        }
+        
+        @Override
+        public void sendResponseHeaders(int rCode, long responseLength)
+            throws IOException
+        {
+            if (this.responseCode >= 0) { throw new IOException("headers already sent"); }
+            this.responseCode = rCode;
+            this.responseLength = responseLength;
+            if (responseLength > this.maxSize) { this.passThrough(); }
+        }
+        
+        /**
+         * Sends the response headers and what has been captured so far,
+         * and passes the rest of the body straight through.
+         * @throws IOException if a problem occurs while writing
+         */
+        protected void passThrough()
+            throws IOException
+        {
+            this.passedThrough = true;
+            this.exchange.getResponseHeaders().putAll(this.responseHeaders);
+            this.exchange.sendResponseHeaders(this.responseCode, this.responseLength);
+            OutputStream out = this.exchange.getResponseBody();
+            this.body.writeTo(out);
+            this.body.target = out;
+            this.release();
+        }
+        
+        /**
+         * Returns the capture buffer's chunks to the buffer pool.
+         * Nothing captured can be read after this.
+         */
+        public void release()
+        {
+            this.body.buffer.close();
+        }
+        
+        /**
+         * Sends the captured response to the real exchange, without caching it.
+         * @param target the exchange to send the response to
+         * @throws IOException if a problem occurs while writing
+         */
+        public void sendTo(HttpExchange target)
+            throws IOException
+        {
+            target.getResponseHeaders().putAll(this.responseHeaders);
+            byte[] bytes = this.getBody();
+            boolean hasBody = this.responseLength >= 0 && bytes.length > 0;
+            target.sendResponseHeaders(this.responseCode < 0 ? 500 : this.responseCode, hasBody ? bytes.length : -1);
+            try (OutputStream out = target.getResponseBody())
+            {
+                if (hasBody) { out.write(bytes); }
+            }
+        }
+        
+        @Override
+        public void close()
+        {
+            try
+            {
+                this.getResponseBody().close();
+            }
+            catch (IOException ex)
+            {
+                throw new RuntimeException(ex);
+            }
+        }
+        
+        /**
+         * Captures the body, until the capture is passed through.
+         */
+        protected class CaptureStream extends OutputStream
+        {
+            protected final LocalByteSink buffer = new LocalByteSink();
+            protected OutputStream target = null;
+            
+            public byte[] toByteArray() { return this.buffer.toByteArray(); }
+            public void writeTo(OutputStream out) throws IOException { this.buffer.writeTo(out); }
+            
+            @Override
+            public void write(int b)
+                throws IOException
+            {
+                this.write(new byte[] { (byte)b }, 0, 1);
+            }
+            
+            @Override
+            public void write(byte[] b, int off, int len)
+                throws IOException
+            {
+                if (this.target == null && this.buffer.size() + len > CapturingExchange.this.maxSize) { CapturingExchange.this.passThrough(); }
+                if (this.target != null) { this.target.write(b, off, len); }
+                else { this.buffer.write(b, off, len); }
+            }
+            
+            @Override
+            public void flush()
+                throws IOException
+            {
+                if (this.target != null) { this.target.flush(); }
+            }
+            
+            @Override
+            public void close()
+                throws IOException
+            {
+                if (this.target != null) { this.target.close(); }
+            }
+        }
+    }
+}
\ No newline at end of file
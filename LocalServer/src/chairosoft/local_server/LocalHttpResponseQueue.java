@@ -0,0 +1,241 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalHttpResponseQueue.java
+ * LocalHttpResponseQueue class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.InterruptedIOException;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded queue of buffers that producers fill and a response drains.
+ * <p>
+ * Producers on other threads {@link #put} buffers as they become ready, 
+ * then {@link #complete()} or {@link #fail} the queue. The handler thread 
+ * writes the buffers to the response with 
+ * {@link LocalHttpExchange#sendQueuedResponse}. When the queue is full,
+ * producers wait, so a slow client slows the producers down instead of 
+ * letting the response pile up in memory. If the client goes away, the 
+ * queue is cancelled and producers get an IOException from their next put.
+ * If producers add nothing for longer than the idle timeout, the response 
+ * fails and the queue is cancelled, so a producer that never finishes 
+ * cannot hold the handler thread forever.
+ */
+public class LocalHttpResponseQueue
+{
+    //
+    // Static Fields
+    //
+    
+    public static final int DEFAULT_CAPACITY = 16;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 60000;
+    
+    protected static final ByteBuffer END = ByteBuffer.allocate(0);
+    protected static final long POLL_MILLIS = 100;
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    protected final BlockingQueue<ByteBuffer> queue;
+    protected final long idleTimeoutMillis;
+    protected volatile Throwable failure = null;
+    protected volatile IOException cancellation = null;
+    protected volatile boolean completed = false;
+    
+    
+    //
+    // Constructors
+    //
+    
+    public LocalHttpResponseQueue()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    public LocalHttpResponseQueue(int _capacity)
+    {
+        this(_capacity, DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+    
+    /**
+     * Creates a response queue.
+     * @param _capacity          the most buffers that can wait to be written
+     * @param _idleTimeoutMillis the longest time to wait for the next buffer before 
+     *                           failing the response, or 0 to wait as long as it takes
+     */
+    public LocalHttpResponseQueue(int _capacity, long _idleTimeoutMillis)
+    {
+        this.queue = new ArrayBlockingQueue<>(_capacity);
+        this.idleTimeoutMillis = _idleTimeoutMillis;
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    public boolean isCancelled() { return this.cancellation != null; }
+    public boolean isCompleted() { return this.completed; }
+    
+    /**
+     * Adds a buffer, waiting while the queue is full.
+     * The buffer must not be changed after it is added.
+     * @param buffer the bytes to send
+     * @throws IOException if the response has been cancelled
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void put(ByteBuffer buffer)
+        throws IOException, InterruptedException
+    {
+        if (this.completed) { throw new IllegalStateException("response queue already completed"); }
+        this.enqueue(buffer);
+    }
+    
+    /**
+     * Adds a buffer, waiting up to the given time while the queue is full.
+     * @param buffer  the bytes to send
+     * @param timeout how long to wait
+     * @param unit    the unit of the timeout
+     * @return true if the buffer was added, or false if the queue stayed full
+     * @throws IOException if the response has been cancelled
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean offer(ByteBuffer buffer, long timeout, TimeUnit unit)
+        throws IOException, InterruptedException
+    {
+        if (this.completed) { throw new IllegalStateException("response queue already completed"); }
+        this.checkCancelled();
+        boolean added = this.queue.offer(buffer, timeout, unit);
+        this.checkCancelled();
+        return added;
+    }
+    
+    /**
+     * Ends the response once everything queued has been written.
+     * @throws IOException if the response has been cancelled
+     * @throws InterruptedException if interrupted while waiting for room
+     */
+    public void complete()
+        throws IOException, InterruptedException
+    {
+        if (this.completed) { return; }
+        this.completed = true;
+        this.enqueue(END);
+    }
+    
+    /**
+     * Ends the response as failed. The client sees the response end early.
+     * @param cause what the producer failed with
+     * @throws InterruptedException if interrupted while waiting for room
+     */
+    public void fail(Throwable cause)
+        throws InterruptedException
+    {
+        if (this.completed) { return; }
+        this.failure = cause;
+        try
+        {
+            this.complete();
+        }
+        catch (IOException ex)
+        {
+            // already cancelled; nothing is waiting for the failure
+        }
+    }
+    
+    protected void enqueue(ByteBuffer buffer)
+        throws IOException, InterruptedException
+    {
+        this.checkCancelled();
+        while (!this.queue.offer(buffer, POLL_MILLIS, TimeUnit.MILLISECONDS))
+        {
+            this.checkCancelled();
+        }
+        this.checkCancelled();
+    }
+    
+    protected void checkCancelled()
+        throws IOException
+    {
+        IOException cancelled = this.cancellation;
+        if (cancelled != null) { throw new IOException("response cancelled", cancelled); }
+    }
+    
+    /**
+     * Cancels the response, so producers stop.
+     * @param cause why the response was cancelled
+     */
+    protected void cancel(IOException cause)
+    {
+        this.cancellation = cause;
+        this.queue.clear();
+    }
+    
+    /**
+     * Writes queued buffers to a response stream until the queue completes.
+     * Whatever has been written is pushed to the client whenever the queue runs dry.
+     * @param out the stream to write to
+     * @return the number of bytes written
+     * @throws IOException if the producer failed, or a problem occurs while writing
+     */
+    protected long drainTo(LocalHttpResponseStream out)
+        throws IOException
+    {
+        long total = 0;
+        try
+        {
+            while (true)
+            {
+                ByteBuffer buffer = this.queue.poll();
+                if (buffer == null)
+                {
+                    out.flush();
+                    buffer = this.idleTimeoutMillis > 0 
+                        ? this.queue.poll(this.idleTimeoutMillis, TimeUnit.MILLISECONDS) 
+                        : this.queue.take();
+                    if (buffer == null)
+                    {
+                        String message = String.format("No response bytes were queued for %s ms.", this.idleTimeoutMillis);
+                        throw new IOException(message);
+                    }
+                }
+                if (buffer == END) { break; }
+                total += out.write(buffer);
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            InterruptedIOException interrupted = new InterruptedIOException("interrupted while waiting for the response queue");
+            this.cancel(interrupted);
+            Thread.currentThread().interrupt();
+            throw interrupted;
+        }
+        catch (IOException ex)
+        {
+            this.cancel(ex);
+            throw ex;
+        }
+        
+        Throwable failed = this.failure;
+        if (failed != null)
+        {
+            IOException ex = new IOException("response producer failed", failed);
+            this.cancel(ex);
+            throw ex;
+        }
+        return total;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,241 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalHttpResponseStream.java
+ * LocalHttpResponseStream class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A response body of unknown length, sent with chunked transfer encoding.
+ * <p>
+ * Writes are gathered in a pooled buffer and sent as one chunk when the 
+ * buffer fills or when {@link #flush()} is called, so many small writes do 
+ * not become many small chunks. Text is encoded straight into the buffer, 
+ * so even very large strings are never held as one byte array.
+ * <p>
+ * Closing the stream sends the last chunk and ends the response. If the 
+ * stream is not closed because something failed, the client sees the 
+ * response end early rather than a complete-looking one.
+ */
+public class LocalHttpResponseStream extends OutputStream implements WritableByteChannel
+{
+    //
+    // Static Fields
+    //
+    
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    protected final OutputStream target;
+    protected final CharsetEncoder encoder;
+    protected byte[] buffer;
+    protected int count = 0;
+    protected long bytesWritten = 0;
+    protected boolean closed = false;
+    
+    
+    //
+    // Constructors
+    //
+    
+    public LocalHttpResponseStream(OutputStream _target, Charset _charset)
+    {
+        this(_target, _charset, DEFAULT_BUFFER_SIZE);
+    }
+    
+    /**
+     * Creates a response stream.
+     * @param _target     the response body to send chunks to
+     * @param _charset    the charset to encode text with
+     * @param _bufferSize the most bytes to gather before sending a chunk
+     */
+    public LocalHttpResponseStream(OutputStream _target, Charset _charset, int _bufferSize)
+    {
+        this.target = _target;
+        this.encoder = _charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.buffer = LocalBufferPool.SHARED.acquireArray(_bufferSize);
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    public Charset getCharset() { return this.encoder.charset(); }
+    public long getBytesWritten() { return this.bytesWritten; }
+    @Override public boolean isOpen() { return !this.closed; }
+    
+    protected void checkOpen()
+        throws IOException
+    {
+        if (this.closed) { throw new IOException("response stream is closed"); }
+    }
+    
+    @Override
+    public void write(int b)
+        throws IOException
+    {
+        this.checkOpen();
+        if (this.count == this.buffer.length) { this.flushBuffer(); }
+        this.buffer[this.count++] = (byte)b;
+        ++this.bytesWritten;
+    }
+    
+    @Override
+    public void write(byte[] b, int off, int len)
+        throws IOException
+    {
+        this.checkOpen();
+        if (len > this.buffer.length - this.count)
+        {
+            this.flushBuffer();
+            if (len >= this.buffer.length)
+            {
+                // large enough to be its own chunk
+                this.target.write(b, off, len);
+                this.bytesWritten += len;
+                return;
+            }
+        }
+        System.arraycopy(b, off, this.buffer, this.count, len);
+        this.count += len;
+        this.bytesWritten += len;
+    }
+    
+    @Override
+    public int write(ByteBuffer src)
+        throws IOException
+    {
+        this.checkOpen();
+        int len = src.remaining();
+        if (len > this.buffer.length - this.count)
+        {
+            this.flushBuffer();
+            if (len >= this.buffer.length && this.target instanceof WritableByteChannel)
+            {
+                while (src.hasRemaining()) { ((WritableByteChannel)this.target).write(src); }
+                this.bytesWritten += len;
+                return len;
+            }
+        }
+        while (src.hasRemaining())
+        {
+            if (this.count == this.buffer.length) { this.flushBuffer(); }
+            int n = Math.min(src.remaining(), this.buffer.length - this.count);
+            src.get(this.buffer, this.count, n);
+            this.count += n;
+        }
+        this.bytesWritten += len;
+        return len;
+    }
+    
+    /**
+     * Writes text, encoded with this stream's charset.
+     * A surrogate pair split across two calls is written as two replacement characters.
+     * @param text the text to write
+     * @return this stream
+     * @throws IOException if a problem occurs while writing
+     */
+    public LocalHttpResponseStream print(CharSequence text)
+        throws IOException
+    {
+        this.checkOpen();
+        CharBuffer chars = CharBuffer.wrap(text);
+        this.encoder.reset();
+        boolean flushing = false;
+        while (true)
+        {
+            ByteBuffer bytes = ByteBuffer.wrap(this.buffer, this.count, this.buffer.length - this.count);
+            CoderResult result = flushing ? this.encoder.flush(bytes) : this.encoder.encode(chars, bytes, true);
+            this.bytesWritten += bytes.position() - this.count;
+            this.count = bytes.position();
+            if (result.isOverflow()) { this.flushBuffer(); }
+            else if (!flushing) { flushing = true; }
+            else { return this; }
+        }
+    }
+    
+    /**
+     * Writes text followed by a line feed.
+     * @param text the text to write
+     * @return this stream
+     * @throws IOException if a problem occurs while writing
+     */
+    public LocalHttpResponseStream println(CharSequence text)
+        throws IOException
+    {
+        this.print(text);
+        this.write('\n');
+        return this;
+    }
+    
+    /**
+     * Sends what has been gathered as a chunk, without forcing it to the socket.
+     * @throws IOException if a problem occurs while writing
+     */
+    protected void flushBuffer()
+        throws IOException
+    {
+        if (this.count > 0)
+        {
+            this.target.write(this.buffer, 0, this.count);
+            this.count = 0;
+        }
+    }
+    
+    /**
+     * Sends what has been gathered as a chunk, and pushes it out to the client.
+     * @throws IOException if a problem occurs while writing
+     */
+    @Override
+    public void flush()
+        throws IOException
+    {
+        this.checkOpen();
+        this.flushBuffer();
+        this.target.flush();
+    }
+    
+    /**
+     * Sends anything still gathered, then ends the response.
+     * @throws IOException if a problem occurs while writing
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        if (this.closed) { return; }
+        try
+        {
+            this.flushBuffer();
+            this.target.close();
+        }
+        finally
+        {
+            this.closed = true;
+            LocalBufferPool.SHARED.releaseArray(this.buffer);
+            this.buffer = null;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,133 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalHttpRouteMatch.java
+ * LocalHttpRouteMatch class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.ByteArrayOutputStream;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The result of matching a request path against a {@link LocalHttpRouter} route.
+ * Only the offsets of path variables are recorded during matching; 
+ * their values are cut out of the path and decoded when they are asked for.
+ */
+public class LocalHttpRouteMatch
+{
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Decodes the percent-escapes in part of a raw path, as UTF-8.
+     * Unlike form decoding, '+' is left as it is.
+     * @param raw   the raw path
+     * @param start the index of the first character to decode
+     * @param end   the index after the last character to decode
+     * @return      the decoded characters
+     */
+    public static String decodePath(String raw, int start, int end)
+    {
+        int percent = raw.indexOf('%', start);
+        if (percent < 0 || percent >= end) { return raw.substring(start, end); }
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(end - start);
+        for (int i = start; i < end; ++i)
+        {
+            char c = raw.charAt(i);
+            int high = i + 2 < end && c == '%' ? Character.digit(raw.charAt(i + 1), 16) : -1;
+            int low = high < 0 ? -1 : Character.digit(raw.charAt(i + 2), 16);
+            if (low >= 0)
+            {
+                bytes.write((high << 4) | low);
+                i += 2;
+            }
+            else if (c < 0x80)
+            {
+                bytes.write(c);
+            }
+            else
+            {
+                byte[] encoded = String.valueOf(c).getBytes(StandardCharsets.UTF_8);
+                bytes.write(encoded, 0, encoded.length);
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    public final String PATH_TEMPLATE;
+    public final String RAW_PATH;
+    protected final String[] variableNames;
+    protected final int[] variableBounds;
+    protected final String[] variableValues;
+    
+    
+    //
+    // Constructor
+    //
+    
+    protected LocalHttpRouteMatch(String _pathTemplate, String _rawPath, String[] _variableNames, int[] _variableBounds)
+    {
+        this.PATH_TEMPLATE = _pathTemplate;
+        this.RAW_PATH = _rawPath;
+        this.variableNames = _variableNames;
+        this.variableBounds = _variableBounds;
+        this.variableValues = new String[_variableNames.length];
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    /** @return the number of path variables in the matched route */
+    public int getVariableCount() { return this.variableNames.length; }
+    
+    /**
+     * Gets the name of a path variable.
+     * @param index the index of the path variable, in template order
+     * @return      the path variable's name
+     */
+    public String getVariableName(int index) { return this.variableNames[index]; }
+    
+    /**
+     * Gets the decoded value of a path variable.
+     * @param index the index of the path variable, in template order
+     * @return      the path variable's decoded value
+     */
+    public String getVariable(int index)
+    {
+        String value = this.variableValues[index];
+        if (value == null)
+        {
+            value = LocalHttpRouteMatch.decodePath(this.RAW_PATH, this.variableBounds[2 * index], this.variableBounds[2 * index + 1]);
+            this.variableValues[index] = value;
+        }
+        return value;
+    }
+    
+    /**
+     * Gets the decoded value of a path variable.
+     * @param name the name of the path variable
+     * @return     the path variable's decoded value, or null if the route has no such variable
+     */
+    public String getVariable(String name)
+    {
+        for (int i = 0; i < this.variableNames.length; ++i)
+        {
+            if (this.variableNames[i].equals(name)) { return this.getVariable(i); }
+        }
+        return null;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,465 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalHttpRouter.java
+ * LocalHttpRouter class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routes exchanges to handlers by request method and path template.
+ * <p>
+ * Templates are made of literal text, path variables that match one
+ * segment (<code>/items/{id}</code>), and a trailing wildcard that matches
+ * the rest of the path (<code>/files/{path*}</code> or <code>/files/*</code>).
+ * Templates are matched against the whole raw request path.
+ * <p>
+ * Routes are compiled into a radix trie. Matching walks the trie once over
+ * the path, preferring literal text over variables over wildcards, and only
+ * allocates for the match it returns. Path variables are decoded when they
+ * are asked for, through {@link LocalHttpExchange#getPathVariable(String)}.
+ * <p>
+ * Paths that match no route get a 404 response, and paths that match a route 
+ * without a handler for the request's method get a 405 response with an Allow 
+ * header. HEAD requests fall back to a route's GET handler.
+ * <p>
+ * Routes may be added while the router is serving. Each add works on a copy 
+ * of the trie and publishes it with one volatile write, so a lookup sees all 
+ * of the routes from before the add or all of them from after it, and never 
+ * a trie that is partly rebuilt. An add that fails leaves the routes unchanged.
+ */
+public class LocalHttpRouter implements LocalHttpHandler
+{
+    //
+    // Static Fields
+    //
+    
+    public static final String[] STANDARD_METHODS = { "GET", "HEAD", "POST", "PUT", "DELETE", "OPTIONS", "PATCH", "TRACE", "CONNECT" };
+    public static final int MAX_VARIABLES = 32;
+    
+    protected static final ThreadLocal<int[]> BOUNDS = ThreadLocal.withInitial(() -> new int[2 * MAX_VARIABLES]);
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Gets the index of a standard method in {@link #STANDARD_METHODS}.
+     * @param method the method to look up
+     * @return       the method's index, or -1 if it is not a standard method
+     */
+    public static int getMethodIndex(String method)
+    {
+        switch (method)
+        {
+            case "GET": return 0;
+            case "HEAD": return 1;
+            case "POST": return 2;
+            case "PUT": return 3;
+            case "DELETE": return 4;
+            case "OPTIONS": return 5;
+            case "PATCH": return 6;
+            case "TRACE": return 7;
+            case "CONNECT": return 8;
+            default: return -1;
+        }
+    }
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    protected volatile Node root = new Node("");
+    protected volatile LocalHttpHandler notFoundHandler = (LocalHttpExchange x) -> x.sendNotFoundResponse();
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    public void setNotFoundHandler(LocalHttpHandler _notFoundHandler) { this.notFoundHandler = _notFoundHandler; }
+    
+    public LocalHttpRouter get(String pathTemplate, LocalHttpHandler handler) { return this.add("GET", pathTemplate, handler); }
+    public LocalHttpRouter head(String pathTemplate, LocalHttpHandler handler) { return this.add("HEAD", pathTemplate, handler); }
+    public LocalHttpRouter post(String pathTemplate, LocalHttpHandler handler) { return this.add("POST", pathTemplate, handler); }
+    public LocalHttpRouter put(String pathTemplate, LocalHttpHandler handler) { return this.add("PUT", pathTemplate, handler); }
+    public LocalHttpRouter delete(String pathTemplate, LocalHttpHandler handler) { return this.add("DELETE", pathTemplate, handler); }
+    
+    /**
+     * Routes every method for a path template to a request handler.
+     * @param pathTemplate the path template to route
+     * @param handler      the request handler to dispatch to by method
+     * @return             this router
+     */
+    public LocalHttpRouter add(String pathTemplate, LocalHttpRequestHandler handler)
+    {
+        return this.add(null, pathTemplate, handler::handleRequest);
+    }
+    
+    /**
+     * Routes a method and path template to a handler.
+     * @param method       the request method to route, or null to route every method
+     *                     that has no handler of its own
+     * @param pathTemplate the path template to route
+     * @param handler      the handler to route to
+     * @return             this router
+     * @throws IllegalArgumentException if the template is malformed, or the method 
+     *         and template are already routed
+     */
+    public synchronized LocalHttpRouter add(String method, String pathTemplate, LocalHttpHandler handler)
+    {
+        if (pathTemplate == null || !pathTemplate.startsWith("/"))
+        {
+            String message = String.format("Path template (%s) must start with '/'.", pathTemplate);
+            throw new IllegalArgumentException(message);
+        }
+        
+        List<String> variableNames = new ArrayList<>();
+        Node newRoot = this.root.copy();
+        Node node = newRoot;
+        int length = pathTemplate.length();
+        for (int i = 0; i < length; )
+        {
+            char c = pathTemplate.charAt(i);
+            if (c == '{' || c == '*')
+            {
+                String name = "*";
+                int next = i + 1;
+                if (c == '{')
+                {
+                    int close = pathTemplate.indexOf('}', i);
+                    if (close < 0) 
+                    {
+                        String message = String.format("Path template (%s) has an unclosed '{'.", pathTemplate);
+                        throw new IllegalArgumentException(message);
+                    }
+                    name = pathTemplate.substring(i + 1, close);
+                    next = close + 1;
+                }
+                boolean isWildcard = name.endsWith("*");
+                if (isWildcard && name.length() > 1) { name = name.substring(0, name.length() - 1); }
+                if (name.isEmpty() || (isWildcard && next != length) || (!isWildcard && next < length && pathTemplate.charAt(next) != '/'))
+                {
+                    String message = String.format("Path template (%s) has a misplaced variable or wildcard at %s.", pathTemplate, i);
+                    throw new IllegalArgumentException(message);
+                }
+                if (variableNames.size() == MAX_VARIABLES)
+                {
+                    String message = String.format("Path template (%s) has more than %s variables.", pathTemplate, MAX_VARIABLES);
+                    throw new IllegalArgumentException(message);
+                }
+                variableNames.add(name);
+                if (isWildcard)
+                {
+                    if (node.wildcardChild == null) { node.wildcardChild = new Node(""); }
+                    node = node.wildcardChild;
+                }
+                else
+                {
+                    if (node.variableChild == null) { node.variableChild = new Node(""); }
+                    node = node.variableChild;
+                }
+                i = next;
+            }
+            else
+            {
+                int end = i;
+                while (end < length && pathTemplate.charAt(end) != '{' && pathTemplate.charAt(end) != '*') { ++end; }
+                node = node.insertLiteral(pathTemplate.substring(i, end));
+                i = end;
+            }
+        }
+        
+        if (node.route == null) 
+        { 
+            node.route = new Route(pathTemplate, variableNames.toArray(new String[variableNames.size()])); 
+        }
+        else if (!Arrays.equals(node.route.variableNames, variableNames.toArray()))
+        {
+            String message = String.format("Path template (%s) conflicts with path template (%s).", pathTemplate, node.route.pathTemplate);
+            throw new IllegalArgumentException(message);
+        }
+        node.route.setHandler(method, handler);
+        this.root = newRoot;
+        return this;
+    }
+    
+    /**
+     * Matches a raw request path against this router's routes.
+     * @param rawPath the raw (not decoded) request path
+     * @return        the match, or null if no route matches
+     */
+    public LocalHttpRouteMatch match(String rawPath)
+    {
+        int[] bounds = BOUNDS.get();
+        Node node = this.root.match(rawPath, 0, bounds, 0);
+        if (node == null) { return null; }
+        Route route = node.route;
+        int[] variableBounds = Arrays.copyOf(bounds, 2 * route.variableNames.length);
+        return new LocalHttpRouteMatch(route.pathTemplate, rawPath, route.variableNames, variableBounds);
+    }
+    
+    @Override
+    public void handle(LocalHttpExchange x)
+        throws IOException
+    {
+        String rawPath = x.REQUEST_URI.getRawPath();
+        int[] bounds = BOUNDS.get();
+        Node node = rawPath == null ? null : this.root.match(rawPath, 0, bounds, 0);
+        if (node == null)
+        {
+            this.notFoundHandler.handle(x);
+            return;
+        }
+        
+        Route route = node.route;
+        LocalHttpHandler handler = route.getHandler(x.REQUEST_METHOD);
+        if (handler == null)
+        {
+            x.RESPONSE_HEADERS.set("Allow", route.getAllowedMethods());
+            x.sendStringResponse(405, "text/plain", "Method not allowed");
+            return;
+        }
+        
+        if (route.variableNames.length > 0)
+        {
+            int[] variableBounds = Arrays.copyOf(bounds, 2 * route.variableNames.length);
+            x.routeMatch = new LocalHttpRouteMatch(route.pathTemplate, rawPath, route.variableNames, variableBounds);
+        }
+        handler.handle(x);
+    }
+    
+    
+    //
+    // Nested Classes
+    //
+    
+    /**
+     * The handlers for one path template, by method.
+     */
+    protected static class Route
+    {
+        protected final String pathTemplate;
+        protected final String[] variableNames;
+        protected final LocalHttpHandler[] standardHandlers = new LocalHttpHandler[STANDARD_METHODS.length];
+        protected final Map<String, LocalHttpHandler> otherHandlers = new HashMap<>();
+        protected LocalHttpHandler anyMethodHandler = null;
+        protected String allowedMethods = null;
+        
+        protected Route(String _pathTemplate, String[] _variableNames)
+        {
+            this.pathTemplate = _pathTemplate;
+            this.variableNames = _variableNames;
+        }
+        
+        protected Route copy()
+        {
+            Route result = new Route(this.pathTemplate, this.variableNames);
+            System.arraycopy(this.standardHandlers, 0, result.standardHandlers, 0, this.standardHandlers.length);
+            result.otherHandlers.putAll(this.otherHandlers);
+            result.anyMethodHandler = this.anyMethodHandler;
+            return result;
+        }
+        
+        protected void setHandler(String method, LocalHttpHandler handler)
+        {
+            int index = method == null ? -1 : LocalHttpRouter.getMethodIndex(method);
+            LocalHttpHandler previous;
+            if (method == null)
+            {
+                previous = this.anyMethodHandler;
+                this.anyMethodHandler = handler;
+            }
+            else if (index >= 0)
+            {
+                previous = this.standardHandlers[index];
+                this.standardHandlers[index] = handler;
+            }
+            else
+            {
+                previous = this.otherHandlers.put(method, handler);
+            }
+            if (previous != null)
+            {
+                String message = String.format("Method %s is already routed for path template (%s).", method == null ? "*" : method, this.pathTemplate);
+                throw new IllegalArgumentException(message);
+            }
+            this.allowedMethods = null;
+        }
+        
+        protected LocalHttpHandler getHandler(String method)
+        {
+            int index = LocalHttpRouter.getMethodIndex(method);
+            LocalHttpHandler handler = index >= 0 ? this.standardHandlers[index] : this.otherHandlers.get(method);
+            if (handler == null && index == 1) { handler = this.standardHandlers[0]; }
+            return handler == null ? this.anyMethodHandler : handler;
+        }
+        
+        protected String getAllowedMethods()
+        {
+            String result = this.allowedMethods;
+            if (result == null)
+            {
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < STANDARD_METHODS.length; ++i)
+                {
+                    boolean allowed = this.standardHandlers[i] != null || (i == 1 && this.standardHandlers[0] != null);
+                    if (allowed) { sb.append(sb.length() == 0 ? "" : ", ").append(STANDARD_METHODS[i]); }
+                }
+                for (String method : this.otherHandlers.keySet())
+                {
+                    sb.append(sb.length() == 0 ? "" : ", ").append(method);
+                }
+                result = sb.toString();
+                this.allowedMethods = result;
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * A node of the route trie. Literal children are keyed by their first 
+     * character, and there is at most one variable child and one wildcard child.
+     */
+    protected static class Node
+    {
+        protected String literal;
+        protected char[] literalKeys = new char[0];
+        protected Node[] literalChildren = new Node[0];
+        protected Node variableChild = null;
+        protected Node wildcardChild = null;
+        protected Route route = null;
+        
+        protected Node(String _literal)
+        {
+            this.literal = _literal;
+        }
+        
+        /**
+         * Copies this node and everything below it, so that the copy can be 
+         * changed while lookups still walk the original.
+         * @return the copy
+         */
+        protected Node copy()
+        {
+            Node result = new Node(this.literal);
+            result.literalKeys = this.literalKeys.clone();
+            result.literalChildren = new Node[this.literalChildren.length];
+            for (int i = 0; i < this.literalChildren.length; ++i) { result.literalChildren[i] = this.literalChildren[i].copy(); }
+            result.variableChild = this.variableChild == null ? null : this.variableChild.copy();
+            result.wildcardChild = this.wildcardChild == null ? null : this.wildcardChild.copy();
+            result.route = this.route == null ? null : this.route.copy();
+            return result;
+        }
+        
+        protected int indexOfLiteralChild(char c)
+        {
+            for (int i = 0; i < this.literalKeys.length; ++i)
+            {
+                if (this.literalKeys[i] == c) { return i; }
+            }
+            return -1;
+        }
+        
+        /**
+         * Inserts literal text below this node, splitting nodes as needed.
+         * @param text the literal text to insert
+         * @return     the node that ends with the inserted text
+         */
+        protected Node insertLiteral(String text)
+        {
+            if (text.isEmpty()) { return this; }
+            int index = this.indexOfLiteralChild(text.charAt(0));
+            if (index < 0)
+            {
+                Node child = new Node(text);
+                int n = this.literalKeys.length;
+                this.literalKeys = Arrays.copyOf(this.literalKeys, n + 1);
+                this.literalChildren = Arrays.copyOf(this.literalChildren, n + 1);
+                this.literalKeys[n] = text.charAt(0);
+                this.literalChildren[n] = child;
+                return child;
+            }
+            
+            Node child = this.literalChildren[index];
+            int common = 0;
+            int max = Math.min(text.length(), child.literal.length());
+            while (common < max && text.charAt(common) == child.literal.charAt(common)) { ++common; }
+            if (common < child.literal.length())
+            {
+                Node split = new Node(child.literal.substring(0, common));
+                child.literal = child.literal.substring(common);
+                split.literalKeys = new char[] { child.literal.charAt(0) };
+                split.literalChildren = new Node[] { child };
+                this.literalChildren[index] = split;
+                child = split;
+            }
+            return child.insertLiteral(text.substring(common));
+        }
+        
+        /**
+         * Matches the rest of a path below this node.
+         * @param path          the raw path
+         * @param position      the index of the rest of the path
+         * @param bounds        receives the start and end of each variable
+         * @param variableCount the number of variables matched so far
+         * @return              the node whose route matches, or null if none does
+         */
+        protected Node match(String path, int position, int[] bounds, int variableCount)
+        {
+            int length = path.length();
+            if (position < length)
+            {
+                int index = this.indexOfLiteralChild(path.charAt(position));
+                if (index >= 0)
+                {
+                    Node child = this.literalChildren[index];
+                    String literal = child.literal;
+                    if (path.regionMatches(position, literal, 0, literal.length()))
+                    {
+                        Node result = child.match(path, position + literal.length(), bounds, variableCount);
+                        if (result != null) { return result; }
+                    }
+                }
+                
+                if (this.variableChild != null)
+                {
+                    int end = path.indexOf('/', position);
+                    if (end < 0) { end = length; }
+                    if (end > position)
+                    {
+                        bounds[2 * variableCount] = position;
+                        bounds[2 * variableCount + 1] = end;
+                        Node result = this.variableChild.match(path, end, bounds, variableCount + 1);
+                        if (result != null) { return result; }
+                    }
+                }
+            }
+            else if (this.route != null)
+            {
+                return this;
+            }
+            
+            if (this.wildcardChild != null && this.wildcardChild.route != null)
+            {
+                bounds[2 * variableCount] = position;
+                bounds[2 * variableCount + 1] = length;
+                return this.wildcardChild;
+            }
+            return null;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,140 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalLatencyHistogram.java
+ * LocalLatencyHistogram class definition
+ */
+
+package chairosoft.local_server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free, fixed-size histogram of latencies in nanoseconds.
+ * <p>
+ * Buckets are log-linear, as in HdrHistogram: each power of two is split into
+ * {@link #SUB_BUCKET_HALF_COUNT} equal buckets, so any recorded value is known 
+ * to within about 3%. Values from 0 to {@link #MAX_VALUE} (about 18 minutes) 
+ * are tracked, and larger values are clamped to it. Recording is a couple of 
+ * shifts and one atomic increment, and never allocates.
+ */
+public class LocalLatencyHistogram
+{
+    //
+    // Static Fields
+    //
+    
+    public static final int SUB_BUCKET_BITS = 6;
+    public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    public static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+    public static final long MAX_VALUE = (1L << 40) - 1;
+    public static final int BUCKET_COUNT = LocalLatencyHistogram.getIndex(MAX_VALUE) + 1;
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Gets the index of the bucket that a value falls in.
+     * @param value the value, from 0 to {@link #MAX_VALUE}
+     * @return      the bucket index
+     */
+    public static int getIndex(long value)
+    {
+        if (value < SUB_BUCKET_COUNT) { return (int)value; }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift * SUB_BUCKET_HALF_COUNT) + (int)(value >>> shift);
+    }
+    
+    /**
+     * Gets the highest value that falls in a bucket.
+     * @param index the bucket index
+     * @return      the highest value in the bucket
+     */
+    public static long getHighestValue(int index)
+    {
+        if (index < SUB_BUCKET_COUNT) { return index; }
+        int shift = (index / SUB_BUCKET_HALF_COUNT) - 1;
+        long mantissa = (index % SUB_BUCKET_HALF_COUNT) + SUB_BUCKET_HALF_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    protected final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    protected final LongAdder totalCount = new LongAdder();
+    protected final LongAdder totalSum = new LongAdder();
+    protected final LongAccumulator maxValue = new LongAccumulator(Math::max, 0);
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    public long getCount() { return this.totalCount.sum(); }
+    public long getSum() { return this.totalSum.sum(); }
+    public long getMax() { return this.maxValue.get(); }
+    public double getMean() { long count = this.getCount(); return count == 0 ? 0 : this.getSum() / (double)count; }
+    
+    /**
+     * Records a value.
+     * @param value the value to record; negative values are recorded as 0
+     */
+    public void record(long value)
+    {
+        long clamped = value < 0 ? 0 : value > MAX_VALUE ? MAX_VALUE : value;
+        this.counts.incrementAndGet(LocalLatencyHistogram.getIndex(clamped));
+        this.totalCount.increment();
+        this.totalSum.add(clamped);
+        this.maxValue.accumulate(clamped);
+    }
+    
+    /**
+     * Gets the number of recorded values that fall in buckets at or below a value's bucket.
+     * @param value the value to count up to
+     * @return      the number of values recorded at or below the value, to within the bucket precision
+     */
+    public long getCountAtOrBelow(long value)
+    {
+        if (value < 0) { return 0; }
+        int last = LocalLatencyHistogram.getIndex(Math.min(value, MAX_VALUE));
+        long result = 0;
+        for (int i = 0; i <= last; ++i) { result += this.counts.get(i); }
+        return result;
+    }
+    
+    /**
+     * Gets the value at a percentile of the recorded values.
+     * @param percentile the percentile, from 0 to 100
+     * @return           the highest value of the bucket holding the percentile, 
+     *                   or 0 if nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i)
+        {
+            snapshot[i] = this.counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) { return 0; }
+        
+        long target = Math.max(1, (long)Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i)
+        {
+            seen += snapshot[i];
+            if (seen >= target) { return Math.min(LocalLatencyHistogram.getHighestValue(i), this.getMax()); }
+        }
+        return this.getMax();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,382 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalMultipartPart.java
+ * LocalMultipartPart class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.InputStream;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import com.sun.net.httpserver.Headers;
+
+/**
+ * One part of a multipart body, read by a {@link LocalMultipartReader}.
+ * <p>
+ * Until it is buffered, a part's content can be read only once, and only
+ * until the reader moves on to the next part. Once buffered, it is kept in 
+ * memory or in a temp file, and can be read any number of times.
+ */
+public class LocalMultipartPart implements Closeable
+{
+    //
+    // Static Fields
+    //
+    
+    public static final String TEMP_FILE_PREFIX = "LocalServer-upload-";
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Gets a parameter of a header value such as Content-Type or Content-Disposition.
+     * Quoted values are unquoted; other values end at the next ';'.
+     * @param value the header value (may be null)
+     * @param name  the parameter name, matched without regard to case
+     * @return      the parameter's value, or null if it is not there
+     */
+    public static String getParameter(String value, String name)
+    {
+        if (value == null) { return null; }
+        int length = value.length();
+        int i = value.indexOf(';');
+        while (i >= 0 && i < length)
+        {
+            ++i;
+            while (i < length && Character.isWhitespace(value.charAt(i))) { ++i; }
+            int equals = value.indexOf('=', i);
+            int semicolon = value.indexOf(';', i);
+            if (equals < 0) { return null; }
+            if (semicolon >= 0 && semicolon < equals) { i = semicolon; continue; }
+            
+            boolean isMatch = value.substring(i, equals).trim().equalsIgnoreCase(name);
+            int start = equals + 1;
+            while (start < length && Character.isWhitespace(value.charAt(start))) { ++start; }
+            if (start < length && value.charAt(start) == '"')
+            {
+                StringBuilder sb = new StringBuilder();
+                int j = start + 1;
+                for (; j < length && value.charAt(j) != '"'; ++j)
+                {
+                    char c = value.charAt(j);
+                    if (c == '\\' && j + 1 < length) { c = value.charAt(++j); }
+                    sb.append(c);
+                }
+                if (isMatch) { return sb.toString(); }
+                i = value.indexOf(';', j);
+            }
+            else
+            {
+                int end = semicolon < 0 ? length : semicolon;
+                if (isMatch) { return value.substring(start, end).trim(); }
+                i = semicolon;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Gets the file name of a part, from a Content-Disposition value.
+     * An RFC 5987 filename* parameter (UTF-8 only) is used before a plain filename parameter.
+     * Any directories in the name are removed.
+     * @param disposition the Content-Disposition value (may be null)
+     * @return            the file name, or null if there is none
+     */
+    public static String getFileName(String disposition)
+    {
+        String result = null;
+        String extended = LocalMultipartPart.getParameter(disposition, "filename*");
+        int quote = extended == null ? -1 : extended.indexOf('\'');
+        int secondQuote = quote < 0 ? -1 : extended.indexOf('\'', quote + 1);
+        if (secondQuote >= 0 && extended.substring(0, quote).equalsIgnoreCase("UTF-8"))
+        {
+            result = LocalHttpRouteMatch.decodePath(extended, secondQuote + 1, extended.length());
+        }
+        if (result == null) { result = LocalMultipartPart.getParameter(disposition, "filename"); }
+        if (result == null) { return null; }
+        int slash = Math.max(result.lastIndexOf('/'), result.lastIndexOf('\\'));
+        return result.substring(slash + 1);
+    }
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    public final Headers HEADERS;
+    public final String NAME;
+    public final String FILENAME;
+    public final String CONTENT_TYPE;
+    
+    protected final LocalMultipartReader.PartStream stream;
+    protected byte[] bytes = null;
+    protected Path file = null;
+    protected boolean isTempFile = false;
+    protected long size = -1;
+    
+    
+    //
+    // Constructor
+    //
+    
+    /**
+     * Creates a part.
+     * @param _headers the part's headers
+     * @param _stream  the part's content, as read from the body
+     */
+    protected LocalMultipartPart(Headers _headers, LocalMultipartReader.PartStream _stream)
+    {
+        this.HEADERS = _headers;
+        String disposition = _headers.getFirst("Content-Disposition");
+        this.NAME = LocalMultipartPart.getParameter(disposition, "name");
+        this.FILENAME = LocalMultipartPart.getFileName(disposition);
+        String contentType = _headers.getFirst("Content-Type");
+        this.CONTENT_TYPE = contentType == null ? "text/plain" : contentType;
+        this.stream = _stream;
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    public boolean isFile() { return this.FILENAME != null; }
+    public boolean isBuffered() { return this.size >= 0; }
+    public boolean isInMemory() { return this.bytes != null; }
+    
+    /** @return the temp file this part was spilled to, or null if it was not */
+    public Path getFile() { return this.file; }
+    
+    /** @return the size of this part's content, or -1 if it has not been buffered */
+    public long getSize() { return this.size; }
+    
+    /**
+     * Gets this part's content. Before buffering, this is the live stream from
+     * the body, which ends at the next boundary.
+     * @return a stream of this part's content
+     * @throws IOException if the spilled file cannot be opened
+     */
+    public InputStream getInputStream()
+        throws IOException
+    {
+        if (this.bytes != null) { return new ByteArrayInputStream(this.bytes); }
+        if (this.file != null) { return Files.newInputStream(this.file); }
+        return this.stream;
+    }
+    
+    /**
+     * Decodes this part's content as a String, using the charset of its Content-Type.
+     * @return the decoded content
+     * @throws IOException if a problem occurs while reading the content
+     */
+    public String getString()
+        throws IOException
+    {
+        return this.getString(LocalHttpExchange.getCharset(this.CONTENT_TYPE, StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Decodes this part's content as a String.
+     * A part that has not been buffered is read into memory in full.
+     * @param charset the charset to decode the content with
+     * @return        the decoded content
+     * @throws IOException if a problem occurs while reading the content
+     */
+    public String getString(Charset charset)
+        throws IOException
+    {
+        if (this.bytes != null) { return new String(this.bytes, charset); }
+        if (this.file != null) { return new String(Files.readAllBytes(this.file), charset); }
+        try (LocalByteSink sink = new LocalByteSink())
+        {
+            sink.readFrom(this.stream);
+            return new String(sink.toByteArray(), charset);
+        }
+    }
+    
+    /**
+     * Writes this part's content to a channel, such as a FileChannel or a socket.
+     * Spilled content is moved file to channel with {@link LocalServer#copyIO(java.nio.channels.ReadableByteChannel, WritableByteChannel)}.
+     * @param out the channel to write to
+     * @return    the number of bytes written
+     * @throws IOException if a problem occurs while reading or writing
+     */
+    public long transferTo(WritableByteChannel out)
+        throws IOException
+    {
+        if (this.bytes != null)
+        {
+            ByteBuffer source = ByteBuffer.wrap(this.bytes);
+            while (source.hasRemaining()) { out.write(source); }
+            return this.bytes.length;
+        }
+        if (this.file != null)
+        {
+            try (FileChannel in = FileChannel.open(this.file, StandardOpenOption.READ))
+            {
+                return LocalServer.copyIO(in, out);
+            }
+        }
+        
+        long total = 0;
+        byte[] array = LocalBufferPool.SHARED.acquireArray(LocalMultipartReader.BUFFER_SIZE);
+        try
+        {
+            ByteBuffer wrapper = ByteBuffer.wrap(array);
+            for (int n; (n = this.stream.read(array, 0, array.length)) >= 0; )
+            {
+                wrapper.clear().limit(n);
+                while (wrapper.hasRemaining()) { out.write(wrapper); }
+                total += n;
+            }
+        }
+        finally
+        {
+            LocalBufferPool.SHARED.releaseArray(array);
+        }
+        return total;
+    }
+    
+    /**
+     * Writes this part's content to a file, replacing it if it exists.
+     * @param path the file to write
+     * @return     the number of bytes written
+     * @throws IOException if a problem occurs while reading or writing
+     */
+    public long transferTo(Path path)
+        throws IOException
+    {
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            return this.transferTo(out);
+        }
+    }
+    
+    /**
+     * Puts this part's content in a file, moving the temp file if it was spilled.
+     * A moved temp file is no longer deleted when this part is closed.
+     * @param path the file to put the content in
+     * @throws IOException if a problem occurs while moving or writing
+     */
+    public void moveTo(Path path)
+        throws IOException
+    {
+        if (this.file == null)
+        {
+            this.transferTo(path);
+            return;
+        }
+        try
+        {
+            Files.move(this.file, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException ex)
+        {
+            Files.move(this.file, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        this.file = path;
+        this.isTempFile = false;
+    }
+    
+    /**
+     * Reads this part's content in full, so it outlives the reader's position.
+     * Content up to the threshold is kept in memory; anything larger is spilled to a temp file.
+     * @param spillThreshold the largest content to keep in memory, in bytes
+     * @param tempDirectory  the directory for the temp file, or null for the system default
+     * @throws IOException if a problem occurs while reading or spilling
+     */
+    public void buffer(long spillThreshold, Path tempDirectory)
+        throws IOException
+    {
+        if (this.isBuffered()) { return; }
+        byte[] array = LocalBufferPool.SHARED.acquireArray(LocalMultipartReader.BUFFER_SIZE);
+        LocalByteSink sink = new LocalByteSink();
+        FileChannel channel = null;
+        try
+        {
+            int n;
+            while ((n = this.stream.read(array, 0, array.length)) >= 0)
+            {
+                if (sink.size() + n > spillThreshold) { break; }
+                sink.write(array, 0, n);
+            }
+            if (n < 0)
+            {
+                this.bytes = sink.toByteArray();
+                this.size = this.bytes.length;
+                return;
+            }
+            
+            this.file = tempDirectory == null 
+                ? Files.createTempFile(TEMP_FILE_PREFIX, ".tmp") 
+                : Files.createTempFile(tempDirectory, TEMP_FILE_PREFIX, ".tmp");
+            this.isTempFile = true;
+            channel = FileChannel.open(this.file, StandardOpenOption.WRITE);
+            sink.writeTo(channel);
+            long total = sink.size();
+            ByteBuffer wrapper = ByteBuffer.wrap(array);
+            for (; n >= 0; n = this.stream.read(array, 0, array.length))
+            {
+                wrapper.clear().limit(n);
+                while (wrapper.hasRemaining()) { channel.write(wrapper); }
+                total += n;
+            }
+            this.size = total;
+        }
+        finally
+        {
+            if (channel != null) { channel.close(); }
+            sink.close();
+            LocalBufferPool.SHARED.releaseArray(array);
+            if (this.size < 0) { this.close(); }
+        }
+    }
+    
+    /**
+     * Deletes this part's temp file, if it has one, and drops buffered content.
+     */
+    @Override
+    public void close()
+    {
+        Path spilled = this.file;
+        boolean isTemp = this.isTempFile;
+        this.file = null;
+        this.isTempFile = false;
+        this.bytes = null;
+        if (isTemp)
+        {
+            try
+            {
+                Files.deleteIfExists(spilled);
+            }
+            catch (IOException ex)
+            {
+                // a temp file that cannot be deleted is left for the system to clean up
+            }
+        }
+    }
+    
+    @Override
+    public String toString()
+    {
+        return String.format("%s[name=%s, filename=%s, type=%s, size=%s]", this.getClass().getSimpleName(), this.NAME, this.FILENAME, this.CONTENT_TYPE, this.size);
+    }
+}
\ No newline at end of file
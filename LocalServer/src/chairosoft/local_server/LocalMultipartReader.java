@@ -0,0 +1,432 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalMultipartReader.java
+ * LocalMultipartReader class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.io.IOException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.sun.net.httpserver.Headers;
+
+/**
+ * Reads a multipart/form-data body one part at a time, as it arrives.
+ * <p>
+ * The body is read through one pooled buffer, and the boundary delimiter
+ * is found with a Boyer-Moore-Horspool search, which skips ahead by up to 
+ * the delimiter's length for each comparison. Each part's content is 
+ * streamed straight from the buffer, so an upload of any size takes only 
+ * the buffer's memory, unless its parts are buffered on purpose with 
+ * {@link LocalMultipartPart#buffer}, which spills large parts to temp files.
+ * <p>
+ * A part's stream can only be read until the next part is asked for.
+ * Closing the reader returns its buffer, and deletes the temp files of 
+ * the parts that {@link #readAll} buffered, unless they were moved away.
+ */
+public class LocalMultipartReader implements Closeable
+{
+    //
+    // Static Fields
+    //
+    
+    public static final int BUFFER_SIZE = 64 * 1024;
+    public static final int MAX_HEADER_SIZE = 16 * 1024;
+    public static final int MAX_BOUNDARY_LENGTH = 70;
+    public static final int DEFAULT_MAX_PART_COUNT = 1000;
+    
+    protected static final byte CR = '\r';
+    protected static final byte LF = '\n';
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Gets the boundary parameter of a multipart Content-Type value.
+     * @param contentType the Content-Type value (may be null)
+     * @return            the boundary, or null if the content type is not multipart or has no boundary
+     */
+    public static String getBoundary(String contentType)
+    {
+        if (contentType == null || !contentType.regionMatches(true, 0, "multipart/", 0, "multipart/".length())) { return null; }
+        return LocalMultipartPart.getParameter(contentType, "boundary");
+    }
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    public final int MAX_PART_COUNT;
+    
+    protected final InputStream in;
+    protected final byte[] delimiter;
+    protected final int[] shift = new int[256];
+    protected byte[] buffer;
+    protected int pos = 0;
+    protected int limit = 0;
+    protected boolean eof = false;
+    protected boolean finished = false;
+    protected int match = -1;
+    protected int scanFrom = 0;
+    protected PartStream current;
+    protected int partCount = 0;
+    protected final List<LocalMultipartPart> bufferedParts = new ArrayList<>();
+    
+    
+    //
+    // Constructors
+    //
+    
+    public LocalMultipartReader(InputStream _in, String _boundary)
+    {
+        this(_in, _boundary, DEFAULT_MAX_PART_COUNT);
+    }
+    
+    /**
+     * Creates a reader.
+     * @param _in           the multipart body
+     * @param _boundary     the boundary from the body's Content-Type
+     * @param _maxPartCount the most parts to read before failing
+     */
+    public LocalMultipartReader(InputStream _in, String _boundary, int _maxPartCount)
+    {
+        if (_boundary == null || _boundary.isEmpty() || _boundary.length() > MAX_BOUNDARY_LENGTH)
+        {
+            String message = String.format("Invalid multipart boundary: %s", _boundary);
+            throw new IllegalArgumentException(message);
+        }
+        this.in = _in;
+        this.MAX_PART_COUNT = _maxPartCount;
+        this.delimiter = ("\r\n--" + _boundary).getBytes(StandardCharsets.ISO_8859_1);
+        int m = this.delimiter.length;
+        Arrays.fill(this.shift, m);
+        for (int i = 0; i < m - 1; ++i) { this.shift[this.delimiter[i] & 0xff] = m - 1 - i; }
+        
+        // the first delimiter has no line break before it, so start with one
+        this.buffer = LocalBufferPool.SHARED.acquireArray(BUFFER_SIZE);
+        this.buffer[0] = CR;
+        this.buffer[1] = LF;
+        this.limit = 2;
+        
+        // the preamble is read as a part that is never returned
+        this.current = new PartStream();
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    /**
+     * Skips the rest of the current part, and starts reading the next one.
+     * @return the next part, or null after the last one
+     * @throws IOException if the body is malformed or a problem occurs while reading
+     */
+    public LocalMultipartPart nextPart()
+        throws IOException
+    {
+        this.checkOpen();
+        if (this.current != null) { this.current.skipAll(); }
+        if (this.finished) { return null; }
+        if (++this.partCount > this.MAX_PART_COUNT)
+        {
+            String message = String.format("Multipart body has more than %s parts.", this.MAX_PART_COUNT);
+            throw new IOException(message);
+        }
+        Headers headers = this.readHeaders();
+        this.current = new PartStream();
+        return new LocalMultipartPart(headers, this.current);
+    }
+    
+    /**
+     * Reads every remaining part, buffering each one in memory or, past the threshold, in a temp file.
+     * @param spillThreshold the largest part to keep in memory, in bytes
+     * @param tempDirectory  the directory for temp files, or null for the system default
+     * @return               the buffered parts, in order
+     * @throws IOException if the body is malformed or a problem occurs while reading or spilling
+     */
+    public List<LocalMultipartPart> readAll(long spillThreshold, Path tempDirectory)
+        throws IOException
+    {
+        List<LocalMultipartPart> result = new ArrayList<>();
+        for (LocalMultipartPart part; null != (part = this.nextPart()); )
+        {
+            this.bufferedParts.add(part);
+            part.buffer(spillThreshold, tempDirectory);
+            result.add(part);
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the buffer to the pool and deletes the temp files of parts buffered by {@link #readAll}.
+     * Whatever follows the closing boundary is left for the exchange to discard.
+     */
+    @Override
+    public void close()
+    {
+        if (this.buffer == null) { return; }
+        LocalBufferPool.SHARED.releaseArray(this.buffer);
+        this.buffer = null;
+        for (LocalMultipartPart part : this.bufferedParts) { part.close(); }
+        this.bufferedParts.clear();
+    }
+    
+    protected void checkOpen()
+        throws IOException
+    {
+        if (this.buffer == null) { throw new IOException("multipart reader is closed"); }
+    }
+    
+    protected IOException malformed(String problem)
+    {
+        return new IOException("Malformed multipart body: " + problem);
+    }
+    
+    /**
+     * Moves unread bytes to the front of the buffer and reads more after them.
+     * @throws IOException if a problem occurs while reading
+     */
+    protected void fill()
+        throws IOException
+    {
+        this.checkOpen();
+        if (this.pos > 0)
+        {
+            int remaining = this.limit - this.pos;
+            System.arraycopy(this.buffer, this.pos, this.buffer, 0, remaining);
+            if (this.match >= 0) { this.match -= this.pos; }
+            this.scanFrom = Math.max(0, this.scanFrom - this.pos);
+            this.limit = remaining;
+            this.pos = 0;
+        }
+        if (this.limit == this.buffer.length) { throw this.malformed("line too long"); }
+        int bytesRead = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+        if (bytesRead < 0) { this.eof = true; }
+        else { this.limit += bytesRead; }
+    }
+    
+    /**
+     * Finds the delimiter in the buffer with a Boyer-Moore-Horspool search.
+     * @param from the first index it may start at
+     * @param to   the index after the last byte to search
+     * @return     the index where the delimiter starts, or -1 if it is not there
+     */
+    protected int indexOfDelimiter(int from, int to)
+    {
+        byte[] d = this.delimiter;
+        byte[] b = this.buffer;
+        int last = d.length - 1;
+        for (int i = from; i + last < to; i += this.shift[b[i + last] & 0xff])
+        {
+            int j = last;
+            while (j >= 0 && b[i + j] == d[j]) { --j; }
+            if (j < 0) { return i; }
+        }
+        return -1;
+    }
+    
+    /**
+     * Reads what follows a delimiter: "--" for the closing one, 
+     * or optional whitespace and a line break before the next part's headers.
+     * @throws IOException if the body is malformed or a problem occurs while reading
+     */
+    protected void readAfterDelimiter()
+        throws IOException
+    {
+        this.pos += this.delimiter.length;
+        this.match = -1;
+        while (this.limit - this.pos < 2 && !this.eof) { this.fill(); }
+        if (this.limit - this.pos < 2) { throw this.malformed("body ended after a boundary"); }
+        if (this.buffer[this.pos] == '-' && this.buffer[this.pos + 1] == '-')
+        {
+            this.pos += 2;
+            this.finished = true;
+            this.scanFrom = this.pos;
+            return;
+        }
+        while (true)
+        {
+            if (this.pos == this.limit)
+            {
+                if (this.eof) { throw this.malformed("body ended after a boundary"); }
+                this.fill();
+                continue;
+            }
+            byte c = this.buffer[this.pos];
+            if (c == ' ' || c == '\t') { ++this.pos; continue; }
+            if (c != CR) { throw this.malformed("boundary not followed by a line break"); }
+            while (this.limit - this.pos < 2 && !this.eof) { this.fill(); }
+            if (this.limit - this.pos < 2 || this.buffer[this.pos + 1] != LF) { throw this.malformed("boundary not followed by a line break"); }
+            this.pos += 2;
+            this.scanFrom = this.pos;
+            return;
+        }
+    }
+    
+    /**
+     * Reads a part's header lines, up to and including the blank line after them.
+     * @return the part's headers
+     * @throws IOException if the headers are malformed or too large, or a problem occurs while reading
+     */
+    protected Headers readHeaders()
+        throws IOException
+    {
+        Headers headers = new Headers();
+        int total = 0;
+        while (true)
+        {
+            int end = -1;
+            for (int scanned = this.pos; end < 0; )
+            {
+                for (int i = scanned; i + 1 < this.limit; ++i)
+                {
+                    if (this.buffer[i] == CR && this.buffer[i + 1] == LF) { end = i; break; }
+                }
+                if (end >= 0) { break; }
+                if (this.eof) { throw this.malformed("body ended in part headers"); }
+                int offset = scanned - this.pos;
+                this.fill();
+                scanned = this.pos + Math.max(0, offset);
+            }
+            
+            int length = end - this.pos;
+            total += length + 2;
+            if (total > MAX_HEADER_SIZE) { throw this.malformed("part headers too large"); }
+            if (length == 0)
+            {
+                this.pos = end + 2;
+                this.scanFrom = this.pos;
+                return headers;
+            }
+            
+            String line = new String(this.buffer, this.pos, length, StandardCharsets.UTF_8);
+            this.pos = end + 2;
+            int colon = line.indexOf(':');
+            if (colon <= 0) { throw this.malformed("part header without a colon"); }
+            headers.add(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+        }
+    }
+    
+    
+    //
+    // Nested Classes
+    //
+    
+    /**
+     * The content of the current part, which ends at the next delimiter.
+     */
+    protected class PartStream extends InputStream
+    {
+        protected boolean ended = false;
+        
+        public boolean isEnded() { return this.ended; }
+        
+        @Override
+        public int read()
+            throws IOException
+        {
+            byte[] one = new byte[1];
+            return this.read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len)
+            throws IOException
+        {
+            if (len == 0) { return this.ended ? -1 : 0; }
+            return this.advance(b, off, len);
+        }
+        
+        @Override
+        public long skip(long n)
+            throws IOException
+        {
+            int skipped = n <= 0 ? 0 : this.advance(null, 0, (int)Math.min(n, Integer.MAX_VALUE));
+            return Math.max(0, skipped);
+        }
+        
+        @Override
+        public int available()
+        {
+            LocalMultipartReader r = LocalMultipartReader.this;
+            if (this.ended || r.buffer == null) { return 0; }
+            int end = r.match >= 0 ? r.match : r.limit - (r.delimiter.length - 1);
+            return Math.max(0, end - r.pos);
+        }
+        
+        /**
+         * Skips to the end of this part, past the delimiter that ends it.
+         * @throws IOException if the body is malformed or a problem occurs while reading
+         */
+        public void skipAll()
+            throws IOException
+        {
+            while (this.advance(null, 0, Integer.MAX_VALUE) >= 0) { }
+        }
+        
+        /**
+         * Copies (or, with no array, skips) content up to the next delimiter.
+         * @return the number of bytes copied or skipped, or -1 at the end of the part
+         */
+        protected int advance(byte[] b, int off, int len)
+            throws IOException
+        {
+            if (this.ended) { return -1; }
+            LocalMultipartReader r = LocalMultipartReader.this;
+            r.checkOpen();
+            int m = r.delimiter.length;
+            while (true)
+            {
+                if (r.match < 0 && r.limit - r.pos < m && !r.eof)
+                {
+                    r.fill();
+                    continue;
+                }
+                if (r.match < 0)
+                {
+                    r.match = r.indexOfDelimiter(Math.max(r.pos, r.scanFrom), r.limit);
+                    if (r.match < 0) { r.scanFrom = Math.max(r.pos, r.limit - (m - 1)); }
+                }
+                if (r.match == r.pos)
+                {
+                    this.ended = true;
+                    r.readAfterDelimiter();
+                    return -1;
+                }
+                if (r.match < 0 && r.eof) { throw r.malformed("body ended without a closing boundary"); }
+                
+                int end = r.match >= 0 ? r.match : r.limit - (m - 1);
+                if (end > r.pos)
+                {
+                    int n = Math.min(len, end - r.pos);
+                    if (b != null) { System.arraycopy(r.buffer, r.pos, b, off, n); }
+                    r.pos += n;
+                    return n;
+                }
+                r.fill();
+            }
+        }
+        
+        @Override
+        public void close()
+        {
+            // the rest of the part is skipped when the next part is read
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,497 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalNioHttpConnection.java
+ * LocalNioHttpConnection class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.IOException;
+
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.net.httpserver.Headers;
+
+/**
+ * A connection accepted by a {@link LocalNioHttpServer}.
+ * Owns the connection's direct read and write buffers, parses request heads
+ * out of the read buffer, and blocks on a private selector whenever a request
+ * body or response needs to wait on the socket.
+ */
+class LocalNioHttpConnection
+{
+    //
+    // Static Fields
+    //
+    
+    public static final int READ_BUFFER_SIZE = 16 * 1024;
+    public static final int WRITE_BUFFER_SIZE = 16 * 1024;
+    public static final long IO_TIMEOUT_MILLIS = 30000;
+    public static final byte CR = '\r';
+    public static final byte LF = '\n';
+    
+    /** The characters other than letters and digits that an HTTP token can have. */
+    protected static final String TOKEN_SYMBOLS = "!#$%&'*+-.^_`|~";
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    protected final LocalNioHttpServer server;
+    protected final SocketChannel channel;
+    protected final InetSocketAddress localAddress;
+    protected final InetSocketAddress remoteAddress;
+    protected LocalNioHttpDispatcher dispatcher = null;
+    protected SelectionKey key = null;
+    protected volatile long lastActivity = System.currentTimeMillis();
+    protected volatile boolean closed = false;
+    
+    /** Set once the connection has been upgraded, after which it carries WebSocket frames. */
+    protected volatile LocalWebSocketSession webSocket = null;
+    
+    /** Holds unread bytes between its position and limit. */
+    protected final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    protected final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    protected final byte[] headBytes = new byte[READ_BUFFER_SIZE];
+    protected int headScanOffset = 0;
+    protected Selector waitSelector = null;
+    
+    
+    //
+    // Constructor
+    //
+    
+    public LocalNioHttpConnection(LocalNioHttpServer _server, SocketChannel _channel)
+        throws IOException
+    {
+        this.server = _server;
+        this.channel = _channel;
+        this.localAddress = (InetSocketAddress)_channel.getLocalAddress();
+        this.remoteAddress = (InetSocketAddress)_channel.getRemoteAddress();
+        this.readBuffer.flip();
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    /**
+     * Reads and dispatches the next request on this connection, or hands the
+     * connection back to the selector if a whole request head has not arrived yet.
+     */
+    public void process()
+    {
+        LocalWebSocketSession session = this.webSocket;
+        if (session != null)
+        {
+            session.onReadable();
+            return;
+        }
+        try
+        {
+            while (!this.closed)
+            {
+                LocalNioHttpExchange exchange = this.parseRequest();
+                if (exchange != null)
+                {
+                    this.server.dispatch(exchange);
+                    return;
+                }
+                
+                int bytesRead = this.fill();
+                if (bytesRead < 0)
+                {
+                    this.close();
+                    return;
+                }
+                if (bytesRead == 0)
+                {
+                    this.dispatcher.rearm(this);
+                    return;
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            this.close();
+        }
+    }
+    
+    /**
+     * Continues with this connection once an exchange on it has completed.
+     * @param keepAlive whether the connection can be used for another request
+     */
+    public void onExchangeComplete(boolean keepAlive)
+    {
+        if (!keepAlive || this.server.stopping)
+        {
+            this.close();
+            return;
+        }
+        this.lastActivity = System.currentTimeMillis();
+        if (this.readBuffer.hasRemaining())
+        {
+            // a pipelined request is already waiting
+            this.dispatcher.execute(this::process);
+        }
+        else
+        {
+            this.dispatcher.rearm(this);
+        }
+    }
+    
+    /**
+     * Continues writing to this connection once the socket can take more bytes.
+     */
+    public void onWritable()
+    {
+        LocalWebSocketSession session = this.webSocket;
+        if (session != null) { session.onWritable(); }
+    }
+    
+    /**
+     * Switches this connection over to WebSocket frames, once the 101 response has been written.
+     * @param session the session that now owns the connection
+     */
+    public void startWebSocket(LocalWebSocketSession session)
+    {
+        this.webSocket = session;
+        this.lastActivity = System.currentTimeMillis();
+        session.open();
+        if (this.closed) { return; }
+        if (this.readBuffer.hasRemaining())
+        {
+            // the client sent frames right behind its request
+            this.dispatcher.execute(this::process);
+        }
+        else
+        {
+            this.dispatcher.rearm(this);
+        }
+    }
+    
+    public void close()
+    {
+        if (this.closed) { return; }
+        this.closed = true;
+        this.server.connections.remove(this);
+        try
+        {
+            this.channel.close();
+        }
+        catch (IOException ex)
+        {
+            // nothing else to do
+        }
+        try
+        {
+            if (this.waitSelector != null) { this.waitSelector.close(); }
+        }
+        catch (IOException ex)
+        {
+            // nothing else to do
+        }
+        LocalWebSocketSession session = this.webSocket;
+        if (session != null) { session.onConnectionClosed(); }
+    }
+    
+    /**
+     * Reads whatever bytes are available into the read buffer, without blocking.
+     * @return the number of bytes read, or -1 at the end of the stream
+     * @throws IOException if the read buffer is full or a problem occurs while reading
+     */
+    protected int fill()
+        throws IOException
+    {
+        if (this.readBuffer.position() == 0 && this.readBuffer.limit() == this.readBuffer.capacity())
+        {
+            throw new IOException("Read buffer is full.");
+        }
+        this.readBuffer.compact();
+        int bytesRead;
+        try
+        {
+            bytesRead = this.channel.read(this.readBuffer);
+        }
+        finally
+        {
+            this.readBuffer.flip();
+        }
+        if (bytesRead > 0) { this.lastActivity = System.currentTimeMillis(); }
+        return bytesRead;
+    }
+    
+    /**
+     * Reads at least one byte into the read buffer, blocking if none are available.
+     * @return the number of bytes read, or -1 at the end of the stream
+     * @throws IOException if a problem occurs while reading, or the read times out
+     */
+    protected int fillBlocking()
+        throws IOException
+    {
+        int bytesRead;
+        while (0 == (bytesRead = this.fill()))
+        {
+            this.await(SelectionKey.OP_READ);
+        }
+        return bytesRead;
+    }
+    
+    /**
+     * Writes all of the given bytes to the socket, blocking as needed.
+     * @param src the bytes to write
+     * @throws IOException if a problem occurs while writing, or the write times out
+     */
+    protected void writeFully(ByteBuffer src)
+        throws IOException
+    {
+        while (src.hasRemaining())
+        {
+            if (0 == this.channel.write(src)) { this.await(SelectionKey.OP_WRITE); }
+        }
+    }
+    
+    /**
+     * Writes the buffered response bytes to the socket.
+     * @throws IOException if a problem occurs while writing
+     */
+    protected void flush()
+        throws IOException
+    {
+        this.writeBuffer.flip();
+        try
+        {
+            this.writeFully(this.writeBuffer);
+        }
+        finally
+        {
+            this.writeBuffer.clear();
+        }
+    }
+    
+    /**
+     * Buffers response bytes, writing them to the socket whenever the buffer fills.
+     * @param b   the bytes to write
+     * @param off the offset of the first byte to write
+     * @param len the number of bytes to write
+     * @throws IOException if a problem occurs while writing
+     */
+    protected void write(byte[] b, int off, int len)
+        throws IOException
+    {
+        if (len >= this.writeBuffer.capacity())
+        {
+            this.flush();
+            this.writeFully(ByteBuffer.wrap(b, off, len));
+            return;
+        }
+        while (len > 0)
+        {
+            int n = Math.min(len, this.writeBuffer.remaining());
+            this.writeBuffer.put(b, off, n);
+            off += n;
+            len -= n;
+            if (!this.writeBuffer.hasRemaining()) { this.flush(); }
+        }
+    }
+    
+    /**
+     * Blocks until the socket is ready for the given operation.
+     * @param ops the operation to wait for
+     * @throws IOException if the wait times out or a problem occurs while waiting
+     */
+    protected void await(int ops)
+        throws IOException
+    {
+        if (this.waitSelector == null) { this.waitSelector = Selector.open(); }
+        SelectionKey waitKey = this.channel.register(this.waitSelector, ops);
+        try
+        {
+            if (0 == this.waitSelector.select(IO_TIMEOUT_MILLIS))
+            {
+                throw new SocketTimeoutException("Timed out waiting on connection to " + this.remoteAddress);
+            }
+            this.waitSelector.selectedKeys().clear();
+        }
+        finally
+        {
+            waitKey.cancel();
+            this.waitSelector.selectNow();
+        }
+    }
+    
+    /**
+     * Parses the request head at the front of the read buffer, if it has all arrived.
+     * @return the exchange for the parsed request, or null if more bytes are needed
+     * @throws IOException if the request head is malformed or too large
+     */
+    protected LocalNioHttpExchange parseRequest()
+        throws IOException
+    {
+        ByteBuffer buffer = this.readBuffer;
+        
+        // skip blank lines between requests
+        while (this.headScanOffset == 0 && buffer.hasRemaining())
+        {
+            byte b = buffer.get(buffer.position());
+            if (b != CR && b != LF) { break; }
+            buffer.position(buffer.position() + 1);
+        }
+        
+        // look for the blank line that ends the head
+        int start = buffer.position();
+        int limit = buffer.limit();
+        int end = -1;
+        for (int i = start + Math.max(0, this.headScanOffset - 3); i + 3 < limit; ++i)
+        {
+            if (buffer.get(i) == CR && buffer.get(i + 1) == LF && buffer.get(i + 2) == CR && buffer.get(i + 3) == LF)
+            {
+                end = i + 4;
+                break;
+            }
+        }
+        if (end < 0)
+        {
+            this.headScanOffset = limit - start;
+            if (this.headScanOffset >= buffer.capacity())
+            {
+                this.sendError(431, "Request Header Fields Too Large");
+                throw new IOException("Request head is too large.");
+            }
+            return null;
+        }
+        this.headScanOffset = 0;
+        
+        int length = end - start;
+        buffer.get(this.headBytes, 0, length);
+        byte[] head = this.headBytes;
+        
+        // request line
+        int lineEnd = LocalNioHttpConnection.indexOfCrlf(head, 0, length);
+        int firstSpace = LocalNioHttpConnection.indexOf(head, (byte)' ', 0, lineEnd);
+        int secondSpace = firstSpace < 0 ? -1 : LocalNioHttpConnection.indexOf(head, (byte)' ', firstSpace + 1, lineEnd);
+        if (firstSpace <= 0 || secondSpace < 0)
+        {
+            this.sendError(400, "Bad Request");
+            throw new IOException("Malformed request line.");
+        }
+        String method = new String(head, 0, firstSpace, StandardCharsets.ISO_8859_1);
+        String target = new String(head, firstSpace + 1, secondSpace - firstSpace - 1, StandardCharsets.ISO_8859_1);
+        String protocol = new String(head, secondSpace + 1, lineEnd - secondSpace - 1, StandardCharsets.ISO_8859_1);
+        if (!protocol.startsWith("HTTP/1."))
+        {
+            this.sendError(505, "HTTP Version Not Supported");
+            throw new IOException("Unsupported protocol " + protocol);
+        }
+        
+        // header lines, whose names must be tokens, so that a name with a space before
+        // its colon, or a folded line, cannot hide a framing header (RFC 7230 3.2.4)
+        Headers headers = new Headers();
+        for (int lineStart = lineEnd + 2; lineStart < length - 2; lineStart = lineEnd + 2)
+        {
+            lineEnd = LocalNioHttpConnection.indexOfCrlf(head, lineStart, length);
+            int colon = LocalNioHttpConnection.indexOf(head, (byte)':', lineStart, lineEnd);
+            int bareLineBreak = Math.max(
+                LocalNioHttpConnection.indexOf(head, (byte)'\r', lineStart, lineEnd),
+                LocalNioHttpConnection.indexOf(head, (byte)'\n', lineStart, lineEnd)
+            );
+            if (colon <= lineStart || bareLineBreak >= 0 || !LocalNioHttpConnection.isToken(head, lineStart, colon))
+            {
+                this.sendError(400, "Bad Request");
+                throw new IOException("Malformed header line.");
+            }
+            int valueStart = colon + 1;
+            int valueEnd = lineEnd;
+            while (valueStart < valueEnd && (head[valueStart] == ' ' || head[valueStart] == '\t')) { ++valueStart; }
+            while (valueEnd > valueStart && (head[valueEnd - 1] == ' ' || head[valueEnd - 1] == '\t')) { --valueEnd; }
+            headers.add(
+                new String(head, lineStart, colon - lineStart, StandardCharsets.ISO_8859_1),
+                new String(head, valueStart, valueEnd - valueStart, StandardCharsets.ISO_8859_1)
+            );
+        }
+        
+        URI uri;
+        try
+        {
+            uri = new URI(target);
+        }
+        catch (URISyntaxException ex)
+        {
+            this.sendError(400, "Bad Request");
+            throw new IOException("Malformed request target.", ex);
+        }
+        
+        String path = uri.getPath() == null ? "/" : uri.getPath();
+        LocalNioHttpContext context = this.server.findContext(path);
+        return new LocalNioHttpExchange(this, context, method, uri, protocol, headers);
+    }
+    
+    /**
+     * Sends a minimal error response, for requests that cannot be parsed.
+     * @param statusCode   the HTTP status code
+     * @param reasonPhrase the reason phrase for the status code
+     */
+    protected void sendError(int statusCode, String reasonPhrase)
+    {
+        String response = "HTTP/1.1 " + statusCode + " " + reasonPhrase + "\r\n"
+            + "Content-Length: 0\r\n"
+            + "Connection: close\r\n"
+            + "\r\n";
+        try
+        {
+            this.writeFully(ByteBuffer.wrap(response.getBytes(StandardCharsets.ISO_8859_1)));
+        }
+        catch (IOException ex)
+        {
+            // the connection is closed next anyway
+        }
+    }
+    
+    protected static int indexOf(byte[] bytes, byte b, int from, int to)
+    {
+        for (int i = from; i < to; ++i)
+        {
+            if (bytes[i] == b) { return i; }
+        }
+        return -1;
+    }
+    
+    /**
+     * Tells whether a range of bytes is an HTTP token, such as a header name.
+     * A leading space or tab, as on a folded line, makes it not one.
+     */
+    protected static boolean isToken(byte[] bytes, int from, int to)
+    {
+        if (from >= to) { return false; }
+        for (int i = from; i < to; ++i)
+        {
+            int c = bytes[i] & 0xff;
+            boolean alphanumeric = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+            if (!alphanumeric && TOKEN_SYMBOLS.indexOf(c) < 0) { return false; }
+        }
+        return true;
+    }
+    
+    protected static int indexOfCrlf(byte[] bytes, int from, int to)
+    {
+        for (int i = from; i + 1 < to; ++i)
+        {
+            if (bytes[i] == CR && bytes[i + 1] == LF) { return i; }
+        }
+        return to;
+    }
+}
\ No newline at end of file
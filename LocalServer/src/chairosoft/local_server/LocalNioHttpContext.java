@@ -0,0 +1,79 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalNioHttpContext.java
+ * LocalNioHttpContext class definition
+ */
+
+package chairosoft.local_server;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.sun.net.httpserver.Authenticator;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A context of a {@link LocalNioHttpServer}.
+ * Attributes are kept in a concurrent map, so they can be read
+ * on every exchange without locking.
+ */
+public class LocalNioHttpContext extends HttpContext
+{
+    //
+    // Instance Fields
+    //
+    
+    protected final LocalNioHttpServer server;
+    protected final String path;
+    protected volatile HttpHandler handler;
+    protected volatile Authenticator authenticator = null;
+    protected final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    protected final List<Filter> filters = new CopyOnWriteArrayList<>();
+    
+    
+    //
+    // Constructor
+    //
+    
+    public LocalNioHttpContext(LocalNioHttpServer _server, String _path, HttpHandler _handler)
+    {
+        this.server = _server;
+        this.path = _path;
+        this.handler = _handler;
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    @Override public HttpHandler getHandler() { return this.handler; }
+    @Override public String getPath() { return this.path; }
+    @Override public HttpServer getServer() { return this.server; }
+    @Override public Map<String, Object> getAttributes() { return this.attributes; }
+    @Override public List<Filter> getFilters() { return this.filters; }
+    @Override public Authenticator getAuthenticator() { return this.authenticator; }
+    
+    @Override
+    public void setHandler(HttpHandler _handler)
+    {
+        if (this.handler != null) { throw new IllegalArgumentException("handler already set"); }
+        this.handler = _handler;
+    }
+    
+    @Override
+    public Authenticator setAuthenticator(Authenticator _authenticator)
+    {
+        Authenticator previous = this.authenticator;
+        this.authenticator = _authenticator;
+        return previous;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,298 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalNioHttpDispatcher.java
+ * LocalNioHttpDispatcher class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.IOException;
+
+import java.net.StandardSocketOptions;
+
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * One selector thread of a {@link LocalNioHttpServer}.
+ * <p>
+ * A dispatcher accepts connections on the listening sockets registered 
+ * with it, and waits for its idle connections to become readable. A 
+ * listening socket that is shared by all dispatchers is registered with 
+ * the first one only, which hands the connections it accepts to each 
+ * dispatcher in turn; a socket opened with SO_REUSEPORT for just this 
+ * dispatcher keeps its connections, since the kernel has already spread them.
+ */
+public class LocalNioHttpDispatcher implements Runnable
+{
+    //
+    // Instance Fields
+    //
+    
+    protected final LocalNioHttpServer server;
+    protected final int index;
+    protected final Selector selector;
+    protected final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    protected Thread thread = null;
+    
+    
+    //
+    // Constructor
+    //
+    
+    public LocalNioHttpDispatcher(LocalNioHttpServer _server, int _index)
+        throws IOException
+    {
+        this.server = _server;
+        this.index = _index;
+        this.selector = Selector.open();
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    /**
+     * Starts this dispatcher's selector thread.
+     * @param name the name of the thread
+     */
+    public synchronized void start(String name)
+    {
+        if (this.thread != null) { throw new IllegalStateException("Dispatcher has already been started."); }
+        this.thread = new Thread(this, name);
+        this.thread.start();
+    }
+    
+    /**
+     * Waits for this dispatcher's selector thread to end, once the server is no longer running.
+     */
+    public void join()
+    {
+        Thread t;
+        synchronized (this)
+        {
+            t = this.thread;
+        }
+        if (t == null) { return; }
+        this.selector.wakeup();
+        try
+        {
+            t.join();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Accepts connections on a listening socket from now on.
+     * @param channel    the listening socket, which must be non-blocking
+     * @param distribute whether accepted connections are handed to every dispatcher in turn
+     */
+    public void listen(ServerSocketChannel channel, boolean distribute)
+    {
+        this.runOnSelector(() ->
+        {
+            try
+            {
+                channel.register(this.selector, SelectionKey.OP_ACCEPT, distribute);
+            }
+            catch (ClosedChannelException ex)
+            {
+                // the server is stopping
+            }
+        });
+    }
+    
+    /**
+     * Runs a task on the server's executor, or on this dispatcher's thread if there is no executor.
+     * @param task the task to run
+     */
+    protected void execute(Runnable task)
+    {
+        Executor e = this.server.executor;
+        if (e == null)
+        {
+            this.runOnSelector(task);
+        }
+        else
+        {
+            e.execute(task);
+        }
+    }
+    
+    /**
+     * Queues a task to run on this dispatcher's thread.
+     * @param task the task to run
+     */
+    protected void runOnSelector(Runnable task)
+    {
+        this.tasks.add(task);
+        this.selector.wakeup();
+    }
+    
+    /**
+     * Hands a connection back to this dispatcher to wait for its next request.
+     * @param connection the idle connection
+     */
+    protected void rearm(LocalNioHttpConnection connection)
+    {
+        this.runOnSelector(() ->
+        {
+            SelectionKey key = connection.key;
+            if (key != null && key.isValid()) { key.interestOps(key.interestOps() | SelectionKey.OP_READ); }
+        });
+    }
+    
+    /**
+     * Asks this dispatcher to say when a connection's socket can take more bytes.
+     * @param connection the connection waiting to write
+     */
+    protected void armWrite(LocalNioHttpConnection connection)
+    {
+        this.runOnSelector(() ->
+        {
+            SelectionKey key = connection.key;
+            if (key != null && key.isValid()) { key.interestOps(key.interestOps() | SelectionKey.OP_WRITE); }
+        });
+    }
+    
+    @Override
+    public void run()
+    {
+        long lastSweep = System.currentTimeMillis();
+        try
+        {
+            while (this.server.running)
+            {
+                this.selector.select(LocalNioHttpServer.SELECT_TIMEOUT_MILLIS);
+                
+                for (Runnable task; null != (task = this.tasks.poll()); )
+                {
+                    task.run();
+                }
+                
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext())
+                {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) { continue; }
+                    if (key.isAcceptable())
+                    {
+                        this.acceptConnections((ServerSocketChannel)key.channel(), (Boolean)key.attachment());
+                    }
+                    else
+                    {
+                        // only WebSocket connections ever wait on OP_WRITE here
+                        LocalNioHttpConnection connection = (LocalNioHttpConnection)key.attachment();
+                        int readyOps = key.readyOps();
+                        key.interestOps(key.interestOps() & ~readyOps);
+                        if ((readyOps & SelectionKey.OP_WRITE) != 0) { this.execute(connection::onWritable); }
+                        if ((readyOps & SelectionKey.OP_READ) != 0) { this.execute(connection::process); }
+                    }
+                }
+                
+                long now = System.currentTimeMillis();
+                if (now - lastSweep >= LocalNioHttpServer.SELECT_TIMEOUT_MILLIS)
+                {
+                    lastSweep = now;
+                    this.closeIdleConnections(now);
+                }
+            }
+        }
+        catch (IOException | ClosedSelectorException ex)
+        {
+            // the selector can no longer be used, so stop
+        }
+        finally
+        {
+            try
+            {
+                this.selector.close();
+            }
+            catch (IOException ex)
+            {
+                // nothing else to do
+            }
+        }
+    }
+    
+    protected void acceptConnections(ServerSocketChannel serverChannel, boolean distribute)
+        throws IOException
+    {
+        for (SocketChannel channel; null != (channel = serverChannel.accept()); )
+        {
+            LocalNioHttpDispatcher target = distribute ? this.server.nextDispatcher() : this;
+            if (target == this)
+            {
+                this.register(channel);
+            }
+            else
+            {
+                SocketChannel accepted = channel;
+                target.runOnSelector(() -> target.register(accepted));
+            }
+        }
+    }
+    
+    /**
+     * Starts waiting for requests on a newly accepted connection. Runs on this dispatcher's thread.
+     * @param channel the accepted connection
+     */
+    protected void register(SocketChannel channel)
+    {
+        try
+        {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            LocalNioHttpConnection connection = new LocalNioHttpConnection(this.server, channel);
+            connection.dispatcher = this;
+            connection.key = channel.register(this.selector, SelectionKey.OP_READ, connection);
+            this.server.connections.add(connection);
+        }
+        catch (IOException ex)
+        {
+            try
+            {
+                channel.close();
+            }
+            catch (IOException closeEx)
+            {
+                // nothing else to do
+            }
+        }
+    }
+    
+    protected void closeIdleConnections(long now)
+    {
+        long idleTimeoutMillis = this.server.idleTimeoutMillis;
+        List<LocalNioHttpConnection> idle = new ArrayList<>();
+        for (SelectionKey key : this.selector.keys())
+        {
+            Object attachment = key.attachment();
+            if (attachment instanceof LocalNioHttpConnection && key.isValid() && key.interestOps() == SelectionKey.OP_READ
+                && ((LocalNioHttpConnection)attachment).webSocket == null)
+            {
+                LocalNioHttpConnection connection = (LocalNioHttpConnection)attachment;
+                if (now - connection.lastActivity > idleTimeoutMillis) { idle.add(connection); }
+            }
+        }
+        for (LocalNioHttpConnection connection : idle) { connection.close(); }
+    }
+}
\ No newline at end of file
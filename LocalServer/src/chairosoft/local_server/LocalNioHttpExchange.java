@@ -0,0 +1,818 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalNioHttpExchange.java
+ * LocalNioHttpExchange class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import java.time.Instant;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+/**
+ * An exchange on a {@link LocalNioHttpServer} connection.
+ * Response bytes are gathered in the connection's direct write buffer, so
+ * the status line, headers and a small body usually go out in one write.
+ */
+public class LocalNioHttpExchange extends HttpExchange
+{
+    //
+    // Static Fields
+    //
+    
+    /** The most unread request body bytes that are skipped to keep a connection alive. */
+    public static final long MAX_DRAIN_BYTES = 64 * 1024;
+    protected static final long MALFORMED_CONTENT_LENGTH = -2;
+    
+    protected static final byte[] CRLF_BYTES = { '\r', '\n' };
+    protected static final byte[] LAST_CHUNK_BYTES = { '0', '\r', '\n', '\r', '\n' };
+    protected static volatile long cachedDateSecond = 0;
+    protected static volatile String cachedDate = null;
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Gets the current time as an HTTP date, recomputing it at most once a second.
+     * @return the current HTTP date
+     */
+    public static String getDate()
+    {
+        long second = System.currentTimeMillis() / 1000;
+        String date = cachedDate;
+        if (date == null || second != cachedDateSecond)
+        {
+            date = LocalStaticFileHandler.HTTP_DATE_FORMAT.format(Instant.ofEpochSecond(second));
+            cachedDate = date;
+            cachedDateSecond = second;
+        }
+        return date;
+    }
+    
+    /**
+     * Gets the standard reason phrase for a status code.
+     * @param statusCode the status code
+     * @return           the reason phrase, or an empty string if it is not known
+     */
+    public static String getReasonPhrase(int statusCode)
+    {
+        switch (statusCode)
+        {
+            case 100: return "Continue";
+            case 101: return "Switching Protocols";
+            case 200: return "OK";
+            case 201: return "Created";
+            case 202: return "Accepted";
+            case 204: return "No Content";
+            case 206: return "Partial Content";
+            case 301: return "Moved Permanently";
+            case 302: return "Found";
+            case 303: return "See Other";
+            case 304: return "Not Modified";
+            case 307: return "Temporary Redirect";
+            case 308: return "Permanent Redirect";
+            case 400: return "Bad Request";
+            case 401: return "Unauthorized";
+            case 403: return "Forbidden";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 406: return "Not Acceptable";
+            case 408: return "Request Timeout";
+            case 409: return "Conflict";
+            case 410: return "Gone";
+            case 411: return "Length Required";
+            case 412: return "Precondition Failed";
+            case 413: return "Request Entity Too Large";
+            case 415: return "Unsupported Media Type";
+            case 416: return "Requested Range Not Satisfiable";
+            case 417: return "Expectation Failed";
+            case 426: return "Upgrade Required";
+            case 429: return "Too Many Requests";
+            case 431: return "Request Header Fields Too Large";
+            case 500: return "Internal Server Error";
+            case 501: return "Not Implemented";
+            case 502: return "Bad Gateway";
+            case 503: return "Service Unavailable";
+            case 504: return "Gateway Timeout";
+            case 505: return "HTTP Version Not Supported";
+            default: return "";
+        }
+    }
+    
+    
+    /**
+     * Parses the Content-Length values of a request.
+     * Repeated values, whether in separate headers or in one comma-separated list,
+     * must all be the same.
+     * @param values the Content-Length header values, or null if there are none
+     * @return       the content length, -1 if there is none, 
+     *               or {@link #MALFORMED_CONTENT_LENGTH} if a value is malformed or they disagree
+     */
+    protected static long parseContentLength(List<String> values)
+    {
+        if (values == null) { return -1; }
+        long result = -1;
+        for (String value : values)
+        {
+            for (String item : value.split(",", -1))
+            {
+                item = item.trim();
+                if (item.isEmpty() || item.length() > 18) { return MALFORMED_CONTENT_LENGTH; }
+                long length = 0;
+                for (int i = 0; i < item.length(); ++i)
+                {
+                    char c = item.charAt(i);
+                    if (c < '0' || c > '9') { return MALFORMED_CONTENT_LENGTH; }
+                    length = length * 10 + (c - '0');
+                }
+                if (result >= 0 && result != length) { return MALFORMED_CONTENT_LENGTH; }
+                result = length;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Parses the size of a chunk, in hexadecimal, without a sign.
+     * @param size the size to parse
+     * @return     the size, or -1 if it is malformed or too large
+     */
+    protected static long parseChunkSize(String size)
+    {
+        if (size.isEmpty() || size.length() > 15) { return -1; }
+        long result = 0;
+        for (int i = 0; i < size.length(); ++i)
+        {
+            int digit = Character.digit(size.charAt(i), 16);
+            if (digit < 0) { return -1; }
+            result = (result << 4) | digit;
+        }
+        return result;
+    }
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    protected final LocalNioHttpConnection connection;
+    protected final LocalNioHttpContext context;
+    protected final String method;
+    protected final URI uri;
+    protected final String protocol;
+    protected final Headers requestHeaders;
+    protected final Headers responseHeaders = new Headers();
+    protected final boolean isHead;
+    
+    protected final RequestBody requestBody;
+    protected final ResponseBody responseBody = new ResponseBody();
+    protected InputStream userRequestBody = null;
+    protected OutputStream userResponseBody = null;
+    protected Map<String, Object> attributes = null;
+    protected HttpPrincipal principal = null;
+    
+    protected int responseCode = -1;
+    protected boolean keepAlive;
+    protected boolean complete = false;
+    protected LocalWebSocketSession webSocket = null;
+    
+    
+    //
+    // Constructor
+    //
+    
+    protected LocalNioHttpExchange(LocalNioHttpConnection _connection, LocalNioHttpContext _context, String _method, URI _uri, String _protocol, Headers _requestHeaders)
+        throws IOException
+    {
+        this.connection = _connection;
+        this.context = _context;
+        this.method = _method;
+        this.uri = _uri;
+        this.protocol = _protocol;
+        this.requestHeaders = _requestHeaders;
+        this.isHead = _method.equals("HEAD");
+        
+        String connectionHeader = _requestHeaders.getFirst("Connection");
+        boolean isHttp10 = _protocol.equals("HTTP/1.0");
+        this.keepAlive = isHttp10
+            ? connectionHeader != null && connectionHeader.equalsIgnoreCase("keep-alive")
+            : connectionHeader == null || !connectionHeader.equalsIgnoreCase("close");
+        
+        // only a plain chunked coding is understood; anything else cannot be framed safely
+        List<String> transferEncodings = _requestHeaders.get("Transfer-Encoding");
+        boolean chunked = transferEncodings != null;
+        if (chunked && (transferEncodings.size() != 1 || !transferEncodings.get(0).trim().equalsIgnoreCase("chunked")))
+        {
+            this.connection.sendError(400, "Bad Request");
+            throw new IOException("Unsupported Transfer-Encoding: " + transferEncodings);
+        }
+        long contentLength = LocalNioHttpExchange.parseContentLength(_requestHeaders.get("Content-Length"));
+        if (contentLength == MALFORMED_CONTENT_LENGTH || (chunked && contentLength >= 0))
+        {
+            this.connection.sendError(400, "Bad Request");
+            throw new IOException("Malformed or conflicting Content-Length, or both Content-Length and Transfer-Encoding.");
+        }
+        boolean expectContinue = "100-continue".equalsIgnoreCase(_requestHeaders.getFirst("Expect"));
+        this.requestBody = new RequestBody(chunked, chunked ? 0 : Math.max(0, contentLength), expectContinue && !isHttp10);
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    @Override public Headers getRequestHeaders() { return this.requestHeaders; }
+    @Override public Headers getResponseHeaders() { return this.responseHeaders; }
+    @Override public URI getRequestURI() { return this.uri; }
+    @Override public String getRequestMethod() { return this.method; }
+    @Override public HttpContext getHttpContext() { return this.context; }
+    @Override public InetSocketAddress getRemoteAddress() { return this.connection.remoteAddress; }
+    @Override public InetSocketAddress getLocalAddress() { return this.connection.localAddress; }
+    @Override public String getProtocol() { return this.protocol; }
+    @Override public int getResponseCode() { return this.responseCode; }
+    @Override public HttpPrincipal getPrincipal() { return this.principal; }
+    
+    @Override
+    public InputStream getRequestBody()
+    {
+        return this.userRequestBody != null ? this.userRequestBody : this.requestBody;
+    }
+    
+    @Override
+    public OutputStream getResponseBody()
+    {
+        return this.userResponseBody != null ? this.userResponseBody : this.responseBody;
+    }
+    
+    @Override
+    public synchronized Object getAttribute(String name)
+    {
+        return this.attributes == null ? null : this.attributes.get(name);
+    }
+    
+    @Override
+    public synchronized void setAttribute(String name, Object value)
+    {
+        if (this.attributes == null) { this.attributes = new HashMap<>(); }
+        if (value == null)
+        {
+            this.attributes.remove(name);
+        }
+        else
+        {
+            this.attributes.put(name, value);
+        }
+    }
+    
+    @Override
+    public void setStreams(InputStream i, OutputStream o)
+    {
+        if (i != null) { this.userRequestBody = i; }
+        if (o != null) { this.userResponseBody = o; }
+    }
+    
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength)
+        throws IOException
+    {
+        if (this.responseCode >= 0) { throw new IOException("headers already sent"); }
+        this.responseCode = rCode;
+        
+        boolean noBody = this.isHead || rCode == 204 || rCode == 304 || (rCode >= 100 && rCode < 200);
+        if (this.requestBody.remaining() > MAX_DRAIN_BYTES && !this.requestBody.isFinished())
+        {
+            // the rest of the request body cannot be skipped cheaply, so close after this response
+            this.keepAlive = false;
+        }
+        
+        Headers headers = this.responseHeaders;
+        if (!headers.containsKey("Date")) { headers.set("Date", LocalNioHttpExchange.getDate()); }
+        if (noBody)
+        {
+            if (responseLength >= 0 && !this.isHead && rCode != 304)
+            {
+                headers.remove("Content-Length");
+            }
+            this.responseBody.mode = ResponseBody.NONE;
+        }
+        else if (responseLength > 0)
+        {
+            headers.set("Content-Length", Long.toString(responseLength));
+            this.responseBody.mode = ResponseBody.FIXED;
+            this.responseBody.remaining = responseLength;
+        }
+        else if (responseLength == 0)
+        {
+            if (this.protocol.equals("HTTP/1.0"))
+            {
+                this.keepAlive = false;
+                this.responseBody.mode = ResponseBody.CLOSE_DELIMITED;
+            }
+            else
+            {
+                headers.set("Transfer-Encoding", "chunked");
+                this.responseBody.mode = ResponseBody.CHUNKED;
+            }
+        }
+        else
+        {
+            headers.set("Content-Length", "0");
+            this.responseBody.mode = ResponseBody.NONE;
+        }
+        
+        String responseConnection = headers.getFirst("Connection");
+        if (responseConnection != null && responseConnection.equalsIgnoreCase("close")) { this.keepAlive = false; }
+        if (!this.keepAlive)
+        {
+            headers.set("Connection", "close");
+        }
+        else if (this.protocol.equals("HTTP/1.0"))
+        {
+            headers.set("Connection", "keep-alive");
+        }
+        
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("HTTP/1.1 ").append(rCode).append(' ').append(LocalNioHttpExchange.getReasonPhrase(rCode)).append("\r\n");
+        for (Map.Entry<String, List<String>> entry : headers.entrySet())
+        {
+            for (String value : entry.getValue())
+            {
+                sb.append(entry.getKey()).append(": ").append(value).append("\r\n");
+            }
+        }
+        sb.append("\r\n");
+        byte[] head = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+        this.connection.write(head, 0, head.length);
+        
+        if (this.responseBody.mode == ResponseBody.NONE)
+        {
+            this.responseBody.close();
+        }
+    }
+    
+    @Override
+    public void close()
+    {
+        try
+        {
+            this.getRequestBody().close();
+        }
+        catch (IOException ex)
+        {
+            this.keepAlive = false;
+        }
+        try
+        {
+            if (this.responseCode < 0)
+            {
+                this.keepAlive = false;
+                this.complete();
+                return;
+            }
+            this.getResponseBody().close();
+        }
+        catch (IOException ex)
+        {
+            this.keepAlive = false;
+            this.complete();
+        }
+    }
+    
+    /**
+     * Sends the 101 response that switches this exchange's connection to the
+     * WebSocket protocol. The session starts reading frames once the response is written.
+     * @param session   the session that takes over the connection
+     * @param acceptKey the Sec-WebSocket-Accept value
+     * @throws IOException if the response cannot be written
+     */
+    protected void upgradeToWebSocket(LocalWebSocketSession session, String acceptKey)
+        throws IOException
+    {
+        this.webSocket = session;
+        this.responseHeaders.set("Upgrade", "websocket");
+        this.responseHeaders.set("Connection", "Upgrade");
+        this.responseHeaders.set("Sec-WebSocket-Accept", acceptKey);
+        this.sendResponseHeaders(101, -1);
+    }
+    
+    /**
+     * Ends this exchange after its handler failed.
+     * Sends a 500 response if no headers have been sent yet.
+     * @param cause what the handler failed with
+     */
+    protected void abort(Throwable cause)
+    {
+        this.keepAlive = false;
+        if (this.responseCode < 0)
+        {
+            try
+            {
+                this.responseHeaders.clear();
+                this.sendResponseHeaders(500, -1);
+            }
+            catch (IOException ex)
+            {
+                // the connection is closed next anyway
+            }
+        }
+        this.complete();
+    }
+    
+    /**
+     * Finishes this exchange and passes its connection on to the next request.
+     */
+    protected void complete()
+    {
+        synchronized (this)
+        {
+            if (this.complete) { return; }
+            this.complete = true;
+        }
+        boolean reusable = this.keepAlive && this.responseBody.isFinished();
+        if (reusable)
+        {
+            try
+            {
+                reusable = this.requestBody.drain(MAX_DRAIN_BYTES);
+            }
+            catch (IOException ex)
+            {
+                reusable = false;
+            }
+        }
+        this.connection.server.activeExchangeCount.decrementAndGet();
+        if (this.webSocket != null && reusable && !this.connection.server.stopping)
+        {
+            this.connection.startWebSocket(this.webSocket);
+            return;
+        }
+        if (this.webSocket != null && reusable)
+        {
+            // the client already has its 101 response, so tell it the session is over
+            this.webSocket.sendClose(LocalWebSocket.CLOSE_GOING_AWAY, "server is shutting down", true);
+            return;
+        }
+        this.connection.onExchangeComplete(reusable);
+    }
+    
+    
+    //
+    // Nested Classes
+    //
+    
+    /**
+     * Reads a request body out of the connection's read buffer, refilling it as needed.
+     */
+    protected class RequestBody extends InputStream
+    {
+        protected final boolean chunked;
+        protected long remaining;
+        protected boolean expectContinue;
+        protected boolean finished;
+        protected boolean closed = false;
+        
+        protected RequestBody(boolean _chunked, long contentLength, boolean _expectContinue)
+        {
+            this.chunked = _chunked;
+            this.remaining = contentLength;
+            this.expectContinue = _expectContinue;
+            this.finished = !_chunked && contentLength == 0;
+        }
+        
+        public boolean isFinished() { return this.finished; }
+        public long remaining() { return this.chunked ? 0 : this.remaining; }
+        
+        protected void sendContinue()
+            throws IOException
+        {
+            if (!this.expectContinue) { return; }
+            this.expectContinue = false;
+            if (LocalNioHttpExchange.this.responseCode >= 0) { return; }
+            byte[] response = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+            LocalNioHttpExchange.this.connection.writeFully(ByteBuffer.wrap(response));
+        }
+        
+        protected int readBufferedByte()
+            throws IOException
+        {
+            LocalNioHttpConnection c = LocalNioHttpExchange.this.connection;
+            if (!c.readBuffer.hasRemaining() && c.fillBlocking() < 0)
+            {
+                throw new IOException("Connection closed in the middle of a request body.");
+            }
+            return c.readBuffer.get() & 0xff;
+        }
+        
+        protected String readLine()
+            throws IOException
+        {
+            StringBuilder sb = new StringBuilder();
+            for (int b; '\n' != (b = this.readBufferedByte()); )
+            {
+                if (b != '\r') { sb.append((char)b); }
+                if (sb.length() > 4096) { throw new IOException("Chunk header line is too long."); }
+            }
+            return sb.toString();
+        }
+        
+        /** Moves to the next chunk if the current one is used up. */
+        protected void nextChunk()
+            throws IOException
+        {
+            if (!this.chunked || this.finished || this.remaining > 0) { return; }
+            String line = this.readLine();
+            int extension = line.indexOf(';');
+            String size = (extension < 0 ? line : line.substring(0, extension)).trim();
+            this.remaining = LocalNioHttpExchange.parseChunkSize(size);
+            if (this.remaining < 0)
+            {
+                this.remaining = 0;
+                throw this.malformed("Malformed chunk size: " + size);
+            }
+            if (this.remaining == 0)
+            {
+                while (!this.readLine().isEmpty()) { }
+                this.finished = true;
+            }
+        }
+        
+        @Override
+        public int read()
+            throws IOException
+        {
+            byte[] b = new byte[1];
+            return this.read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len)
+            throws IOException
+        {
+            if (this.closed) { throw new IOException("stream is closed"); }
+            if (len == 0) { return 0; }
+            this.sendContinue();
+            this.nextChunk();
+            if (this.finished) { return -1; }
+            
+            LocalNioHttpConnection c = LocalNioHttpExchange.this.connection;
+            if (!c.readBuffer.hasRemaining() && c.fillBlocking() < 0)
+            {
+                throw new IOException("Connection closed in the middle of a request body.");
+            }
+            int n = (int)Math.min(Math.min(len, this.remaining), c.readBuffer.remaining());
+            c.readBuffer.get(b, off, n);
+            this.remaining -= n;
+            if (this.remaining == 0 && !this.chunked) { this.finished = true; }
+            if (this.remaining == 0 && this.chunked)
+            {
+                if (this.readBufferedByte() != '\r' || this.readBufferedByte() != '\n')
+                {
+                    throw this.malformed("Chunk data is not followed by CRLF.");
+                }
+            }
+            return n;
+        }
+        
+        /**
+         * Gives up on a request body whose framing is broken.
+         * The connection is closed afterwards, and if no response has been sent yet, 
+         * a 400 response is sent in its place.
+         * @param message what is wrong with the body
+         * @return        the exception to throw
+         */
+        protected IOException malformed(String message)
+        {
+            LocalNioHttpExchange exchange = LocalNioHttpExchange.this;
+            exchange.keepAlive = false;
+            this.finished = true;
+            if (exchange.responseCode < 0)
+            {
+                exchange.responseCode = 400;
+                exchange.connection.sendError(400, "Bad Request");
+                exchange.responseBody.mode = ResponseBody.NONE;
+                exchange.responseBody.finished = true;
+            }
+            return new IOException(message);
+        }
+        
+        @Override
+        public int available()
+        {
+            if (this.finished) { return 0; }
+            return (int)Math.min(this.remaining, LocalNioHttpExchange.this.connection.readBuffer.remaining());
+        }
+        
+        /**
+         * Skips the rest of the body so the connection can be reused.
+         * @param maxBytes the most bytes to skip
+         * @return         true if the whole body was skipped
+         * @throws IOException if a problem occurs while reading
+         */
+        public boolean drain(long maxBytes)
+            throws IOException
+        {
+            if (this.finished) { return true; }
+            if (this.expectContinue) { return false; }
+            this.closed = false;
+            byte[] skipBuffer = LocalBufferPool.SHARED.acquireArray(4096);
+            try
+            {
+                long skipped = 0;
+                for (int n; skipped <= maxBytes && -1 < (n = this.read(skipBuffer, 0, skipBuffer.length)); )
+                {
+                    skipped += n;
+                }
+            }
+            finally
+            {
+                LocalBufferPool.SHARED.releaseArray(skipBuffer);
+            }
+            return this.finished;
+        }
+        
+        @Override
+        public void close()
+        {
+            this.closed = true;
+        }
+    }
+    
+    /**
+     * Writes a response body through the connection's write buffer.
+     * Also a WritableByteChannel, so buffers (including mapped files) can be
+     * written to the socket without going through a heap array.
+     */
+    public class ResponseBody extends OutputStream implements WritableByteChannel
+    {
+        public static final int NONE = 0;
+        public static final int FIXED = 1;
+        public static final int CHUNKED = 2;
+        public static final int CLOSE_DELIMITED = 3;
+        
+        protected int mode = NONE;
+        protected long remaining = 0;
+        protected boolean closed = false;
+        protected boolean finished = false;
+        
+        public boolean isFinished() { return this.finished; }
+        
+        protected void checkWritable(long length)
+            throws IOException
+        {
+            if (this.closed) { throw new IOException("stream is closed"); }
+            if (LocalNioHttpExchange.this.responseCode < 0) { throw new IOException("response headers not sent yet"); }
+            if (this.mode == NONE) { throw new IOException("response has no body"); }
+            if (this.mode == FIXED && length > this.remaining)
+            {
+                throw new IOException("too many bytes to write to stream");
+            }
+        }
+        
+        protected void writeChunkHeader(long length)
+            throws IOException
+        {
+            byte[] header = (Long.toHexString(length) + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+            LocalNioHttpExchange.this.connection.write(header, 0, header.length);
+        }
+        
+        @Override
+        public void write(int b)
+            throws IOException
+        {
+            this.write(new byte[] { (byte)b }, 0, 1);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len)
+            throws IOException
+        {
+            this.checkWritable(len);
+            if (len == 0) { return; }
+            LocalNioHttpConnection c = LocalNioHttpExchange.this.connection;
+            if (this.mode == CHUNKED) { this.writeChunkHeader(len); }
+            c.write(b, off, len);
+            if (this.mode == CHUNKED) { c.write(CRLF_BYTES, 0, 2); }
+            if (this.mode == FIXED) { this.remaining -= len; }
+        }
+        
+        @Override
+        public int write(ByteBuffer src)
+            throws IOException
+        {
+            int len = src.remaining();
+            this.checkWritable(len);
+            if (len == 0) { return 0; }
+            LocalNioHttpConnection c = LocalNioHttpExchange.this.connection;
+            if (this.mode == CHUNKED) { this.writeChunkHeader(len); }
+            if (len <= c.writeBuffer.remaining())
+            {
+                c.writeBuffer.put(src);
+            }
+            else
+            {
+                c.flush();
+                c.writeFully(src);
+            }
+            if (this.mode == CHUNKED) { c.write(CRLF_BYTES, 0, 2); }
+            if (this.mode == FIXED) { this.remaining -= len; }
+            return len;
+        }
+        
+        /**
+         * Transfers part of a file straight to the socket.
+         * @param file     the file to transfer from
+         * @param position the position in the file to start from
+         * @param count    the number of bytes to transfer
+         * @throws IOException if a problem occurs while reading or writing
+         */
+        public void transferFrom(FileChannel file, long position, long count)
+            throws IOException
+        {
+            this.checkWritable(count);
+            if (count == 0) { return; }
+            LocalNioHttpConnection c = LocalNioHttpExchange.this.connection;
+            if (this.mode == CHUNKED) { this.writeChunkHeader(count); }
+            c.flush();
+            long end = position + count;
+            while (position < end)
+            {
+                long transferred = file.transferTo(position, end - position, c.channel);
+                if (transferred > 0)
+                {
+                    position += transferred;
+                }
+                else if (position >= file.size())
+                {
+                    throw new IOException("File ended before position " + end);
+                }
+                else
+                {
+                    c.await(SelectionKey.OP_WRITE);
+                }
+            }
+            if (this.mode == CHUNKED) { c.write(CRLF_BYTES, 0, 2); }
+            if (this.mode == FIXED) { this.remaining -= count; }
+        }
+        
+        @Override
+        public void flush()
+            throws IOException
+        {
+            if (!this.closed && LocalNioHttpExchange.this.responseCode >= 0)
+            {
+                LocalNioHttpExchange.this.connection.flush();
+            }
+        }
+        
+        @Override public boolean isOpen() { return !this.closed; }
+        
+        @Override
+        public void close()
+            throws IOException
+        {
+            if (this.closed) { return; }
+            this.closed = true;
+            LocalNioHttpExchange exchange = LocalNioHttpExchange.this;
+            try
+            {
+                if (this.mode == CHUNKED)
+                {
+                    exchange.connection.write(LAST_CHUNK_BYTES, 0, LAST_CHUNK_BYTES.length);
+                }
+                exchange.connection.flush();
+                this.finished = this.mode != FIXED || this.remaining == 0;
+                if (this.mode == CLOSE_DELIMITED) { exchange.keepAlive = false; }
+            }
+            finally
+            {
+                exchange.complete();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,468 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalNioHttpServer.java
+ * LocalNioHttpServer class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.IOException;
+
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.Authenticator;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An HttpServer built on NIO selectors.
+ * <p>
+ * Each {@link LocalNioHttpDispatcher} thread accepts connections and waits 
+ * for idle connections to become readable. There is one dispatcher unless 
+ * more are asked for; with more, the first dispatcher hands its connections 
+ * out to the others in turn. Where the platform has SO_REUSEPORT, a server 
+ * can instead be asked to give each listener a socket per dispatcher, so 
+ * the kernel spreads connections across them. A server can listen on several 
+ * addresses at once, all sharing the same contexts. Request headers are parsed straight out of each
+ * connection's direct read buffer, and a connection is only handed to the
+ * executor once a whole request head has arrived. Connections are kept
+ * alive between requests, and pipelined requests already in the read buffer
+ * are handled in order without going back to the selector.
+ * <p>
+ * Contexts, filters, authenticators, attributes and executors behave as they
+ * do for the JDK's HttpServer, so HttpHandlers (and so LocalHttpHandlers)
+ * run unchanged on either server.
+ */
+public class LocalNioHttpServer extends HttpServer
+{
+    //
+    // Static Fields
+    //
+    
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30000;
+    public static final long SELECT_TIMEOUT_MILLIS = 1000;
+    
+    /** The SO_REUSEPORT option, which is only standard from Java 9; null where it is missing. */
+    public static final SocketOption<Boolean> SO_REUSEPORT = LocalNioHttpServer.findReusePortOption();
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Creates a server, bound to the given address if there is one.
+     * @param  address     the address to bind to, or null to bind later
+     * @param  backlogMax  the maximum number of queued incoming connections, or 0 for the system default
+     * @return the created server
+     * @throws IOException if the server cannot be bound
+     */
+    public static LocalNioHttpServer create(InetSocketAddress address, int backlogMax)
+        throws IOException
+    {
+        return LocalNioHttpServer.create(address, backlogMax, 1, false);
+    }
+    
+    /**
+     * Creates a server with the given number of dispatcher threads, bound to the given address if there is one.
+     * @param  address         the address to bind to, or null to bind later
+     * @param  backlogMax      the maximum number of queued incoming connections, or 0 for the system default
+     * @param  dispatcherCount the number of selector threads to accept and wait on connections with
+     * @param  reusePort       true to give each dispatcher its own listening socket through SO_REUSEPORT, 
+     *                         where the platform has it; binding then succeeds even on a port that another 
+     *                         process holds with SO_REUSEPORT, so only opt in where the port is known to be free
+     * @return the created server
+     * @throws IOException if the server cannot be bound
+     */
+    public static LocalNioHttpServer create(InetSocketAddress address, int backlogMax, int dispatcherCount, boolean reusePort)
+        throws IOException
+    {
+        LocalNioHttpServer server = new LocalNioHttpServer(dispatcherCount, reusePort);
+        if (address != null) { server.bind(address, backlogMax); }
+        return server;
+    }
+    
+    @SuppressWarnings("unchecked")
+    protected static SocketOption<Boolean> findReusePortOption()
+    {
+        try
+        {
+            return (SocketOption<Boolean>)StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+        }
+        catch (ReflectiveOperationException | RuntimeException ex)
+        {
+            return null;
+        }
+    }
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    public final int DISPATCHER_COUNT;
+    public final boolean REUSE_PORT;
+    
+    protected final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    protected LocalNioHttpDispatcher[] dispatchers = null;
+    protected final AtomicInteger nextDispatcherIndex = new AtomicInteger();
+    protected volatile Executor executor = null;
+    protected volatile boolean running = false;
+    protected volatile boolean stopping = false;
+    protected volatile long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+    
+    protected final List<LocalNioHttpContext> contexts = new CopyOnWriteArrayList<>();
+    protected final Set<LocalNioHttpConnection> connections = ConcurrentHashMap.newKeySet();
+    protected final AtomicInteger activeExchangeCount = new AtomicInteger();
+    
+    
+    //
+    // Constructor
+    //
+    
+    protected LocalNioHttpServer(int _dispatcherCount, boolean _reusePort)
+    {
+        if (_dispatcherCount < 1)
+        {
+            String message = String.format("Value for dispatcherCount (%s) must be positive.", _dispatcherCount);
+            throw new IllegalArgumentException(message);
+        }
+        this.DISPATCHER_COUNT = _dispatcherCount;
+        this.REUSE_PORT = _reusePort;
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    @Override
+    public synchronized void bind(InetSocketAddress address, int backlogMax)
+        throws IOException
+    {
+        if (!this.listeners.isEmpty()) { throw new BindException("Server is already bound."); }
+        this.addListener(address, backlogMax);
+    }
+    
+    /**
+     * Listens on another address as well, with the same contexts.
+     * With more than one dispatcher, if this server was created to reuse 
+     * ports and SO_REUSEPORT is available, one socket is opened for each 
+     * dispatcher, all bound to the same address.
+     * @param  address     the address to listen on; port 0 picks a free port
+     * @param  backlogMax  the maximum number of queued incoming connections, or 0 for the system default
+     * @return the address that was bound, with its actual port
+     * @throws IOException if the address cannot be bound
+     */
+    public synchronized InetSocketAddress addListener(InetSocketAddress address, int backlogMax)
+        throws IOException
+    {
+        List<ServerSocketChannel> channels = new ArrayList<>();
+        try
+        {
+            ServerSocketChannel first = ServerSocketChannel.open();
+            channels.add(first);
+            boolean reusePort = this.REUSE_PORT && this.DISPATCHER_COUNT > 1 && SO_REUSEPORT != null && first.supportedOptions().contains(SO_REUSEPORT);
+            if (reusePort) { first.setOption(SO_REUSEPORT, true); }
+            first.bind(address, backlogMax);
+            first.configureBlocking(false);
+            InetSocketAddress bound = (InetSocketAddress)first.getLocalAddress();
+            
+            for (int i = 1; reusePort && i < this.DISPATCHER_COUNT; ++i)
+            {
+                ServerSocketChannel channel = ServerSocketChannel.open();
+                channels.add(channel);
+                channel.setOption(SO_REUSEPORT, true);
+                channel.bind(bound, backlogMax);
+                channel.configureBlocking(false);
+            }
+            
+            for (int i = 0; i < channels.size(); ++i)
+            {
+                Listener listener = new Listener(channels.get(i), bound, reusePort ? i : -1);
+                this.listeners.add(listener);
+                if (this.dispatchers != null) { this.listen(listener); }
+            }
+            return bound;
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            for (ServerSocketChannel channel : channels) { channel.close(); }
+            throw ex;
+        }
+    }
+    
+    protected void listen(Listener listener)
+    {
+        if (listener.dispatcherIndex < 0)
+        {
+            this.dispatchers[0].listen(listener.channel, this.dispatchers.length > 1);
+        }
+        else
+        {
+            this.dispatchers[listener.dispatcherIndex].listen(listener.channel, false);
+        }
+    }
+    
+    /**
+     * Picks the dispatcher for the next connection from a shared listening socket.
+     * @return each dispatcher in turn
+     */
+    protected LocalNioHttpDispatcher nextDispatcher()
+    {
+        LocalNioHttpDispatcher[] d = this.dispatchers;
+        return d[(this.nextDispatcherIndex.getAndIncrement() & 0x7fffffff) % d.length];
+    }
+    
+    @Override
+    public synchronized void start()
+    {
+        if (this.listeners.isEmpty()) { throw new IllegalStateException("Server is not bound."); }
+        if (this.dispatchers != null) { throw new IllegalStateException("Server has already been started."); }
+        LocalNioHttpDispatcher[] d = new LocalNioHttpDispatcher[this.DISPATCHER_COUNT];
+        try
+        {
+            for (int i = 0; i < d.length; ++i) { d[i] = new LocalNioHttpDispatcher(this, i); }
+        }
+        catch (IOException ex)
+        {
+            throw new RuntimeException(ex);
+        }
+        this.dispatchers = d;
+        this.running = true;
+        for (Listener listener : this.listeners) { this.listen(listener); }
+        int port = this.getAddress().getPort();
+        for (int i = 0; i < d.length; ++i)
+        {
+            d[i].start(String.format("LocalNioHttpServer-selector-%s-%s", port, i));
+        }
+    }
+    
+    @Override
+    public void stop(int delay)
+    {
+        if (delay < 0) { throw new IllegalArgumentException("negative delay parameter"); }
+        this.stopping = true;
+        for (Listener listener : this.listeners)
+        {
+            try
+            {
+                listener.channel.close();
+            }
+            catch (IOException ex)
+            {
+                // already closed
+            }
+        }
+        
+        long deadline = System.currentTimeMillis() + delay * 1000L;
+        while (this.activeExchangeCount.get() > 0 && System.currentTimeMillis() < deadline)
+        {
+            try
+            {
+                Thread.sleep(50);
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        
+        this.running = false;
+        LocalNioHttpDispatcher[] d;
+        synchronized (this)
+        {
+            d = this.dispatchers;
+        }
+        if (d != null)
+        {
+            for (LocalNioHttpDispatcher dispatcher : d) { dispatcher.join(); }
+        }
+        for (LocalNioHttpConnection connection : this.connections) { connection.close(); }
+    }
+    
+    @Override public void setExecutor(Executor _executor) { this.executor = _executor; }
+    @Override public Executor getExecutor() { return this.executor; }
+    
+    @Override
+    public InetSocketAddress getAddress()
+    {
+        return this.listeners.isEmpty() ? null : this.listeners.get(0).address;
+    }
+    
+    /**
+     * Gets every address this server listens on.
+     * @return the bound addresses, in the order they were added
+     */
+    public List<InetSocketAddress> getAddresses()
+    {
+        Set<InetSocketAddress> result = new LinkedHashSet<>();
+        for (Listener listener : this.listeners) { result.add(listener.address); }
+        return new ArrayList<>(result);
+    }
+    
+    /**
+     * Sets how long a kept-alive connection may wait for its next request.
+     * @param _idleTimeoutMillis the idle timeout, in milliseconds
+     */
+    public void setIdleTimeoutMillis(long _idleTimeoutMillis) { this.idleTimeoutMillis = _idleTimeoutMillis; }
+    
+    /** @return the number of exchanges that have started and not yet completed */
+    public int getActiveExchangeCount() { return this.activeExchangeCount.get(); }
+    
+    /** @return the number of open connections */
+    public int getConnectionCount() { return this.connections.size(); }
+    
+    @Override
+    public synchronized HttpContext createContext(String path, HttpHandler handler)
+    {
+        if (path == null || !path.startsWith("/")) { throw new IllegalArgumentException("Illegal value for path"); }
+        for (LocalNioHttpContext context : this.contexts)
+        {
+            if (context.getPath().equals(path)) { throw new IllegalArgumentException("cannot add context to list"); }
+        }
+        LocalNioHttpContext context = new LocalNioHttpContext(this, path, handler);
+        this.contexts.add(context);
+        return context;
+    }
+    
+    @Override
+    public HttpContext createContext(String path)
+    {
+        return this.createContext(path, null);
+    }
+    
+    @Override
+    public synchronized void removeContext(String path)
+    {
+        for (LocalNioHttpContext context : this.contexts)
+        {
+            if (context.getPath().equals(path))
+            {
+                this.contexts.remove(context);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("cannot remove element from list");
+    }
+    
+    @Override
+    public synchronized void removeContext(HttpContext context)
+    {
+        if (!this.contexts.remove(context)) { throw new IllegalArgumentException("cannot remove element from list"); }
+    }
+    
+    /**
+     * Finds the context with the longest path that prefixes the given request path.
+     * @param requestPath the path of a request
+     * @return            the matching context, or null if there is none
+     */
+    public LocalNioHttpContext findContext(String requestPath)
+    {
+        LocalNioHttpContext result = null;
+        for (LocalNioHttpContext context : this.contexts)
+        {
+            String path = context.getPath();
+            if (requestPath.startsWith(path) && (result == null || path.length() > result.getPath().length()))
+            {
+                result = context;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Runs an exchange through its context's authenticator, filters and handler.
+     * @param exchange the exchange to run
+     */
+    protected void dispatch(LocalNioHttpExchange exchange)
+    {
+        this.activeExchangeCount.incrementAndGet();
+        try
+        {
+            LocalNioHttpContext context = exchange.context;
+            if (context == null || context.getHandler() == null)
+            {
+                byte[] message = "<h1>404 Not Found</h1>No context found for request".getBytes(StandardCharsets.ISO_8859_1);
+                exchange.getResponseHeaders().set("Content-Type", "text/html");
+                exchange.sendResponseHeaders(404, message.length);
+                exchange.getResponseBody().write(message);
+                exchange.close();
+                return;
+            }
+            
+            Authenticator authenticator = context.getAuthenticator();
+            if (authenticator != null)
+            {
+                Authenticator.Result result = authenticator.authenticate(exchange);
+                if (result instanceof Authenticator.Success)
+                {
+                    exchange.principal = ((Authenticator.Success)result).getPrincipal();
+                }
+                else
+                {
+                    int code = result instanceof Authenticator.Failure
+                        ? ((Authenticator.Failure)result).getResponseCode()
+                        : ((Authenticator.Retry)result).getResponseCode();
+                    exchange.sendResponseHeaders(code, -1);
+                    exchange.close();
+                    return;
+                }
+            }
+            
+            new Filter.Chain(context.getFilters(), context.getHandler()).doFilter(exchange);
+        }
+        catch (Throwable t)
+        {
+            exchange.abort(t);
+        }
+    }
+    
+    
+    //
+    // Nested Classes
+    //
+    
+    /**
+     * A listening socket, and the dispatcher it belongs to.
+     */
+    protected static class Listener
+    {
+        protected final ServerSocketChannel channel;
+        protected final InetSocketAddress address;
+        protected final int dispatcherIndex;
+        
+        /**
+         * @param _channel         the bound, non-blocking socket
+         * @param _address         the address it is bound to
+         * @param _dispatcherIndex the dispatcher that owns the socket, or -1 if it is shared
+         */
+        protected Listener(ServerSocketChannel _channel, InetSocketAddress _address, int _dispatcherIndex)
+        {
+            this.channel = _channel;
+            this.address = _address;
+            this.dispatcherIndex = _dispatcherIndex;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,170 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalRateLimiter.java
+ * LocalRateLimiter class definition
+ */
+
+package chairosoft.local_server;
+
+import java.net.InetAddress;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket per client address, so that one client cannot use up 
+ * the server by itself.
+ * <p>
+ * Each bucket holds up to a burst of tokens and refills at a steady rate;
+ * every request takes one token. The buckets are kept in a number of 
+ * stripes, each a plain map behind its own lock, so clients that hash to 
+ * different stripes never contend. Each stripe holds at most its share of 
+ * the client limit; past that, it drops the bucket of the client it heard 
+ * from least recently, which then starts again with a full bucket.
+ */
+public class LocalRateLimiter
+{
+    //
+    // Static Fields
+    //
+    
+    public static final int DEFAULT_STRIPE_COUNT = 16;
+    public static final int DEFAULT_MAX_CLIENTS = 10000;
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    public final double REQUESTS_PER_SECOND;
+    public final double BURST;
+    public final int MAX_CLIENTS;
+    
+    protected final double tokensPerNano;
+    protected final int maxPerStripe;
+    protected final Stripe[] stripes;
+    
+    
+    //
+    // Constructors
+    //
+    
+    public LocalRateLimiter(double _requestsPerSecond, double _burst)
+    {
+        this(_requestsPerSecond, _burst, DEFAULT_MAX_CLIENTS, DEFAULT_STRIPE_COUNT);
+    }
+    
+    /**
+     * Creates a rate limiter.
+     * @param _requestsPerSecond the steady rate each client may send requests at
+     * @param _burst             the most requests a client may send at once after being idle
+     * @param _maxClients        roughly how many clients to track before forgetting the least recent ones
+     * @param _stripeCount       the number of independently locked stripes
+     */
+    public LocalRateLimiter(double _requestsPerSecond, double _burst, int _maxClients, int _stripeCount)
+    {
+        if (!(_requestsPerSecond > 0) || _burst < 1)
+        {
+            String message = String.format("Invalid rate (%s per second) or burst (%s).", _requestsPerSecond, _burst);
+            throw new IllegalArgumentException(message);
+        }
+        this.REQUESTS_PER_SECOND = _requestsPerSecond;
+        this.BURST = _burst;
+        this.MAX_CLIENTS = _maxClients;
+        this.tokensPerNano = _requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.stripes = new Stripe[Math.max(1, _stripeCount)];
+        this.maxPerStripe = Math.max(1, _maxClients / this.stripes.length);
+        for (int i = 0; i < this.stripes.length; ++i) { this.stripes[i] = new Stripe(this.maxPerStripe); }
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    /**
+     * Takes a token from a client's bucket, if there is one.
+     * @param client the client's address
+     * @return 0 if the request may go ahead, or else how many nanoseconds until a token is available
+     */
+    public long tryAcquire(InetAddress client)
+    {
+        // addresses that differ only in their high bits, as IPv6 ones often do, still spread across stripes
+        int hash = client.hashCode() * 0x9e3779b9;
+        Stripe stripe = this.stripes[Math.floorMod(hash ^ (hash >>> 16), this.stripes.length)];
+        long now = System.nanoTime();
+        synchronized (stripe)
+        {
+            Bucket bucket = stripe.buckets.get(client);
+            if (bucket == null)
+            {
+                bucket = new Bucket(this.BURST, now);
+                stripe.buckets.put(client, bucket);
+            }
+            
+            bucket.tokens = Math.min(this.BURST, bucket.tokens + (now - bucket.refilledAt) * this.tokensPerNano);
+            bucket.refilledAt = now;
+            if (bucket.tokens >= 1)
+            {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            return Math.max(1, (long)Math.ceil((1 - bucket.tokens) / this.tokensPerNano));
+        }
+    }
+    
+    /**
+     * Gets the number of clients being tracked.
+     * @return the number of buckets across all stripes
+     */
+    public int getClientCount()
+    {
+        int count = 0;
+        for (Stripe stripe : this.stripes)
+        {
+            synchronized (stripe) { count += stripe.buckets.size(); }
+        }
+        return count;
+    }
+    
+    
+    //
+    // Nested Classes
+    //
+    
+    protected static class Stripe
+    {
+        protected final Map<InetAddress, Bucket> buckets;
+        
+        protected Stripe(int maxBuckets)
+        {
+            // access-ordered, so the eldest entry is the least recently heard from client
+            this.buckets = new LinkedHashMap<InetAddress, Bucket>(16, 0.75f, true)
+            {
+                private static final long serialVersionUID = 1L;
+                
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<InetAddress, Bucket> eldest)
+                {
+                    return this.size() > maxBuckets;
+                }
+            };
+        }
+    }
+    
+    protected static class Bucket
+    {
+        protected double tokens;
+        protected long refilledAt;
+        
+        protected Bucket(double _tokens, long _refilledAt)
+        {
+            this.tokens = _tokens;
+            this.refilledAt = _refilledAt;
+        }
+    }
+}
\ No newline at end of file
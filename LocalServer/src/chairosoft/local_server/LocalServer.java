@@ -9,7 +9,8 @@
 
 package chairosoft.local_server;
 
-import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -17,10 +18,29 @@ import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
 
 public class LocalServer
 {
@@ -30,22 +50,32 @@ public class LocalServer
     
     /**
      * A short test of LocalServer.
-     * @param args (ignored)
+     * @param args <code>--exit-when-ready</code> to warm up, then stop as soon as the server 
+     *             is ready (such as when dumping a class data sharing archive); 
+     *             <code>--discover</code> to list the servers on the local network instead; 
+     *             <code>--announce</code> to announce this server on the local network; 
+     *             otherwise ignored
      * @throws Exception (not caught)
      */
     public static void main(String[] args)
         throws Exception
     {
+        if (args.length > 0 && args[0].equals("--discover"))
+        {
+            for (LocalServerDiscovery.Entry entry : LocalServerDiscovery.discover(1000)) { System.out.println(entry); }
+            return;
+        }
+        
         final LocalServer server = new LocalServer(8000, 1, 25);
-        System.out.printf("local address is %s \n", LocalServer.getLocalAddress().getHostAddress());
+        LocalServer.getLocalAddressAsync().thenAccept((InetAddress a) -> System.out.printf("local address is %s \n", a.getHostAddress()));
         System.out.printf("server port is %s \n", server.getPort());
+        server.setAccessLog(new LocalAccessLog(System.out, LocalAccessLog.COMMON));
         
         server.createDefaultContext(new LocalHttpRequestHandlerAdapter()
         {
             @Override public void handleGet(LocalHttpExchange x) throws IOException
             {
                 String uri = x.REQUEST_URI.toString();
-                System.out.println("get requested: " + uri);
                 String response = "You requested: " + uri;
                 x.sendStringResponse(200, "text/plain", response);
             }
@@ -53,7 +83,6 @@ public class LocalServer
         
         server.createContext("/existence", (LocalHttpExchange x) ->
         {
-            System.out.println("existence!");
             String response = "true";
             x.RESPONSE_HEADERS.set("Access-Control-Allow-Origin", "*");
             x.sendStringResponse(200, "text/plain", response);
@@ -61,20 +90,26 @@ public class LocalServer
         
         server.createContext("/test", (LocalHttpExchange x) ->
         {
-            System.out.println("tested!");
-            System.out.println(x.getRequestString());
             String response = "You tested it, yay.";
             x.sendStringResponse(200, "text/plain", response);
         });
         
         server.createContext("/stop", (LocalHttpExchange x) ->
         {
-            System.out.println("stopped!");
             String response = "You stopped it, yay.";
             x.sendStringResponse(200, "text/plain", response);
             server.stop(0);
         });
         
+        if (args.length > 0 && args[0].equals("--exit-when-ready"))
+        {
+            server.setWarmup(new LocalServerWarmup(100, 2).get("/existence").get("/test?warmup").post("/test", "text/plain", "warmup"));
+            server.getReadiness().thenRun(() -> server.stop(0));
+        }
+        else if (args.length > 0 && args[0].equals("--announce"))
+        {
+            server.enableDiscovery("LocalServer test");
+        }
         server.start();
     }
     
@@ -85,6 +120,7 @@ public class LocalServer
     
     /**
      * Convenience method to get the network address of the local host.
+     * Waits for the lookup started by {@link #getLocalAddressAsync()}.
      * Converts any exceptions to RuntimeException before rethrowing them.
      * @return the network address of the local host
      */
@@ -92,11 +128,51 @@ public class LocalServer
     {
         try
         {
-            return InetAddress.getLocalHost();
+            return LocalServer.getLocalAddressAsync().join();
         }
-        catch (Exception ex)
+        catch (CompletionException ex)
         {
-            throw new RuntimeException(ex);
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+    
+    /**
+     * Gets the network address of the local host without waiting for it.
+     * The lookup can block on DNS for seconds on some hosts, so it is done 
+     * once, on a daemon thread, the first time this is called, and its 
+     * result is kept for every later call. A lookup that fails is not kept, 
+     * so the next call tries again.
+     * @return a future of the network address of the local host
+     */
+    public static CompletableFuture<InetAddress> getLocalAddressAsync()
+    {
+        CompletableFuture<InetAddress> result = localAddress;
+        if (result != null) { return result; }
+        synchronized (LocalServer.class)
+        {
+            if (localAddress == null)
+            {
+                CompletableFuture<InetAddress> lookup = new CompletableFuture<>();
+                Thread thread = new Thread(() ->
+                {
+                    try
+                    {
+                        lookup.complete(InetAddress.getLocalHost());
+                    }
+                    catch (Exception ex)
+                    {
+                        synchronized (LocalServer.class)
+                        {
+                            if (localAddress == lookup) { localAddress = null; }
+                        }
+                        lookup.completeExceptionally(ex);
+                    }
+                }, "LocalServer-local-address");
+                thread.setDaemon(true);
+                localAddress = lookup;
+                thread.start();
+            }
+            return localAddress;
         }
     }
     
@@ -108,7 +184,31 @@ public class LocalServer
      */
     public static String getStringFromInputStream(InputStream in)
     {
-        return new String(LocalServer.getByteArrayFromInputStream(in));
+        return LocalServer.getStringFromInputStream(in, Charset.defaultCharset());
+    }
+    
+    /**
+     * Convenience method for turning an InputStream into a String.
+     * Converts any exceptions to RuntimeException before rethrowing them.
+     * @param in      the input stream to read from 
+     * @param charset the charset to decode the contents with
+     * @return        a String version of the contents of the input stream
+     */
+    public static String getStringFromInputStream(InputStream in, Charset charset)
+    {
+        return new String(LocalServer.getByteArrayFromInputStream(in), charset);
+    }
+    
+    /**
+     * Gets the LocalServer that created the given context.
+     * @param context the context to look in
+     * @return        the LocalServer that created the context, 
+     *                or null if it was not created by a LocalServer
+     */
+    public static LocalServer getLocalServer(HttpContext context)
+    {
+        Object server = context == null ? null : context.getAttributes().get(SERVER_ATTRIBUTE);
+        return server instanceof LocalServer ? (LocalServer)server : null;
     }
     
     /**
@@ -119,47 +219,156 @@ public class LocalServer
      */
     public static byte[] getByteArrayFromInputStream(InputStream in)
     {
-        return LocalServer.getByteArrayFromInputStream(in, 2048);
+        return LocalServer.getByteArrayFromInputStream(in, -1);
     }
     
     /**
      * Convenience method for turning an InputStream into a byte array.
-     * Converts any exceptions to RuntimeException before rethrowing them.
+     * The stream is read straight into pooled chunks, which are copied once
+     * into the result. Converts any exceptions to RuntimeException before rethrowing them.
      * @param in         the input stream to read from 
-     * @param bufferSize the size of the buffer to use while reading
+     * @param bufferSize the size of the buffer to use while reading; 
+     *                   sizes above {@link LocalBufferPool#MAX_BUFFER_SIZE} are treated as that size
      * @return           a byte array version of the contents of the input stream
+     * @see   LocalByteSink
      */
     public static byte[] getByteArrayFromInputStream(InputStream in, int bufferSize)
     {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try 
+        return LocalServer.getSizedByteArrayFromInputStream(in, Math.min(bufferSize, LocalBufferPool.MAX_BUFFER_SIZE));
+    }
+    
+    /**
+     * Convenience method for turning an InputStream of a known size into a byte array.
+     * When the stream holds exactly the expected number of bytes, the result is 
+     * allocated once at that size. Converts any exceptions to RuntimeException before rethrowing them.
+     * @param in           the input stream to read from 
+     * @param expectedSize the number of bytes expected, such as a Content-Length, or -1 if it is not known
+     * @return             a byte array version of the contents of the input stream
+     * @see   LocalByteSink
+     */
+    public static byte[] getSizedByteArrayFromInputStream(InputStream in, int expectedSize)
+    {
+        try (LocalByteSink sink = new LocalByteSink(expectedSize))
         {
-            LocalServer.copyIO(in, baos, bufferSize);
+            sink.readFrom(in);
+            return sink.toByteArray();
         }
         catch (Exception ex)
         {
             throw new RuntimeException(ex);
         }
-        return baos.toByteArray();
     }
     
     /**
      * Convenience method for copying from an InputStream to an OutputStream.
      * This method will attempt to copy until the read method on 
-     * the InputStream returns -1.
+     * the InputStream returns -1. The buffer is taken from {@link LocalBufferPool#SHARED}.
      * @param  in          the input stream to read from 
      * @param  out         the output stream to write to
-     * @param  bufferSize  the size of the buffer to use while copying
+     * @param  bufferSize  the smallest size of the buffer to use while copying
      * @throws IOException in case an error occurs while reading or writing data
      */
     public static void copyIO(InputStream in, OutputStream out, int bufferSize) 
         throws IOException
     {
-        byte[] buffer = new byte[bufferSize];
-        int bytesRead = 0;
-        while (-1 < (bytesRead = in.read(buffer)))
+        byte[] buffer = LocalBufferPool.SHARED.acquireArray(bufferSize);
+        try
         {
-            out.write(buffer, 0, bytesRead);
+            int bytesRead = 0;
+            while (-1 < (bytesRead = in.read(buffer)))
+            {
+                out.write(buffer, 0, bytesRead);
+            }
+        }
+        finally
+        {
+            LocalBufferPool.SHARED.releaseArray(buffer);
+        }
+    }
+    
+    /**
+     * Convenience method for copying from an InputStream to an OutputStream,
+     * choosing the cheapest way to do it. A file stream is transferred 
+     * through its channel, straight to the connection when the output
+     * stream is a response body channel; anything else is copied through 
+     * a pooled buffer of {@link #DEFAULT_COPY_BUFFER_SIZE} bytes.
+     * Either way, this copies until the input stream ends.
+     * @param  in          the input stream to read from 
+     * @param  out         the output stream to write to
+     * @return the number of bytes copied
+     * @throws IOException in case an error occurs while reading or writing data
+     */
+    public static long copyIO(InputStream in, OutputStream out)
+        throws IOException
+    {
+        if (in instanceof FileInputStream)
+        {
+            return LocalServer.copyIO(((FileInputStream)in).getChannel(), LocalStaticFileHandler.getChannel(out));
+        }
+        
+        byte[] buffer = LocalBufferPool.SHARED.acquireArray(DEFAULT_COPY_BUFFER_SIZE);
+        try
+        {
+            long total = 0;
+            int bytesRead = 0;
+            while (-1 < (bytesRead = in.read(buffer)))
+            {
+                out.write(buffer, 0, bytesRead);
+                total += bytesRead;
+            }
+            return total;
+        }
+        finally
+        {
+            LocalBufferPool.SHARED.releaseArray(buffer);
+        }
+    }
+    
+    /**
+     * Convenience method for copying from one channel to another until the 
+     * first one ends. A file channel is transferred from its current position 
+     * with {@link FileChannel#transferTo}, up to the size it reports; then, 
+     * as with any other channel, the rest is copied through a pooled direct 
+     * buffer. Files that report no size, such as pipes and procfs files, are 
+     * copied entirely that way.
+     * @param  in          the channel to read from 
+     * @param  out         the channel to write to
+     * @return the number of bytes copied
+     * @throws IOException in case an error occurs while reading or writing data
+     */
+    public static long copyIO(ReadableByteChannel in, WritableByteChannel out)
+        throws IOException
+    {
+        long total = 0;
+        if (in instanceof FileChannel)
+        {
+            FileChannel file = (FileChannel)in;
+            long position = file.position();
+            long count = Math.max(0, file.size() - position);
+            if (count > 0)
+            {
+                if (out instanceof LocalCountingOutputStream) { ((LocalCountingOutputStream)out).transferFrom(file, position, count); }
+                else if (out instanceof LocalNioHttpExchange.ResponseBody) { ((LocalNioHttpExchange.ResponseBody)out).transferFrom(file, position, count); }
+                else { LocalStaticFileHandler.transferFully(file, position, count, out); }
+                file.position(position + count);
+                total = count;
+            }
+        }
+        
+        ByteBuffer buffer = LocalBufferPool.SHARED.acquireDirect(DEFAULT_COPY_BUFFER_SIZE);
+        try
+        {
+            while (in.read(buffer) >= 0)
+            {
+                buffer.flip();
+                while (buffer.hasRemaining()) { total += out.write(buffer); }
+                buffer.clear();
+            }
+            return total;
+        }
+        finally
+        {
+            LocalBufferPool.SHARED.releaseDirect(buffer);
         }
     }
     
@@ -169,6 +378,11 @@ public class LocalServer
     //
     
     public static final String DEFAULT_FAVICON_MIME_TYPE = "image/x-icon";
+    public static final long DEFAULT_MAX_REQUEST_BODY_SIZE = 16 * 1024 * 1024;
+    public static final int DEFAULT_COPY_BUFFER_SIZE = 8192;
+    public static final String SERVER_ATTRIBUTE = LocalServer.class.getName();
+    
+    protected static volatile CompletableFuture<InetAddress> localAddress = null;
     
     
     //
@@ -176,9 +390,25 @@ public class LocalServer
     //
     
     protected final HttpServer server;
+    protected final LocalServerTransport transport;
+    protected final int backlogMax;
+    protected final List<HttpServer> additionalServers = new CopyOnWriteArrayList<>();
+    protected final Map<String, HttpHandler> contextHandlers = new ConcurrentHashMap<>();
+    protected final List<Closeable> ownedHandlers = new CopyOnWriteArrayList<>();
+    protected volatile boolean started = false;
+    protected volatile LocalServerWarmup warmup = null;
+    protected volatile boolean ready = false;
+    protected final CompletableFuture<LocalServer> readiness = new CompletableFuture<>();
     protected LocalHttpRequestHandler defaultRequestHandler = null;
     protected String faviconMimeType = DEFAULT_FAVICON_MIME_TYPE;
     protected byte[] faviconBytes = null;
+    protected volatile long maxRequestBodySize = DEFAULT_MAX_REQUEST_BODY_SIZE;
+    protected volatile LocalHttpCompression compression = null;
+    protected volatile LocalAdmissionControl admissionControl = null;
+    protected volatile LocalServerMetrics metrics = null;
+    protected volatile LocalAccessLog accessLog = null;
+    protected volatile LocalSlowRequestMonitor slowRequestMonitor = null;
+    protected volatile LocalServerDiscovery discovery = null;
     
     
     //
@@ -201,6 +431,36 @@ public class LocalServer
     }
     
     public LocalServer(int preferredPortNumber, int retryIncrement, int maxRetries, int backlogMax)
+    {
+        this(preferredPortNumber, retryIncrement, maxRetries, backlogMax, null);
+    }
+    
+    /**
+     * Creates a server whose handlers run on the given executor.
+     * @param preferredPortNumber the first port number to try
+     * @param retryIncrement      the amount to add to the port number after each failed attempt
+     * @param maxRetries          the number of port numbers to try
+     * @param backlogMax          the maximum number of queued incoming connections, or 0 for the system default
+     * @param executor            the executor to run handlers on (such as a {@link LocalServerExecutor}), 
+     *                            or null to run them on the server's dispatcher thread
+     */
+    public LocalServer(int preferredPortNumber, int retryIncrement, int maxRetries, int backlogMax, Executor executor)
+    {
+        this(LocalServerTransport.JDK, preferredPortNumber, retryIncrement, maxRetries, backlogMax, executor);
+    }
+    
+    /**
+     * Creates a server on the given transport, whose handlers run on the given executor.
+     * @param transport           creates the underlying HttpServer, such as {@link LocalServerTransport#JDK} 
+     *                            or {@link LocalServerTransport#NIO}
+     * @param preferredPortNumber the first port number to try
+     * @param retryIncrement      the amount to add to the port number after each failed attempt
+     * @param maxRetries          the number of port numbers to try
+     * @param backlogMax          the maximum number of queued incoming connections, or 0 for the system default
+     * @param executor            the executor to run handlers on (such as a {@link LocalServerExecutor}), 
+     *                            or null to run them on the server's dispatcher thread
+     */
+    public LocalServer(LocalServerTransport transport, int preferredPortNumber, int retryIncrement, int maxRetries, int backlogMax, Executor executor)
     {
         if (maxRetries < 0)
         {
@@ -214,7 +474,7 @@ public class LocalServer
         {
             try
             {
-                s = HttpServer.create(new InetSocketAddress(p), backlogMax);
+                s = transport.create(new InetSocketAddress(p), backlogMax);
                 break;
             }
             catch (IOException ex)
@@ -235,6 +495,59 @@ public class LocalServer
         }
         
         this.server = s;
+        this.transport = transport;
+        this.backlogMax = backlogMax;
+        if (executor != null) { this.server.setExecutor(executor); }
+    }
+    
+    /**
+     * Creates a server on the given transport that listens on each of the given addresses,
+     * such as a specific interface, the loopback address, or both IPv4 and IPv6 wildcards.
+     * All the addresses share the same contexts.
+     * @param transport  creates the underlying HttpServer, such as {@link LocalServerTransport#JDK} 
+     *                   or {@link LocalServerTransport#NIO}
+     * @param addresses  the addresses to listen on; the first one is this server's main address
+     * @param backlogMax the maximum number of queued incoming connections, or 0 for the system default
+     * @param executor   the executor to run handlers on (such as a {@link LocalServerExecutor}), 
+     *                   or null to run them on the server's dispatcher thread
+     * @see   #addListener(InetSocketAddress)
+     */
+    public LocalServer(LocalServerTransport transport, List<InetSocketAddress> addresses, int backlogMax, Executor executor)
+    {
+        if (addresses.isEmpty()) { throw new IllegalArgumentException("At least one address is required."); }
+        InetSocketAddress address = addresses.get(0);
+        HttpServer s;
+        try
+        {
+            s = transport.create(address, backlogMax);
+        }
+        catch (IOException ex)
+        {
+            String message = String.format("Unable to start local server on address %s with backlogMax = %s.", address, backlogMax);
+            throw new RuntimeException(message, ex);
+        }
+        
+        this.server = s;
+        this.transport = transport;
+        this.backlogMax = backlogMax;
+        if (executor != null) { this.server.setExecutor(executor); }
+        try
+        {
+            for (int i = 1; i < addresses.size(); ++i)
+            {
+                address = addresses.get(i);
+                this.addListener(address);
+            }
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            // release every socket bound so far, since the caller never gets this object to stop
+            this.server.stop(0);
+            for (HttpServer additional : this.additionalServers) { additional.stop(0); }
+            if (ex instanceof RuntimeException) { throw (RuntimeException)ex; }
+            String message = String.format("Unable to start local server on address %s with backlogMax = %s.", address, backlogMax);
+            throw new RuntimeException(message, ex);
+        }
     }
     
     
@@ -246,14 +559,164 @@ public class LocalServer
     public void setFavicon(String _faviconMimeType, byte[] _faviconBytes) { this.faviconMimeType = _faviconMimeType; this.faviconBytes = _faviconBytes; }
     
     public InetSocketAddress getAddress() { return this.server.getAddress(); }
+    
+    /**
+     * Gets every address this server listens on.
+     * @return the bound addresses, starting with the main one
+     */
+    public List<InetSocketAddress> getAddresses()
+    {
+        List<InetSocketAddress> result = new ArrayList<>();
+        if (this.server instanceof LocalNioHttpServer) { result.addAll(((LocalNioHttpServer)this.server).getAddresses()); }
+        else { result.add(this.server.getAddress()); }
+        for (HttpServer s : this.additionalServers) { result.add(s.getAddress()); }
+        return result;
+    }
+    
+    /**
+     * Listens on another address as well, with the same contexts and executor.
+     * On the NIO transport, the address is added to the same server, so it 
+     * shares everything. On other transports, another HttpServer is created;
+     * contexts created through this object are added to it too, but filters
+     * and authenticators set on a returned HttpContext apply to the main 
+     * address only.
+     * @param  address     the address to listen on; port 0 picks a free port
+     * @return the address that was bound, with its actual port
+     * @throws IOException if the address cannot be bound
+     */
+    public synchronized InetSocketAddress addListener(InetSocketAddress address)
+        throws IOException
+    {
+        if (this.server instanceof LocalNioHttpServer)
+        {
+            return ((LocalNioHttpServer)this.server).addListener(address, this.backlogMax);
+        }
+        
+        HttpServer s = this.transport.create(address, this.backlogMax);
+        Executor executor = this.server.getExecutor();
+        if (executor != null) { s.setExecutor(executor); }
+        for (Map.Entry<String, HttpHandler> entry : this.contextHandlers.entrySet())
+        {
+            s.createContext(entry.getKey(), entry.getValue()).getAttributes().put(SERVER_ATTRIBUTE, this);
+        }
+        this.additionalServers.add(s);
+        if (this.started) { s.start(); }
+        return s.getAddress();
+    }
     public int getPort() { return this.getAddress().getPort(); }
     
-    public HttpContext createContext(String path, LocalHttpHandler handler) 
+    /**
+     * Gets the maximum size of request bodies accepted by this server's contexts.
+     * @return the maximum request body size in bytes, or a negative number if there is no maximum
+     */
+    public long getMaxRequestBodySize() { return this.maxRequestBodySize; }
+    
+    /**
+     * Sets the maximum size of request bodies accepted by this server's contexts.
+     * Requests that declare a larger Content-Length are rejected with a 413 response 
+     * before their handler runs, and reading past the maximum fails with an IOException.
+     * The default is {@link #DEFAULT_MAX_REQUEST_BODY_SIZE}, 16 MiB.
+     * @param _maxRequestBodySize the maximum request body size in bytes, or a negative number for no maximum
+     */
+    public void setMaxRequestBodySize(long _maxRequestBodySize) { this.maxRequestBodySize = _maxRequestBodySize; }
+    
+    /**
+     * Gets the compression settings of this server's responses.
+     * @return the compression settings, or null if responses are not compressed
+     */
+    public LocalHttpCompression getCompression() { return this.compression; }
+    
+    /**
+     * Sets the compression settings of this server's responses.
+     * Compression is off until this is called.
+     * @param _compression the compression settings, or null to turn compression off
+     */
+    public void setCompression(LocalHttpCompression _compression) { this.compression = _compression; }
+    
+    /**
+     * Gets the admission control that decides which exchanges are handled under load.
+     * @return the admission control, or null if every exchange is handled
+     */
+    public LocalAdmissionControl getAdmissionControl() { return this.admissionControl; }
+    
+    /**
+     * Sets the admission control that decides which exchanges are handled under load.
+     * Every exchange is handled until this is called.
+     * @param _admissionControl the admission control, or null to handle every exchange
+     */
+    public void setAdmissionControl(LocalAdmissionControl _admissionControl) { this.admissionControl = _admissionControl; }
+    
+    /**
+     * Gets the metrics collected for this server's exchanges.
+     * @return the metrics, or null if metrics are not being collected
+     */
+    public LocalServerMetrics getMetrics() { return this.metrics; }
+    
+    /**
+     * Sets the metrics to collect this server's exchanges in.
+     * Metrics are not collected until this is called.
+     * @param _metrics the metrics, or null to stop collecting metrics
+     */
+    public void setMetrics(LocalServerMetrics _metrics) { this.metrics = _metrics; }
+    
+    /**
+     * Gets the access log that this server's exchanges are written to.
+     * @return the access log, or null if exchanges are not being logged
+     */
+    public LocalAccessLog getAccessLog() { return this.accessLog; }
+    
+    /**
+     * Sets the access log to write this server's exchanges to.
+     * Exchanges are not logged until this is called.
+     * The log is closed when this server stops.
+     * @param _accessLog the access log, or null to stop logging exchanges
+     */
+    public void setAccessLog(LocalAccessLog _accessLog) { this.accessLog = _accessLog; }
+    
+    /**
+     * Gets the monitor that watches this server's exchanges for slow ones.
+     * @return the slow request monitor, or null if exchanges are not being watched
+     */
+    public LocalSlowRequestMonitor getSlowRequestMonitor() { return this.slowRequestMonitor; }
+    
+    /**
+     * Sets the monitor to watch this server's exchanges for slow ones.
+     * Exchanges are not watched until this is called.
+     * The monitor is closed when this server stops.
+     * @param _slowRequestMonitor the slow request monitor, or null to stop watching exchanges
+     */
+    public void setSlowRequestMonitor(LocalSlowRequestMonitor _slowRequestMonitor) { this.slowRequestMonitor = _slowRequestMonitor; }
+    
+    public synchronized HttpContext createContext(String path, LocalHttpHandler handler) 
+    {
+        HttpHandler httpHandler = handler.toHttpHandler();
+        HttpContext context = this.server.createContext(path, httpHandler); 
+        context.getAttributes().put(SERVER_ATTRIBUTE, this);
+        this.contextHandlers.put(path, httpHandler);
+        for (HttpServer s : this.additionalServers)
+        {
+            s.createContext(path, httpHandler).getAttributes().put(SERVER_ATTRIBUTE, this);
+        }
+        return context;
+    }
+    
+    public synchronized void removeContext(HttpContext context) 
+    { 
+        this.server.removeContext(context); 
+        this.removeAdditionalContexts(context.getPath());
+    }
+    
+    public synchronized void removeContext(String path) 
+    { 
+        this.server.removeContext(path); 
+        this.removeAdditionalContexts(path);
+    }
+    
+    protected void removeAdditionalContexts(String path)
     {
-        return this.server.createContext(path, handler.toHttpHandler()); 
+        this.contextHandlers.remove(path);
+        for (HttpServer s : this.additionalServers) { s.removeContext(path); }
     }
-    public void removeContext(HttpContext context) { this.server.removeContext(context); }
-    public void removeContext(String path) { this.server.removeContext(path); }
     
     public void createDefaultContext(LocalHttpRequestHandler _defaultRequestHandler)
     {
@@ -266,22 +729,79 @@ public class LocalServer
                 return;
             }
             
-            switch (x.REQUEST_METHOD)
-            {
-                case "OPTIONS": this.defaultRequestHandler.handleOptions(x); break;
-                case "GET": this.defaultRequestHandler.handleGet(x); break;
-                case "HEAD": this.defaultRequestHandler.handleHead(x); break;
-                case "POST": this.defaultRequestHandler.handlePost(x); break;
-                case "PUT": this.defaultRequestHandler.handlePut(x); break;
-                case "DELETE": this.defaultRequestHandler.handleDelete(x); break;
-                case "TRACE": this.defaultRequestHandler.handleTrace(x); break;
-                case "CONNECT": this.defaultRequestHandler.handleConnect(x); break;
-                default: this.defaultRequestHandler.handleOtherRequest(x); break;
-            }
+            this.defaultRequestHandler.handleRequest(x);
         });
     }
     public void removeDefaultContext() { this.removeContext("/"); }
     
+    /**
+     * Creates a context that routes its exchanges by method and path template.
+     * The router's templates are matched against the whole request path.
+     * @param path   the context path
+     * @param router the router to handle the context's exchanges
+     * @return       the created context
+     * @see   LocalHttpRouter
+     */
+    public HttpContext createRouterContext(String path, LocalHttpRouter router)
+    {
+        return this.createContext(path, router);
+    }
+    
+    /**
+     * Creates a context whose handler finishes exchanges asynchronously, 
+     * timing them out after {@link LocalAsyncHttpHandler#DEFAULT_TIMEOUT_MILLIS}.
+     * @param path    the context path
+     * @param handler the asynchronous handler
+     * @return        the created context
+     */
+    public HttpContext createAsyncContext(String path, LocalAsyncHttpHandler handler)
+    {
+        return this.createContext(path, handler.toLocalHttpHandler());
+    }
+    
+    /**
+     * Creates a context whose handler finishes exchanges asynchronously.
+     * The executor thread is released as soon as the handler returns its stage.
+     * @param path          the context path
+     * @param handler       the asynchronous handler
+     * @param timeoutMillis how long an exchange may take, or 0 for no limit
+     * @return              the created context
+     */
+    public HttpContext createAsyncContext(String path, LocalAsyncHttpHandler handler, long timeoutMillis)
+    {
+        return this.createContext(path, handler.toLocalHttpHandler(timeoutMillis));
+    }
+    
+    /**
+     * Creates a context that upgrades its requests to WebSocket sessions.
+     * Upgrades need the NIO transport. The handler is closed when this server stops.
+     * @param path     the context path
+     * @param listener what is told about each session's messages
+     * @return         the handler, for broadcasting to its sessions
+     */
+    public LocalWebSocketHandler createWebSocketContext(String path, LocalWebSocketListener listener)
+    {
+        LocalWebSocketHandler handler = new LocalWebSocketHandler(listener);
+        this.createContext(path, handler);
+        this.ownedHandlers.add(handler);
+        return handler;
+    }
+    
+    /**
+     * Creates a context that forwards its requests to the least busy of several upstream servers.
+     * The handler is closed when this server stops, which ends its health checks.
+     * @param path         the context path
+     * @param upstreamUrls the upstream servers, such as <code>http://127.0.0.1:8001</code>
+     * @return             the handler, for its upstreams' health and load
+     */
+    public LocalHttpProxyHandler createProxyContext(String path, String... upstreamUrls)
+    {
+        LocalHttpProxyHandler handler = new LocalHttpProxyHandler(Arrays.asList(upstreamUrls));
+        this.createContext(path, handler);
+        this.ownedHandlers.add(handler);
+        return handler;
+    }
+    
     public void createFaviconContext(String _faviconMimeType, byte[] _faviconBytes)
     {
         this.setFavicon(_faviconMimeType, _faviconBytes);
@@ -293,17 +813,245 @@ public class LocalServer
                 return;
             }
             
-            x.sendByteArrayResponse(200, this.faviconMimeType, this.faviconBytes);
+            x.sendStaticByteArrayResponse(200, this.faviconMimeType, this.faviconBytes);
         });
     }
     public void removeFaviconContext() { this.removeContext("/favicon.ico"); }
     
+    /**
+     * Creates a context that serves the files under a root directory.
+     * @param path          the context path
+     * @param rootDirectory the directory to serve files from
+     * @return              the created context
+     * @see   LocalStaticFileHandler
+     */
+    public HttpContext createStaticFileContext(String path, Path rootDirectory)
+    {
+        return this.createContext(path, new LocalStaticFileHandler(rootDirectory));
+    }
     
-    public void start() { this.server.start(); }
-    public void stop(int delay) { this.server.stop(delay); }
+    /**
+     * Creates a context for load balancers and orchestrators to check readiness at.
+     * It answers 200 once the server is ready, and 503 while it is warming up or stopping.
+     * @param path the context path, such as <code>/ready</code>
+     * @return     the created context
+     * @see   #isReady()
+     */
+    public HttpContext createReadinessContext(String path)
+    {
+        return this.createContext(path, (LocalHttpExchange x) ->
+        {
+            if (this.ready)
+            {
+                x.RESPONSE_HEADERS.set("Cache-Control", "no-store");
+                x.sendStringResponse(200, "text/plain", "ready");
+            }
+            else
+            {
+                x.sendServiceUnavailableResponse(1);
+            }
+        });
+    }
+    
+    /**
+     * Creates a context that serves this server's metrics in the Prometheus text format,
+     * collecting metrics from now on if they were not already being collected.
+     * @param path the context path, such as <code>/metrics</code>
+     * @return     the created context
+     * @see   LocalServerMetrics#toPrometheusText()
+     */
+    public HttpContext createMetricsContext(String path)
+    {
+        if (this.metrics == null) { this.setMetrics(new LocalServerMetrics()); }
+        return this.createContext(path, (LocalHttpExchange x) ->
+        {
+            LocalServerMetrics m = this.metrics;
+            if (m == null)
+            {
+                x.sendNotFoundResponse();
+                return;
+            }
+            
+            m.sendPrometheusResponse(x);
+        });
+    }
+    
+    
+    /**
+     * Starts listening. The server reports ready at once if it has no warmup;
+     * otherwise it runs its warmup on a daemon thread and reports ready after that.
+     * @see #getReadiness()
+     */
+    public synchronized void start() 
+    { 
+        this.server.start(); 
+        for (HttpServer s : this.additionalServers) { s.start(); }
+        this.started = true;
+        
+        LocalServerWarmup w = this.warmup;
+        if (w == null)
+        {
+            this.markReady();
+            return;
+        }
+        Thread thread = new Thread(() ->
+        {
+            try
+            {
+                LocalTlsContext tls = this.getTlsContext();
+                w.run(this.getAddress(), tls == null ? null : tls.createClientContext());
+            }
+            catch (IOException ex)
+            {
+                // the warmup cannot reach the server, so report ready without it
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+            finally
+            {
+                this.markReady();
+            }
+        }, "LocalServer-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    protected void markReady()
+    {
+        this.ready = true;
+        this.readiness.complete(this);
+        LocalServerDiscovery d = this.discovery;
+        if (d != null) { d.announce(); }
+    }
+    
+    /**
+     * Determines whether this server has started, finished warming up, and not begun to stop.
+     * @return true if this server is ready for traffic
+     */
+    public boolean isReady() { return this.ready; }
+    
+    /**
+     * Gets a future that completes with this server when it first becomes ready,
+     * so that callers can be told instead of polling.
+     * @return the readiness future
+     */
+    public CompletableFuture<LocalServer> getReadiness() { return this.readiness; }
+    
+    public LocalServerWarmup getWarmup() { return this.warmup; }
+    
+    /**
+     * Sets the requests this server sends itself after starting and before reporting ready.
+     * @param _warmup the warmup, or null to report ready as soon as the server starts
+     */
+    public void setWarmup(LocalServerWarmup _warmup) { this.warmup = _warmup; }
+    
+    public LocalServerDiscovery getDiscovery() { return this.discovery; }
+    
+    /**
+     * Announces this server on the local network, so that 
+     * {@link LocalServerDiscovery#discover(long)} can find it. 
+     * Announcements start once the server starts.
+     * @param name a name for this server, such as the application's name
+     * @return     the discovery announcer, which {@link #stop(int)} closes
+     * @throws IOException if the discovery group cannot be joined
+     */
+    public synchronized LocalServerDiscovery enableDiscovery(String name)
+        throws IOException
+    {
+        if (this.discovery != null) { this.discovery.close(); }
+        this.discovery = new LocalServerDiscovery(this, name);
+        return this.discovery;
+    }
+    
+    /**
+     * Stops this server, shuts down its executor if it is a LocalServerExecutor,
+     * unregisters its metrics MBeans, and closes its access log and slow request monitor.
+     * If it announces itself on the local network, it says goodbye first.
+     * The handlers it created for WebSocket and proxy contexts are closed before it stops listening.
+     * All the listeners are stopped at once, and the executor only gets 
+     * whatever is left of the delay afterwards.
+     * @param delay the longest time to wait for running exchanges to finish, in seconds
+     */
+    public void stop(int delay) 
+    { 
+        this.ready = false;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.max(delay, 0));
+        LocalServerDiscovery d = this.discovery;
+        if (d != null) { d.close(); }
+        for (Closeable handler : this.ownedHandlers)
+        {
+            try
+            {
+                handler.close();
+            }
+            catch (IOException | RuntimeException ex)
+            {
+                // the others still need closing
+            }
+        }
+        
+        List<Thread> stoppers = new ArrayList<>();
+        for (HttpServer s : this.additionalServers)
+        {
+            Thread stopper = new Thread(() -> s.stop(delay), "LocalServer-stop");
+            stopper.setDaemon(true);
+            stopper.start();
+            stoppers.add(stopper);
+        }
+        this.server.stop(delay); 
+        for (Thread stopper : stoppers)
+        {
+            try
+            {
+                stopper.join();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        
+        LocalServerExecutor localServerExecutor = this.getLocalServerExecutor();
+        if (localServerExecutor != null) { localServerExecutor.shutdown(deadline - System.nanoTime(), TimeUnit.NANOSECONDS); }
+        LocalServerMetrics m = this.metrics;
+        if (m != null) { m.unregisterMBeans(); }
+        LocalAccessLog log = this.accessLog;
+        if (log != null) { log.close(); }
+        LocalSlowRequestMonitor monitor = this.slowRequestMonitor;
+        if (monitor != null) { monitor.close(); }
+    }
     
     public Executor getExecutor() { return this.server.getExecutor(); }
-    public void setExecutor(Executor e) { this.server.setExecutor(e); }
+    
+    public void setExecutor(Executor e) 
+    { 
+        this.server.setExecutor(e); 
+        for (HttpServer s : this.additionalServers) { s.setExecutor(e); }
+    }
+    
+    /**
+     * Gets this server's executor, if it is a LocalServerExecutor.
+     * @return this server's executor and its pool metrics, or null if it has another kind of executor
+     */
+    public LocalServerExecutor getLocalServerExecutor()
+    {
+        Executor executor = this.getExecutor();
+        return executor instanceof LocalServerExecutor ? (LocalServerExecutor)executor : null;
+    }
     
     public HttpServer getWrappedHttpServer() { return this.server; }
+    
+    /**
+     * Gets the TLS setup of this server, if it was created by {@link LocalServerTransport#https}.
+     * @return the TLS setup, or null if this server does not use a LocalTlsContext
+     */
+    public LocalTlsContext getTlsContext()
+    {
+        if (!(this.server instanceof HttpsServer)) { return null; }
+        HttpsConfigurator configurator = ((HttpsServer)this.server).getHttpsConfigurator();
+        return configurator instanceof LocalTlsContext.Configurator ? ((LocalTlsContext.Configurator)configurator).TLS : null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,590 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalServerDiscovery.java
+ * LocalServerDiscovery class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.InterfaceAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Announces a LocalServer on the local network over UDP multicast, and
+ * answers queries for it, so that clients can find it without knowing its
+ * address or the port it ended up on.
+ * <p>
+ * Each packet is a few dozen bytes in a fixed binary layout, all big-endian:
+ * the magic bytes <code>LS</code>, a version byte, and a type byte,
+ * followed by the type's fields.
+ * <ul>
+ * <li>QUERY: a 4-byte nonce, and an optional context path (a length byte and UTF-8 bytes)
+ *     that answering servers must have</li>
+ * <li>ANNOUNCE: the nonce of the query it answers (0 if unasked), an 8-byte instance ID,
+ *     a flags byte (1 = ready, 2 = https), a 2-byte load, a 2-byte port, an address
+ *     (a length byte of 0, 4 or 16 and its bytes; 0 means the sender's address),
+ *     a name, and a count byte followed by the context paths</li>
+ * <li>GOODBYE: the instance ID of a server that is stopping</li>
+ * </ul>
+ * Servers announce themselves every so often, and answer each query with an
+ * ANNOUNCE sent straight back to the querier, so {@link #discover(long)} finds
+ * every server in one round trip. Packets are sent with a time-to-live of 1,
+ * so they stay on the local network. Since an ANNOUNCE is much bigger than a
+ * QUERY, queries are only answered when they come from a loopback or
+ * link-local address or from the subnet of one of this host's interfaces,
+ * and at most {@link #MAX_REPLIES_PER_SECOND} are answered each second, so
+ * a query with a forged sender cannot turn a server into an amplifier.
+ * @see LocalServer#enableDiscovery(String)
+ */
+public class LocalServerDiscovery implements Closeable
+{
+    //
+    // Static Fields
+    //
+    
+    public static final String DEFAULT_GROUP_ADDRESS = "239.255.76.83";
+    public static final int DEFAULT_PORT = 47683;
+    public static final long DEFAULT_ANNOUNCE_INTERVAL_MILLIS = 5000;
+    public static final long DEFAULT_DISCOVER_TIMEOUT_MILLIS = 300;
+    public static final int MAX_PACKET_SIZE = 1400;
+    public static final int MAX_REPLIES_PER_SECOND = 20;
+    
+    /** How often the list of this host's subnets is read again, for answering queries. */
+    public static final long LOCAL_NETWORKS_REFRESH_MILLIS = 30000;
+    
+    public static final byte VERSION = 1;
+    public static final byte TYPE_QUERY = 1;
+    public static final byte TYPE_ANNOUNCE = 2;
+    public static final byte TYPE_GOODBYE = 3;
+    public static final int FLAG_READY = 1;
+    public static final int FLAG_HTTPS = 2;
+    
+    protected static final byte[] MAGIC = { 'L', 'S' };
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    public final LocalServer SERVER;
+    public final String NAME;
+    public final InetSocketAddress GROUP;
+    public final long INSTANCE_ID = new Random().nextLong();
+    
+    protected final MulticastSocket socket;
+    protected final Thread responder;
+    protected final ScheduledFuture<?> announcer;
+    protected volatile boolean closed = false;
+    
+    // used only by the responder thread
+    protected List<InterfaceAddress> localNetworks = Collections.emptyList();
+    protected long localNetworksMillis = 0;
+    protected long replyWindowMillis = 0;
+    protected int replyCount = 0;
+    
+    
+    //
+    // Constructors
+    //
+    
+    public LocalServerDiscovery(LocalServer _server, String _name)
+        throws IOException
+    {
+        this(_server, _name, new InetSocketAddress(DEFAULT_GROUP_ADDRESS, DEFAULT_PORT), DEFAULT_ANNOUNCE_INTERVAL_MILLIS);
+    }
+    
+    /**
+     * Starts announcing a server and answering queries for it.
+     * @param _server                 the server to announce
+     * @param _name                   a name for the server, such as the application's name
+     * @param _group                  the multicast group and port to use
+     * @param _announceIntervalMillis how often to announce the server unasked, or 0 to only answer queries
+     * @throws IOException if the group cannot be joined
+     */
+    public LocalServerDiscovery(LocalServer _server, String _name, InetSocketAddress _group, long _announceIntervalMillis)
+        throws IOException
+    {
+        if (!_group.getAddress().isMulticastAddress())
+        {
+            String message = String.format("Discovery group (%s) must be a multicast address.", _group.getAddress());
+            throw new IllegalArgumentException(message);
+        }
+        if (_announceIntervalMillis < 0) { throw new IllegalArgumentException("Announce interval cannot be negative."); }
+        this.SERVER = _server;
+        this.NAME = _name;
+        this.GROUP = _group;
+        
+        this.socket = new MulticastSocket(_group.getPort());
+        this.socket.setTimeToLive(1);
+        this.socket.joinGroup(_group, null);
+        
+        this.responder = new Thread(this::respond, "LocalServer-discovery");
+        this.responder.setDaemon(true);
+        this.responder.start();
+        this.announcer = _announceIntervalMillis == 0 ? null : LocalServerExecutor.SCHEDULER.scheduleAtFixedRate(
+            this::announce,
+            0,
+            _announceIntervalMillis,
+            TimeUnit.MILLISECONDS
+        );
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    /**
+     * Announces the server to the group now, such as once it becomes ready.
+     * Nothing is sent before the server has started.
+     */
+    public void announce()
+    {
+        if (this.closed || !this.SERVER.started) { return; }
+        this.send(this.encodeAnnounce(0), this.GROUP);
+    }
+    
+    /**
+     * Stops announcing, tells the group the server is going, and leaves the group.
+     */
+    @Override
+    public void close()
+    {
+        if (this.closed) { return; }
+        this.closed = true;
+        if (this.announcer != null) { this.announcer.cancel(false); }
+        ByteBuffer goodbye = LocalServerDiscovery.startPacket(TYPE_GOODBYE);
+        goodbye.putLong(this.INSTANCE_ID);
+        this.send(goodbye, this.GROUP);
+        try
+        {
+            this.socket.leaveGroup(this.GROUP, null);
+        }
+        catch (IOException ex)
+        {
+            // closing the socket leaves it anyway
+        }
+        this.socket.close();
+    }
+    
+    /**
+     * Receives packets on the group until closed, and answers each query
+     * that this server matches with an ANNOUNCE sent back to the querier,
+     * as long as the querier is on the local network and replies are not
+     * being sent too fast.
+     */
+    protected void respond()
+    {
+        byte[] bytes = new byte[MAX_PACKET_SIZE];
+        DatagramPacket packet = new DatagramPacket(bytes, bytes.length);
+        while (!this.closed)
+        {
+            try
+            {
+                packet.setLength(bytes.length);
+                this.socket.receive(packet);
+                ByteBuffer in = ByteBuffer.wrap(bytes, 0, packet.getLength());
+                if (LocalServerDiscovery.readType(in) != TYPE_QUERY || !this.SERVER.started) { continue; }
+                int nonce = in.getInt();
+                String contextPath = in.hasRemaining() ? LocalServerDiscovery.getString(in) : null;
+                if (contextPath != null && !this.SERVER.contextHandlers.containsKey(contextPath)) { continue; }
+                if (!this.isLocalSender(packet.getAddress()) || !this.tryReply()) { continue; }
+                this.send(this.encodeAnnounce(nonce), (InetSocketAddress)packet.getSocketAddress());
+            }
+            catch (IOException | BufferUnderflowException ex)
+            {
+                // a closed socket ends the loop; a malformed packet is ignored
+            }
+        }
+    }
+    
+    /**
+     * Determines whether a query's sender is on the local network, so it may be answered.
+     * @param sender the sender's address
+     * @return       true if the sender is loopback, link-local, or on one of this host's subnets
+     */
+    protected boolean isLocalSender(InetAddress sender)
+    {
+        if (sender.isLoopbackAddress() || sender.isLinkLocalAddress()) { return true; }
+        long now = System.currentTimeMillis();
+        if (now - this.localNetworksMillis >= LOCAL_NETWORKS_REFRESH_MILLIS)
+        {
+            this.localNetworks = LocalServerDiscovery.getLocalNetworks();
+            this.localNetworksMillis = now;
+        }
+        for (InterfaceAddress network : this.localNetworks)
+        {
+            if (LocalServerDiscovery.isInSubnet(sender, network.getAddress(), network.getNetworkPrefixLength())) { return true; }
+        }
+        return false;
+    }
+    
+    /**
+     * Counts a reply against {@link #MAX_REPLIES_PER_SECOND}.
+     * @return true if the reply may be sent
+     */
+    protected boolean tryReply()
+    {
+        long now = System.currentTimeMillis();
+        if (now - this.replyWindowMillis >= 1000)
+        {
+            this.replyWindowMillis = now;
+            this.replyCount = 0;
+        }
+        if (this.replyCount >= MAX_REPLIES_PER_SECOND) { return false; }
+        ++this.replyCount;
+        return true;
+    }
+    
+    /**
+     * Encodes an ANNOUNCE of the server as it is now.
+     * @param nonce the nonce of the query being answered, or 0
+     * @return      the packet, ready to send
+     */
+    protected ByteBuffer encodeAnnounce(int nonce)
+    {
+        LocalServer s = this.SERVER;
+        InetSocketAddress address = s.getAddress();
+        byte[] addressBytes = address.getAddress() == null || address.getAddress().isAnyLocalAddress()
+            ? new byte[0]
+            : address.getAddress().getAddress();
+        int flags = (s.isReady() ? FLAG_READY : 0) | (s.getTlsContext() != null ? FLAG_HTTPS : 0);
+        
+        ByteBuffer out = LocalServerDiscovery.startPacket(TYPE_ANNOUNCE);
+        out.putInt(nonce);
+        out.putLong(this.INSTANCE_ID);
+        out.put((byte)flags);
+        out.putShort((short)Math.min(0xffff, LocalServerDiscovery.getLoad(s)));
+        out.putShort((short)address.getPort());
+        out.put((byte)addressBytes.length);
+        out.put(addressBytes);
+        LocalServerDiscovery.putString(out, this.NAME);
+        
+        // as many context paths as fit, shortest first
+        int countPosition = out.position();
+        out.put((byte)0);
+        int count = 0;
+        TreeSet<String> paths = new TreeSet<>(Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder()));
+        paths.addAll(s.contextHandlers.keySet());
+        for (String path : paths)
+        {
+            byte[] pathBytes = LocalServerDiscovery.toBytes(path);
+            if (count == 255 || out.remaining() < 1 + pathBytes.length) { break; }
+            out.put((byte)pathBytes.length);
+            out.put(pathBytes);
+            ++count;
+        }
+        out.put(countPosition, (byte)count);
+        return out;
+    }
+    
+    protected void send(ByteBuffer packet, InetSocketAddress target)
+    {
+        try
+        {
+            this.socket.send(new DatagramPacket(packet.array(), 0, packet.position(), target));
+        }
+        catch (IOException ex)
+        {
+            // discovery is best effort; the next announcement or query tries again
+        }
+    }
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Gets the addresses and subnets of this host's interfaces that are up.
+     * @return the interface addresses, or none if they cannot be read
+     */
+    protected static List<InterfaceAddress> getLocalNetworks()
+    {
+        List<InterfaceAddress> result = new ArrayList<>();
+        try
+        {
+            for (NetworkInterface ni : Collections.list(NetworkInterface.getNetworkInterfaces()))
+            {
+                if (ni.isUp()) { result.addAll(ni.getInterfaceAddresses()); }
+            }
+        }
+        catch (SocketException ex)
+        {
+            // no subnets are known, so only loopback and link-local senders are answered
+        }
+        return result;
+    }
+    
+    /**
+     * Determines whether an address is in the subnet of an interface address.
+     * @param address      the address to check
+     * @param network      an address in the subnet
+     * @param prefixLength the subnet's prefix length, in bits
+     * @return             true if both addresses are of the same family and share the prefix
+     */
+    protected static boolean isInSubnet(InetAddress address, InetAddress network, int prefixLength)
+    {
+        if (network == null) { return false; }
+        byte[] a = address.getAddress();
+        byte[] b = network.getAddress();
+        if (a.length != b.length || prefixLength < 0 || prefixLength > a.length * 8) { return false; }
+        int fullBytes = prefixLength / 8;
+        for (int i = 0; i < fullBytes; ++i)
+        {
+            if (a[i] != b[i]) { return false; }
+        }
+        int restBits = prefixLength % 8;
+        if (restBits == 0) { return true; }
+        int mask = (0xff << (8 - restBits)) & 0xff;
+        return (a[fullBytes] & mask) == (b[fullBytes] & mask);
+    }
+    
+    public static List<Entry> discover()
+        throws IOException
+    {
+        return LocalServerDiscovery.discover(DEFAULT_DISCOVER_TIMEOUT_MILLIS);
+    }
+    
+    /**
+     * Finds the servers on the local network in the default group.
+     * @param timeoutMillis how long to wait for answers
+     * @return              the servers that answered, least loaded first
+     * @throws IOException if the query cannot be sent
+     */
+    public static List<Entry> discover(long timeoutMillis)
+        throws IOException
+    {
+        return LocalServerDiscovery.discover(new InetSocketAddress(DEFAULT_GROUP_ADDRESS, DEFAULT_PORT), null, timeoutMillis);
+    }
+    
+    /**
+     * Finds the servers on the local network with one query, collecting
+     * answers until the timeout.
+     * @param group         the multicast group and port to query
+     * @param contextPath   a context path the servers must have, or null for any server
+     * @param timeoutMillis how long to wait for answers
+     * @return              the servers that answered, ready ones first, then least loaded first
+     * @throws IOException if the query cannot be sent
+     */
+    public static List<Entry> discover(InetSocketAddress group, String contextPath, long timeoutMillis)
+        throws IOException
+    {
+        int nonce = ThreadLocalRandom.current().nextInt() | 1;
+        ByteBuffer query = LocalServerDiscovery.startPacket(TYPE_QUERY);
+        query.putInt(nonce);
+        if (contextPath != null) { LocalServerDiscovery.putString(query, contextPath); }
+        
+        Map<Long, Entry> found = new LinkedHashMap<>();
+        try (MulticastSocket socket = new MulticastSocket(0))
+        {
+            socket.setTimeToLive(1);
+            socket.send(new DatagramPacket(query.array(), 0, query.position(), group));
+            
+            byte[] bytes = new byte[MAX_PACKET_SIZE];
+            DatagramPacket packet = new DatagramPacket(bytes, bytes.length);
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            for (long remaining = timeoutMillis; remaining > 0; remaining = deadline - System.currentTimeMillis())
+            {
+                socket.setSoTimeout((int)Math.max(1, remaining));
+                packet.setLength(bytes.length);
+                try
+                {
+                    socket.receive(packet);
+                }
+                catch (SocketTimeoutException ex)
+                {
+                    break;
+                }
+                try
+                {
+                    ByteBuffer in = ByteBuffer.wrap(bytes, 0, packet.getLength());
+                    if (LocalServerDiscovery.readType(in) != TYPE_ANNOUNCE || in.getInt() != nonce) { continue; }
+                    Entry entry = LocalServerDiscovery.decodeAnnounce(in, packet.getAddress());
+                    found.put(entry.INSTANCE_ID, entry);
+                }
+                catch (BufferUnderflowException | IllegalArgumentException ex)
+                {
+                    // not a packet of ours
+                }
+            }
+        }
+        
+        List<Entry> result = new ArrayList<>(found.values());
+        result.sort(Comparator.comparing((Entry e) -> !e.READY).thenComparingInt((Entry e) -> e.LOAD));
+        return Collections.unmodifiableList(result);
+    }
+    
+    /**
+     * Gets how busy a server is: the exchanges running and waiting on its
+     * executor if it is a LocalServerExecutor, or else those in flight on
+     * the NIO transport.
+     * @param server the server
+     * @return       the load, or 0 if it cannot be told
+     */
+    protected static long getLoad(LocalServer server)
+    {
+        LocalServerExecutor executor = server.getLocalServerExecutor();
+        if (executor != null) { return executor.getActiveCount() + executor.getQueuedCount(); }
+        if (server.getWrappedHttpServer() instanceof LocalNioHttpServer)
+        {
+            return ((LocalNioHttpServer)server.getWrappedHttpServer()).getActiveExchangeCount();
+        }
+        return 0;
+    }
+    
+    protected static ByteBuffer startPacket(byte type)
+    {
+        ByteBuffer out = ByteBuffer.allocate(MAX_PACKET_SIZE);
+        out.put(MAGIC);
+        out.put(VERSION);
+        out.put(type);
+        return out;
+    }
+    
+    /**
+     * Reads the header of a packet.
+     * @param in the packet
+     * @return   the packet's type, or 0 if it is not a packet of this version
+     */
+    protected static byte readType(ByteBuffer in)
+    {
+        if (in.remaining() < 4 || in.get() != MAGIC[0] || in.get() != MAGIC[1] || in.get() != VERSION) { return 0; }
+        return in.get();
+    }
+    
+    protected static Entry decodeAnnounce(ByteBuffer in, InetAddress sender)
+        throws IOException
+    {
+        long instanceId = in.getLong();
+        int flags = in.get() & 0xff;
+        int load = in.getShort() & 0xffff;
+        int port = in.getShort() & 0xffff;
+        int addressLength = in.get() & 0xff;
+        InetAddress address = sender;
+        if (addressLength > 0)
+        {
+            byte[] addressBytes = new byte[addressLength];
+            in.get(addressBytes);
+            address = InetAddress.getByAddress(addressBytes);
+        }
+        String name = LocalServerDiscovery.getString(in);
+        int count = in.get() & 0xff;
+        List<String> contexts = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) { contexts.add(LocalServerDiscovery.getString(in)); }
+        return new Entry(
+            instanceId,
+            name,
+            new InetSocketAddress(address, port),
+            (flags & FLAG_READY) != 0,
+            (flags & FLAG_HTTPS) != 0,
+            load,
+            contexts
+        );
+    }
+    
+    /**
+     * Encodes a string in UTF-8, cut short to at most 255 bytes without splitting a character.
+     * @param s the string
+     * @return  the bytes
+     */
+    protected static byte[] toBytes(String s)
+    {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= 255) { return bytes; }
+        int length = 255;
+        while (length > 0 && (bytes[length] & 0xc0) == 0x80) { --length; }
+        byte[] result = new byte[length];
+        System.arraycopy(bytes, 0, result, 0, length);
+        return result;
+    }
+    
+    protected static void putString(ByteBuffer out, String s)
+    {
+        byte[] bytes = LocalServerDiscovery.toBytes(s);
+        out.put((byte)bytes.length);
+        out.put(bytes);
+    }
+    
+    protected static String getString(ByteBuffer in)
+    {
+        byte[] bytes = new byte[in.get() & 0xff];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    
+    //
+    // Nested Classes
+    //
+    
+    /**
+     * A server found by {@link LocalServerDiscovery#discover}.
+     */
+    public static class Entry
+    {
+        public final long INSTANCE_ID;
+        public final String NAME;
+        public final InetSocketAddress ADDRESS;
+        public final boolean READY;
+        public final boolean HTTPS;
+        public final int LOAD;
+        public final List<String> CONTEXTS;
+        
+        public Entry(long _instanceId, String _name, InetSocketAddress _address, boolean _ready, boolean _https, int _load, List<String> _contexts)
+        {
+            this.INSTANCE_ID = _instanceId;
+            this.NAME = _name;
+            this.ADDRESS = _address;
+            this.READY = _ready;
+            this.HTTPS = _https;
+            this.LOAD = _load;
+            this.CONTEXTS = Collections.unmodifiableList(_contexts);
+        }
+        
+        /**
+         * Gets the URL the server can be reached at.
+         * @return the URL, such as <code>http://192.168.1.20:8001</code>
+         */
+        public String getUrl()
+        {
+            String host = this.ADDRESS.getAddress().getHostAddress();
+            if (host.indexOf(':') >= 0) { host = "[" + host + "]"; }
+            return String.format("%s://%s:%s", this.HTTPS ? "https" : "http", host, this.ADDRESS.getPort());
+        }
+        
+        @Override
+        public String toString()
+        {
+            return String.format("%s %s (%s, load %s) %s", this.NAME, this.getUrl(), this.READY ? "ready" : "not ready", this.LOAD, this.CONTEXTS);
+        }
+    }
+}
\ No newline at end of file
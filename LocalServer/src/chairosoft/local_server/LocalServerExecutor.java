@@ -0,0 +1,376 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalServerExecutor.java
+ * LocalServerExecutor class definition
+ */
+
+package chairosoft.local_server;
+
+import java.lang.reflect.Method;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An executor for running a LocalServer's handlers, with pool metrics.
+ * Use one of the static factory methods to pick how handlers are run.
+ * The counts are of tasks handed over by the server, which include 
+ * exchanges as well as the server's own connection housekeeping.
+ */
+public class LocalServerExecutor implements Executor
+{
+    //
+    // Static Fields
+    //
+    
+    protected static final ThreadLocal<Boolean> SHEDDING = new ThreadLocal<>();
+    protected static final ThreadLocal<LocalServerExecutor> CURRENT = new ThreadLocal<>();
+    protected static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+    
+    /** 
+     * A daemon thread for the server's timers, such as heartbeats and timeouts. Tasks on it must be short. 
+     * A timer whose work can block, such as writing to a client, hands it to {@link #TIMER_WORKERS}.
+     */
+    public static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor((Runnable r) -> 
+    {
+        Thread thread = new Thread(r, "LocalServer-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /** Daemon threads for the blocking work that the server's timers start, so that one stalled client cannot hold up the other timers. */
+    public static final ExecutorService TIMER_WORKERS = Executors.newCachedThreadPool(new ThreadFactory()
+    {
+        protected final AtomicInteger threadCounter = new AtomicInteger();
+        
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, "LocalServer-timer-worker-" + this.threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    
+    public static final int SHED_RESPONDER_THREADS = 2;
+    public static final int SHED_QUEUE_CAPACITY = 256;
+    
+    /** 
+     * Daemon threads that answer the exchanges a {@link #boundedPool(int, int)} sheds,
+     * so that reading a slow client's request head does not hold up the dispatching thread. 
+     */
+    protected static final ThreadPoolExecutor SHED_RESPONDERS = new ThreadPoolExecutor(
+        SHED_RESPONDER_THREADS,
+        SHED_RESPONDER_THREADS,
+        60,
+        TimeUnit.SECONDS,
+        new ArrayBlockingQueue<Runnable>(SHED_QUEUE_CAPACITY),
+        new ThreadFactory()
+        {
+            protected final AtomicInteger threadCounter = new AtomicInteger();
+            
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "LocalServer-shed-responder-" + this.threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }
+    );
+    static
+    {
+        SHED_RESPONDERS.allowCoreThreadTimeOut(true);
+    }
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Creates an executor that runs each exchange on its own virtual thread.
+     * On runtimes without virtual threads, each exchange gets a pooled platform
+     * thread from an unbounded cached pool instead.
+     * @return an executor that starts a thread per exchange
+     */
+    public static LocalServerExecutor virtualThreadPerRequest()
+    {
+        try
+        {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return new LocalServerExecutor("virtual-thread-per-request", (ExecutorService)factory.invoke(null));
+        }
+        catch (ReflectiveOperationException | RuntimeException ex)
+        {
+            ThreadFactory threadFactory = LocalServerExecutor.createThreadFactory("thread-per-request");
+            return new LocalServerExecutor("thread-per-request", Executors.newCachedThreadPool(threadFactory));
+        }
+    }
+    
+    /**
+     * Creates an executor backed by a fixed-size thread pool with a bounded queue.
+     * When the queue is full, new exchanges are shed: they are run only long
+     * enough to send a 503 response, on a few responder threads shared by all
+     * bounded pools. On the JDK transport that still means reading the request
+     * head, which can block on a slow client, so the responders keep this off
+     * the dispatching thread. Only once {@link #SHED_QUEUE_CAPACITY} shed exchanges
+     * are already waiting for a responder is one run on the dispatching thread;
+     * the <code>sun.net.httpserver.maxReqTime</code> system property bounds how
+     * long the JDK transport waits for a request head.
+     * @param threads       the number of threads in the pool
+     * @param queueCapacity the number of exchanges that may wait for a thread
+     * @return              a bounded, load-shedding executor
+     */
+    public static LocalServerExecutor boundedPool(int threads, int queueCapacity)
+    {
+        if (threads < 1 || queueCapacity < 1)
+        {
+            String message = String.format("Values for threads (%s) and queueCapacity (%s) must be positive.", threads, queueCapacity);
+            throw new IllegalArgumentException(message);
+        }
+        
+        final LongAdder shedCount = new LongAdder();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+            threads,
+            threads,
+            60,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(queueCapacity),
+            LocalServerExecutor.createThreadFactory("bounded"),
+            (Runnable task, ThreadPoolExecutor executor) ->
+            {
+                shedCount.increment();
+                Runnable shed = () ->
+                {
+                    SHEDDING.set(Boolean.TRUE);
+                    try
+                    {
+                        task.run();
+                    }
+                    finally
+                    {
+                        SHEDDING.remove();
+                    }
+                };
+                try
+                {
+                    SHED_RESPONDERS.execute(shed);
+                }
+                catch (RejectedExecutionException ex)
+                {
+                    // the responders are saturated too, so this one is answered here
+                    shed.run();
+                }
+            }
+        );
+        return new LocalServerExecutor("bounded", pool, shedCount);
+    }
+    
+    /**
+     * Creates an executor backed by a work-stealing fork/join pool.
+     * @param parallelism the target number of active threads
+     * @return            a work-stealing executor
+     */
+    public static LocalServerExecutor workStealing(int parallelism)
+    {
+        ForkJoinPool pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        return new LocalServerExecutor("work-stealing", pool);
+    }
+    
+    /**
+     * Runs a task on {@link #TIMER_WORKERS} once a delay has passed.
+     * Only the timer is kept on {@link #SCHEDULER}.
+     * @param task  the task to run, which may block
+     * @param delay how long to wait before running it
+     * @param unit  the unit of the delay
+     * @return      the timer, which can be cancelled until the task has been handed over
+     */
+    public static ScheduledFuture<?> scheduleBlocking(Runnable task, long delay, TimeUnit unit)
+    {
+        return SCHEDULER.schedule(() -> TIMER_WORKERS.execute(task), delay, unit);
+    }
+    
+    /**
+     * Determines whether the current thread is running an exchange that
+     * has been shed because the executor is saturated.
+     * @return true if the current exchange should be answered with a 503 response
+     */
+    public static boolean isShedding()
+    {
+        return SHEDDING.get() != null;
+    }
+    
+    protected static ThreadFactory createThreadFactory(String mode)
+    {
+        final String prefix = String.format("LocalServer-%s-%s-", mode, POOL_COUNTER.incrementAndGet());
+        final AtomicInteger threadCounter = new AtomicInteger();
+        return (Runnable r) -> new Thread(r, prefix + threadCounter.incrementAndGet());
+    }
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    public final String MODE;
+    protected final ExecutorService executorService;
+    protected final LongAdder submittedCount = new LongAdder();
+    protected final LongAdder completedCount = new LongAdder();
+    protected final LongAdder shedCount;
+    protected final AtomicInteger activeCount = new AtomicInteger();
+    
+    
+    //
+    // Constructors
+    //
+    
+    protected LocalServerExecutor(String _mode, ExecutorService _executorService)
+    {
+        this(_mode, _executorService, new LongAdder());
+    }
+    
+    protected LocalServerExecutor(String _mode, ExecutorService _executorService, LongAdder _shedCount)
+    {
+        this.MODE = _mode;
+        this.executorService = _executorService;
+        this.shedCount = _shedCount;
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    @Override
+    public void execute(Runnable task)
+    {
+        this.submittedCount.increment();
+        this.executorService.execute(() ->
+        {
+            LocalServerExecutor previous = CURRENT.get();
+            CURRENT.set(this);
+            this.activeCount.incrementAndGet();
+            try
+            {
+                task.run();
+            }
+            finally
+            {
+                this.activeCount.decrementAndGet();
+                this.completedCount.increment();
+                if (previous == null) { CURRENT.remove(); } else { CURRENT.set(previous); }
+            }
+        });
+    }
+    
+    /**
+     * Determines whether the current thread is running one of this executor's tasks.
+     * @return true if called from a task run by this executor
+     */
+    public boolean isCurrentThread()
+    {
+        return CURRENT.get() == this;
+    }
+    
+    /** @return the number of tasks handed to this executor */
+    public long getSubmittedCount() { return this.submittedCount.sum(); }
+    
+    /** @return the number of tasks that have finished running, including shed ones */
+    public long getCompletedCount() { return this.completedCount.sum(); }
+    
+    /** @return the number of tasks shed because the executor was saturated */
+    public long getShedCount() { return this.shedCount.sum(); }
+    
+    /** @return the number of tasks currently running */
+    public int getActiveCount() { return this.activeCount.get(); }
+    
+    /** @return the number of tasks waiting for a thread */
+    public long getQueuedCount()
+    {
+        if (this.executorService instanceof ThreadPoolExecutor)
+        {
+            return ((ThreadPoolExecutor)this.executorService).getQueue().size();
+        }
+        if (this.executorService instanceof ForkJoinPool)
+        {
+            ForkJoinPool pool = (ForkJoinPool)this.executorService;
+            return pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount();
+        }
+        return 0;
+    }
+    
+    /** @return the number of threads in the pool, or the number of running tasks if there is no pool */
+    public int getPoolSize()
+    {
+        if (this.executorService instanceof ThreadPoolExecutor)
+        {
+            return ((ThreadPoolExecutor)this.executorService).getPoolSize();
+        }
+        if (this.executorService instanceof ForkJoinPool)
+        {
+            return ((ForkJoinPool)this.executorService).getPoolSize();
+        }
+        return this.getActiveCount();
+    }
+    
+    /**
+     * Stops accepting exchanges and waits briefly for running ones to finish.
+     * When called from one of this executor's own tasks, it does not wait, 
+     * since that task could not finish while it waited.
+     * @param timeoutSeconds the longest time to wait, in seconds
+     */
+    public void shutdown(int timeoutSeconds)
+    {
+        this.shutdown(timeoutSeconds, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Stops accepting exchanges and waits briefly for running ones to finish.
+     * When called from one of this executor's own tasks, it does not wait, 
+     * since that task could not finish while it waited.
+     * @param timeout the longest time to wait
+     * @param unit    the unit of the timeout
+     */
+    public void shutdown(long timeout, TimeUnit unit)
+    {
+        this.executorService.shutdown();
+        if (this.isCurrentThread() || timeout <= 0) { return; }
+        try
+        {
+            this.executorService.awaitTermination(timeout, unit);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    @Override
+    public String toString()
+    {
+        return String.format("LocalServerExecutor[mode=%s, poolSize=%s, active=%s, queued=%s, submitted=%s, completed=%s, shed=%s]",
+            this.MODE,
+            this.getPoolSize(),
+            this.getActiveCount(),
+            this.getQueuedCount(),
+            this.getSubmittedCount(),
+            this.getCompletedCount(),
+            this.getShedCount()
+        );
+    }
+}
\ No newline at end of file
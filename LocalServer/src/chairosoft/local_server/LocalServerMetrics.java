@@ -0,0 +1,332 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalServerMetrics.java
+ * LocalServerMetrics class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.IOException;
+
+import java.lang.management.ManagementFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Collects per-context metrics for a LocalServer's exchanges.
+ * <p>
+ * Every exchange that goes through {@link LocalHttpHandler#toHttpHandler()}
+ * is recorded against its context: its method, status class, request and 
+ * response body sizes, and latency. Recording is lock-free; apart from 
+ * a small counting wrapper around the response body, it does not allocate.
+ * <p>
+ * The metrics can be read directly, through JMX with 
+ * {@link #registerMBeans(String)}, or in the Prometheus text format 
+ * through {@link LocalServer#createMetricsContext(String)}.
+ * @see LocalServer#setMetrics(LocalServerMetrics)
+ */
+public class LocalServerMetrics
+{
+    //
+    // Static Fields
+    //
+    
+    public static final String JMX_DOMAIN = "chairosoft.local_server";
+    public static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    public static final double[] PROMETHEUS_BUCKETS_SECONDS = 
+    {
+        0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Appends a Prometheus label value, escaped and quoted.
+     * @param sb    the builder to append to
+     * @param value the label value
+     */
+    protected static void appendLabelValue(StringBuilder sb, String value)
+    {
+        sb.append('"');
+        for (int i = 0; i < value.length(); ++i)
+        {
+            char c = value.charAt(i);
+            switch (c)
+            {
+                case '\\': sb.append("\\\\"); break;
+                case '"': sb.append("\\\""); break;
+                case '\n': sb.append("\\n"); break;
+                default: sb.append(c); break;
+            }
+        }
+        sb.append('"');
+    }
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    protected final ConcurrentHashMap<String, LocalContextMetrics> contexts = new ConcurrentHashMap<>();
+    protected String mbeanServerName = null;
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    /**
+     * Gets the metrics of a context, creating them if needed.
+     * @param contextPath the context's path
+     * @return            the context's metrics
+     */
+    public LocalContextMetrics getContextMetrics(String contextPath)
+    {
+        LocalContextMetrics result = this.contexts.get(contextPath);
+        if (result == null)
+        {
+            LocalContextMetrics created = new LocalContextMetrics(contextPath);
+            result = this.contexts.putIfAbsent(contextPath, created);
+            if (result == null)
+            {
+                result = created;
+                this.registerMBean(created);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Gets the metrics of every context that has had an exchange, ordered by path.
+     * @return the metrics of each context
+     */
+    public List<LocalContextMetrics> getAllContextMetrics()
+    {
+        List<LocalContextMetrics> result = new ArrayList<>(this.contexts.values());
+        Collections.sort(result, Comparator.comparing((LocalContextMetrics m) -> m.CONTEXT_PATH));
+        return result;
+    }
+    
+    /**
+     * Gets the number of exchanges being handled across all contexts.
+     * @return the number of active exchanges
+     */
+    public long getActiveCount()
+    {
+        long result = 0;
+        for (LocalContextMetrics m : this.contexts.values()) { result += m.getActiveCount(); }
+        return result;
+    }
+    
+    /**
+     * Handles an exchange with the given handler, and records it.
+     * @param x       the exchange to handle
+     * @param handler the handler whose pipeline to run
+     * @throws IOException if the handler throws one
+     */
+    public void record(LocalHttpExchange x, LocalHttpHandler handler)
+        throws IOException
+    {
+        HttpExchange exchange = x.exchange;
+        HttpContext context = exchange.getHttpContext();
+        LocalContextMetrics m = this.getContextMetrics(context == null ? "" : context.getPath());
+        LocalCountingOutputStream out = new LocalCountingOutputStream(exchange.getResponseBody());
+        exchange.setStreams(null, out);
+        
+        long start = System.nanoTime();
+        m.recordStart(x.REQUEST_METHOD);
+        boolean failed = true;
+        boolean async = false;
+        try
+        {
+            LocalHttpHandlerPipeline.handle(x, handler);
+            failed = false;
+            CompletableFuture<Void> completion = x.getCompletion();
+            if (completion != null)
+            {
+                // the exchange finishes later, on another thread
+                async = true;
+                completion.whenComplete((Void v, Throwable ex) -> this.recordEnd(m, x, out, ex != null, start));
+            }
+        }
+        finally
+        {
+            if (!async) { this.recordEnd(m, x, out, failed, start); }
+        }
+    }
+    
+    protected void recordEnd(LocalContextMetrics m, LocalHttpExchange x, LocalCountingOutputStream out, boolean failed, long start)
+    {
+        long requestBytes = Math.max(x.REQUEST_CONTENT_LENGTH, x.getRequestBodyBytesRead());
+        m.recordEnd(x.exchange.getResponseCode(), failed, requestBytes, out.getBytesWritten(), System.nanoTime() - start);
+    }
+    
+    /**
+     * Registers a JMX MBean for each context with the platform MBean server, 
+     * now and as new contexts are seen. The MBeans are named 
+     * <code>chairosoft.local_server:type=LocalServer,name=&lt;serverName&gt;,context=&lt;path&gt;</code>.
+     * @param serverName the name that tells this server's MBeans apart, such as its port
+     */
+    public synchronized void registerMBeans(String serverName)
+    {
+        this.unregisterMBeans();
+        this.mbeanServerName = serverName;
+        for (LocalContextMetrics m : this.contexts.values()) { this.registerMBean(m); }
+    }
+    
+    /**
+     * Unregisters this object's MBeans, if they were registered.
+     */
+    public synchronized void unregisterMBeans()
+    {
+        if (this.mbeanServerName == null) { return; }
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        for (LocalContextMetrics m : this.contexts.values())
+        {
+            try
+            {
+                ObjectName name = this.getObjectName(m);
+                if (mbeanServer.isRegistered(name)) { mbeanServer.unregisterMBean(name); }
+            }
+            catch (JMException ex)
+            {
+                // already gone
+            }
+        }
+        this.mbeanServerName = null;
+    }
+    
+    protected ObjectName getObjectName(LocalContextMetrics m)
+        throws JMException
+    {
+        String name = String.format("%s:type=LocalServer,name=%s,context=%s", 
+            JMX_DOMAIN, 
+            ObjectName.quote(this.mbeanServerName), 
+            ObjectName.quote(m.CONTEXT_PATH)
+        );
+        return new ObjectName(name);
+    }
+    
+    protected synchronized void registerMBean(LocalContextMetrics m)
+    {
+        if (this.mbeanServerName == null) { return; }
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(m, this.getObjectName(m));
+        }
+        catch (JMException ex)
+        {
+            String message = String.format("Unable to register metrics MBean for context (%s).", m.CONTEXT_PATH);
+            throw new RuntimeException(message, ex);
+        }
+    }
+    
+    /**
+     * Writes all metrics in the Prometheus text exposition format.
+     * @return the metrics text
+     */
+    public String toPrometheusText()
+    {
+        List<LocalContextMetrics> all = this.getAllContextMetrics();
+        StringBuilder sb = new StringBuilder(1024 + 2048 * all.size());
+        
+        sb.append("# HELP localserver_requests_total Requests received, by context and method.\n");
+        sb.append("# TYPE localserver_requests_total counter\n");
+        for (LocalContextMetrics m : all)
+        {
+            for (int i = 0; i < LocalContextMetrics.METHODS.length; ++i)
+            {
+                long count = m.getMethodCount(i);
+                if (count == 0) { continue; }
+                sb.append("localserver_requests_total{context=");
+                LocalServerMetrics.appendLabelValue(sb, m.CONTEXT_PATH);
+                sb.append(",method=\"").append(LocalContextMetrics.METHODS[i]).append("\"} ").append(count).append('\n');
+            }
+        }
+        
+        sb.append("# HELP localserver_responses_total Responses sent, by context and status class.\n");
+        sb.append("# TYPE localserver_responses_total counter\n");
+        for (LocalContextMetrics m : all)
+        {
+            for (int i = 0; i < LocalContextMetrics.STATUS_CLASSES.length; ++i)
+            {
+                sb.append("localserver_responses_total{context=");
+                LocalServerMetrics.appendLabelValue(sb, m.CONTEXT_PATH);
+                sb.append(",status=\"").append(LocalContextMetrics.STATUS_CLASSES[i]).append("\"} ").append(m.getStatusCount(i)).append('\n');
+            }
+        }
+        
+        this.appendContextValues(sb, all, "localserver_errors_total", "counter", "Exchanges whose handler threw an exception.", LocalContextMetrics::getErrorCount);
+        this.appendContextValues(sb, all, "localserver_request_bytes_total", "counter", "Request body bytes received.", LocalContextMetrics::getBytesIn);
+        this.appendContextValues(sb, all, "localserver_response_bytes_total", "counter", "Response body bytes sent.", LocalContextMetrics::getBytesOut);
+        this.appendContextValues(sb, all, "localserver_active_exchanges", "gauge", "Exchanges being handled.", LocalContextMetrics::getActiveCount);
+        
+        sb.append("# HELP localserver_request_duration_seconds Time to handle an exchange.\n");
+        sb.append("# TYPE localserver_request_duration_seconds histogram\n");
+        for (LocalContextMetrics m : all)
+        {
+            for (double bound : PROMETHEUS_BUCKETS_SECONDS)
+            {
+                sb.append("localserver_request_duration_seconds_bucket{context=");
+                LocalServerMetrics.appendLabelValue(sb, m.CONTEXT_PATH);
+                sb.append(",le=\"").append(bound).append("\"} ").append(m.LATENCY.getCountAtOrBelow((long)(bound * 1e9))).append('\n');
+            }
+            long count = m.LATENCY.getCount();
+            sb.append("localserver_request_duration_seconds_bucket{context=");
+            LocalServerMetrics.appendLabelValue(sb, m.CONTEXT_PATH);
+            sb.append(",le=\"+Inf\"} ").append(count).append('\n');
+            sb.append("localserver_request_duration_seconds_sum{context=");
+            LocalServerMetrics.appendLabelValue(sb, m.CONTEXT_PATH);
+            sb.append("} ").append(String.format(Locale.ROOT, "%.9f", m.LATENCY.getSum() / 1e9)).append('\n');
+            sb.append("localserver_request_duration_seconds_count{context=");
+            LocalServerMetrics.appendLabelValue(sb, m.CONTEXT_PATH);
+            sb.append("} ").append(count).append('\n');
+        }
+        return sb.toString();
+    }
+    
+    protected void appendContextValues(StringBuilder sb, List<LocalContextMetrics> all, String name, String type, String help, ToLongFunction<LocalContextMetrics> getter)
+    {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        for (LocalContextMetrics m : all)
+        {
+            sb.append(name).append("{context=");
+            LocalServerMetrics.appendLabelValue(sb, m.CONTEXT_PATH);
+            sb.append("} ").append(getter.applyAsLong(m)).append('\n');
+        }
+    }
+    
+    /**
+     * Sends all metrics in the Prometheus text format.
+     * @param x the exchange to respond to
+     * @throws IOException if a problem occurs while writing the response
+     */
+    public void sendPrometheusResponse(LocalHttpExchange x)
+        throws IOException
+    {
+        byte[] response = this.toPrometheusText().getBytes("UTF-8");
+        x.RESPONSE_HEADERS.set("Cache-Control", "no-store");
+        x.sendByteArrayResponse(200, PROMETHEUS_CONTENT_TYPE, response);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,292 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalServerSentEvents.java
+ * LocalServerSentEvents class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sends Server-Sent Events (text/event-stream) over a streamed response.
+ * <p>
+ * Events can be sent from any thread; each one is pushed to the client 
+ * as soon as it is sent. While no events are sent, a comment line is 
+ * sent every heartbeat interval (timed on {@link LocalServerExecutor#SCHEDULER}, 
+ * and written from {@link LocalServerExecutor#TIMER_WORKERS}) so that proxies 
+ * do not drop the idle connection, and so that a client that has gone away 
+ * is noticed. A heartbeat is skipped while an event is being written. 
+ * Once that happens the emitter closes itself, and sending throws.
+ */
+public class LocalServerSentEvents implements Closeable
+{
+    //
+    // Static Fields
+    //
+    
+    public static final long DEFAULT_HEARTBEAT_MILLIS = 15000;
+    public static final String CONTENT_TYPE = "text/event-stream";
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    protected final LocalHttpResponseStream stream;
+    protected final long heartbeatNanos;
+    protected final ScheduledFuture<?> heartbeat;
+    protected final ReentrantLock lock = new ReentrantLock();
+    protected final AtomicBoolean heartbeatPending = new AtomicBoolean(false);
+    protected volatile long lastSentNanos = System.nanoTime();
+    protected volatile boolean closed = false;
+    
+    
+    //
+    // Constructor
+    //
+    
+    /**
+     * Creates an emitter on a response whose headers have been sent.
+     * @param _stream          the response stream to write events to
+     * @param _heartbeatMillis the idle time after which a heartbeat is sent, or 0 for none
+     */
+    public LocalServerSentEvents(LocalHttpResponseStream _stream, long _heartbeatMillis)
+    {
+        this.stream = _stream;
+        this.heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(_heartbeatMillis);
+        this.heartbeat = _heartbeatMillis <= 0 ? null : LocalServerExecutor.SCHEDULER.scheduleWithFixedDelay(
+            this::scheduleHeartbeat, 
+            _heartbeatMillis, 
+            _heartbeatMillis, 
+            TimeUnit.MILLISECONDS
+        );
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    public boolean isOpen() { return !this.closed; }
+    
+    /**
+     * Sends an unnamed event.
+     * @param data the event data; each line becomes a data line
+     * @throws IOException if the stream is closed or a problem occurs while writing
+     */
+    public void send(String data)
+        throws IOException
+    {
+        this.send(null, null, data);
+    }
+    
+    /**
+     * Sends a named event.
+     * @param event the event name, or null for an unnamed event
+     * @param data  the event data; each line becomes a data line
+     * @throws IOException if the stream is closed or a problem occurs while writing
+     */
+    public void send(String event, String data)
+        throws IOException
+    {
+        this.send(null, event, data);
+    }
+    
+    /**
+     * Sends an event.
+     * @param id    the event id the client reports back as Last-Event-ID, or null for none
+     * @param event the event name, or null for an unnamed event
+     * @param data  the event data; each line becomes a data line
+     * @throws IOException if the stream is closed or a problem occurs while writing
+     */
+    public void send(String id, String event, String data)
+        throws IOException
+    {
+        this.lock.lock();
+        try
+        {
+            this.checkOpen();
+            if (id != null) { this.stream.print("id: ").println(LocalServerSentEvents.checkField("id", id)); }
+            if (event != null) { this.stream.print("event: ").println(LocalServerSentEvents.checkField("event", event)); }
+            int start = 0;
+            int length = data.length();
+            do
+            {
+                int end = start;
+                while (end < length && data.charAt(end) != '\n' && data.charAt(end) != '\r') { ++end; }
+                this.stream.print("data: ").println(data.subSequence(start, end));
+                start = end + (end + 1 < length && data.charAt(end) == '\r' && data.charAt(end + 1) == '\n' ? 2 : 1);
+            }
+            while (start <= length);
+            this.stream.write('\n');
+            this.push();
+        }
+        catch (IOException ex)
+        {
+            this.close();
+            throw ex;
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+    
+    /**
+     * Sends a comment, which clients ignore.
+     * @param text the comment text, on one line
+     * @throws IOException if the stream is closed or a problem occurs while writing
+     */
+    public void comment(String text)
+        throws IOException
+    {
+        this.lock.lock();
+        try
+        {
+            this.checkOpen();
+            this.stream.print(":").println(LocalServerSentEvents.checkField("comment", text)).write('\n');
+            this.push();
+        }
+        catch (IOException ex)
+        {
+            this.close();
+            throw ex;
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+    
+    /**
+     * Tells the client how long to wait before reconnecting.
+     * @param millis the reconnection time, in milliseconds
+     * @throws IOException if the stream is closed or a problem occurs while writing
+     */
+    public void retry(long millis)
+        throws IOException
+    {
+        this.lock.lock();
+        try
+        {
+            this.checkOpen();
+            this.stream.print("retry: ").println(Long.toString(millis)).write('\n');
+            this.push();
+        }
+        catch (IOException ex)
+        {
+            this.close();
+            throw ex;
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+    
+    protected void checkOpen()
+        throws IOException
+    {
+        if (this.closed) { throw new IOException("event stream is closed"); }
+    }
+    
+    protected void push()
+        throws IOException
+    {
+        this.stream.flush();
+        this.lastSentNanos = System.nanoTime();
+    }
+    
+    /**
+     * Hands a heartbeat to a timer worker if nothing has been sent for a heartbeat interval,
+     * and the last heartbeat has finished.
+     */
+    protected void scheduleHeartbeat()
+    {
+        if (this.closed || System.nanoTime() - this.lastSentNanos < this.heartbeatNanos) { return; }
+        if (!this.heartbeatPending.compareAndSet(false, true)) { return; }
+        LocalServerExecutor.TIMER_WORKERS.execute(this::sendHeartbeat);
+    }
+    
+    /**
+     * Sends a heartbeat comment, unless an event is being sent right now.
+     */
+    protected void sendHeartbeat()
+    {
+        try
+        {
+            if (!this.lock.tryLock()) { return; }
+            try
+            {
+                if (this.closed) { return; }
+                this.stream.print(":").println("").write('\n');
+                this.push();
+            }
+            catch (IOException ex)
+            {
+                // the client has gone away
+                this.close();
+            }
+            finally
+            {
+                this.lock.unlock();
+            }
+        }
+        finally
+        {
+            this.heartbeatPending.set(false);
+        }
+    }
+    
+    /**
+     * Stops the heartbeat and ends the response.
+     */
+    @Override
+    public void close()
+    {
+        this.lock.lock();
+        try
+        {
+            if (this.closed) { return; }
+            this.closed = true;
+            if (this.heartbeat != null) { this.heartbeat.cancel(false); }
+            try
+            {
+                this.stream.close();
+            }
+            catch (IOException ex)
+            {
+                // the client has gone away already
+            }
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+    
+    
+    //
+    // Static Methods
+    //
+    
+    protected static String checkField(String name, String value)
+    {
+        if (value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0)
+        {
+            String message = String.format("Event %s must be on one line: %s", name, value);
+            throw new IllegalArgumentException(message);
+        }
+        return value;
+    }
+}
\ No newline at end of file
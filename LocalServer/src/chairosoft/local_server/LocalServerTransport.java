@@ -0,0 +1,80 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalServerTransport.java
+ * LocalServerTransport functional interface definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.IOException;
+
+import java.net.InetSocketAddress;
+
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsServer;
+
+/**
+ * Creates the HttpServer that a LocalServer is built on.
+ * Handlers see the same LocalHttpExchange whichever transport is used.
+ */
+@FunctionalInterface
+public interface LocalServerTransport
+{
+    /** The JDK's built-in com.sun.net.httpserver implementation. */
+    public static final LocalServerTransport JDK = HttpServer::create;
+    
+    /** The selector-based engine, with keep-alive and pipelining. */
+    public static final LocalServerTransport NIO = LocalNioHttpServer::create;
+    
+    /**
+     * The selector-based engine, with several dispatcher threads sharing one listening socket.
+     * @param  dispatcherCount the number of selector threads, such as the number of cores
+     * @return a transport that creates servers with that many dispatchers
+     */
+    public static LocalServerTransport nio(int dispatcherCount)
+    {
+        return LocalServerTransport.nio(dispatcherCount, false);
+    }
+    
+    /**
+     * The selector-based engine, with several dispatcher threads.
+     * With <code>reusePort</code>, where SO_REUSEPORT is available, each one gets its own 
+     * listening socket. Binding then does not fail on a port that another process holds 
+     * with SO_REUSEPORT, so a LocalServer's port retries cannot skip such a port.
+     * @param  dispatcherCount the number of selector threads, such as the number of cores
+     * @param  reusePort       true to give each dispatcher its own socket through SO_REUSEPORT
+     * @return a transport that creates servers with that many dispatchers
+     */
+    public static LocalServerTransport nio(int dispatcherCount, boolean reusePort)
+    {
+        return (InetSocketAddress address, int backlogMax) -> LocalNioHttpServer.create(address, backlogMax, dispatcherCount, reusePort);
+    }
+    
+    /**
+     * The JDK's built-in HTTPS implementation.
+     * Every server it creates shares the given context's SSLContext and session cache.
+     * @param  tls the TLS setup, loaded from a key store
+     * @return a transport that creates HTTPS servers
+     */
+    public static LocalServerTransport https(LocalTlsContext tls)
+    {
+        return (InetSocketAddress address, int backlogMax) ->
+        {
+            HttpsServer server = HttpsServer.create(address, backlogMax);
+            server.setHttpsConfigurator(tls.getConfigurator());
+            return server;
+        };
+    }
+    
+    /**
+     * Creates a server bound to the given address.
+     * @param  address     the address to bind to
+     * @param  backlogMax  the maximum number of queued incoming connections, or 0 for the system default
+     * @return the created server, bound but not started
+     * @throws IOException if the server cannot be bound
+     */
+    HttpServer create(InetSocketAddress address, int backlogMax) throws IOException;
+}
\ No newline at end of file
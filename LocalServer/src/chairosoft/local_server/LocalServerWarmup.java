@@ -0,0 +1,293 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalServerWarmup.java
+ * LocalServerWarmup class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+
+import java.nio.charset.StandardCharsets;
+
+import java.security.SecureRandom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Synthetic requests that a server sends itself over loopback after it 
+ * starts and before it reports ready, so that the handlers, the transport
+ * and the JIT are warm when real traffic arrives.
+ * <p>
+ * Only the requests added here are sent, so contexts with side effects 
+ * are never touched by accident. Each request carries the {@link #HEADER} 
+ * header, so handlers and logs can tell warmup traffic apart. Its value is
+ * a random token that is only accepted while the warmup runs, so a client
+ * cannot pass its own requests off as warmup traffic by sending the header.
+ * Failed requests are counted, but do not stop the warmup.
+ * 
+ * @see LocalServer#setWarmup(LocalServerWarmup)
+ */
+public class LocalServerWarmup
+{
+    //
+    // Static Fields
+    //
+    
+    public static final String HEADER = "X-LocalServer-Warmup";
+    public static final int DEFAULT_ITERATIONS = 2000;
+    public static final int DEFAULT_THREAD_COUNT = 4;
+    public static final int DEFAULT_TIMEOUT_MILLIS = 5000;
+    
+    protected static final OutputStream NULL_STREAM = new OutputStream()
+    {
+        @Override public void write(int b) { }
+        @Override public void write(byte[] b, int off, int len) { }
+    };
+    
+    protected static final SecureRandom TOKEN_RANDOM = new SecureRandom();
+    
+    /** The tokens of the warmups that are running now. */
+    protected static final Set<String> ACTIVE_TOKENS = ConcurrentHashMap.newKeySet();
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    public final int ITERATIONS;
+    public final int THREAD_COUNT;
+    
+    protected final List<Request> requests = new ArrayList<>();
+    protected final AtomicLong sentCount = new AtomicLong();
+    protected final AtomicLong failedCount = new AtomicLong();
+    
+    
+    //
+    // Constructors
+    //
+    
+    public LocalServerWarmup()
+    {
+        this(DEFAULT_ITERATIONS, DEFAULT_THREAD_COUNT);
+    }
+    
+    /**
+     * Creates an empty warmup.
+     * @param _iterations  how many times each request is sent, in all
+     * @param _threadCount how many connections send requests at once
+     */
+    public LocalServerWarmup(int _iterations, int _threadCount)
+    {
+        this.ITERATIONS = _iterations;
+        this.THREAD_COUNT = Math.max(1, _threadCount);
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    public long getSentCount() { return this.sentCount.get(); }
+    public long getFailedCount() { return this.failedCount.get(); }
+    
+    /**
+     * Determines whether a {@link #HEADER} value is the token of a warmup that is running now.
+     * @param value the header value, or null if there is none
+     * @return      true if the value came from a running warmup
+     */
+    public static boolean isActiveToken(String value)
+    {
+        return value != null && ACTIVE_TOKENS.contains(value);
+    }
+    
+    /**
+     * Adds a GET request.
+     * @param path the request path and query, such as <code>/status?verbose</code>
+     * @return     this warmup
+     */
+    public LocalServerWarmup get(String path)
+    {
+        return this.add("GET", path, null, null);
+    }
+    
+    /**
+     * Adds a POST request.
+     * @param path        the request path and query
+     * @param contentType the content type of the body
+     * @param body        the request body
+     * @return            this warmup
+     */
+    public LocalServerWarmup post(String path, String contentType, String body)
+    {
+        return this.add("POST", path, contentType, body.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Adds a request.
+     * @param method      the request method
+     * @param path        the request path and query
+     * @param contentType the content type of the body, or null if there is no body
+     * @param body        the request body, or null for none
+     * @return            this warmup
+     */
+    public synchronized LocalServerWarmup add(String method, String path, String contentType, byte[] body)
+    {
+        if (!path.startsWith("/"))
+        {
+            String message = String.format("Warmup path (%s) must start with a slash.", path);
+            throw new IllegalArgumentException(message);
+        }
+        this.requests.add(new Request(method, path, contentType, body));
+        return this;
+    }
+    
+    /**
+     * Sends the requests to a server and waits for them all.
+     * A wildcard address is reached through the loopback address.
+     * @param address the address the server listens on
+     * @throws InterruptedException if interrupted while waiting for the requests
+     */
+    public void run(InetSocketAddress address)
+        throws InterruptedException
+    {
+        this.run(address, null);
+    }
+    
+    /**
+     * Sends the requests to a server and waits for them all, over HTTPS if a client context is given.
+     * A wildcard address is reached through the loopback address.
+     * @param address       the address the server listens on
+     * @param clientContext the context to connect with, trusting the server's certificate, or null for plain HTTP
+     * @throws InterruptedException if interrupted while waiting for the requests
+     */
+    public void run(InetSocketAddress address, SSLContext clientContext)
+        throws InterruptedException
+    {
+        InetAddress host = address.getAddress() == null || address.getAddress().isAnyLocalAddress() 
+            ? InetAddress.getLoopbackAddress() 
+            : address.getAddress();
+        String hostText = host.getHostAddress().indexOf(':') >= 0 ? "[" + host.getHostAddress() + "]" : host.getHostAddress();
+        String base = String.format("%s://%s:%s", clientContext == null ? "http" : "https", hostText, address.getPort());
+        SSLSocketFactory socketFactory = clientContext == null ? null : clientContext.getSocketFactory();
+        
+        List<Request> toSend;
+        synchronized (this)
+        {
+            toSend = new ArrayList<>(this.requests);
+        }
+        if (toSend.isEmpty()) { return; }
+        
+        byte[] tokenBytes = new byte[16];
+        TOKEN_RANDOM.nextBytes(tokenBytes);
+        StringBuilder tokenText = new StringBuilder();
+        for (byte b : tokenBytes) { tokenText.append(String.format("%02x", b)); }
+        String token = tokenText.toString();
+        
+        AtomicInteger remaining = new AtomicInteger(this.ITERATIONS * toSend.size());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < this.THREAD_COUNT; ++i)
+        {
+            final int offset = i;
+            Thread thread = new Thread(() ->
+            {
+                for (int n = offset; remaining.getAndDecrement() > 0; ++n)
+                {
+                    this.send(base, socketFactory, token, toSend.get(n % toSend.size()));
+                }
+            }, "LocalServer-warmup-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+        }
+        ACTIVE_TOKENS.add(token);
+        try
+        {
+            for (Thread thread : threads) { thread.start(); }
+            for (Thread thread : threads) { thread.join(); }
+        }
+        finally
+        {
+            ACTIVE_TOKENS.remove(token);
+        }
+    }
+    
+    protected void send(String base, SSLSocketFactory socketFactory, String token, Request request)
+    {
+        this.sentCount.incrementAndGet();
+        try
+        {
+            HttpURLConnection connection = (HttpURLConnection)new URL(base + request.path).openConnection();
+            if (socketFactory != null && connection instanceof HttpsURLConnection)
+            {
+                // only the server's own certificate is trusted, so its host name need not match the address
+                HttpsURLConnection https = (HttpsURLConnection)connection;
+                https.setSSLSocketFactory(socketFactory);
+                https.setHostnameVerifier((String hostname, SSLSession session) -> true);
+            }
+            connection.setRequestMethod(request.method);
+            connection.setConnectTimeout(DEFAULT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(DEFAULT_TIMEOUT_MILLIS);
+            connection.setRequestProperty(HEADER, token);
+            if (request.body != null)
+            {
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(request.body.length);
+                if (request.contentType != null) { connection.setRequestProperty("Content-Type", request.contentType); }
+                try (OutputStream out = connection.getOutputStream()) { out.write(request.body); }
+            }
+            
+            // read the whole response, so that the connection is kept alive for the next request
+            int status = connection.getResponseCode();
+            try (InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream())
+            {
+                if (in != null) { LocalServer.copyIO(in, NULL_STREAM); }
+            }
+            if (status >= 500) { this.failedCount.incrementAndGet(); }
+        }
+        catch (IOException ex)
+        {
+            this.failedCount.incrementAndGet();
+        }
+    }
+    
+    
+    //
+    // Nested Classes
+    //
+    
+    protected static class Request
+    {
+        protected final String method;
+        protected final String path;
+        protected final String contentType;
+        protected final byte[] body;
+        
+        protected Request(String _method, String _path, String _contentType, byte[] _body)
+        {
+            this.method = _method;
+            this.path = _path;
+            this.contentType = _contentType;
+            this.body = _body;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,367 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalSlowRequestMonitor.java
+ * LocalSlowRequestMonitor class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.Closeable;
+
+import java.nio.file.Path;
+
+import java.time.Instant;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Watches a server's exchanges in flight, and takes a snapshot whenever
+ * one runs longer than a threshold.
+ * <p>
+ * A snapshot holds every exchange in flight at that moment, with the 
+ * stack of the thread running it, so it shows what the slow exchange and
+ * everything next to it were doing, without a profiler being attached. 
+ * Each slow exchange is also committed as a {@link LocalFlightRecorder#SLOW_REQUEST} 
+ * event, and if a dump directory is set, running flight recordings are 
+ * dumped there, so the time leading up to the slow exchange is kept.
+ * <p>
+ * Exchanges are checked on {@link LocalServerExecutor#SCHEDULER}, several
+ * times per threshold. Stacks are captured, recordings dumped and snapshots 
+ * reported on {@link LocalServerExecutor#TIMER_WORKERS}, so that they do not 
+ * hold up the scheduler. Snapshots are rate-limited, since a stall usually
+ * makes many exchanges slow at once. Unless another listener is given, 
+ * snapshots are logged as warnings through java.util.logging.
+ * @see LocalServer#setSlowRequestMonitor(LocalSlowRequestMonitor)
+ */
+public class LocalSlowRequestMonitor implements Closeable
+{
+    //
+    // Static Fields
+    //
+    
+    public static final long DEFAULT_THRESHOLD_MILLIS = 1000;
+    public static final long DEFAULT_MIN_SNAPSHOT_INTERVAL_MILLIS = 10000;
+    public static final long MIN_CHECK_INTERVAL_MILLIS = 10;
+    public static final int MAX_STACK_DEPTH = 64;
+    public static final String DUMP_PREFIX = "LocalServer-slow-request";
+    
+    protected static final Logger LOGGER = Logger.getLogger(LocalSlowRequestMonitor.class.getName());
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    public final long THRESHOLD_NANOS;
+    public final long MIN_SNAPSHOT_INTERVAL_NANOS;
+    
+    protected final Consumer<Snapshot> listener;
+    protected final Set<Active> active = ConcurrentHashMap.newKeySet();
+    protected final LongAdder slowCount = new LongAdder();
+    protected final LongAdder snapshotCount = new LongAdder();
+    protected final ScheduledFuture<?> check;
+    protected volatile Path dumpDirectory = null;
+    protected long lastSnapshotNanos = 0;
+    protected boolean hasSnapshot = false;
+    
+    
+    //
+    // Constructors
+    //
+    
+    public LocalSlowRequestMonitor()
+    {
+        this(DEFAULT_THRESHOLD_MILLIS);
+    }
+    
+    public LocalSlowRequestMonitor(long _thresholdMillis)
+    {
+        this(_thresholdMillis, DEFAULT_MIN_SNAPSHOT_INTERVAL_MILLIS, (Snapshot s) -> LOGGER.warning(s.toString()));
+    }
+    
+    /**
+     * Creates a monitor, and starts checking for slow exchanges.
+     * @param _thresholdMillis           the time after which an exchange is slow, in milliseconds
+     * @param _minSnapshotIntervalMillis the shortest time between snapshots, in milliseconds
+     * @param _listener                  called with each snapshot, on a timer worker thread
+     */
+    public LocalSlowRequestMonitor(long _thresholdMillis, long _minSnapshotIntervalMillis, Consumer<Snapshot> _listener)
+    {
+        if (_thresholdMillis <= 0)
+        {
+            String message = String.format("Slow request threshold (%s) must be positive.", _thresholdMillis);
+            throw new IllegalArgumentException(message);
+        }
+        this.THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(_thresholdMillis);
+        this.MIN_SNAPSHOT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(_minSnapshotIntervalMillis);
+        this.listener = _listener;
+        long interval = Math.max(MIN_CHECK_INTERVAL_MILLIS, _thresholdMillis / 4);
+        this.check = LocalServerExecutor.SCHEDULER.scheduleWithFixedDelay(this::checkActive, interval, interval, TimeUnit.MILLISECONDS);
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    public long getSlowCount() { return this.slowCount.sum(); }
+    public long getSnapshotCount() { return this.snapshotCount.sum(); }
+    public int getActiveCount() { return this.active.size(); }
+    public Path getDumpDirectory() { return this.dumpDirectory; }
+    
+    /**
+     * Sets the directory that running flight recordings are dumped to with each snapshot.
+     * Recordings are not dumped until this is called.
+     * @param _dumpDirectory the directory, or null to stop dumping recordings
+     */
+    public void setDumpDirectory(Path _dumpDirectory) { this.dumpDirectory = _dumpDirectory; }
+    
+    /**
+     * Starts watching an exchange, on the thread that is about to handle it.
+     * @param x the exchange
+     * @return  the entry to pass to {@link #finish(Active)}
+     */
+    public Active start(LocalHttpExchange x)
+    {
+        Active a = new Active(x, Thread.currentThread(), System.nanoTime());
+        this.active.add(a);
+        return a;
+    }
+    
+    /**
+     * Stops watching an exchange. An exchange that was slow but finished before
+     * it could be caught in flight is counted, without a snapshot.
+     * @param a the entry from {@link #start(LocalHttpExchange)}
+     */
+    public void finish(Active a)
+    {
+        this.active.remove(a);
+        if (!a.reported && System.nanoTime() - a.START_NANOS > this.THRESHOLD_NANOS) { this.slowCount.increment(); }
+    }
+    
+    /**
+     * Looks for newly slow exchanges, and hands them to a timer worker to report.
+     * Runs on the scheduler thread, so it only reads timestamps.
+     */
+    protected void checkActive()
+    {
+        long now = System.nanoTime();
+        List<Active> slow = null;
+        Active trigger = null;
+        for (Active a : this.active)
+        {
+            if (a.reported || now - a.START_NANOS <= this.THRESHOLD_NANOS) { continue; }
+            a.reported = true;
+            this.slowCount.increment();
+            if (slow == null) { slow = new ArrayList<>(); }
+            slow.add(a);
+            if (trigger == null || a.START_NANOS < trigger.START_NANOS) { trigger = a; }
+        }
+        if (trigger == null) { return; }
+        boolean snapshot = !this.hasSnapshot || now - this.lastSnapshotNanos >= this.MIN_SNAPSHOT_INTERVAL_NANOS;
+        if (snapshot)
+        {
+            this.hasSnapshot = true;
+            this.lastSnapshotNanos = now;
+            this.snapshotCount.increment();
+        }
+        List<Active> newlySlow = slow;
+        Active snapshotTrigger = snapshot ? trigger : null;
+        LocalServerExecutor.TIMER_WORKERS.execute(() -> this.report(newlySlow, snapshotTrigger, now));
+    }
+    
+    /**
+     * Commits flight recorder events for newly slow exchanges, and takes a snapshot.
+     * Runs on a timer worker thread.
+     * @param slow    the newly slow exchanges
+     * @param trigger the exchange to take a snapshot for, or null for none
+     * @param now     when the exchanges were found to be slow, from {@link System#nanoTime()}
+     */
+    protected void report(List<Active> slow, Active trigger, long now)
+    {
+        try
+        {
+            if (LocalFlightRecorder.SLOW_REQUEST.isEnabled())
+            {
+                for (Active a : slow)
+                {
+                    Thread thread = a.thread;
+                    LocalFlightRecorder.SLOW_REQUEST.emit(
+                        a.CONTEXT_PATH, 
+                        a.METHOD, 
+                        a.PATH, 
+                        thread == null ? null : thread.getName(), 
+                        now - a.START_NANOS, 
+                        Snapshot.formatStack(thread == null ? null : thread.getStackTrace())
+                    );
+                }
+            }
+            if (trigger != null) { this.listener.accept(this.takeSnapshot(trigger, now)); }
+        }
+        catch (RuntimeException ex)
+        {
+            // a failing listener is not worth losing the worker thread over
+        }
+    }
+    
+    protected Snapshot takeSnapshot(Active trigger, long now)
+    {
+        List<ExchangeInfo> exchanges = new ArrayList<>();
+        ExchangeInfo triggerInfo = null;
+        for (Active a : this.active)
+        {
+            ExchangeInfo info = new ExchangeInfo(a, now);
+            exchanges.add(info);
+            if (a == trigger) { triggerInfo = info; }
+        }
+        if (triggerInfo == null) { triggerInfo = new ExchangeInfo(trigger, now); }
+        Collections.sort(exchanges, (ExchangeInfo i1, ExchangeInfo i2) -> Long.compare(i2.ELAPSED_NANOS, i1.ELAPSED_NANOS));
+        
+        Path directory = this.dumpDirectory;
+        List<Path> dumps = directory == null ? Collections.<Path>emptyList() : LocalFlightRecorder.dumpRecordings(directory, DUMP_PREFIX);
+        return new Snapshot(System.currentTimeMillis(), this.THRESHOLD_NANOS, triggerInfo, exchanges, dumps);
+    }
+    
+    /**
+     * Stops checking for slow exchanges.
+     */
+    @Override
+    public void close()
+    {
+        this.check.cancel(false);
+        this.active.clear();
+    }
+    
+    
+    //
+    // Nested Classes
+    //
+    
+    /**
+     * An exchange in flight. Compared by identity.
+     */
+    public static class Active
+    {
+        public final String CONTEXT_PATH;
+        public final String METHOD;
+        public final String PATH;
+        public final long START_NANOS;
+        
+        protected volatile Thread thread;
+        protected volatile boolean reported = false;
+        
+        protected Active(LocalHttpExchange x, Thread _thread, long _startNanos)
+        {
+            this.CONTEXT_PATH = x.getContextPath();
+            this.METHOD = x.REQUEST_METHOD;
+            this.PATH = x.REQUEST_URI.getPath();
+            this.START_NANOS = _startNanos;
+            this.thread = _thread;
+        }
+        
+        /**
+         * Notes that the handler has returned, and the exchange will finish 
+         * asynchronously, so the thread that started it is no longer running it.
+         */
+        public void detach() { this.thread = null; }
+    }
+    
+    /**
+     * What an exchange in flight was doing when a snapshot was taken.
+     */
+    public static class ExchangeInfo
+    {
+        public final String CONTEXT_PATH;
+        public final String METHOD;
+        public final String PATH;
+        public final long ELAPSED_NANOS;
+        public final String THREAD_NAME;
+        public final StackTraceElement[] STACK;
+        
+        protected ExchangeInfo(Active a, long now)
+        {
+            Thread thread = a.thread;
+            this.CONTEXT_PATH = a.CONTEXT_PATH;
+            this.METHOD = a.METHOD;
+            this.PATH = a.PATH;
+            this.ELAPSED_NANOS = now - a.START_NANOS;
+            this.THREAD_NAME = thread == null ? null : thread.getName();
+            this.STACK = thread == null ? new StackTraceElement[0] : thread.getStackTrace();
+        }
+        
+        @Override
+        public String toString()
+        {
+            return String.format("%s %s (context %s) for %.1f ms on %s", 
+                this.METHOD, 
+                this.PATH, 
+                this.CONTEXT_PATH, 
+                this.ELAPSED_NANOS / 1e6, 
+                this.THREAD_NAME == null ? "no thread (asynchronous)" : "\"" + this.THREAD_NAME + "\""
+            );
+        }
+    }
+    
+    /**
+     * The exchanges in flight when an exchange was found to be slow.
+     */
+    public static class Snapshot
+    {
+        public final long TIME_MILLIS;
+        public final long THRESHOLD_NANOS;
+        public final ExchangeInfo TRIGGER;
+        public final List<ExchangeInfo> EXCHANGES;
+        public final List<Path> DUMPS;
+        
+        protected Snapshot(long _timeMillis, long _thresholdNanos, ExchangeInfo _trigger, List<ExchangeInfo> _exchanges, List<Path> _dumps)
+        {
+            this.TIME_MILLIS = _timeMillis;
+            this.THRESHOLD_NANOS = _thresholdNanos;
+            this.TRIGGER = _trigger;
+            this.EXCHANGES = Collections.unmodifiableList(_exchanges);
+            this.DUMPS = Collections.unmodifiableList(_dumps);
+        }
+        
+        /**
+         * Formats a stack like a thread dump does, up to {@link #MAX_STACK_DEPTH} frames.
+         * @param stack the stack (may be null)
+         * @return      the formatted frames, one per line, or null if there is no stack
+         */
+        public static String formatStack(StackTraceElement[] stack)
+        {
+            if (stack == null) { return null; }
+            StringBuilder sb = new StringBuilder();
+            int depth = Math.min(stack.length, MAX_STACK_DEPTH);
+            for (int i = 0; i < depth; ++i) { sb.append("\tat ").append(stack[i]).append('\n'); }
+            if (depth < stack.length) { sb.append("\t...\n"); }
+            return sb.toString();
+        }
+        
+        @Override
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%s slow request (over %.0f ms): %s\n", Instant.ofEpochMilli(this.TIME_MILLIS), this.THRESHOLD_NANOS / 1e6, this.TRIGGER));
+            sb.append(String.format("%s exchanges in flight:\n", this.EXCHANGES.size()));
+            for (ExchangeInfo info : this.EXCHANGES)
+            {
+                sb.append(info).append('\n');
+                sb.append(Snapshot.formatStack(info.STACK));
+            }
+            for (Path dump : this.DUMPS) { sb.append("flight recording dumped to ").append(dump).append('\n'); }
+            return sb.toString();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,446 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalStaticFileHandler.java
+ * LocalStaticFileHandler class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Serves the files under a root directory.
+ * Files are streamed with {@link FileChannel#transferTo}, without reading 
+ * them onto the heap. They are not memory-mapped, since a mapped file that 
+ * is truncated while it is being served crashes the JVM.
+ * Ranges are served against file offsets by {@link LocalHttpRanges}.
+ * Symbolic links are followed only as far as they stay under the root.
+ * <p>
+ * When the server compresses responses, small compressible files are 
+ * compressed once per encoding and the results are cached; larger files 
+ * are compressed as they are streamed.
+ */
+public class LocalStaticFileHandler implements LocalHttpHandler
+{
+    //
+    // Static Fields
+    //
+    
+    public static final String DEFAULT_INDEX_FILE_NAME = "index.html";
+    public static final long DEFAULT_MAX_COMPRESSED_FILE_SIZE = 1024L * 1024;
+    public static final long DEFAULT_MAX_COMPRESSED_CACHE_SIZE = 32L * 1024 * 1024;
+    public static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+    
+    public static final DateTimeFormatter HTTP_DATE_FORMAT = DateTimeFormatter
+        .ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US)
+        .withZone(ZoneOffset.UTC);
+    
+    protected static final Map<String, String> MIME_TYPES = new HashMap<>();
+    static
+    {
+        MIME_TYPES.put("html", "text/html");
+        MIME_TYPES.put("htm", "text/html");
+        MIME_TYPES.put("css", "text/css");
+        MIME_TYPES.put("js", "application/javascript");
+        MIME_TYPES.put("json", "application/json");
+        MIME_TYPES.put("txt", "text/plain");
+        MIME_TYPES.put("xml", "application/xml");
+        MIME_TYPES.put("svg", "image/svg+xml");
+        MIME_TYPES.put("png", "image/png");
+        MIME_TYPES.put("jpg", "image/jpeg");
+        MIME_TYPES.put("jpeg", "image/jpeg");
+        MIME_TYPES.put("gif", "image/gif");
+        MIME_TYPES.put("ico", "image/x-icon");
+        MIME_TYPES.put("mp3", "audio/mpeg");
+        MIME_TYPES.put("ogg", "audio/ogg");
+        MIME_TYPES.put("wav", "audio/wav");
+        MIME_TYPES.put("mp4", "video/mp4");
+        MIME_TYPES.put("webm", "video/webm");
+        MIME_TYPES.put("mkv", "video/x-matroska");
+        MIME_TYPES.put("pdf", "application/pdf");
+        MIME_TYPES.put("zip", "application/zip");
+    }
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Gets the MIME type to serve a file with, based on its extension.
+     * @param file the file to get the MIME type of
+     * @return     the file's MIME type, or {@link #DEFAULT_MIME_TYPE} if it is not known
+     */
+    public static String getMimeType(Path file)
+    {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String mimeType = dot < 0 ? null : MIME_TYPES.get(name.substring(dot + 1).toLowerCase());
+        if (mimeType == null)
+        {
+            try
+            {
+                mimeType = Files.probeContentType(file);
+            }
+            catch (IOException ex)
+            {
+                mimeType = null;
+            }
+        }
+        return mimeType == null ? DEFAULT_MIME_TYPE : mimeType;
+    }
+    
+    /**
+     * Gets a channel that writes to the given output stream.
+     * If the stream is already a channel, it is returned as is,
+     * so that transfers can go straight to the underlying connection.
+     * @param out the output stream to write to
+     * @return    a channel that writes to the output stream
+     */
+    public static WritableByteChannel getChannel(OutputStream out)
+    {
+        return out instanceof WritableByteChannel ? (WritableByteChannel)out : Channels.newChannel(out);
+    }
+    
+    /**
+     * Transfers part of a file to a channel, until all of it has been transferred.
+     * @param channel      the file to transfer from
+     * @param position     the position in the file to start transferring from
+     * @param count        the number of bytes to transfer
+     * @param target       the channel to transfer to
+     * @throws IOException if the file ends early, or a problem occurs while reading or writing
+     */
+    public static void transferFully(FileChannel channel, long position, long count, WritableByteChannel target)
+        throws IOException
+    {
+        while (count > 0)
+        {
+            long transferred = channel.transferTo(position, count, target);
+            if (transferred <= 0)
+            {
+                String message = String.format("File ended before position %s.", position + count);
+                throw new IOException(message);
+            }
+            position += transferred;
+            count -= transferred;
+        }
+    }
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    public final Path ROOT_DIRECTORY;
+    protected String indexFileName = DEFAULT_INDEX_FILE_NAME;
+
+    protected long maxCompressedFileSize = DEFAULT_MAX_COMPRESSED_FILE_SIZE;
+    protected long maxCompressedCacheSize = DEFAULT_MAX_COMPRESSED_CACHE_SIZE;
+    protected long compressedCacheSize = 0;
+    protected final LinkedHashMap<String, CompressedFile> compressedFiles = new LinkedHashMap<>(16, 0.75f, true);
+    
+    
+    //
+    // Constructor
+    //
+    
+    public LocalStaticFileHandler(Path rootDirectory)
+    {
+        this.ROOT_DIRECTORY = rootDirectory.toAbsolutePath().normalize();
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    public void setIndexFileName(String _indexFileName) { this.indexFileName = _indexFileName; }
+    
+    /**
+     * Sets the limits of the compressed file cache.
+     * @param _maxCompressedFileSize  files up to this size are compressed once and cached;
+     *                                larger files are compressed as they are streamed
+     * @param _maxCompressedCacheSize the maximum total size of all cached compressed files
+     */
+    public void setCompressedCacheLimits(long _maxCompressedFileSize, long _maxCompressedCacheSize)
+    {
+        synchronized (this.compressedFiles)
+        {
+            this.maxCompressedFileSize = _maxCompressedFileSize;
+            this.maxCompressedCacheSize = _maxCompressedCacheSize;
+            this.compressedFiles.clear();
+            this.compressedCacheSize = 0;
+        }
+    }
+    
+    /**
+     * Resolves the file that the given exchange's request refers to.
+     * @param x the exchange to resolve the file of
+     * @return  the requested file, or null if the request does not refer to
+     *          a file under the root directory
+     */
+    public Path resolveFile(LocalHttpExchange x)
+    {
+        String path = x.REQUEST_URI.getPath();
+        if (path == null) { return null; }
+        String contextPath = x.exchange.getHttpContext().getPath();
+        if (path.startsWith(contextPath)) { path = path.substring(contextPath.length()); }
+        while (path.startsWith("/")) { path = path.substring(1); }
+        
+        Path file;
+        try
+        {
+            file = this.ROOT_DIRECTORY.resolve(path).normalize();
+        }
+        catch (InvalidPathException ex)
+        {
+            return null;
+        }
+        if (!file.startsWith(this.ROOT_DIRECTORY)) { return null; }
+        
+        if (Files.isDirectory(file)) { file = file.resolve(this.indexFileName); }
+        if (!Files.isRegularFile(file) || !Files.isReadable(file)) { return null; }
+        
+        // a link under the root may point anywhere, so check where it really leads
+        try
+        {
+            Path realFile = file.toRealPath();
+            return realFile.startsWith(this.ROOT_DIRECTORY.toRealPath()) ? realFile : null;
+        }
+        catch (IOException ex)
+        {
+            return null;
+        }
+    }
+    
+    @Override
+    public void handle(LocalHttpExchange x)
+        throws IOException
+    {
+        boolean isHead = x.REQUEST_METHOD.equals("HEAD");
+        if (!isHead && !x.REQUEST_METHOD.equals("GET"))
+        {
+            x.RESPONSE_HEADERS.set("Allow", "GET, HEAD");
+            x.sendStringResponse(405, "text/plain", "Method not allowed");
+            return;
+        }
+        
+        Path file = this.resolveFile(x);
+        if (file == null)
+        {
+            x.sendNotFoundResponse();
+            return;
+        }
+        
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long length = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String mimeType = LocalStaticFileHandler.getMimeType(file);
+        LocalHttpCompression compression = x.getCompression();
+        String encoding = compression == null ? null : compression.negotiate(x, 200, mimeType, length);
+        String eTag = encoding == null 
+            ? String.format("\"%x-%x\"", length, lastModified) 
+            : String.format("\"%x-%x-%s\"", length, lastModified, encoding);
+        x.RESPONSE_HEADERS.set("ETag", eTag);
+        x.RESPONSE_HEADERS.set("Last-Modified", HTTP_DATE_FORMAT.format(Instant.ofEpochMilli(lastModified)));
+        x.RESPONSE_HEADERS.set("Accept-Ranges", "bytes");
+        
+        if (this.isNotModified(x, eTag, lastModified))
+        {
+            x.sendHeadersOnly(304);
+            return;
+        }
+        
+        if (encoding != null)
+        {
+            this.sendCompressedFile(x, file, length, lastModified, mimeType, compression, encoding);
+            return;
+        }
+        
+        LocalHttpRanges.send(x, 200, mimeType, length, (OutputStream out, long position, long count) -> 
+            this.writeFile(file, position, count, LocalStaticFileHandler.getChannel(out))
+        );
+    }
+    
+    /**
+     * Sends a whole file compressed, from the compressed file cache if it is small enough.
+     * @param x            the exchange to respond to
+     * @param file         the file to send
+     * @param length       the length of the file
+     * @param lastModified the modification time of the file, in milliseconds
+     * @param mimeType     the MIME type of the file
+     * @param compression  the server's compression settings
+     * @param encoding     the negotiated encoding
+     * @throws IOException if a problem occurs while reading or writing
+     */
+    protected void sendCompressedFile(LocalHttpExchange x, Path file, long length, long lastModified, String mimeType, LocalHttpCompression compression, String encoding)
+        throws IOException
+    {
+        byte[] compressed = this.getCompressedFile(file, length, lastModified, compression, encoding);
+        if (compressed != null)
+        {
+            compression.sendEncodedResponse(x, 200, mimeType, compressed, encoding);
+            return;
+        }
+        
+        if (x.REQUEST_METHOD.equals("HEAD"))
+        {
+            x.RESPONSE_HEADERS.set("Content-Type", mimeType);
+            x.RESPONSE_HEADERS.set("Content-Encoding", encoding);
+            x.sendHeadersOnly(200);
+            return;
+        }
+        try (OutputStream out = compression.sendCompressedResponseHeaders(x, 200, mimeType, encoding))
+        {
+            this.writeFile(file, 0, length, Channels.newChannel(out));
+        }
+    }
+    
+    /**
+     * Gets a cached compressed copy of the given file, compressing it if needed.
+     * @param file         the file to get a compressed copy of
+     * @param length       the current length of the file
+     * @param lastModified the current modification time of the file, in milliseconds
+     * @param compression  the compression settings to compress with
+     * @param encoding     the encoding to compress with
+     * @return             the compressed file, or null if the file is too large to cache
+     * @throws IOException if a problem occurs while reading the file
+     */
+    protected byte[] getCompressedFile(Path file, long length, long lastModified, LocalHttpCompression compression, String encoding)
+        throws IOException
+    {
+        String key = encoding + ":" + file;
+        synchronized (this.compressedFiles)
+        {
+            if (length > this.maxCompressedFileSize) { return null; }
+            CompressedFile cached = this.compressedFiles.get(key);
+            if (cached != null && cached.length == length && cached.lastModified == lastModified) { return cached.bytes; }
+        }
+        
+        byte[] compressed = LocalHttpCompression.compress(Files.readAllBytes(file), encoding, compression.getLevel());
+        
+        synchronized (this.compressedFiles)
+        {
+            CompressedFile previous = this.compressedFiles.put(key, new CompressedFile(length, lastModified, compressed));
+            if (previous != null) { this.compressedCacheSize -= previous.bytes.length; }
+            this.compressedCacheSize += compressed.length;
+            Iterator<CompressedFile> eldest = this.compressedFiles.values().iterator();
+            while (this.compressedCacheSize > this.maxCompressedCacheSize && eldest.hasNext())
+            {
+                this.compressedCacheSize -= eldest.next().bytes.length;
+                eldest.remove();
+            }
+        }
+        return compressed;
+    }
+    
+    /**
+     * Determines whether a conditional request can be answered with a 304 response.
+     * @param x            the exchange to check the request of
+     * @param eTag         the current entity tag of the file
+     * @param lastModified the current modification time of the file, in milliseconds
+     * @return             true if the client's copy of the file is current
+     */
+    protected boolean isNotModified(LocalHttpExchange x, String eTag, long lastModified)
+    {
+        String ifNoneMatch = x.REQUEST_HEADERS.getFirst("If-None-Match");
+        if (ifNoneMatch != null)
+        {
+            for (String candidate : ifNoneMatch.split(","))
+            {
+                candidate = candidate.trim();
+                if (candidate.startsWith("W/")) { candidate = candidate.substring(2); }
+                if (candidate.equals("*") || candidate.equals(eTag)) { return true; }
+            }
+            return false;
+        }
+        
+        String ifModifiedSince = x.REQUEST_HEADERS.getFirst("If-Modified-Since");
+        if (ifModifiedSince != null)
+        {
+            try
+            {
+                long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                return lastModified / 1000 <= since / 1000;
+            }
+            catch (DateTimeParseException ex)
+            {
+                return false;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Writes part of a file to a channel.
+     * @param file     the file to write
+     * @param position the position in the file to start writing from
+     * @param count    the number of bytes to write
+     * @param target   the channel to write to
+     * @throws IOException if a problem occurs while reading or writing
+     */
+    protected void writeFile(Path file, long position, long count, WritableByteChannel target)
+        throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            if (target instanceof LocalCountingOutputStream)
+            {
+                ((LocalCountingOutputStream)target).transferFrom(channel, position, count);
+                return;
+            }
+            if (target instanceof LocalNioHttpExchange.ResponseBody)
+            {
+                // straight from the file to the socket
+                ((LocalNioHttpExchange.ResponseBody)target).transferFrom(channel, position, count);
+                return;
+            }
+            LocalStaticFileHandler.transferFully(channel, position, count, target);
+        }
+    }
+    
+    
+    //
+    // Nested Classes
+    //
+    
+    protected static class CompressedFile
+    {
+        public final long length;
+        public final long lastModified;
+        public final byte[] bytes;
+        
+        public CompressedFile(long _length, long _lastModified, byte[] _bytes)
+        {
+            this.length = _length;
+            this.lastModified = _lastModified;
+            this.bytes = _bytes;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,532 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalTlsContext.java
+ * LocalTlsContext class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.io.IOException;
+
+import java.lang.reflect.Method;
+
+import java.net.Socket;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedKeyManager;
+
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsParameters;
+
+/**
+ * The TLS setup for an HTTPS server, loaded from a key store file.
+ * <p>
+ * The SSLContext is built once, and its server session cache is sized for
+ * resumption, so a client that reconnects within the session timeout skips
+ * the full handshake. The certificate can be swapped without a restart:
+ * the context's key manager hands out whatever was loaded last, so
+ * {@link #reload()} (or {@link #watch(long)}, which calls it when the file
+ * changes) takes effect for the next handshake, while sessions already
+ * cached keep the certificate they were made with until they expire.
+ * @see LocalServerTransport#https(LocalTlsContext)
+ */
+public class LocalTlsContext implements Closeable
+{
+    //
+    // Static Fields
+    //
+    
+    public static final String PROTOCOL = "TLS";
+    public static final int DEFAULT_SESSION_CACHE_SIZE = 20480;
+    public static final int DEFAULT_SESSION_TIMEOUT_SECONDS = 3600;
+    
+    protected static final Logger LOGGER = Logger.getLogger(LocalTlsContext.class.getName());
+    
+    /** What is offered over ALPN by default, since both transports speak HTTP/1.1 only. */
+    public static final String[] DEFAULT_APPLICATION_PROTOCOLS = { "http/1.1" };
+    
+    /** SSLParameters.setApplicationProtocols, which older Java 8 runtimes do not have. */
+    protected static final Method SET_APPLICATION_PROTOCOLS;
+    static
+    {
+        Method method = null;
+        try
+        {
+            method = SSLParameters.class.getMethod("setApplicationProtocols", String[].class);
+        }
+        catch (NoSuchMethodException ex)
+        {
+            // no ALPN on this runtime
+        }
+        SET_APPLICATION_PROTOCOLS = method;
+    }
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    public final Path KEY_STORE_PATH;
+    public final String KEY_STORE_TYPE;
+    
+    protected final char[] password;
+    protected final SSLContext sslContext;
+    protected final SwappableKeyManager keyManager = new SwappableKeyManager();
+    protected final Configurator configurator;
+    protected final LongAdder reloadCount = new LongAdder();
+    protected String[] applicationProtocols = DEFAULT_APPLICATION_PROTOCOLS;
+    protected Consumer<SSLParameters> parametersHook = null;
+    protected volatile Consumer<? super IOException> reloadFailureListener = this::logReloadFailure;
+    protected volatile SSLParameters serverParameters = null;
+    protected volatile long loadedModifiedMillis = 0;
+    protected volatile long loadedSize = 0;
+    protected ScheduledFuture<?> watcher = null;
+    
+    
+    //
+    // Constructors
+    //
+    
+    /**
+     * Loads a key store, whose type is JKS if its name ends in .jks, and PKCS12 otherwise.
+     * @param _keyStorePath the key store file
+     * @param _password     the password of the key store and its key
+     * @throws IOException if the key store cannot be loaded
+     */
+    public LocalTlsContext(Path _keyStorePath, String _password)
+        throws IOException
+    {
+        this(
+            _keyStorePath,
+            _keyStorePath.toString().toLowerCase().endsWith(".jks") ? "JKS" : "PKCS12",
+            _password,
+            DEFAULT_SESSION_CACHE_SIZE,
+            DEFAULT_SESSION_TIMEOUT_SECONDS
+        );
+    }
+    
+    /**
+     * Loads a key store.
+     * @param _keyStorePath          the key store file
+     * @param _keyStoreType          the key store type, such as PKCS12 or JKS
+     * @param _password              the password of the key store and its key
+     * @param _sessionCacheSize      how many sessions to keep for resumption, or 0 for no limit
+     * @param _sessionTimeoutSeconds how long a session can be resumed for, or 0 for no limit
+     * @throws IOException if the key store cannot be loaded
+     */
+    public LocalTlsContext(Path _keyStorePath, String _keyStoreType, String _password, int _sessionCacheSize, int _sessionTimeoutSeconds)
+        throws IOException
+    {
+        if (_sessionCacheSize < 0) { throw new IllegalArgumentException("Session cache size cannot be negative."); }
+        if (_sessionTimeoutSeconds < 0) { throw new IllegalArgumentException("Session timeout cannot be negative."); }
+        this.KEY_STORE_PATH = _keyStorePath;
+        this.KEY_STORE_TYPE = _keyStoreType;
+        this.password = _password.toCharArray();
+        this.reload();
+        try
+        {
+            this.sslContext = SSLContext.getInstance(PROTOCOL);
+            this.sslContext.init(new KeyManager[] { this.keyManager }, null, null);
+        }
+        catch (GeneralSecurityException ex)
+        {
+            throw new IOException(String.format("Could not create %s context.", PROTOCOL), ex);
+        }
+        SSLSessionContext sessions = this.sslContext.getServerSessionContext();
+        sessions.setSessionCacheSize(_sessionCacheSize);
+        sessions.setSessionTimeout(_sessionTimeoutSeconds);
+        this.configurator = new Configurator(this);
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    public SSLContext getSSLContext() { return this.sslContext; }
+    public HttpsConfigurator getConfigurator() { return this.configurator; }
+    public long getReloadCount() { return this.reloadCount.sum(); }
+    
+    /**
+     * Counts the sessions in the server session cache, which can be resumed.
+     * Runtimes that resume TLS 1.3 sessions from stateless tickets do not
+     * use this cache for them, so it can stay empty while resumption works.
+     * @return the number of cached sessions
+     */
+    public int getCachedSessionCount()
+    {
+        return Collections.list(this.sslContext.getServerSessionContext().getIds()).size();
+    }
+    
+    /**
+     * Sets the protocols offered over ALPN, most preferred first.
+     * Ignored on runtimes without ALPN.
+     * @param protocols the protocol names, or none to not take part in ALPN
+     */
+    public synchronized void setApplicationProtocols(String... protocols)
+    {
+        this.applicationProtocols = protocols.clone();
+        this.serverParameters = null;
+    }
+    
+    /**
+     * Sets a hook that adjusts the parameters of every server handshake,
+     * such as to restrict protocol versions or cipher suites.
+     * It is called once, and again after each change to these settings.
+     * @param hook the hook, or null for none
+     */
+    public synchronized void setParametersHook(Consumer<SSLParameters> hook)
+    {
+        this.parametersHook = hook;
+        this.serverParameters = null;
+    }
+    
+    /**
+     * Sets what is told when a watched key store cannot be reloaded.
+     * By default the failure is logged as a warning.
+     * @param listener the listener, which is called on
+     *                 {@link LocalServerExecutor#SCHEDULER} and must be quick
+     */
+    public void setReloadFailureListener(Consumer<? super IOException> listener)
+    {
+        if (listener == null) { throw new IllegalArgumentException("Reload failure listener cannot be null."); }
+        this.reloadFailureListener = listener;
+    }
+    
+    /**
+     * Gets the parameters for a server handshake, building them the first time.
+     * @return the parameters, which must not be changed
+     */
+    public SSLParameters getServerParameters()
+    {
+        SSLParameters result = this.serverParameters;
+        if (result != null) { return result; }
+        synchronized (this)
+        {
+            if (this.serverParameters == null)
+            {
+                SSLParameters parameters = this.sslContext.getDefaultSSLParameters();
+                parameters.setNeedClientAuth(false);
+                if (SET_APPLICATION_PROTOCOLS != null)
+                {
+                    try
+                    {
+                        SET_APPLICATION_PROTOCOLS.invoke(parameters, (Object)this.applicationProtocols.clone());
+                    }
+                    catch (ReflectiveOperationException ex)
+                    {
+                        throw new RuntimeException(ex);
+                    }
+                }
+                if (this.parametersHook != null) { this.parametersHook.accept(parameters); }
+                this.serverParameters = parameters;
+            }
+            return this.serverParameters;
+        }
+    }
+    
+    /**
+     * Loads the key store file again, and uses its key for later handshakes.
+     * If the file cannot be loaded, the previous key stays in use.
+     * @throws IOException if the key store cannot be loaded, or has no usable key
+     */
+    public synchronized void reload()
+        throws IOException
+    {
+        long modifiedMillis = Files.getLastModifiedTime(this.KEY_STORE_PATH).toMillis();
+        long size = Files.size(this.KEY_STORE_PATH);
+        KeyStore keyStore = this.loadKeyStore();
+        try
+        {
+            KeyManagerFactory factory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            factory.init(keyStore, this.password);
+            for (KeyManager km : factory.getKeyManagers())
+            {
+                if (km instanceof X509ExtendedKeyManager)
+                {
+                    this.keyManager.swap((X509ExtendedKeyManager)km);
+                    this.loadedModifiedMillis = modifiedMillis;
+                    this.loadedSize = size;
+                    this.reloadCount.increment();
+                    return;
+                }
+            }
+        }
+        catch (GeneralSecurityException ex)
+        {
+            throw new IOException(String.format("Could not read the key in %s.", this.KEY_STORE_PATH), ex);
+        }
+        throw new IOException(String.format("Key store %s has no X.509 key.", this.KEY_STORE_PATH));
+    }
+    
+    /**
+     * Checks the key store file for changes on {@link LocalServerExecutor#SCHEDULER},
+     * and reloads it when it changes. Failed reloads are passed to the
+     * {@link #setReloadFailureListener(Consumer) reload failure listener}.
+     * @param intervalMillis how often to check the file
+     * @return               this context
+     */
+    public synchronized LocalTlsContext watch(long intervalMillis)
+    {
+        if (intervalMillis <= 0) { throw new IllegalArgumentException("Watch interval must be positive."); }
+        if (this.watcher != null) { this.watcher.cancel(false); }
+        this.watcher = LocalServerExecutor.SCHEDULER.scheduleWithFixedDelay(
+            this::reloadIfChanged,
+            intervalMillis,
+            intervalMillis,
+            TimeUnit.MILLISECONDS
+        );
+        return this;
+    }
+    
+    /**
+     * Stops watching the key store file.
+     */
+    @Override
+    public synchronized void close()
+    {
+        if (this.watcher != null)
+        {
+            this.watcher.cancel(false);
+            this.watcher = null;
+        }
+    }
+    
+    /**
+     * Creates a client context that trusts only the certificates in this
+     * context's key store, for a server to reach itself, such as for its warmup.
+     * @return the client context
+     * @throws IOException if the key store cannot be loaded
+     */
+    public SSLContext createClientContext()
+        throws IOException
+    {
+        try
+        {
+            TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            factory.init(this.loadKeyStore());
+            SSLContext context = SSLContext.getInstance(PROTOCOL);
+            context.init(null, factory.getTrustManagers(), null);
+            return context;
+        }
+        catch (GeneralSecurityException ex)
+        {
+            throw new IOException(String.format("Could not create a client context for %s.", this.KEY_STORE_PATH), ex);
+        }
+    }
+    
+    protected KeyStore loadKeyStore()
+        throws IOException
+    {
+        try (InputStream in = Files.newInputStream(this.KEY_STORE_PATH))
+        {
+            KeyStore keyStore = KeyStore.getInstance(this.KEY_STORE_TYPE);
+            keyStore.load(in, this.password);
+            return keyStore;
+        }
+        catch (GeneralSecurityException ex)
+        {
+            throw new IOException(String.format("Could not load key store %s.", this.KEY_STORE_PATH), ex);
+        }
+    }
+    
+    protected void reloadIfChanged()
+    {
+        try
+        {
+            long modifiedMillis = Files.getLastModifiedTime(this.KEY_STORE_PATH).toMillis();
+            long size = Files.size(this.KEY_STORE_PATH);
+            if (modifiedMillis == this.loadedModifiedMillis && size == this.loadedSize) { return; }
+            this.reload();
+        }
+        catch (IOException ex)
+        {
+            this.reloadFailureListener.accept(ex);
+        }
+        catch (RuntimeException ex)
+        {
+            this.reloadFailureListener.accept(new IOException(String.format("Could not reload key store %s.", this.KEY_STORE_PATH), ex));
+        }
+    }
+    
+    protected void logReloadFailure(IOException ex)
+    {
+        LOGGER.log(Level.WARNING, String.format("Could not reload key store %s.", this.KEY_STORE_PATH), ex);
+    }
+    
+    
+    //
+    // Nested Classes
+    //
+    
+    /**
+     * Applies a LocalTlsContext's parameters to each connection of an HttpsServer.
+     */
+    public static class Configurator extends HttpsConfigurator
+    {
+        public final LocalTlsContext TLS;
+        
+        public Configurator(LocalTlsContext _tls)
+        {
+            super(_tls.sslContext);
+            this.TLS = _tls;
+        }
+        
+        @Override
+        public void configure(HttpsParameters params)
+        {
+            params.setSSLParameters(this.TLS.getServerParameters());
+        }
+    }
+    
+    /**
+     * Hands each handshake to the key manager that was loaded last.
+     * The aliases it gives out are prefixed with the generation of the key
+     * manager that chose them, and the certificate chain and private key are
+     * looked up in that same generation, so a reload in the middle of a
+     * handshake cannot pair one key store's certificate with another's key.
+     */
+    protected static class SwappableKeyManager extends X509ExtendedKeyManager
+    {
+        /** How many generations are kept for handshakes that began before a reload. */
+        public static final int KEPT_GENERATIONS = 4;
+        public static final char GENERATION_SEPARATOR = ':';
+        
+        protected final Map<Integer, X509ExtendedKeyManager> generations = new ConcurrentHashMap<>();
+        protected volatile int current = -1;
+        
+        protected synchronized void swap(X509ExtendedKeyManager delegate)
+        {
+            int next = this.current + 1;
+            this.generations.put(next, delegate);
+            this.generations.remove(next - KEPT_GENERATIONS);
+            this.current = next;
+        }
+        
+        protected int currentGeneration()
+        {
+            return this.current;
+        }
+        
+        protected X509ExtendedKeyManager delegate(int generation)
+        {
+            return this.generations.get(generation);
+        }
+        
+        protected static String toAlias(int generation, String alias)
+        {
+            return alias == null ? null : generation + String.valueOf(GENERATION_SEPARATOR) + alias;
+        }
+        
+        protected static String[] toAliases(int generation, String[] aliases)
+        {
+            if (aliases == null) { return null; }
+            String[] result = new String[aliases.length];
+            for (int i = 0; i < aliases.length; ++i) { result[i] = toAlias(generation, aliases[i]); }
+            return result;
+        }
+        
+        /**
+         * Finds the key manager an alias came from, or null if it is gone.
+         */
+        protected X509ExtendedKeyManager delegateOf(String alias)
+        {
+            int index = alias == null ? -1 : alias.indexOf(GENERATION_SEPARATOR);
+            if (index <= 0) { return null; }
+            try
+            {
+                return this.delegate(Integer.parseInt(alias.substring(0, index)));
+            }
+            catch (NumberFormatException ex)
+            {
+                return null;
+            }
+        }
+        
+        @Override
+        public String[] getClientAliases(String keyType, Principal[] issuers)
+        {
+            int generation = this.currentGeneration();
+            return toAliases(generation, this.delegate(generation).getClientAliases(keyType, issuers));
+        }
+        
+        @Override
+        public String chooseClientAlias(String[] keyType, Principal[] issuers, Socket socket)
+        {
+            int generation = this.currentGeneration();
+            return toAlias(generation, this.delegate(generation).chooseClientAlias(keyType, issuers, socket));
+        }
+        
+        @Override
+        public String[] getServerAliases(String keyType, Principal[] issuers)
+        {
+            int generation = this.currentGeneration();
+            return toAliases(generation, this.delegate(generation).getServerAliases(keyType, issuers));
+        }
+        
+        @Override
+        public String chooseServerAlias(String keyType, Principal[] issuers, Socket socket)
+        {
+            int generation = this.currentGeneration();
+            return toAlias(generation, this.delegate(generation).chooseServerAlias(keyType, issuers, socket));
+        }
+        
+        @Override
+        public X509Certificate[] getCertificateChain(String alias)
+        {
+            X509ExtendedKeyManager delegate = this.delegateOf(alias);
+            return delegate == null ? null : delegate.getCertificateChain(alias.substring(alias.indexOf(GENERATION_SEPARATOR) + 1));
+        }
+        
+        @Override
+        public PrivateKey getPrivateKey(String alias)
+        {
+            X509ExtendedKeyManager delegate = this.delegateOf(alias);
+            return delegate == null ? null : delegate.getPrivateKey(alias.substring(alias.indexOf(GENERATION_SEPARATOR) + 1));
+        }
+        
+        @Override
+        public String chooseEngineClientAlias(String[] keyType, Principal[] issuers, SSLEngine engine)
+        {
+            int generation = this.currentGeneration();
+            return toAlias(generation, this.delegate(generation).chooseEngineClientAlias(keyType, issuers, engine));
+        }
+        
+        @Override
+        public String chooseEngineServerAlias(String keyType, Principal[] issuers, SSLEngine engine)
+        {
+            int generation = this.currentGeneration();
+            return toAlias(generation, this.delegate(generation).chooseEngineServerAlias(keyType, issuers, engine));
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalWebSocket.java
+ * LocalWebSocket class definition
+ */
+
+package chairosoft.local_server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.Base64;
+
+/**
+ * Constants and frame encoding for the WebSocket protocol (RFC 6455).
+ * <p>
+ * Frames sent by a server are never masked, so a frame only depends on its
+ * payload; {@link #encodeFrame} builds it once, and the same frame can then
+ * be written to any number of sessions.
+ * @see LocalWebSocketHandler
+ */
+public class LocalWebSocket
+{
+    //
+    // Static Fields
+    //
+    
+    public static final String VERSION = "13";
+    public static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    
+    public static final int OPCODE_CONTINUATION = 0x0;
+    public static final int OPCODE_TEXT = 0x1;
+    public static final int OPCODE_BINARY = 0x2;
+    public static final int OPCODE_CLOSE = 0x8;
+    public static final int OPCODE_PING = 0x9;
+    public static final int OPCODE_PONG = 0xA;
+    
+    public static final int CLOSE_NORMAL = 1000;
+    public static final int CLOSE_GOING_AWAY = 1001;
+    public static final int CLOSE_PROTOCOL_ERROR = 1002;
+    public static final int CLOSE_UNSUPPORTED_DATA = 1003;
+    public static final int CLOSE_NO_STATUS = 1005;
+    public static final int CLOSE_ABNORMAL = 1006;
+    public static final int CLOSE_INVALID_PAYLOAD = 1007;
+    public static final int CLOSE_POLICY_VIOLATION = 1008;
+    public static final int CLOSE_MESSAGE_TOO_BIG = 1009;
+    public static final int CLOSE_INTERNAL_ERROR = 1011;
+    
+    public static final int MAX_CONTROL_PAYLOAD = 125;
+    
+    /** Frames at least this large are encoded into direct buffers, which the socket can write without a copy. */
+    public static final int DIRECT_FRAME_THRESHOLD = 4096;
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Computes the Sec-WebSocket-Accept value for a client's Sec-WebSocket-Key.
+     * @param key the client's key
+     * @return    the Base64 SHA-1 hash of the key and the protocol's GUID
+     */
+    public static String getAcceptKey(String key)
+    {
+        try
+        {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((key + ACCEPT_GUID).getBytes(StandardCharsets.ISO_8859_1));
+            return Base64.getEncoder().encodeToString(digest);
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    /**
+     * Determines whether a Sec-WebSocket-Key is valid: the Base64 encoding of 16 bytes.
+     * @param key the key (may be null)
+     * @return    true if the key is valid
+     */
+    public static boolean isValidKey(String key)
+    {
+        if (key == null || key.length() != 24) { return false; }
+        try
+        {
+            return Base64.getDecoder().decode(key).length == 16;
+        }
+        catch (IllegalArgumentException ex)
+        {
+            return false;
+        }
+    }
+    
+    /**
+     * Encodes a whole, unmasked frame.
+     * @param opcode  the frame's opcode
+     * @param payload the payload
+     * @param offset  the index of the payload's first byte
+     * @param length  the number of payload bytes
+     * @return        the frame, between the buffer's position and limit, ready to be written
+     */
+    public static ByteBuffer encodeFrame(int opcode, byte[] payload, int offset, int length)
+    {
+        int headerLength = length <= 125 ? 2 : length <= 0xffff ? 4 : 10;
+        int frameLength = headerLength + length;
+        ByteBuffer frame = frameLength >= DIRECT_FRAME_THRESHOLD ? ByteBuffer.allocateDirect(frameLength) : ByteBuffer.allocate(frameLength);
+        frame.put((byte)(0x80 | opcode));
+        if (length <= 125)
+        {
+            frame.put((byte)length);
+        }
+        else if (length <= 0xffff)
+        {
+            frame.put((byte)126);
+            frame.putShort((short)length);
+        }
+        else
+        {
+            frame.put((byte)127);
+            frame.putLong(length);
+        }
+        frame.put(payload, offset, length);
+        frame.flip();
+        return frame;
+    }
+    
+    /**
+     * Encodes a text frame.
+     * @param text the text to send
+     * @return     the frame
+     */
+    public static ByteBuffer encodeTextFrame(String text)
+    {
+        byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        return LocalWebSocket.encodeFrame(OPCODE_TEXT, payload, 0, payload.length);
+    }
+    
+    /**
+     * Encodes a binary frame.
+     * @param data the bytes to send
+     * @return     the frame
+     */
+    public static ByteBuffer encodeBinaryFrame(byte[] data)
+    {
+        return LocalWebSocket.encodeFrame(OPCODE_BINARY, data, 0, data.length);
+    }
+    
+    /**
+     * Encodes a close frame.
+     * @param code   the close code, or {@link #CLOSE_NO_STATUS} to send none
+     * @param reason the reason (may be null), cut short to fit in a control frame
+     * @return       the frame
+     */
+    public static ByteBuffer encodeCloseFrame(int code, String reason)
+    {
+        if (code == CLOSE_NO_STATUS) { return LocalWebSocket.encodeFrame(OPCODE_CLOSE, new byte[0], 0, 0); }
+        byte[] reasonBytes = reason == null ? new byte[0] : reason.getBytes(StandardCharsets.UTF_8);
+        int reasonLength = Math.min(reasonBytes.length, MAX_CONTROL_PAYLOAD - 2);
+        while (reasonLength > 0 && reasonLength < reasonBytes.length && (reasonBytes[reasonLength] & 0xc0) == 0x80) { --reasonLength; }
+        byte[] payload = new byte[2 + reasonLength];
+        payload[0] = (byte)(code >> 8);
+        payload[1] = (byte)code;
+        System.arraycopy(reasonBytes, 0, payload, 2, reasonLength);
+        return LocalWebSocket.encodeFrame(OPCODE_CLOSE, payload, 0, payload.length);
+    }
+    
+    /**
+     * Determines whether a close code may be sent in a close frame.
+     * @param code the close code
+     * @return     true if the code is one that an endpoint may send
+     */
+    public static boolean isValidCloseCode(int code)
+    {
+        if (code >= 3000 && code <= 4999) { return true; }
+        if (code < 1000 || code > 1014) { return false; }
+        return code != 1004 && code != CLOSE_NO_STATUS && code != CLOSE_ABNORMAL;
+    }
+}
\ No newline at end of file
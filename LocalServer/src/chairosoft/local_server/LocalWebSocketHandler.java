@@ -0,0 +1,251 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalWebSocketHandler.java
+ * LocalWebSocketHandler class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upgrades requests on its context to WebSocket sessions.
+ * <p>
+ * Upgrades need the NIO transport, which can hand the connection over once
+ * the 101 response is written; on the JDK transport every upgrade request
+ * gets a 501 response. Open sessions are pinged every
+ * {@link #PING_INTERVAL_MILLIS}, and a session that has sent nothing for
+ * two intervals is dropped.
+ * @see LocalServer#createWebSocketContext
+ */
+public class LocalWebSocketHandler implements LocalHttpHandler, Closeable
+{
+    //
+    // Static Fields
+    //
+    
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 1024 * 1024;
+    public static final long DEFAULT_MAX_QUEUED_BYTES = 1024 * 1024;
+    public static final long DEFAULT_PING_INTERVAL_MILLIS = 30000;
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    public final int MAX_MESSAGE_SIZE;
+    public final long MAX_QUEUED_BYTES;
+    public final long PING_INTERVAL_MILLIS;
+    
+    protected final LocalWebSocketListener listener;
+    protected final Set<LocalWebSocketSession> sessions = ConcurrentHashMap.newKeySet();
+    protected final ByteBuffer pingFrame = LocalWebSocket.encodeFrame(LocalWebSocket.OPCODE_PING, new byte[0], 0, 0);
+    protected ScheduledFuture<?> pinger = null;
+    protected volatile boolean closed = false;
+    
+    
+    //
+    // Constructors
+    //
+    
+    public LocalWebSocketHandler(LocalWebSocketListener _listener)
+    {
+        this(_listener, DEFAULT_MAX_MESSAGE_SIZE, DEFAULT_MAX_QUEUED_BYTES, DEFAULT_PING_INTERVAL_MILLIS);
+    }
+    
+    /**
+     * Creates a handler.
+     * @param _listener           what is told about each session's messages
+     * @param _maxMessageSize     the largest message a client may send, after reassembly
+     * @param _maxQueuedBytes     how many bytes may wait on a slow client before frames to it are dropped
+     * @param _pingIntervalMillis how often to ping open sessions, or 0 to never ping them
+     */
+    public LocalWebSocketHandler(LocalWebSocketListener _listener, int _maxMessageSize, long _maxQueuedBytes, long _pingIntervalMillis)
+    {
+        if (_maxMessageSize <= 0) { throw new IllegalArgumentException("Max message size must be positive."); }
+        if (_maxQueuedBytes <= 0) { throw new IllegalArgumentException("Max queued bytes must be positive."); }
+        if (_pingIntervalMillis < 0) { throw new IllegalArgumentException("Ping interval cannot be negative."); }
+        this.listener = _listener;
+        this.MAX_MESSAGE_SIZE = _maxMessageSize;
+        this.MAX_QUEUED_BYTES = _maxQueuedBytes;
+        this.PING_INTERVAL_MILLIS = _pingIntervalMillis;
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    /**
+     * Gets the open sessions.
+     * @return an unmodifiable live view of the sessions
+     */
+    public Set<LocalWebSocketSession> getSessions()
+    {
+        return Collections.unmodifiableSet(this.sessions);
+    }
+    
+    public int getSessionCount() { return this.sessions.size(); }
+    
+    @Override
+    public void handle(LocalHttpExchange x)
+        throws IOException
+    {
+        String upgrade = x.REQUEST_HEADERS.getFirst("Upgrade");
+        if (upgrade == null || !upgrade.equalsIgnoreCase("websocket")
+            || !LocalWebSocketHandler.hasToken(x.REQUEST_HEADERS.getFirst("Connection"), "upgrade")
+            || !LocalWebSocket.VERSION.equals(x.REQUEST_HEADERS.getFirst("Sec-WebSocket-Version")))
+        {
+            x.RESPONSE_HEADERS.set("Upgrade", "websocket");
+            x.RESPONSE_HEADERS.set("Sec-WebSocket-Version", LocalWebSocket.VERSION);
+            x.sendStringResponse(426, "text/plain", "WebSocket upgrade required");
+            return;
+        }
+        String key = x.REQUEST_HEADERS.getFirst("Sec-WebSocket-Key");
+        if (!x.REQUEST_METHOD.equals("GET") || !LocalWebSocket.isValidKey(key) || x.REQUEST_CONTENT_LENGTH > 0)
+        {
+            x.sendStringResponse(400, "text/plain", "Bad WebSocket handshake");
+            return;
+        }
+        if (!(x.exchange instanceof LocalNioHttpExchange))
+        {
+            x.sendStringResponse(501, "text/plain", "WebSockets need the NIO transport");
+            return;
+        }
+        if (this.closed)
+        {
+            x.sendServiceUnavailableResponse(1);
+            return;
+        }
+        
+        LocalNioHttpExchange exchange = (LocalNioHttpExchange)x.exchange;
+        LocalWebSocketSession session = new LocalWebSocketSession(this, exchange.connection, exchange.getRequestURI());
+        this.startPinging();
+        exchange.upgradeToWebSocket(session, LocalWebSocket.getAcceptKey(key));
+    }
+    
+    /**
+     * Sends a text message to every open session. The frame is encoded once.
+     * @param text the text to send
+     * @return     the number of sessions the message was queued for
+     */
+    public int broadcast(String text)
+    {
+        return this.broadcastFrame(LocalWebSocket.encodeTextFrame(text));
+    }
+    
+    /**
+     * Sends a binary message to every open session. The frame is encoded once.
+     * @param data the bytes to send
+     * @return     the number of sessions the message was queued for
+     */
+    public int broadcast(byte[] data)
+    {
+        return this.broadcastFrame(LocalWebSocket.encodeBinaryFrame(data));
+    }
+    
+    /**
+     * Sends an already encoded frame to every open session.
+     * Sessions that are too far behind skip the frame.
+     * @param frame the frame, between its position and limit
+     * @return      the number of sessions the frame was queued for
+     */
+    public int broadcastFrame(ByteBuffer frame)
+    {
+        int count = 0;
+        for (LocalWebSocketSession session : this.sessions)
+        {
+            if (session.sendFrame(frame)) { ++count; }
+        }
+        return count;
+    }
+    
+    /**
+     * Stops pinging and closes every open session with {@link LocalWebSocket#CLOSE_GOING_AWAY}.
+     * Later upgrade requests get a 503 response.
+     */
+    @Override
+    public void close()
+    {
+        this.closed = true;
+        synchronized (this)
+        {
+            if (this.pinger != null)
+            {
+                this.pinger.cancel(false);
+                this.pinger = null;
+            }
+        }
+        for (LocalWebSocketSession session : new ArrayList<>(this.sessions))
+        {
+            session.close(LocalWebSocket.CLOSE_GOING_AWAY, "server is shutting down");
+        }
+    }
+    
+    /**
+     * Starts the periodic ping, the first time a session opens.
+     */
+    protected synchronized void startPinging()
+    {
+        if (this.pinger != null || this.PING_INTERVAL_MILLIS == 0 || this.closed) { return; }
+        this.pinger = LocalServerExecutor.SCHEDULER.scheduleWithFixedDelay(
+            this::pingSessions,
+            this.PING_INTERVAL_MILLIS,
+            this.PING_INTERVAL_MILLIS,
+            TimeUnit.MILLISECONDS
+        );
+    }
+    
+    /**
+     * Pings every open session, and drops those that have gone quiet.
+     */
+    protected void pingSessions()
+    {
+        long now = System.currentTimeMillis();
+        for (LocalWebSocketSession session : this.sessions)
+        {
+            if (now - session.getLastReceivedMillis() > 2 * this.PING_INTERVAL_MILLIS)
+            {
+                session.connection.close();
+            }
+            else
+            {
+                session.enqueue(this.pingFrame.duplicate(), true);
+            }
+        }
+    }
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Determines whether a comma-separated header value contains a token.
+     * @param value the header value (may be null)
+     * @param token the token to look for
+     * @return      true if the token is present, ignoring case
+     */
+    protected static boolean hasToken(String value, String token)
+    {
+        if (value == null) { return false; }
+        for (String part : value.split(","))
+        {
+            if (part.trim().equalsIgnoreCase(token)) { return true; }
+        }
+        return false;
+    }
+}
\ No newline at end of file
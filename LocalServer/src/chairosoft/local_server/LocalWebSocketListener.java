@@ -0,0 +1,49 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalWebSocketListener.java
+ * LocalWebSocketListener interface definition
+ */
+
+package chairosoft.local_server;
+
+/**
+ * Receives the events of the WebSocket sessions of a {@link LocalWebSocketHandler}.
+ * <p>
+ * A session's events arrive one at a time, on the server's executor. While 
+ * a message is being handled, nothing more is read from its connection, so 
+ * a slow listener slows down its client instead of buffering its messages.
+ * Every method does nothing unless it is overridden.
+ */
+public interface LocalWebSocketListener
+{
+    /**
+     * Called once a session has been upgraded, before any of its messages.
+     * @param session the new session
+     */
+    default void onOpen(LocalWebSocketSession session) { }
+    
+    /**
+     * Called for each whole text message.
+     * @param session the session
+     * @param text    the message
+     */
+    default void onText(LocalWebSocketSession session, String text) { }
+    
+    /**
+     * Called for each whole binary message.
+     * @param session the session
+     * @param data    the message
+     */
+    default void onBinary(LocalWebSocketSession session, byte[] data) { }
+    
+    /**
+     * Called once when a session ends, whether it was closed cleanly or its connection was lost.
+     * @param session the session
+     * @param code    the close code, or {@link LocalWebSocket#CLOSE_ABNORMAL} if no close frame was received
+     * @param reason  the close reason, which may be empty
+     */
+    default void onClose(LocalWebSocketSession session, int code, String reason) { }
+}
\ No newline at end of file
@@ -0,0 +1,676 @@
+/*
+ * Nicholas Saney
+ * 
+ * Created: October 18, 2026
+ * 
+ * LocalWebSocketSession.java
+ * LocalWebSocketSession class definition
+ */
+
+package chairosoft.local_server;
+
+import java.io.IOException;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One open WebSocket connection, created when a {@link LocalWebSocketHandler}
+ * upgrades an exchange on the NIO transport.
+ * <p>
+ * Frames are parsed straight out of the connection's read buffer and unmasked
+ * into a pooled scratch array; only whole messages are handed to the listener.
+ * Outgoing frames are queued and written without blocking, so a slow client
+ * never holds up the thread that sends to it. Once more than
+ * {@link #MAX_QUEUED_BYTES} are waiting on a client, further data frames for
+ * it are dropped and counted instead of queued. Pongs cannot be dropped, so
+ * a client that keeps pinging without reading has its session failed with
+ * {@link LocalWebSocket#CLOSE_POLICY_VIOLATION} instead.
+ */
+public class LocalWebSocketSession
+{
+    //
+    // Static Fields
+    //
+    
+    /** How long to wait for the client's close frame before dropping the connection. */
+    public static final long CLOSE_TIMEOUT_MILLIS = 5000;
+    
+    public static final int SCRATCH_SIZE = 16 * 1024;
+    
+    /** The most frames handed to the socket in one gathering write. */
+    public static final int MAX_GATHER = 64;
+    
+    
+    //
+    // Instance Fields
+    //
+    
+    public final URI REQUEST_URI;
+    public final InetSocketAddress REMOTE_ADDRESS;
+    public final int MAX_MESSAGE_SIZE;
+    public final long MAX_QUEUED_BYTES;
+    
+    protected final LocalWebSocketHandler handler;
+    protected final LocalNioHttpConnection connection;
+    protected final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    protected final AtomicBoolean ended = new AtomicBoolean(false);
+    protected volatile long lastReceivedMillis = System.currentTimeMillis();
+    
+    // read state, only touched by the thread reading the connection
+    protected boolean inFrame = false;
+    protected boolean fin = false;
+    protected int opcode = 0;
+    protected long payloadRemaining = 0;
+    protected final byte[] mask = new byte[4];
+    protected int maskIndex = 0;
+    protected final byte[] control = new byte[LocalWebSocket.MAX_CONTROL_PAYLOAD];
+    protected int controlLength = 0;
+    protected int messageOpcode = -1;
+    protected LocalByteSink message = null;
+    protected volatile boolean receivedClose = false;
+    protected volatile int receivedCloseCode = LocalWebSocket.CLOSE_ABNORMAL;
+    protected volatile String receivedCloseReason = "";
+    
+    // write state, guarded by the outbound queue
+    protected final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+    protected final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    protected long queuedBytes = 0;
+    protected boolean waitingForWritable = false;
+    protected boolean closeSent = false;
+    protected boolean closeAfterFlush = false;
+    protected final LongAdder droppedCount = new LongAdder();
+    
+    
+    //
+    // Constructor
+    //
+    
+    protected LocalWebSocketSession(LocalWebSocketHandler _handler, LocalNioHttpConnection _connection, URI _requestUri)
+    {
+        this.handler = _handler;
+        this.connection = _connection;
+        this.REQUEST_URI = _requestUri;
+        this.REMOTE_ADDRESS = _connection.remoteAddress;
+        this.MAX_MESSAGE_SIZE = _handler.MAX_MESSAGE_SIZE;
+        this.MAX_QUEUED_BYTES = _handler.MAX_QUEUED_BYTES;
+    }
+    
+    
+    //
+    // Instance Methods
+    //
+    
+    public Map<String, Object> getAttributes() { return this.attributes; }
+    public long getLastReceivedMillis() { return this.lastReceivedMillis; }
+    public long getDroppedCount() { return this.droppedCount.sum(); }
+    
+    public long getQueuedBytes()
+    {
+        synchronized (this.outbound)
+        {
+            return this.queuedBytes;
+        }
+    }
+    
+    /**
+     * Determines whether messages can still be sent on this session.
+     * @return false once either side has started the close handshake
+     */
+    public boolean isOpen()
+    {
+        synchronized (this.outbound)
+        {
+            return !this.closeSent && !this.ended.get();
+        }
+    }
+    
+    /**
+     * Sends a text message.
+     * @param text the text to send
+     * @return     true if the message was queued, or false if it was dropped
+     */
+    public boolean send(String text)
+    {
+        return this.sendFrame(LocalWebSocket.encodeTextFrame(text));
+    }
+    
+    /**
+     * Sends a binary message.
+     * @param data the bytes to send
+     * @return     true if the message was queued, or false if it was dropped
+     */
+    public boolean send(byte[] data)
+    {
+        return this.sendFrame(LocalWebSocket.encodeBinaryFrame(data));
+    }
+    
+    /**
+     * Sends an empty ping; the client's pong updates {@link #getLastReceivedMillis}.
+     * @return true if the ping was queued
+     */
+    public boolean ping()
+    {
+        return this.sendFrame(LocalWebSocket.encodeFrame(LocalWebSocket.OPCODE_PING, new byte[0], 0, 0));
+    }
+    
+    /**
+     * Sends an already encoded frame. The frame itself is not changed, so the
+     * same frame can be sent to any number of sessions.
+     * @param frame the frame, between its position and limit
+     * @return      true if the frame was queued, or false if the session is closing
+     *              or too many bytes are already waiting on the client
+     */
+    public boolean sendFrame(ByteBuffer frame)
+    {
+        return this.enqueue(frame.duplicate(), false);
+    }
+    
+    /**
+     * Starts a normal close handshake.
+     */
+    public void close()
+    {
+        this.close(LocalWebSocket.CLOSE_NORMAL, null);
+    }
+    
+    /**
+     * Starts the close handshake. The connection is dropped if the client
+     * does not answer within {@link #CLOSE_TIMEOUT_MILLIS}.
+     * @param code   the close code
+     * @param reason the reason (may be null)
+     * @throws IllegalArgumentException if the close code cannot be sent
+     */
+    public void close(int code, String reason)
+    {
+        if (!LocalWebSocket.isValidCloseCode(code))
+        {
+            throw new IllegalArgumentException(String.format("Close code %s cannot be sent.", code));
+        }
+        this.sendClose(code, reason, false);
+    }
+    
+    @Override
+    public String toString()
+    {
+        return String.format("LocalWebSocketSession[%s %s]", this.REMOTE_ADDRESS, this.REQUEST_URI);
+    }
+    
+    /**
+     * Called once the 101 response has been written, before any frames are read.
+     */
+    protected void open()
+    {
+        this.handler.sessions.add(this);
+        try
+        {
+            this.handler.listener.onOpen(this);
+        }
+        catch (RuntimeException ex)
+        {
+            this.sendClose(LocalWebSocket.CLOSE_INTERNAL_ERROR, null, true);
+        }
+        if (this.handler.closed)
+        {
+            // the handler closed while this session was opening, so it missed this session
+            this.sendClose(LocalWebSocket.CLOSE_GOING_AWAY, "server is shutting down", false);
+        }
+    }
+    
+    /**
+     * Reads and handles every frame available on the connection, then hands
+     * the connection back to the selector.
+     */
+    protected void onReadable()
+    {
+        byte[] scratch = LocalBufferPool.SHARED.acquireArray(SCRATCH_SIZE);
+        try
+        {
+            while (!this.receivedClose && !this.connection.closed)
+            {
+                this.readFrames(scratch);
+                if (this.receivedClose || this.connection.closed) { return; }
+                
+                int bytesRead = this.connection.fill();
+                if (bytesRead < 0)
+                {
+                    this.connection.close();
+                    return;
+                }
+                if (bytesRead == 0)
+                {
+                    this.connection.dispatcher.rearm(this.connection);
+                    return;
+                }
+            }
+        }
+        catch (CloseException ex)
+        {
+            this.fail(ex.CODE, ex.getMessage());
+        }
+        catch (IOException ex)
+        {
+            this.connection.close();
+        }
+        catch (RuntimeException ex)
+        {
+            // thrown by the listener
+            this.fail(LocalWebSocket.CLOSE_INTERNAL_ERROR, null);
+        }
+        finally
+        {
+            LocalBufferPool.SHARED.releaseArray(scratch);
+        }
+    }
+    
+    /**
+     * Resumes writing queued frames once the socket can take more bytes.
+     */
+    protected void onWritable()
+    {
+        boolean closeNow;
+        synchronized (this.outbound)
+        {
+            this.waitingForWritable = false;
+            closeNow = this.writeQueued();
+        }
+        if (closeNow) { this.connection.close(); }
+    }
+    
+    /**
+     * Called once when the connection closes, for whatever reason.
+     */
+    protected void onConnectionClosed()
+    {
+        if (!this.ended.compareAndSet(false, true)) { return; }
+        synchronized (this.outbound)
+        {
+            this.outbound.clear();
+            this.queuedBytes = 0;
+        }
+        this.handler.sessions.remove(this);
+        try
+        {
+            this.handler.listener.onClose(this, this.receivedCloseCode, this.receivedCloseReason);
+        }
+        catch (RuntimeException ex)
+        {
+            // the session is gone either way
+        }
+    }
+    
+    /**
+     * Parses as many frames as the read buffer holds.
+     * @param scratch where payload bytes are unmasked
+     * @throws IOException if a frame breaks the protocol or a message is too big
+     */
+    protected void readFrames(byte[] scratch)
+        throws IOException
+    {
+        ByteBuffer in = this.connection.readBuffer;
+        while (!this.receivedClose)
+        {
+            if (!this.inFrame && !this.readFrameHeader(in)) { return; }
+            while (this.payloadRemaining > 0)
+            {
+                int n = (int)Math.min(Math.min(in.remaining(), this.payloadRemaining), scratch.length);
+                if (n == 0) { return; }
+                in.get(scratch, 0, n);
+                for (int i = 0; i < n; ++i)
+                {
+                    scratch[i] ^= this.mask[this.maskIndex++ & 3];
+                }
+                if (this.opcode >= LocalWebSocket.OPCODE_CLOSE)
+                {
+                    System.arraycopy(scratch, 0, this.control, this.controlLength, n);
+                    this.controlLength += n;
+                }
+                else
+                {
+                    this.message.write(scratch, 0, n);
+                }
+                this.payloadRemaining -= n;
+            }
+            this.inFrame = false;
+            this.finishFrame();
+        }
+    }
+    
+    /**
+     * Parses the frame header at the front of the read buffer, if it has all arrived.
+     * @param in the read buffer
+     * @return   true if a header was parsed
+     * @throws IOException if the header breaks the protocol or the message is too big
+     */
+    protected boolean readFrameHeader(ByteBuffer in)
+        throws IOException
+    {
+        int available = in.remaining();
+        if (available < 2) { return false; }
+        int p = in.position();
+        int b0 = in.get(p) & 0xff;
+        int b1 = in.get(p + 1) & 0xff;
+        if ((b0 & 0x70) != 0) { throw new CloseException(LocalWebSocket.CLOSE_PROTOCOL_ERROR, "Reserved bits are set."); }
+        if ((b1 & 0x80) == 0) { throw new CloseException(LocalWebSocket.CLOSE_PROTOCOL_ERROR, "Client frames must be masked."); }
+        int lengthCode = b1 & 0x7f;
+        int headerLength = 2 + (lengthCode == 126 ? 2 : lengthCode == 127 ? 8 : 0) + 4;
+        if (available < headerLength) { return false; }
+        
+        boolean isFin = (b0 & 0x80) != 0;
+        int op = b0 & 0x0f;
+        long length = lengthCode == 126 ? in.getShort(p + 2) & 0xffff : lengthCode == 127 ? in.getLong(p + 2) : lengthCode;
+        if (length < 0) { throw new CloseException(LocalWebSocket.CLOSE_PROTOCOL_ERROR, "Invalid frame length."); }
+        switch (op)
+        {
+            case LocalWebSocket.OPCODE_CLOSE:
+            case LocalWebSocket.OPCODE_PING:
+            case LocalWebSocket.OPCODE_PONG:
+                if (!isFin || length > LocalWebSocket.MAX_CONTROL_PAYLOAD)
+                {
+                    throw new CloseException(LocalWebSocket.CLOSE_PROTOCOL_ERROR, "Invalid control frame.");
+                }
+                this.controlLength = 0;
+                break;
+            case LocalWebSocket.OPCODE_TEXT:
+            case LocalWebSocket.OPCODE_BINARY:
+                if (this.messageOpcode >= 0)
+                {
+                    throw new CloseException(LocalWebSocket.CLOSE_PROTOCOL_ERROR, "Expected a continuation frame.");
+                }
+                if (length > this.MAX_MESSAGE_SIZE)
+                {
+                    throw new CloseException(LocalWebSocket.CLOSE_MESSAGE_TOO_BIG, "Message is too big.");
+                }
+                this.messageOpcode = op;
+                this.message = new LocalByteSink((int)length);
+                break;
+            case LocalWebSocket.OPCODE_CONTINUATION:
+                if (this.messageOpcode < 0)
+                {
+                    throw new CloseException(LocalWebSocket.CLOSE_PROTOCOL_ERROR, "Unexpected continuation frame.");
+                }
+                if (this.message.size() + length > this.MAX_MESSAGE_SIZE)
+                {
+                    throw new CloseException(LocalWebSocket.CLOSE_MESSAGE_TOO_BIG, "Message is too big.");
+                }
+                break;
+            default:
+                throw new CloseException(LocalWebSocket.CLOSE_PROTOCOL_ERROR, String.format("Unknown opcode %s.", op));
+        }
+        in.position(p + headerLength - 4);
+        in.get(this.mask);
+        this.fin = isFin;
+        this.opcode = op;
+        this.payloadRemaining = length;
+        this.maskIndex = 0;
+        this.inFrame = true;
+        return true;
+    }
+    
+    /**
+     * Handles a frame whose payload has been read.
+     * @throws IOException if the frame's payload is invalid
+     */
+    protected void finishFrame()
+        throws IOException
+    {
+        this.lastReceivedMillis = System.currentTimeMillis();
+        switch (this.opcode)
+        {
+            case LocalWebSocket.OPCODE_PING:
+                this.enqueue(LocalWebSocket.encodeFrame(LocalWebSocket.OPCODE_PONG, this.control, 0, this.controlLength), true);
+                return;
+            case LocalWebSocket.OPCODE_PONG:
+                return;
+            case LocalWebSocket.OPCODE_CLOSE:
+                this.onCloseFrame();
+                return;
+        }
+        if (!this.fin) { return; }
+        
+        int op = this.messageOpcode;
+        byte[] payload;
+        try
+        {
+            payload = this.message.toByteArray();
+        }
+        finally
+        {
+            this.message.close();
+            this.message = null;
+            this.messageOpcode = -1;
+        }
+        if (op == LocalWebSocket.OPCODE_TEXT)
+        {
+            this.handler.listener.onText(this, LocalWebSocketSession.decodeUtf8(payload, 0, payload.length));
+        }
+        else
+        {
+            this.handler.listener.onBinary(this, payload);
+        }
+    }
+    
+    /**
+     * Handles the client's close frame, answering it if the server has not sent one already.
+     * @throws IOException if the close frame is invalid
+     */
+    protected void onCloseFrame()
+        throws IOException
+    {
+        int code = LocalWebSocket.CLOSE_NO_STATUS;
+        String reason = "";
+        if (this.controlLength == 1)
+        {
+            throw new CloseException(LocalWebSocket.CLOSE_PROTOCOL_ERROR, "Invalid close frame.");
+        }
+        if (this.controlLength >= 2)
+        {
+            code = ((this.control[0] & 0xff) << 8) | (this.control[1] & 0xff);
+            if (!LocalWebSocket.isValidCloseCode(code))
+            {
+                throw new CloseException(LocalWebSocket.CLOSE_PROTOCOL_ERROR, String.format("Invalid close code %s.", code));
+            }
+            reason = LocalWebSocketSession.decodeUtf8(this.control, 2, this.controlLength - 2);
+        }
+        this.receivedCloseCode = code;
+        this.receivedCloseReason = reason;
+        this.receivedClose = true;
+        this.sendClose(code, null, true);
+    }
+    
+    /**
+     * Sends a close frame, unless one has been sent already.
+     * @param code       the close code
+     * @param reason     the reason (may be null)
+     * @param closeAfter whether to close the connection as soon as the frame is written
+     */
+    protected void sendClose(int code, String reason, boolean closeAfter)
+    {
+        boolean closeNow = false;
+        boolean first;
+        synchronized (this.outbound)
+        {
+            if (closeAfter) { this.closeAfterFlush = true; }
+            first = !this.closeSent;
+            if (first)
+            {
+                this.outbound.add(LocalWebSocket.encodeCloseFrame(code, reason));
+                this.queuedBytes += this.outbound.peekLast().remaining();
+                this.closeSent = true;
+            }
+            if (!this.waitingForWritable) { closeNow = this.writeQueued(); }
+        }
+        if (closeNow)
+        {
+            this.connection.close();
+        }
+        else if (first)
+        {
+            // a client that is not reading may never take the close frame
+            LocalServerExecutor.SCHEDULER.schedule(this.connection::close, CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Closes the session after a protocol error, without waiting for the client's answer.
+     * @param code   the close code
+     * @param reason the reason (may be null)
+     */
+    protected void fail(int code, String reason)
+    {
+        this.receivedCloseCode = code;
+        this.receivedCloseReason = reason == null ? "" : reason;
+        this.receivedClose = true;
+        this.sendClose(code, reason, true);
+    }
+    
+    /**
+     * Queues a frame and writes as much of the queue as the socket will take.
+     * @param frame the frame to queue, which the queue takes over
+     * @param force whether the frame must not be dropped, so that the session
+     *              is failed instead if too many bytes are waiting
+     * @return      true if the frame was queued
+     */
+    protected boolean enqueue(ByteBuffer frame, boolean force)
+    {
+        boolean closeNow = false;
+        boolean overLimit;
+        synchronized (this.outbound)
+        {
+            if (this.closeSent || this.ended.get()) { return false; }
+            int length = frame.remaining();
+            overLimit = this.queuedBytes > 0 && this.queuedBytes + length > this.MAX_QUEUED_BYTES;
+            if (overLimit && !force)
+            {
+                this.droppedCount.increment();
+                return false;
+            }
+            if (!overLimit)
+            {
+                this.outbound.add(frame);
+                this.queuedBytes += length;
+                if (this.waitingForWritable) { return true; }
+                closeNow = this.writeQueued();
+            }
+        }
+        if (overLimit)
+        {
+            // a frame that cannot be dropped, such as a pong, fails the session instead
+            this.fail(LocalWebSocket.CLOSE_POLICY_VIOLATION, "Too many bytes are waiting on the client.");
+            return false;
+        }
+        if (closeNow) { this.connection.close(); }
+        return true;
+    }
+    
+    /**
+     * Writes queued frames until the queue is empty or the socket is full.
+     * Must be called while holding the outbound queue's lock.
+     * @return true if the connection should now be closed
+     */
+    protected boolean writeQueued()
+    {
+        try
+        {
+            while (!this.outbound.isEmpty())
+            {
+                int count = 0;
+                for (ByteBuffer b : this.outbound)
+                {
+                    this.gather[count++] = b;
+                    if (count == MAX_GATHER) { break; }
+                }
+                long written = this.connection.channel.write(this.gather, 0, count);
+                this.queuedBytes -= written;
+                while (!this.outbound.isEmpty() && !this.outbound.peekFirst().hasRemaining())
+                {
+                    this.outbound.pollFirst();
+                }
+                if (written == 0 || (count < MAX_GATHER && !this.outbound.isEmpty()))
+                {
+                    // the socket is full; carry on once it can take more
+                    this.waitingForWritable = true;
+                    this.connection.dispatcher.armWrite(this.connection);
+                    return false;
+                }
+            }
+            this.connection.lastActivity = System.currentTimeMillis();
+            return this.closeAfterFlush;
+        }
+        catch (IOException ex)
+        {
+            this.outbound.clear();
+            this.queuedBytes = 0;
+            return true;
+        }
+        finally
+        {
+            Arrays.fill(this.gather, null);
+        }
+    }
+    
+    
+    //
+    // Static Methods
+    //
+    
+    /**
+     * Decodes UTF-8, failing on malformed input rather than replacing it.
+     * @param bytes  the encoded bytes
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @return       the decoded text
+     * @throws IOException if the bytes are not valid UTF-8
+     */
+    protected static String decodeUtf8(byte[] bytes, int offset, int length)
+        throws IOException
+    {
+        try
+        {
+            CharBuffer chars = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(ByteBuffer.wrap(bytes, offset, length));
+            return chars.toString();
+        }
+        catch (CharacterCodingException ex)
+        {
+            throw new CloseException(LocalWebSocket.CLOSE_INVALID_PAYLOAD, "Invalid UTF-8.");
+        }
+    }
+    
+    
+    //
+    // Nested Classes
+    //
+    
+    /**
+     * A problem with the client's frames, and the close code to answer it with.
+     */
+    protected static class CloseException extends IOException
+    {
+        private static final long serialVersionUID = 1L;
+        
+        public final int CODE;
+        
+        public CloseException(int _code, String message)
+        {
+            super(message);
+            this.CODE = _code;
+        }
+    }
+}
\ No newline at end of file